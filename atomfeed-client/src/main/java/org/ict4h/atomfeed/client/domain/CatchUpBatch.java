@@ -0,0 +1,38 @@
+package org.ict4h.atomfeed.client.domain;
+
+import java.util.List;
+
+/**
+ * The events of one catch-up stream, with the cursor to ask for the next one with.
+ */
+public class CatchUpBatch {
+    private final List<Event> events;
+    private final String cursor;
+    private final boolean caughtUp;
+
+    public CatchUpBatch(List<Event> events, String cursor, boolean caughtUp) {
+        this.events = events;
+        this.cursor = cursor;
+        this.caughtUp = caughtUp;
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @return whether there were no more events to stream, rather than the stream reaching its limit
+     */
+    public boolean isCaughtUp() {
+        return caughtUp;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CatchUpBatch{events=%d, cursor=%s, caughtUp=%s}", events.size(), cursor, caughtUp);
+    }
+}
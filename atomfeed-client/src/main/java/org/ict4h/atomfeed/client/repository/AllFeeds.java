@@ -48,12 +48,16 @@ public class AllFeeds {
         responseString.trim().replaceFirst("^([\\W]+)<", "<");
 
         try {
-            WireFeedInput input = new WireFeedInput();
-            Feed feed = (Feed) input.build(new StringReader(responseString));
+            Feed feed = parse(responseString);
             logger.info(String.format("Found %d entries", feed.getEntries().size()));
             return feed;
         } catch (Exception e) {
             throw new AtomFeedClientException(responseString, e);
         }
     }
+
+    protected Feed parse(String responseString) throws Exception {
+        WireFeedInput input = new WireFeedInput();
+        return (Feed) input.build(new StringReader(responseString));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package org.ict4h.atomfeed.client.repository;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.syndication.feed.atom.Category;
+import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.client.AtomFeedProperties;
+import org.ict4h.atomfeed.client.domain.CatchUpBatch;
+import org.ict4h.atomfeed.client.domain.Event;
+import org.ict4h.atomfeed.client.exceptions.AtomFeedClientException;
+import org.ict4h.atomfeed.client.repository.datasource.DefaultHttpClient;
+import org.ict4h.atomfeed.client.repository.datasource.HttpClient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the events after a given one in bulk, as newline delimited JSON, from the catch-up stream of a feed
+ * (e.g. http://host/feed/category/events for the feed http://host/feed/category/recent).
+ * <p>
+ * Each stream holds as many events as the server allows, and ends with the cursor to ask for the next stream with.
+ */
+public class CatchUpFeed {
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static Logger logger = Logger.getLogger(CatchUpFeed.class);
+
+    private HttpClient httpClient;
+    private AtomFeedProperties atomFeedProperties = new AtomFeedProperties();
+    private Map<String, String> clientCookies;
+    private URI uri;
+
+    public CatchUpFeed(URI uri) {
+        this(new DefaultHttpClient(NDJSON_MEDIA_TYPE), uri);
+    }
+
+    public CatchUpFeed(HttpClient httpClient, URI uri) {
+        this.httpClient = httpClient;
+        this.uri = uri;
+    }
+
+    public CatchUpFeed(AtomFeedProperties atomFeedProperties, Map<String, String> clientCookies, URI uri) {
+        this(new DefaultHttpClient(NDJSON_MEDIA_TYPE), atomFeedProperties, clientCookies, uri);
+    }
+
+    public CatchUpFeed(HttpClient httpClient, AtomFeedProperties atomFeedProperties, Map<String, String> clientCookies, URI uri) {
+        this.httpClient = httpClient;
+        this.atomFeedProperties = atomFeedProperties;
+        this.clientCookies = clientCookies;
+        this.uri = uri;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * @param entryId the id of the last entry read, null to start at the first event
+     * @param cursor the cursor the previous batch ended with, if any; it is where the stream resumes from
+     */
+    public CatchUpBatch getAfter(String entryId, String cursor) {
+        URI batchUri = batchUri(entryId, cursor);
+        logger.info(String.format("Reading URI - %s", batchUri));
+        String responseString = httpClient.fetch(batchUri, atomFeedProperties, clientCookies);
+        try {
+            CatchUpBatch batch = parse(responseString);
+            logger.info(String.format("Found %s", batch));
+            return batch;
+        } catch (Exception e) {
+            throw new AtomFeedClientException(responseString, e);
+        }
+    }
+
+    private URI batchUri(String entryId, String cursor) {
+        try {
+            if (cursor != null) {
+                return new URI(uri + "?cursor=" + URLEncoder.encode(cursor, "UTF-8"));
+            }
+            return entryId == null ? uri : new URI(uri + "?after=" + URLEncoder.encode(entryId, "UTF-8"));
+        } catch (Exception e) {
+            throw new AtomFeedClientException(e);
+        }
+    }
+
+    private CatchUpBatch parse(String responseString) throws IOException, ParseException {
+        List<Event> events = new ArrayList<>();
+        JsonParser parser = jsonFactory.createParser(responseString);
+        try {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String cursor = null;
+                boolean caughtUp = false;
+                String id = null, title = null, contents = null, timestamp = null;
+                List<Category> categories = new ArrayList<>();
+                boolean isCursor = false;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("cursor".equals(field)) {
+                        isCursor = true;
+                        cursor = parser.getValueAsString();
+                    } else if ("caughtUp".equals(field)) {
+                        caughtUp = parser.getValueAsBoolean();
+                    } else if ("id".equals(field)) {
+                        id = parser.getValueAsString();
+                    } else if ("title".equals(field)) {
+                        title = parser.getValueAsString();
+                    } else if ("timestamp".equals(field)) {
+                        timestamp = parser.getValueAsString();
+                    } else if ("contents".equals(field)) {
+                        contents = parser.getValueAsString();
+                    } else if ("categories".equals(field) && parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            Category category = new Category();
+                            category.setTerm(parser.getValueAsString());
+                            categories.add(category);
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (isCursor) {
+                    return new CatchUpBatch(events, cursor, caughtUp);
+                }
+                Event event = new Event(id, contents, title, uri.toString(), JsonAllFeeds.dateOf(timestamp));
+                event.getCategories().addAll(categories);
+                events.add(event);
+            }
+        } finally {
+            parser.close();
+        }
+        throw new IOException(String.format("The stream ended after %d events without a cursor", events.size()));
+    }
+}
@@ -0,0 +1,174 @@
+package org.ict4h.atomfeed.client.repository;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.syndication.feed.atom.Category;
+import com.sun.syndication.feed.atom.Content;
+import com.sun.syndication.feed.atom.Entry;
+import com.sun.syndication.feed.atom.Feed;
+import com.sun.syndication.feed.atom.Link;
+import org.ict4h.atomfeed.client.AtomFeedProperties;
+import org.ict4h.atomfeed.client.repository.datasource.DefaultHttpClient;
+import org.ict4h.atomfeed.client.repository.datasource.HttpClient;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Reads feeds in their JSON representation, asking for it with an Accept header of application/json.
+ * <p>
+ * The page is read with a streaming parser straight into the feed, its links and entries, without the XML
+ * document and the generic Rome parsing in between. The feed looks the same as one read from Atom, so
+ * that {@link org.ict4h.atomfeed.client.service.FeedEnumerator} and the clients built on it work over either format.
+ */
+public class JsonAllFeeds extends AllFeeds {
+    public static final String JSON_MEDIA_TYPE = "application/json";
+    private static final String ATOMFEED_MEDIA_TYPE = "application/vnd.atomfeed+xml";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    public JsonAllFeeds() {
+        super(new DefaultHttpClient(JSON_MEDIA_TYPE));
+    }
+
+    public JsonAllFeeds(HttpClient httpClient) {
+        super(httpClient);
+    }
+
+    public JsonAllFeeds(AtomFeedProperties atomFeedProperties, Map<String, String> clientCookies) {
+        super(new DefaultHttpClient(JSON_MEDIA_TYPE), atomFeedProperties, clientCookies);
+    }
+
+    public JsonAllFeeds(HttpClient httpClient, AtomFeedProperties atomFeedProperties, Map<String, String> clientCookies) {
+        super(httpClient, atomFeedProperties, clientCookies);
+    }
+
+    @Override
+    protected Feed parse(String responseString) throws Exception {
+        JsonParser parser = jsonFactory.createParser(responseString);
+        try {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            return readFeed(parser);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private Feed readFeed(JsonParser parser) throws IOException, ParseException {
+        Feed feed = new Feed("atom_1.0");
+        List<Link> alternateLinks = new ArrayList<>();
+        List<Link> otherLinks = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(field)) {
+                feed.setId(parser.getValueAsString());
+            } else if ("title".equals(field)) {
+                feed.setTitle(parser.getValueAsString());
+            } else if ("updated".equals(field)) {
+                feed.setUpdated(dateOf(parser.getValueAsString()));
+            } else if ("links".equals(field)) {
+                expect(parser.getCurrentToken(), JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    Link link = readLink(parser);
+                    if (link.getRel() == null || "alternate".equals(link.getRel())) {
+                        alternateLinks.add(link);
+                    } else {
+                        otherLinks.add(link);
+                    }
+                }
+            } else if ("entries".equals(field)) {
+                expect(parser.getCurrentToken(), JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    entries.add(readEntry(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        feed.setAlternateLinks(alternateLinks);
+        feed.setOtherLinks(otherLinks);
+        feed.setEntries(entries);
+        return feed;
+    }
+
+    private Link readLink(JsonParser parser) throws IOException {
+        Link link = new Link();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("rel".equals(field)) {
+                link.setRel(parser.getValueAsString());
+            } else if ("type".equals(field)) {
+                link.setType(parser.getValueAsString());
+            } else if ("href".equals(field)) {
+                link.setHref(parser.getValueAsString());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return link;
+    }
+
+    private Entry readEntry(JsonParser parser) throws IOException, ParseException {
+        Entry entry = new Entry();
+        List<Category> categories = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(field)) {
+                entry.setId(parser.getValueAsString());
+            } else if ("title".equals(field)) {
+                entry.setTitle(parser.getValueAsString());
+            } else if ("timestamp".equals(field)) {
+                Date timestamp = dateOf(parser.getValueAsString());
+                entry.setUpdated(timestamp);
+                entry.setPublished(timestamp);
+            } else if ("categories".equals(field)) {
+                expect(parser.getCurrentToken(), JsonToken.START_ARRAY);
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    Category category = new Category();
+                    category.setTerm(parser.getValueAsString());
+                    categories.add(category);
+                }
+            } else if ("contents".equals(field)) {
+                String contents = parser.getValueAsString();
+                if (contents != null) {
+                    Content content = new Content();
+                    content.setType(ATOMFEED_MEDIA_TYPE);
+                    content.setValue(contents);
+                    entry.setContents(Collections.singletonList(content));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        entry.setCategories(categories);
+        return entry;
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException(String.format("Expected %s but found %s", expected, actual));
+        }
+    }
+
+    static Date dateOf(String text) throws ParseException {
+        if (text == null) {
+            return null;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.parse(text);
+    }
+}
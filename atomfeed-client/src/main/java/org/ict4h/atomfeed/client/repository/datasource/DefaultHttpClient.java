@@ -14,6 +14,16 @@ import java.util.Map;
 import static java.lang.String.format;
 
 public class DefaultHttpClient implements HttpClient {
+    private final String accept;
+
+    public DefaultHttpClient() {
+        this("application/atom+xml");
+    }
+
+    public DefaultHttpClient(String accept) {
+        this.accept = accept;
+    }
+
     @Override
     public String fetch(URI uri, AtomFeedProperties atomFeedProperties, Map<String, String> clientCookies) {
         HttpURLConnection connection = null;
@@ -21,7 +31,7 @@ public class DefaultHttpClient implements HttpClient {
         try {
             connection = (HttpURLConnection) uri.toURL().openConnection();
             connection.setRequestMethod("GET");
-            connection.setRequestProperty("Accept", "application/atom+xml");
+            connection.setRequestProperty("Accept", accept);
             connection.addRequestProperty("User-Agent", "Mozilla");
             ClientCookies cookies = new ClientCookies(clientCookies);
             String httpRequestPropertyValue = cookies.getHttpRequestPropertyValue();
@@ -52,7 +62,7 @@ public class DefaultHttpClient implements HttpClient {
         System.out.println("Redirect to URL : " + redirectedUrl);
         connection = (HttpURLConnection) new URL(redirectedUrl).openConnection();
         connection.setRequestMethod("GET");
-        connection.setRequestProperty("Accept", "application/atom+xml");
+        connection.setRequestProperty("Accept", accept);
         connection.addRequestProperty("User-Agent", "Mozilla");
         if ((returnedCookie == null) || "".equals(returnedCookie)) {
             if (httpRequestPropertyValue != null)
@@ -3,18 +3,22 @@ package org.ict4h.atomfeed.client.repository.jdbc;
 import com.sun.syndication.feed.atom.Category;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
-import org.ict4h.atomfeed.Configuration;
 import org.ict4h.atomfeed.client.domain.Event;
 import org.ict4h.atomfeed.client.domain.FailedEvent;
 import org.ict4h.atomfeed.client.domain.FailedEventRetryLog;
 import org.ict4h.atomfeed.client.exceptions.AtomFeedClientException;
 import org.ict4h.atomfeed.client.repository.AllFailedEvents;
 import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
-import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.jdbc.StatementTemplates;
+import org.ict4h.atomfeed.jdbc.dialect.DetectedSqlDialect;
+import org.ict4h.atomfeed.jdbc.dialect.SqlDialect;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 public class AllFailedEventsJdbcImpl implements AllFailedEvents {
     private static Logger logger = Logger.getLogger(AllFailedEventsJdbcImpl.class);
@@ -22,11 +26,37 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
     public static final String FAILED_EVENT_RETRY_LOG_TABLE = "failed_event_retry_log";
     public static final int ERROR_MSG_MAX_LEN = 4000;
     public static final String QUERY_FIELD_LIST = "id, feed_uri, failed_at, error_message, event_id, event_content, title, retries, tags";
+    private static final List<String> INSERT_COLUMNS = Arrays.asList("feed_uri", "failed_at", "error_message", "event_id", "event_content",
+            "error_hash_code", "title", "retries", "tags");
 
     private JdbcConnectionProvider connectionProvider;
+    private final StatementTemplates statements;
+    private final SqlDialect dialect;
+    //Found from the dialect the first time it is needed, as that is when it is known; empty when it has no upsert.
+    private volatile Optional<String> upsertSql;
 
     public AllFailedEventsJdbcImpl(JdbcConnectionProvider connectionProvider) {
+        this(connectionProvider, new DetectedSqlDialect(connectionProvider));
+    }
+
+    public AllFailedEventsJdbcImpl(JdbcConnectionProvider connectionProvider, SqlDialect dialect) {
         this.connectionProvider = connectionProvider;
+        this.dialect = dialect;
+        this.statements = new StatementTemplates()
+                .add("get", "select " + QUERY_FIELD_LIST + " from %s where feed_uri = ? and event_id = ?", FAILED_EVENTS_TABLE)
+                .add("getByEventId", "select " + QUERY_FIELD_LIST + " from %s where event_id = ?", FAILED_EVENTS_TABLE)
+                .add("getByFeedUri", "select " + QUERY_FIELD_LIST + " from %s where feed_uri = ?", FAILED_EVENTS_TABLE)
+                .add("insert", "insert into %s (feed_uri, failed_at, error_message, event_id, event_content, error_hash_code, title, retries, tags) values (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                        FAILED_EVENTS_TABLE)
+                .add("insertRetryLog", "insert into %s (feed_uri, failed_at, error_message, error_hash_code, event_id, event_content) values (?, ?, ?, ?, ?, ?)",
+                        FAILED_EVENT_RETRY_LOG_TABLE)
+                .add("updateRetries", "update %s set retries = ? where feed_uri = ? and event_id = ?", FAILED_EVENTS_TABLE)
+                .add("getOldest", "select " + QUERY_FIELD_LIST + " from %s where feed_uri = ? and retries < ? order by id", FAILED_EVENTS_TABLE)
+                .add("count", "select count(*) from %s where feed_uri = ?", FAILED_EVENTS_TABLE)
+                .add("delete " + FAILED_EVENTS_TABLE, "delete from %s where feed_uri = ? and event_id = ?", FAILED_EVENTS_TABLE)
+                .add("delete " + FAILED_EVENT_RETRY_LOG_TABLE, "delete from %s where feed_uri = ? and event_id = ?", FAILED_EVENT_RETRY_LOG_TABLE)
+                .add("getRetryLogs", "select id,feed_uri,failed_at,error_message,event_id,event_content from %s where event_id = ?",
+                        FAILED_EVENT_RETRY_LOG_TABLE);
     }
 
     @Override
@@ -36,10 +66,7 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
         ResultSet resultSet = null;
         try {
             connection = connectionProvider.getConnection();
-            String sql = String.format(
-                    "select " + QUERY_FIELD_LIST + " from %s where feed_uri = ? and event_id = ?",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "failed_events"));
-            statement = connection.prepareStatement(sql);
+            statement = connection.prepareStatement(statements.get("get"));
             statement.setString(1, feedUri);
             statement.setString(2, eventId);
             resultSet = statement.executeQuery();
@@ -62,10 +89,7 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
         ResultSet resultSet = null;
         try {
             connection = connectionProvider.getConnection();
-            String sql = String.format(
-                    "select " + QUERY_FIELD_LIST + " from %s where event_id = ?",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "failed_events"));
-            statement = connection.prepareStatement(sql);
+            statement = connection.prepareStatement(statements.get("getByEventId"));
             statement.setString(1, eventId);
             resultSet = statement.executeQuery();
             List<FailedEvent> failedEvents = mapFailedEventsFromResultSet(resultSet);
@@ -88,9 +112,7 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
         ResultSet resultSet = null;
         try {
             connection = connectionProvider.getConnection();
-            String sql = String.format("select " + QUERY_FIELD_LIST + " from %s where feed_uri = ?",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "failed_events"));
-            statement = connection.prepareStatement(sql);
+            statement = connection.prepareStatement(statements.get("getByFeedUri"));
             statement.setString(1, feedUri);
             resultSet = statement.executeQuery();
             List<FailedEvent> failedEvents = mapFailedEventsFromResultSet(resultSet);
@@ -149,6 +171,13 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
 
     @Override
     public void addOrUpdate(FailedEvent failedEvent) {
+        //Relies on the feed uri and event id of failed events being unique, so that nodes failing the same event
+        //do not both insert it.
+        if (upsertSql().isPresent()) {
+            insertFailedEvent(failedEvent, upsertSql().get());
+            return;
+        }
+
         FailedEvent existingFailedEvent = get(failedEvent.getFeedUri(), failedEvent.getEventId());
 
         if (existingFailedEvent != null) {
@@ -156,14 +185,18 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
             return;
         }
 
-        insertFailedEvent(failedEvent);
+        insertFailedEvent(failedEvent, statements.get("insert"));
     }
 
-    private void insertFailedEvent(FailedEvent failedEvent) {
-        String sql = String.format(
-                "insert into %s (feed_uri, failed_at, error_message, event_id, event_content, error_hash_code, title, retries, tags) values (?, ?, ?, ?, ?, ?, ?, ?, ?)",
-                JdbcUtils.getTableName(Configuration.getInstance().getSchema(), FAILED_EVENTS_TABLE));
+    private Optional<String> upsertSql() {
+        if (upsertSql == null) {
+            upsertSql = Optional.ofNullable(dialect.upsert(statements.table(FAILED_EVENTS_TABLE), Arrays.asList("feed_uri", "event_id"),
+                    INSERT_COLUMNS, Collections.singletonList("retries")));
+        }
+        return upsertSql;
+    }
 
+    private void insertFailedEvent(FailedEvent failedEvent, String sql) {
         // DB limit is 4000. reduce to ensure it doesn't cross that.
         String errorMessage = failedEvent.getErrorMessage().length() > ERROR_MSG_MAX_LEN
                 ? failedEvent.getErrorMessage().substring(0, ERROR_MSG_MAX_LEN) : failedEvent.getErrorMessage();
@@ -210,9 +243,6 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
 
     @Override
     public void insert(FailedEventRetryLog failedEventRetryLog) {
-        String sql = String.format("insert into %s (feed_uri, failed_at, error_message, error_hash_code, event_id, event_content) values (?, ?, ?, ?, ?, ?)",
-                JdbcUtils.getTableName(Configuration.getInstance().getSchema(), FAILED_EVENT_RETRY_LOG_TABLE));
-
         // DB limit is 4000. reduce to ensure it doesn't cross that.
         String errorMessage = failedEventRetryLog.getErrorMessage().length() > ERROR_MSG_MAX_LEN
                 ? failedEventRetryLog.getErrorMessage().substring(0, ERROR_MSG_MAX_LEN) : failedEventRetryLog.getErrorMessage();
@@ -221,7 +251,7 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
         PreparedStatement statement = null;
         try {
             connection = connectionProvider.getConnection();
-            statement = connection.prepareStatement(sql);
+            statement = connection.prepareStatement(statements.get("insertRetryLog"));
             statement.setString(1, failedEventRetryLog.getFeedUri());
             statement.setTimestamp(2, new Timestamp(failedEventRetryLog.getFailedAt()));
             statement.setString(3, errorMessage);
@@ -237,15 +267,11 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
     }
 
     private void updateFailedEvent(FailedEvent failedEvent) {
-        String sql = String.format(
-                "update %s set retries = ? where feed_uri = ? and event_id = ?",
-                JdbcUtils.getTableName(Configuration.getInstance().getSchema(), FAILED_EVENTS_TABLE));
-
         Connection connection;
         PreparedStatement statement = null;
         try {
             connection = connectionProvider.getConnection();
-            statement = connection.prepareStatement(sql);
+            statement = connection.prepareStatement(statements.get("updateRetries"));
             statement.setInt(1, failedEvent.getRetries());
             statement.setString(2, failedEvent.getFeedUri());
             statement.setString(3, failedEvent.getEventId());
@@ -264,10 +290,7 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
         ResultSet resultSet = null;
         try {
             connection = connectionProvider.getConnection();
-            String sql = String.format(
-                    "select " + QUERY_FIELD_LIST + " from %s where feed_uri = ? and retries < ? order by id",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), FAILED_EVENTS_TABLE));
-            statement = connection.prepareStatement(sql);
+            statement = connection.prepareStatement(statements.get("getOldest"));
             statement.setString(1, feedUri);
             statement.setInt(2, numberOfRetries);
             statement.setMaxRows(numberOfFailedEvents);
@@ -289,8 +312,7 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
         ResultSet resultSet = null;
         try {
             connection = connectionProvider.getConnection();
-            statement = connection.prepareStatement(String.format("select count(*) from %s where feed_uri = ?",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), FAILED_EVENTS_TABLE)));
+            statement = connection.prepareStatement(statements.get("count"));
             statement.setString(1, feedUri);
             resultSet = statement.executeQuery();
 
@@ -314,8 +336,7 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
         PreparedStatement statement = null;
         try {
             connection = connectionProvider.getConnection();
-            statement = connection.prepareStatement(String.format("delete from %s where feed_uri = ? and event_id = ?",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), tableName)));
+            statement = connection.prepareStatement(statements.get("delete " + tableName));
             statement.setString(1, feedUri);
             statement.setString(2, eventId);
             statement.executeUpdate();
@@ -332,10 +353,7 @@ public class AllFailedEventsJdbcImpl implements AllFailedEvents {
         ResultSet resultSet = null;
         try {
             connection = connectionProvider.getConnection();
-            String sql = String.format(
-                    "select id,feed_uri,failed_at,error_message,event_id,event_content from %s where event_id = ?",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "failed_event_retry_log"));
-            statement = connection.prepareStatement(sql);
+            statement = connection.prepareStatement(statements.get("getRetryLogs"));
             statement.setString(1, eventId);
             resultSet = statement.executeQuery();
 
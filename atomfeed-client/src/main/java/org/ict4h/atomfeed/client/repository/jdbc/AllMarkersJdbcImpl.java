@@ -1,12 +1,11 @@
 package org.ict4h.atomfeed.client.repository.jdbc;
 
 import org.apache.log4j.Logger;
-import org.ict4h.atomfeed.Configuration;
 import org.ict4h.atomfeed.client.domain.Marker;
 import org.ict4h.atomfeed.client.exceptions.AtomFeedClientException;
 import org.ict4h.atomfeed.client.repository.AllMarkers;
 import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
-import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.jdbc.StatementTemplates;
 
 import java.net.URI;
 import java.sql.Connection;
@@ -19,9 +18,15 @@ import java.util.List;
 public class AllMarkersJdbcImpl implements AllMarkers {
     private static Logger logger = Logger.getLogger(AllMarkersJdbcImpl.class);
     private JdbcConnectionProvider connectionProvider;
+    private final StatementTemplates statements;
 
     public AllMarkersJdbcImpl(JdbcConnectionProvider connectionProvider) {
         this.connectionProvider = connectionProvider;
+        this.statements = new StatementTemplates()
+                .add("get", "select feed_uri, last_read_entry_id, feed_uri_for_last_read_entry from %s where feed_uri = ?", "markers")
+                .add("getAll", "select feed_uri, last_read_entry_id, feed_uri_for_last_read_entry from %s", "markers")
+                .add("update", "update %s set last_read_entry_id = ?, feed_uri_for_last_read_entry = ? where feed_uri = ?", "markers")
+                .add("insert", "insert into %s (feed_uri, last_read_entry_id, feed_uri_for_last_read_entry) values (?, ?, ?)", "markers");
     }
 
     @Override
@@ -31,9 +36,7 @@ public class AllMarkersJdbcImpl implements AllMarkers {
         ResultSet resultSet = null;
         try {
             connection = connectionProvider.getConnection();
-            String sql = String.format("select feed_uri, last_read_entry_id, feed_uri_for_last_read_entry from %s where feed_uri = ?",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "markers"));
-            stmt = connection.prepareStatement(sql);
+            stmt = connection.prepareStatement(statements.get("get"));
             stmt.setString(1, feedUri.toString());
             resultSet = stmt.executeQuery();
             List<Marker> markers = mapMarkersFromResultSet(resultSet);
@@ -56,9 +59,7 @@ public class AllMarkersJdbcImpl implements AllMarkers {
         ResultSet resultSet = null;
         try {
             connection = connectionProvider.getConnection();
-            String sql = String.format("select feed_uri, last_read_entry_id, feed_uri_for_last_read_entry from %s",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "markers"));
-            stmt = connection.prepareStatement(sql);
+            stmt = connection.prepareStatement(statements.get("getAll"));
             resultSet = stmt.executeQuery();
             List<Marker> markers = mapMarkersFromResultSet(resultSet);
             if ((markers != null) && !markers.isEmpty()) {
@@ -100,15 +101,11 @@ public class AllMarkersJdbcImpl implements AllMarkers {
     }
 
     private void updateMarker(URI feedUri, String entryId, URI entryFeedUri) {
-        String sql = String.format(
-                "update %s set last_read_entry_id = ?, feed_uri_for_last_read_entry = ? where feed_uri = ?",
-                JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "markers"));
-
         Connection connection;
         PreparedStatement statement = null;
         try {
             connection = connectionProvider.getConnection();
-            statement = connection.prepareStatement(sql);
+            statement = connection.prepareStatement(statements.get("update"));
             statement.setString(1, entryId);
             statement.setString(2, entryFeedUri.toString());
             statement.setString(3, feedUri.toString());
@@ -122,15 +119,11 @@ public class AllMarkersJdbcImpl implements AllMarkers {
     }
 
     private void insertMarker(URI feedUri, String entryId, URI entryFeedUri) {
-        String sql = String.format(
-                "insert into %s (feed_uri, last_read_entry_id, feed_uri_for_last_read_entry) values (?, ?, ?)",
-                JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "markers"));
-
         Connection connection;
         PreparedStatement statement = null;
         try {
             connection = connectionProvider.getConnection();
-            statement = connection.prepareStatement(sql);
+            statement = connection.prepareStatement(statements.get("insert"));
             statement.setString(1, feedUri.toString());
             statement.setString(2, entryId);
             statement.setString(3, entryFeedUri.toString());
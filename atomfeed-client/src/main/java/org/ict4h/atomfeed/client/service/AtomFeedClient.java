@@ -3,6 +3,7 @@ package org.ict4h.atomfeed.client.service;
 import com.sun.syndication.feed.atom.Entry;
 import com.sun.syndication.feed.atom.Feed;
 import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.client.domain.CatchUpBatch;
 import org.ict4h.atomfeed.client.domain.Event;
 import org.ict4h.atomfeed.client.domain.FailedEvent;
 import org.ict4h.atomfeed.client.domain.FailedEventRetryLog;
@@ -12,6 +13,7 @@ import org.ict4h.atomfeed.client.AtomFeedProperties;
 import org.ict4h.atomfeed.client.repository.AllFailedEvents;
 import org.ict4h.atomfeed.client.repository.AllFeeds;
 import org.ict4h.atomfeed.client.repository.AllMarkers;
+import org.ict4h.atomfeed.client.repository.CatchUpFeed;
 import org.ict4h.atomfeed.client.util.Util;
 import org.ict4h.atomfeed.transaction.AFTransactionManager;
 import org.ict4h.atomfeed.transaction.AFTransactionWork;
@@ -32,6 +34,7 @@ public class AtomFeedClient implements FeedClient {
     private EventWorker eventWorker;
     private AllMarkers allMarkers;
     private AllFailedEvents allFailedEvents;
+    private CatchUpFeed catchUpFeed;
 
     AtomFeedClient(AllFeeds allFeeds, AllMarkers allMarkers, AllFailedEvents allFailedEvents, URI feedUri, EventWorker eventWorker) {
         this(allFeeds, allMarkers, allFailedEvents, new AtomFeedProperties(), null, feedUri, eventWorker);
@@ -40,6 +43,16 @@ public class AtomFeedClient implements FeedClient {
     public AtomFeedClient(AllFeeds allFeeds, AllMarkers allMarkers, AllFailedEvents allFailedEvents, AtomFeedProperties atomFeedProperties,
                           AFTransactionManager transactionManager,
                           URI feedUri, EventWorker eventWorker) {
+        this(allFeeds, allMarkers, allFailedEvents, atomFeedProperties, transactionManager, feedUri, eventWorker, null);
+    }
+
+    /**
+     * @param catchUpFeed the catch-up stream of the feed, read in place of the feed while the client is more than a page
+     *                    behind it; the client goes back to reading the feed once it has caught up
+     */
+    public AtomFeedClient(AllFeeds allFeeds, AllMarkers allMarkers, AllFailedEvents allFailedEvents, AtomFeedProperties atomFeedProperties,
+                          AFTransactionManager transactionManager,
+                          URI feedUri, EventWorker eventWorker, CatchUpFeed catchUpFeed) {
         this.allFeeds = allFeeds;
         this.allMarkers = allMarkers;
         this.allFailedEvents = allFailedEvents;
@@ -47,6 +60,7 @@ public class AtomFeedClient implements FeedClient {
         this.transactionManager = transactionManager;
         this.feedUri = feedUri;
         this.eventWorker = eventWorker;
+        this.catchUpFeed = catchUpFeed;
     }
 
     @Override
@@ -54,27 +68,25 @@ public class AtomFeedClient implements FeedClient {
         logger.info(String.format("Processing events for feed URI : %s using event worker : %s", this.feedUri, eventWorker.getClass().getSimpleName()));
         try {
             Marker lastRead = transactionManager.executeWithTransaction(new MarkerReader(feedUri));
+            if (isFarBehind(lastRead)) {
+                if (!catchUp(lastRead)) {
+                    return;
+                }
+                lastRead = transactionManager.executeWithTransaction(new MarkerReader(feedUri));
+            }
             final FeedEnumerator enumerator = new FeedEnumerator(allFeeds, lastRead);
             for (final Entry entry : enumerator) {
-                Integer numberOfFailedEvents = transactionManager.executeWithTransaction(new FailedEventCounter(feedUri));
-                if ((numberOfFailedEvents.intValue() >= atomFeedProperties.getMaxFailedEvents())) {
-                    logger.error(String.format("Too many failed events for URI:%s have failed while processing. Cannot continue.", feedUri));
+                if (hasTooManyFailedEvents()) {
                     return;
                 }
                 Event eventInProcess = null;
                 try {
                     eventInProcess = new Event(entry, getEntryFeedUri(enumerator));
                     logger.info(String.format("Processing event : %s", eventInProcess));
-                    transactionManager.executeWithTransaction(new EventProcessor(eventInProcess, enumerator.getCurrentFeed()));
+                    transactionManager.executeWithTransaction(new EventProcessor(eventInProcess, Util.getViaLink(enumerator.getCurrentFeed())));
                 } catch (final Exception eventProcessingException) {
                     logger.error(String.format("Error occurred while processing feed entry:%s", entry), eventProcessingException);
-                    try {
-                        transactionManager.executeWithTransaction(new FailedEventHandler(feedUri, entry, eventInProcess, enumerator.getCurrentFeed(), eventProcessingException));
-                    } catch (Exception feEx) {
-                        String errorMsg = String.format("Error occurred while trying to save event as Failed: %s", eventInProcess);
-                        logger.error(errorMsg, feEx);
-                        throw new RuntimeException(errorMsg, feEx);
-                    }
+                    saveAsFailed(entry.getId(), eventInProcess, Util.getViaLink(enumerator.getCurrentFeed()), eventProcessingException);
                 } finally {
                     eventWorker.cleanUp(eventInProcess);
                 }
@@ -86,6 +98,98 @@ public class AtomFeedClient implements FeedClient {
         }
     }
 
+    /**
+     * A client is far behind when it has read nothing yet, is still catching up, or last read an entry older than the
+     * page before the recent one.
+     */
+    private boolean isFarBehind(Marker lastRead) {
+        if (catchUpFeed == null || !atomFeedProperties.controlsEventProcessing()) {
+            return false;
+        }
+        URI lastReadFeedUri = lastRead.getFeedURIForLastReadEntry();
+        if (lastReadFeedUri == null || lastReadFeedUri.equals(catchUpFeed.getUri())) {
+            return true;
+        }
+        Feed recentFeed = allFeeds.getFor(feedUri);
+        return !lastReadFeedUri.equals(Util.getViaLink(recentFeed)) && !lastReadFeedUri.equals(Util.getPreviousLink(recentFeed));
+    }
+
+    /**
+     * Reads the catch-up stream from the last read entry until there is nothing more to read, and then points the
+     * marker at the feed the last entry read is in.
+     *
+     * @return whether the client caught up and can go on reading the feed
+     */
+    private boolean catchUp(Marker lastRead) {
+        logger.info(String.format("Catching up on feed URI : %s from %s", feedUri, lastRead));
+        String lastReadEntryId = lastRead.getLastReadEntryId();
+        String cursor = null;
+        CatchUpBatch batch;
+        do {
+            batch = catchUpFeed.getAfter(lastReadEntryId, cursor);
+            for (Event event : batch.getEvents()) {
+                if (hasTooManyFailedEvents()) {
+                    return false;
+                }
+                try {
+                    logger.info(String.format("Processing event : %s", event));
+                    transactionManager.executeWithTransaction(new EventProcessor(event, catchUpFeed.getUri()));
+                } catch (final Exception eventProcessingException) {
+                    logger.error(String.format("Error occurred while processing event:%s", event), eventProcessingException);
+                    saveAsFailed(event.getId(), event, catchUpFeed.getUri(), eventProcessingException);
+                } finally {
+                    eventWorker.cleanUp(event);
+                }
+                lastReadEntryId = event.getId();
+            }
+            cursor = batch.getCursor();
+        } while (!batch.isCaughtUp());
+
+        if (lastReadEntryId == null) {
+            return true;
+        }
+        URI lastReadFeedUri = findFeedOf(lastReadEntryId);
+        if (lastReadFeedUri == null) {
+            logger.warn(String.format("Caught up to %s, which is not in the feed yet. Will read the feed once it is.", lastReadEntryId));
+            return false;
+        }
+        transactionManager.executeWithTransaction(new MarkerWriter(lastReadEntryId, lastReadFeedUri));
+        return true;
+    }
+
+    private URI findFeedOf(String entryId) {
+        URI uri = feedUri;
+        do {
+            Feed feed = allFeeds.getFor(uri);
+            for (Object entry : feed.getEntries()) {
+                if (entryId.equals(((Entry) entry).getId())) {
+                    return Util.getViaLink(feed);
+                }
+            }
+            uri = Util.getPreviousLink(feed);
+        } while (uri != null);
+        return null;
+    }
+
+    private boolean hasTooManyFailedEvents() {
+        Integer numberOfFailedEvents = transactionManager.executeWithTransaction(new FailedEventCounter(feedUri));
+        if ((numberOfFailedEvents.intValue() >= atomFeedProperties.getMaxFailedEvents())) {
+            logger.error(String.format("Too many failed events for URI:%s have failed while processing. Cannot continue.", feedUri));
+            return true;
+        }
+        return false;
+    }
+
+    private void saveAsFailed(String entryId, Event eventInProcess, URI viaLink, Exception eventProcessingException) {
+        try {
+            transactionManager.executeWithTransaction(new FailedEventHandler(feedUri, entryId, eventInProcess, viaLink, eventProcessingException));
+        } catch (Exception feEx) {
+            String errorMsg = String.format("Error occurred while trying to save event as Failed: %s", eventInProcess);
+            logger.error(errorMsg, feEx);
+            throw new RuntimeException(errorMsg, feEx);
+        }
+    }
+
     @Override
     public void processFailedEvents() {
         logger.info(String.format("Processing failed events for feed URI : %s using event worker : %s",
@@ -131,12 +235,11 @@ public class AtomFeedClient implements FeedClient {
         return Util.getSelfLink(feedEnumerator.getCurrentFeed()).toString();
     }
 
-    private void handleFailedEvent(Entry entry, URI feedUri, Exception e, Feed feed, Event event) {
-        final URI viaLink = Util.getViaLink(feed);
+    private void handleFailedEvent(String entryId, URI feedUri, Exception e, URI viaLink, Event event) {
         final String errorMessage = String.format("Failed processing event in feed [%s] \n", viaLink.toString()).concat(Util.getExceptionString(e));
         allFailedEvents.addOrUpdate(new FailedEvent(feedUri.toString(), event, errorMessage, 0));
         if (atomFeedProperties.controlsEventProcessing()) {
-            allMarkers.put(this.feedUri, entry.getId(), viaLink);
+            allMarkers.put(this.feedUri, entryId, viaLink);
         }
     }
 
@@ -157,17 +260,17 @@ public class AtomFeedClient implements FeedClient {
 
     private class EventProcessor extends AFTransactionWorkWithoutResult {
         private Event eventInProcess;
-        private Feed currentFeed;
-        public EventProcessor(Event eventInProcess, Feed currentFeed) {
+        private URI viaLink;
+        public EventProcessor(Event eventInProcess, URI viaLink) {
             this.eventInProcess = eventInProcess;
-            this.currentFeed = currentFeed;
+            this.viaLink = viaLink;
         }
         @Override
         protected void doInTransaction() {
             logger.debug("Processing event : " + this.eventInProcess);
             eventWorker.process(this.eventInProcess);
             if (atomFeedProperties.controlsEventProcessing()) {
-                allMarkers.put(feedUri, this.eventInProcess.getId(), Util.getViaLink(this.currentFeed));
+                allMarkers.put(feedUri, this.eventInProcess.getId(), this.viaLink);
             }
         }
         @Override
@@ -195,23 +298,40 @@ public class AtomFeedClient implements FeedClient {
         }
     }
 
+    private class MarkerWriter extends AFTransactionWorkWithoutResult {
+        private String lastReadEntryId;
+        private URI feedURIForLastReadEntry;
+        public MarkerWriter(String lastReadEntryId, URI feedURIForLastReadEntry) {
+            this.lastReadEntryId = lastReadEntryId;
+            this.feedURIForLastReadEntry = feedURIForLastReadEntry;
+        }
+        @Override
+        protected void doInTransaction() {
+            allMarkers.put(feedUri, this.lastReadEntryId, this.feedURIForLastReadEntry);
+        }
+        @Override
+        public PropagationDefinition getTxPropagationDefinition() {
+            return PropagationDefinition.PROPAGATION_REQUIRED;
+        }
+    }
+
     class FailedEventHandler extends AFTransactionWorkWithoutResult {
         private URI feedURI;
-        private Entry failedEntry;
+        private String failedEntryId;
         private Event failedEvent;
-        private Feed workingFeed;
+        private URI viaLink;
         private Exception failureException;
 
-        public FailedEventHandler(URI feedURI, Entry failedEntry, Event failedEvent, Feed workingFeed, Exception failureException) {
+        public FailedEventHandler(URI feedURI, String failedEntryId, Event failedEvent, URI viaLink, Exception failureException) {
             this.feedURI = feedURI;
-            this.failedEntry = failedEntry;
+            this.failedEntryId = failedEntryId;
             this.failedEvent = failedEvent;
-            this.workingFeed = workingFeed;
+            this.viaLink = viaLink;
             this.failureException = failureException;
         }
         @Override
         protected void doInTransaction() {
-            handleFailedEvent(this.failedEntry, this.feedURI, this.failureException, this.workingFeed, this.failedEvent);
+            handleFailedEvent(this.failedEntryId, this.feedURI, this.failureException, this.viaLink, this.failedEvent);
         }
         @Override
         public PropagationDefinition getTxPropagationDefinition() {
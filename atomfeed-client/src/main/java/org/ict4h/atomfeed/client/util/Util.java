@@ -8,6 +8,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URLEncoder;
 
 public class Util {
 
@@ -41,6 +42,24 @@ public class Util {
         }
     }
 
+    /**
+     * Subscribing to a tag is reading the feed of the events of the category with the tag, e.g.
+     * http://host/feed/patient/tags/merged/recent for the feed http://host/feed/patient/recent, rather than the whole
+     * feed of the category. The catch-up stream of a category feed is turned into that of the tag the same way.
+     *
+     * @param feedUri the recent feed, or the catch-up stream, of a category
+     */
+    public static URI getTagFeedUri(URI feedUri, String tag) {
+        String feed = feedUri.toString();
+        int lastSegment = feed.lastIndexOf('/');
+        try {
+            return new URI(feed.substring(0, lastSegment) + "/tags/" + URLEncoder.encode(tag, "UTF-8").replace("+", "%20")
+                    + feed.substring(lastSegment));
+        } catch (Exception e) {
+            throw new AtomFeedClientException(String.format("Bad tag %s for feed %s", tag, feedUri), e);
+        }
+    }
+
     public static String getExceptionString(Exception e) {
         StringBuffer sb;
         try {
@@ -0,0 +1,140 @@
+package org.ict4h.atomfeed.client.repository;
+
+import com.sun.syndication.feed.atom.Category;
+import org.ict4h.atomfeed.client.AtomFeedProperties;
+import org.ict4h.atomfeed.client.domain.CatchUpBatch;
+import org.ict4h.atomfeed.client.domain.Event;
+import org.ict4h.atomfeed.client.exceptions.AtomFeedClientException;
+import org.ict4h.atomfeed.client.repository.datasource.HttpClient;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsStub;
+import org.ict4h.atomfeed.server.service.EventCatchUpService;
+import org.ict4h.atomfeed.server.service.EventCatchUpServiceImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CatchUpFeedTest {
+    private static final String EVENTS_URI = "http://host/feed/events";
+    private static final int LIMIT = 4;
+
+    private AllEventRecordsStub allEventRecords;
+    private EventCatchUpService eventCatchUpService;
+    private List<URI> requested;
+
+    @Before
+    public void setUp() {
+        allEventRecords = new AllEventRecordsStub();
+        eventCatchUpService = new EventCatchUpServiceImpl(allEventRecords);
+        requested = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            add(i, "{\"number\":" + i + "}", i % 2 == 0 ? "even" : null);
+        }
+    }
+
+    @Test
+    public void shouldReadTheEventsAfterTheLastReadEntryInBatches() throws Exception {
+        CatchUpFeed catchUpFeed = new CatchUpFeed(new EventsServer(), new URI(EVENTS_URI));
+
+        CatchUpBatch first = catchUpFeed.getAfter("tag:atomfeed.ict4h.org:uuid1", null);
+        assertEquals(new URI(EVENTS_URI + "?after=tag%3Aatomfeed.ict4h.org%3Auuid1"), requested.get(0));
+        assertEquals(idsOf(2, 3, 4, 5), idsOf(first.getEvents()));
+        assertFalse(first.isCaughtUp());
+
+        Event event = first.getEvents().get(0);
+        assertEquals("title 2", event.getTitle());
+        assertEquals("{\"number\":2}", event.getContent());
+        assertEquals(EVENTS_URI, event.getFeedUri());
+        assertEquals("even", ((Category) event.getCategories().get(0)).getTerm());
+        assertEquals(new Date(1500000002000L), event.getUpdatedDate());
+
+        CatchUpBatch second = catchUpFeed.getAfter(event.getId(), first.getCursor());
+        assertEquals(new URI(EVENTS_URI + "?cursor=" + first.getCursor()), requested.get(1));
+        assertEquals(idsOf(6), idsOf(second.getEvents()));
+        assertTrue(second.isCaughtUp());
+    }
+
+    @Test
+    public void shouldStartFromTheFirstEventWhenNothingHasBeenRead() throws Exception {
+        CatchUpBatch batch = new CatchUpFeed(new EventsServer(), new URI(EVENTS_URI)).getAfter(null, null);
+
+        assertEquals(new URI(EVENTS_URI), requested.get(0));
+        assertEquals(idsOf(1, 2, 3, 4), idsOf(batch.getEvents()));
+    }
+
+    @Test(expected = AtomFeedClientException.class)
+    public void shouldNotTakeAStreamCutShortForABatch() throws Exception {
+        HttpClient truncating = new HttpClient() {
+            @Override
+            public String fetch(URI uri, AtomFeedProperties atomFeedProperties, Map<String, String> clientCookies) {
+                String stream = new EventsServer().fetch(uri, atomFeedProperties, clientCookies);
+                return stream.substring(0, stream.lastIndexOf("{\"cursor\""));
+            }
+        };
+        new CatchUpFeed(truncating, new URI(EVENTS_URI)).getAfter(null, null);
+    }
+
+    private List<String> idsOf(int... numbers) {
+        List<String> ids = new ArrayList<>();
+        for (int number : numbers) {
+            ids.add("tag:atomfeed.ict4h.org:uuid" + number);
+        }
+        return ids;
+    }
+
+    private List<String> idsOf(List<Event> events) {
+        List<String> ids = new ArrayList<>();
+        for (Event event : events) {
+            ids.add(event.getId());
+        }
+        return ids;
+    }
+
+    private void add(final int id, String contents, String category) {
+        final Date timeStamp = new Date(1500000000000L + id * 1000L);
+        allEventRecords.add(new EventRecord("uuid" + id, "title " + id, "http://uri/" + id, contents, timeStamp, category) {
+            @Override
+            public Integer getId() {
+                return id;
+            }
+
+            @Override
+            public Date getTimeStamp() {
+                return timeStamp;
+            }
+        });
+    }
+
+    private class EventsServer implements HttpClient {
+        @Override
+        public String fetch(URI uri, AtomFeedProperties atomFeedProperties, Map<String, String> clientCookies) {
+            requested.add(uri);
+            String after = null, cursor = null;
+            try {
+                if (uri.getRawQuery() != null) {
+                    String[] param = uri.getRawQuery().split("=");
+                    String value = URLDecoder.decode(param[1], "UTF-8");
+                    if ("after".equals(param[0])) after = value; else cursor = value;
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                eventCatchUpService.writeEventsAfter(null, after, cursor, LIMIT, out);
+                return new String(out.toByteArray(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.ict4h.atomfeed.client.repository;
+
+import com.sun.syndication.feed.atom.Category;
+import com.sun.syndication.feed.atom.Entry;
+import com.sun.syndication.feed.atom.Feed;
+import org.ict4h.atomfeed.client.AtomFeedProperties;
+import org.ict4h.atomfeed.client.domain.Event;
+import org.ict4h.atomfeed.client.domain.Marker;
+import org.ict4h.atomfeed.client.repository.datasource.HttpClient;
+import org.ict4h.atomfeed.client.service.FeedEnumerator;
+import org.ict4h.atomfeed.client.util.Util;
+import org.ict4h.atomfeed.server.domain.EventFeed;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.EventRecordsOffsetMarker;
+import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsOffsetMarkers;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsStub;
+import org.ict4h.atomfeed.server.repository.ChunkingEntries;
+import org.ict4h.atomfeed.server.service.EventFeedService;
+import org.ict4h.atomfeed.server.service.EventFeedServiceImpl;
+import org.ict4h.atomfeed.server.service.feedgenerator.NumberFeedGenerator;
+import org.ict4h.atomfeed.server.service.writer.FeedFormat;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonAllFeedsTest {
+    private static final String FEED_URI = "http://host/feed/";
+
+    private AllEventRecordsStub allEventRecords;
+    private EventFeedService eventFeedService;
+
+    @Before
+    public void setUp() {
+        allEventRecords = new AllEventRecordsStub();
+        ChunkingEntries chunkingEntries = new ChunkingEntries() {
+            @Override
+            public List<ChunkingHistoryEntry> all() {
+                List<ChunkingHistoryEntry> entries = new ArrayList<>();
+                entries.add(new ChunkingHistoryEntry(1, 5L, 1L));
+                return entries;
+            }
+        };
+        AllEventRecordsOffsetMarkers markers = new AllEventRecordsOffsetMarkers() {
+            @Override
+            public void addOrUpdate(String category, Integer offsetId, Integer countTillOffSetId) {
+            }
+
+            @Override
+            public List<EventRecordsOffsetMarker> getAll() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public EventRecordsOffsetMarker get(String category) {
+                return null;
+            }
+
+            @Override
+            public String getVersion() {
+                return "";
+            }
+        };
+        eventFeedService = new EventFeedServiceImpl(new NumberFeedGenerator(allEventRecords, markers, chunkingEntries));
+        for (int i = 1; i <= 12; i++) {
+            add("uuid" + i, "title " + i, "{\"number\":" + i + ",\"quoted\":\"a \\\"b\\\"\"}", i % 3 == 0 ? "tag" : null);
+        }
+    }
+
+    @Test
+    public void shouldReadTheSameFeedFromJsonAsFromAtom() throws Exception {
+        for (String page : new String[]{"1", "2", "recent"}) {
+            URI uri = new URI(FEED_URI + page);
+            Feed atomFeed = new AllFeeds(new FeedServer(FeedFormat.ATOM)).getFor(uri);
+            Feed jsonFeed = new JsonAllFeeds(new FeedServer(FeedFormat.JSON)).getFor(uri);
+
+            assertEquals(atomFeed.getId(), jsonFeed.getId());
+            assertEquals(atomFeed.getTitle(), jsonFeed.getTitle());
+            assertEquals(atomFeed.getUpdated(), jsonFeed.getUpdated());
+            assertEquals(Util.getSelfLink(atomFeed), Util.getSelfLink(jsonFeed));
+            assertEquals(Util.getViaLink(atomFeed), Util.getViaLink(jsonFeed));
+            assertEquals(Util.getPreviousLink(atomFeed), Util.getPreviousLink(jsonFeed));
+            assertEquals(Util.getNextLink(atomFeed), Util.getNextLink(jsonFeed));
+            assertEquals(atomFeed.getEntries().size(), jsonFeed.getEntries().size());
+            for (int i = 0; i < atomFeed.getEntries().size(); i++) {
+                Entry atomEntry = (Entry) atomFeed.getEntries().get(i);
+                Entry jsonEntry = (Entry) jsonFeed.getEntries().get(i);
+                assertEquals(atomEntry.getId(), jsonEntry.getId());
+                assertEquals(atomEntry.getTitle(), jsonEntry.getTitle());
+                assertEquals(atomEntry.getUpdated(), jsonEntry.getUpdated());
+                assertEquals(termsOf(atomEntry), termsOf(jsonEntry));
+                assertEquals(new Event(atomEntry, page).getContent(), new Event(jsonEntry, page).getContent());
+            }
+        }
+    }
+
+    @Test
+    public void shouldEnumerateTheSameEntriesOverJsonAsOverAtom() throws Exception {
+        Marker marker = new Marker(new URI(FEED_URI + "recent"), null, null);
+
+        assertEquals(idsOf(new FeedEnumerator(new AllFeeds(new FeedServer(FeedFormat.ATOM)), marker)),
+                idsOf(new FeedEnumerator(new JsonAllFeeds(new FeedServer(FeedFormat.JSON)), marker)));
+        assertEquals(12, idsOf(new FeedEnumerator(new JsonAllFeeds(new FeedServer(FeedFormat.JSON)), marker)).size());
+    }
+
+    private List<String> termsOf(Entry entry) {
+        List<String> terms = new ArrayList<>();
+        for (Object category : entry.getCategories()) {
+            terms.add(((Category) category).getTerm());
+        }
+        return terms;
+    }
+
+    private List<String> idsOf(FeedEnumerator feedEnumerator) {
+        List<String> ids = new ArrayList<>();
+        for (Entry entry : feedEnumerator) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+
+    private void add(String uuid, String title, String contents, String tags) {
+        final Date timeStamp = new Date(1500000000000L + allEventRecords.getTotalCountForCategory(null) * 1000L);
+        allEventRecords.add(new EventRecord(uuid, title, "http://uri/" + uuid, contents, timeStamp, null, tags) {
+            @Override
+            public Date getTimeStamp() {
+                return timeStamp;
+            }
+        });
+    }
+
+    private class FeedServer implements HttpClient {
+        private final FeedFormat format;
+
+        private FeedServer(FeedFormat format) {
+            this.format = format;
+        }
+
+        @Override
+        public String fetch(URI uri, AtomFeedProperties atomFeedProperties, Map<String, String> clientCookies) {
+            String page = uri.toString().substring(FEED_URI.length());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                if ("recent".equals(page)) {
+                    EventFeed recentFeed = eventFeedService.getRecentEvents(null);
+                    eventFeedService.writeRecentFeed(uri, null, recentFeed, out, format);
+                } else {
+                    eventFeedService.writeEventFeed(uri, null, eventFeedService.getEvents(null, Integer.parseInt(page), 1), out, format);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.net.URI;
 import java.util.HashMap;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
@@ -55,4 +56,17 @@ public class DefaultHttpClientTest {
         final DefaultHttpClient defaultHttpClient = new DefaultHttpClient();
         defaultHttpClient.fetch(new URI(url), feedProperties, new HashMap<String, String>());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldAskForTheGivenMediaType() throws Exception {
+        String givenUrl = "/openmrs/ws/atomfeed/concept/recent";
+        stubFor(get(urlEqualTo(givenUrl)).withHeader("Accept", equalTo("application/json"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody("{}")));
+        final DefaultHttpClient defaultHttpClient = new DefaultHttpClient("application/json");
+        final String actualResponse = defaultHttpClient.fetch(new URI("http://localhost:8089" + givenUrl), new AtomFeedProperties(),
+                new HashMap<String, String>());
+        assertEquals("{}", StringUtils.trim(actualResponse));
+    }
+}
@@ -0,0 +1,172 @@
+package org.ict4h.atomfeed.client.repository.jdbc;
+
+import org.ict4h.atomfeed.IntegrationTest;
+import org.ict4h.atomfeed.client.domain.Event;
+import org.ict4h.atomfeed.client.domain.FailedEvent;
+import org.ict4h.atomfeed.client.domain.FailedEventRetryLog;
+import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
+import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.jdbc.QueryPlans;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import static org.ict4h.atomfeed.jdbc.QueryPlans.PRIMARY_KEY;
+import static org.ict4h.atomfeed.jdbc.QueryPlans.TABLE_SCAN;
+
+/**
+ * Has H2 explain the statements of {@link AllFailedEventsJdbcImpl} and {@link AllMarkersJdbcImpl} over enough failed
+ * events for the plans to be those of a client that has been failing for a while, and fails when a statement no longer
+ * reads through the index it is meant to.
+ * <p>
+ * The number of failed events defaults to one the build can load in seconds; set
+ * {@code atomfeed.query_plans.failed_events} to explain over millions.
+ */
+public class QueryPlansJdbcIT extends IntegrationTest {
+    private static final int FAILED_EVENTS = Integer.getInteger("atomfeed.query_plans.failed_events", 50000);
+    private static final int FEEDS = 100;
+    private static final int MAX_RETRIES = 5;
+    private static final Timestamp FAILED_AT = Timestamp.valueOf("2020-01-01 00:00:00");
+    private static final String[] TABLES = {"failed_event_retry_log", "failed_events", "markers"};
+    private static final String EVENT_ID = "event-" + FAILED_EVENTS / 2;
+    private static final String FEED_URI = "http://feed/" + FAILED_EVENTS / 2 % FEEDS;
+
+    private static Connection connection;
+    private static String schema;
+
+    private QueryPlans queryPlans;
+    private AllFailedEventsJdbcImpl allFailedEvents;
+    private AllMarkersJdbcImpl allMarkers;
+
+    @Before
+    public void before() throws SQLException {
+        if (connection == null) {
+            connection = getConnectionFromDriverManager();
+            connection.setAutoCommit(false);
+            schema = getProperty("atomdb.default_schema");
+            load();
+        }
+        queryPlans = new QueryPlans(new JdbcConnectionProvider() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return connection;
+            }
+        });
+        allFailedEvents = new AllFailedEventsJdbcImpl(queryPlans);
+        allMarkers = new AllMarkersJdbcImpl(queryPlans);
+    }
+
+    @After
+    public void after() throws SQLException {
+        connection.rollback();
+    }
+
+    @AfterClass
+    public static void clear() throws SQLException {
+        if (connection != null) {
+            clearTables();
+            connection.commit();
+            connection.close();
+            connection = null;
+        }
+    }
+
+    @Test
+    public void shouldReadAFailedEventThroughTheFeedUriAndEventId() throws SQLException {
+        allFailedEvents.get(FEED_URI, EVENT_ID);
+        allFailedEvents.getByEventId(EVENT_ID);
+
+        queryPlans.assertReadThrough("failed_events_feed_uri_event_id_idx", "failed_events_event_id_idx");
+    }
+
+    @Test
+    public void shouldAddOrUpdateAFailedEventThroughTheFeedUriAndEventId() throws SQLException {
+        allFailedEvents.addOrUpdate(new FailedEvent(FEED_URI, new Event(EVENT_ID, "content", "title"), "error", 1));
+
+        queryPlans.assertReadThrough("failed_events_feed_uri_event_id_idx", "failed_events_feed_uri_event_id_idx");
+    }
+
+    @Test
+    public void shouldPickFailedEventsToRetryThroughTheFeedUriAndRetries() throws SQLException {
+        allFailedEvents.getOldestNFailedEvents(FEED_URI, 5, MAX_RETRIES);
+
+        queryPlans.assertReadThrough("failed_events_feed_uri_retries_idx");
+    }
+
+    @Test
+    public void shouldReadTheFailedEventsOfAFeedThroughTheFeedUri() throws SQLException {
+        allFailedEvents.getFailedEvents(FEED_URI);
+        allFailedEvents.getNumberOfFailedEvents(FEED_URI);
+
+        queryPlans.assertReadThrough("failed_events_feed_uri_event_id_idx", "failed_events_feed_uri_event_id_idx");
+    }
+
+    @Test
+    public void shouldReadAndRemoveRetryLogsThroughTheEventId() throws SQLException {
+        FailedEvent failedEvent = new FailedEvent(FEED_URI, new Event(EVENT_ID, "content", "title"), "error", 1);
+        allFailedEvents.insert(new FailedEventRetryLog(FEED_URI, new Date().getTime(), "error", failedEvent.getEventId(), "content"));
+        allFailedEvents.getFailedEventRetryLogs(failedEvent.getEventId());
+        allFailedEvents.remove(failedEvent);
+
+        queryPlans.assertReadThrough("failed_event_retry_log_event_id_idx", "failed_events_feed_uri_event_id_idx",
+                "failed_event_retry_log_event_id_idx");
+    }
+
+    //All the markers are read by design; a client has a marker per feed it reads.
+    @Test
+    public void shouldReadAndPutMarkersThroughTheFeedUri() throws SQLException {
+        allMarkers.get(URI.create(FEED_URI));
+        allMarkers.put(URI.create(FEED_URI), EVENT_ID, URI.create(FEED_URI));
+        allMarkers.getMarkerList();
+
+        queryPlans.assertReadThrough(PRIMARY_KEY, PRIMARY_KEY, PRIMARY_KEY, TABLE_SCAN);
+    }
+
+    //The n-th failed event is of feed n mod 100, retried n mod 6 times, with a retry logged for it.
+    private void load() throws SQLException {
+        clearTables();
+        execute("insert into %s (feed_uri, failed_at, error_message, event_id, event_content, error_hash_code, title, retries, tags) " +
+                "select 'http://feed/' || mod(x, " + FEEDS + "), ?, 'error', 'event-' || x, 'content', 0, 'title', " +
+                "mod(x, " + (MAX_RETRIES + 1) + "), '' from system_range(1, " + FAILED_EVENTS + ")", "failed_events");
+        execute("insert into %s (feed_uri, failed_at, error_message, event_id, event_content, error_hash_code) " +
+                "select feed_uri, failed_at, error_message, event_id, event_content, error_hash_code from %s",
+                "failed_event_retry_log", "failed_events");
+        execute("insert into %s (feed_uri, last_read_entry_id, feed_uri_for_last_read_entry) " +
+                "select 'http://feed/' || x, 'event-' || x, 'http://feed/' || x from system_range(0, " + (FEEDS - 1) + ")", "markers");
+        connection.commit();
+        Statement statement = connection.createStatement();
+        statement.execute("analyze");
+        statement.close();
+    }
+
+    private static void clearTables() throws SQLException {
+        Statement statement = connection.createStatement();
+        for (String table : TABLES) {
+            statement.execute(String.format("delete from %s", JdbcUtils.getTableName(schema, table)));
+        }
+        statement.close();
+    }
+
+    private void execute(String sql, String... tables) throws SQLException {
+        Object[] tableNames = new Object[tables.length];
+        for (int index = 0; index < tables.length; index++) {
+            tableNames[index] = JdbcUtils.getTableName(schema, tables[index]);
+        }
+        PreparedStatement statement = connection.prepareStatement(String.format(sql, tableNames));
+        int parameters = statement.getParameterMetaData().getParameterCount();
+        for (int index = 1; index <= parameters; index++) {
+            statement.setTimestamp(index, FAILED_AT);
+        }
+        statement.executeUpdate();
+        statement.close();
+    }
+}
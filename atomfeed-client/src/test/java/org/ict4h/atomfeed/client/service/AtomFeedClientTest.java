@@ -7,6 +7,7 @@ import com.sun.syndication.feed.atom.Link;
 import com.sun.syndication.io.FeedException;
 import com.sun.syndication.io.WireFeedInput;
 import org.apache.commons.lang3.StringUtils;
+import org.ict4h.atomfeed.client.domain.CatchUpBatch;
 import org.ict4h.atomfeed.client.domain.Event;
 import org.ict4h.atomfeed.client.domain.FailedEvent;
 import org.ict4h.atomfeed.client.AtomFeedProperties;
@@ -15,6 +16,7 @@ import org.ict4h.atomfeed.client.domain.Marker;
 import org.ict4h.atomfeed.client.repository.AllFailedEvents;
 import org.ict4h.atomfeed.client.repository.AllFeeds;
 import org.ict4h.atomfeed.client.repository.AllMarkers;
+import org.ict4h.atomfeed.client.repository.CatchUpFeed;
 import org.ict4h.atomfeed.client.util.Util;
 import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
 import org.ict4h.atomfeed.transaction.AFTransactionManager;
@@ -205,6 +207,57 @@ public class AtomFeedClientTest {
         verify(allMarkersMock).put(feedUri, entry1.getId(), new URI(feedLink));
     }
 
+    @Test
+    public void shouldCatchUpOnTheEventsInBulkAndGoBackToTheFeedOnceCaughtUp() throws URISyntaxException {
+        URI catchUpUri = new URI("http://myFeedUri/events");
+        CatchUpFeed catchUpFeed = mock(CatchUpFeed.class);
+        when(catchUpFeed.getUri()).thenReturn(catchUpUri);
+        when(catchUpFeed.getAfter(null, null)).thenReturn(new CatchUpBatch(Arrays.asList(new Event("id1", ""), new Event("id2", "")), "2", false));
+        when(catchUpFeed.getAfter("id2", "2")).thenReturn(new CatchUpBatch(Arrays.asList(new Event("id3", "")), "3", true));
+
+        Entry entry3 = new Entry();
+        entry3.setId("id3");
+        Entry entry4 = new Entry();
+        entry4.setId("id4");
+        Feed feed = getFeed(entry3, entry4);
+        when(allFeedsMock.getFor(feedUri)).thenReturn(feed);
+        when(allFeedsMock.getFor(new URI(feedLink))).thenReturn(feed);
+        when(allMarkersMock.get(feedUri)).thenReturn(new Marker(feedUri, null, null), new Marker(feedUri, "id3", new URI(feedLink)));
+        when(allFailedEvents.getNumberOfFailedEvents(feedUri.toString())).thenReturn(0);
+
+        FeedClient feedClient = new AtomFeedClient(allFeedsMock, allMarkersMock, allFailedEvents, new AtomFeedProperties(), transactionManager, feedUri, eventWorker, catchUpFeed);
+        feedClient.processEvents();
+
+        ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+        verify(eventWorker, times(4)).process(captor.capture());
+        List<String> processed = new ArrayList<String>();
+        for (Event event : captor.getAllValues()) {
+            processed.add(event.getId());
+        }
+        assertEquals(Arrays.asList("id1", "id2", "id3", "id4"), processed);
+        verify(allMarkersMock).put(feedUri, "id2", catchUpUri);
+        verify(allMarkersMock).put(feedUri, "id3", new URI(feedLink));
+        verify(allMarkersMock).put(feedUri, "id4", new URI(feedLink));
+    }
+
+    @Test
+    public void shouldReadTheFeedWhenNotFarBehindIt() throws URISyntaxException {
+        CatchUpFeed catchUpFeed = mock(CatchUpFeed.class);
+        when(catchUpFeed.getUri()).thenReturn(new URI("http://myFeedUri/events"));
+        Feed feed = setupFeedWithTwoEvents();
+        when(allFeedsMock.getFor(feedUri)).thenReturn(feed);
+        when(allFeedsMock.getFor(new URI(feedLink))).thenReturn(feed);
+        when(allMarkersMock.get(feedUri)).thenReturn(new Marker(feedUri, entry1.getId(), new URI(feedLink)));
+        when(allFailedEvents.getNumberOfFailedEvents(feedUri.toString())).thenReturn(0);
+
+        FeedClient feedClient = new AtomFeedClient(allFeedsMock, allMarkersMock, allFailedEvents, new AtomFeedProperties(), transactionManager, feedUri, eventWorker, catchUpFeed);
+        feedClient.processEvents();
+
+        verify(catchUpFeed, never()).getAfter(anyString(), anyString());
+        verify(eventWorker, times(1)).process(any(Event.class));
+        verify(allMarkersMock).put(feedUri, entry2.getId(), new URI(feedLink));
+    }
+
     @Test
     public void shouldProcessFailedEvents() throws SQLException {
         List<FailedEvent> failedEvents = new ArrayList<FailedEvent>();
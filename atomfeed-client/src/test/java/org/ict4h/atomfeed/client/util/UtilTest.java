@@ -54,4 +54,10 @@ public class UtilTest {
     public void shouldGetNextLink() throws URISyntaxException {
         assertEquals(new URI("http://next.me"),Util.getNextLink(feed));
     }
+
+    @Test
+    public void shouldGetTheFeedOfATagOfACategoryFeed() throws URISyntaxException {
+        assertEquals(new URI("http://host/feed/patient/tags/merged/recent"), Util.getTagFeedUri(new URI("http://host/feed/patient/recent"), "merged"));
+        assertEquals(new URI("http://host/feed/patient/tags/merged%20record/events"), Util.getTagFeedUri(new URI("http://host/feed/patient/events"), "merged record"));
+    }
 }
@@ -8,6 +8,8 @@ import java.util.Properties;
 
 public class Configuration {
     private static final String DEFAULT_PROPERTY_FILENAME = "atomfeed.properties";
+    private static final int DEFAULT_FETCH_SIZE = 100;
+    private static final int DEFAULT_PUBLISH_CHUNK_SIZE = 500;
 
     private static final Object lockObject = new Object();
 
@@ -60,4 +62,20 @@ public class Configuration {
     public String getSchema() {
         return properties.getProperty("atomdb.default_schema");
     }
+
+    /**
+     * @return the number of rows to fetch at a time when events are streamed off a cursor
+     */
+    public int getFetchSize() {
+        String fetchSize = properties.getProperty("atomdb.fetch_size");
+        return StringUtils.isBlank(fetchSize) ? DEFAULT_FETCH_SIZE : Integer.parseInt(fetchSize.trim());
+    }
+
+    /**
+     * @return the number of queued events to publish at a time
+     */
+    public int getPublishChunkSize() {
+        String chunkSize = properties.getProperty("atomdb.publish_chunk_size");
+        return StringUtils.isBlank(chunkSize) ? DEFAULT_PUBLISH_CHUNK_SIZE : Integer.parseInt(chunkSize.trim());
+    }
 }
@@ -2,51 +2,201 @@ package org.ict4h.atomfeed.jdbc;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Maps rows to the fields of an {@link Entity} by their {@link Column} names.
+ * <p>
+ * The columns of a class are looked up once, and kept for the life of the class. The columns of a result set are
+ * bound to them on its first row, so the rows after it are mapped by index with a typed getter each, without going
+ * through the metadata of the result set again. A mapper keeps the bindings of the last result set it mapped, so a
+ * caller going through the rows itself should use one mapper for all of them.
+ */
 public class JdbcResultSetMapper<T> {
-    @SuppressWarnings("unchecked")
+    private static final Map<Class<?>, EntityMapping> entityMappings = new ConcurrentHashMap<>();
+
+    private ResultSet boundResultSet;
+    private ColumnBinding[] columnBindings;
+
     public List<T> mapResultSetToObject(ResultSet rs, Class<T> outputClass) {
         List<T> outputList = new ArrayList<T>();
         try {
             if (rs != null) {
-                if (outputClass.isAnnotationPresent(Entity.class)) {
-                    ResultSetMetaData rsmd = rs.getMetaData();
-                    Field[] fields = outputClass.getDeclaredFields();
-                    while (rs.next()) {
-                        T instance = (T) outputClass.newInstance();
-                        for (int itr = 0; itr < rsmd.getColumnCount(); itr++) {
-                            String columnName = rsmd.getColumnName(itr + 1);
-                            Object columnValue = rs.getObject(itr + 1);
-                            for (Field field : fields) {
-                                if (field.isAnnotationPresent(Column.class)) {
-                                    Column column = field.getAnnotation(Column.class);
-                                    if (column.name().equalsIgnoreCase(columnName) && columnValue != null) {
-                                        field.setAccessible(true);
-                                        field.set(instance, columnValue);
-                                        break;
-                                    }
-                                }
-                            }
-                        }
-                        if (outputList == null) {
-                            outputList = new ArrayList<T>();
-                        }
-                        outputList.add(instance);
-                    }
-                } else {
-                    throw new RuntimeException("Can not map to a class not marked with javax.persistence.Entity annotation");
+                assertIsEntity(outputClass);
+                while (rs.next()) {
+                    outputList.add(mapCurrentRow(rs, outputClass));
                 }
-            } else {
-                return new ArrayList<T>();
             }
-        } catch (Exception e) {
+        } catch (SQLException e) {
             throw new RuntimeException(e);
         }
         return outputList;
     }
+
+    /**
+     * Maps the row the result set is positioned at, for callers that go through the rows themselves.
+     */
+    @SuppressWarnings("unchecked")
+    public T mapCurrentRow(ResultSet rs, Class<T> outputClass) {
+        EntityMapping entityMapping = mappingOf(outputClass);
+        try {
+            if (rs != boundResultSet) {
+                columnBindings = entityMapping.bind(rs.getMetaData());
+                boundResultSet = rs;
+            }
+            Object instance = entityMapping.newInstance();
+            for (ColumnBinding columnBinding : columnBindings) {
+                columnBinding.set(instance, rs);
+            }
+            return (T) instance;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private EntityMapping mappingOf(Class<T> outputClass) {
+        EntityMapping entityMapping = entityMappings.get(outputClass);
+        if (entityMapping == null) {
+            assertIsEntity(outputClass);
+            entityMapping = new EntityMapping(outputClass);
+            entityMappings.put(outputClass, entityMapping);
+        }
+        return entityMapping;
+    }
+
+    private void assertIsEntity(Class<T> outputClass) {
+        if (!outputClass.isAnnotationPresent(Entity.class)) {
+            throw new RuntimeException("Can not map to a class not marked with javax.persistence.Entity annotation");
+        }
+    }
+
+    private static class EntityMapping {
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final MethodHandle constructor;
+        private final Map<String, ColumnBinding> columns = new HashMap<>();
+
+        private EntityMapping(Class<?> entityClass) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                Constructor<?> noArgConstructor = entityClass.getDeclaredConstructor();
+                noArgConstructor.setAccessible(true);
+                constructor = lookup.unreflectConstructor(noArgConstructor).asType(MethodType.methodType(Object.class));
+                for (Field field : entityClass.getDeclaredFields()) {
+                    Column column = field.getAnnotation(Column.class);
+                    if (column != null) {
+                        field.setAccessible(true);
+                        MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                        columns.put(column.name().toLowerCase(Locale.ENGLISH), new ColumnBinding(0, setter, ColumnType.of(field.getType())));
+                    }
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private Object newInstance() throws Throwable {
+            return constructor.invokeExact();
+        }
+
+        //Columns without a field are left out, as are fields without a column.
+        private ColumnBinding[] bind(ResultSetMetaData metaData) throws SQLException {
+            List<ColumnBinding> bindings = new ArrayList<>();
+            for (int index = 1; index <= metaData.getColumnCount(); index++) {
+                ColumnBinding field = columns.get(metaData.getColumnName(index).toLowerCase(Locale.ENGLISH));
+                if (field != null) {
+                    bindings.add(new ColumnBinding(index, field.setter, field.type));
+                }
+            }
+            return bindings.toArray(new ColumnBinding[bindings.size()]);
+        }
+    }
+
+    private static class ColumnBinding {
+        private final int index;
+        private final MethodHandle setter;
+        private final ColumnType type;
+
+        private ColumnBinding(int index, MethodHandle setter, ColumnType type) {
+            this.index = index;
+            this.setter = setter;
+            this.type = type;
+        }
+
+        //A null column leaves the field as it was initialized.
+        private void set(Object instance, ResultSet rs) throws Throwable {
+            Object value = type.read(rs, index);
+            if (value != null) {
+                setter.invokeExact(instance, value);
+            }
+        }
+    }
+
+    private enum ColumnType {
+        STRING {
+            @Override
+            Object read(ResultSet rs, int index) throws SQLException {
+                return rs.getString(index);
+            }
+        },
+        INTEGER {
+            @Override
+            Object read(ResultSet rs, int index) throws SQLException {
+                int value = rs.getInt(index);
+                return rs.wasNull() ? null : value;
+            }
+        },
+        LONG {
+            @Override
+            Object read(ResultSet rs, int index) throws SQLException {
+                long value = rs.getLong(index);
+                return rs.wasNull() ? null : value;
+            }
+        },
+        BOOLEAN {
+            @Override
+            Object read(ResultSet rs, int index) throws SQLException {
+                boolean value = rs.getBoolean(index);
+                return rs.wasNull() ? null : value;
+            }
+        },
+        TIMESTAMP {
+            @Override
+            Object read(ResultSet rs, int index) throws SQLException {
+                return rs.getTimestamp(index);
+            }
+        },
+        OBJECT {
+            @Override
+            Object read(ResultSet rs, int index) throws SQLException {
+                return rs.getObject(index);
+            }
+        };
+
+        abstract Object read(ResultSet rs, int index) throws SQLException;
+
+        private static ColumnType of(Class<?> fieldType) {
+            if (fieldType == String.class) return STRING;
+            if (fieldType == Integer.class || fieldType == int.class) return INTEGER;
+            if (fieldType == Long.class || fieldType == long.class) return LONG;
+            if (fieldType == Boolean.class || fieldType == boolean.class) return BOOLEAN;
+            if (fieldType == java.util.Date.class || fieldType == java.sql.Timestamp.class) return TIMESTAMP;
+            return OBJECT;
+        }
+    }
 }
@@ -0,0 +1,198 @@
+package org.ict4h.atomfeed.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the statements prepared through the connections it provides, per connection, so that a statement made again
+ * on the same connection, as the statements of {@link StatementTemplates} are, is not parsed by the driver again.
+ * <p>
+ * Closing a kept statement hands it back to be made again rather than closing it. The statements of a connection are
+ * kept for as long as the connection is open, up to a number per connection, past which the least recently made are
+ * closed. Only statements made with {@code prepareStatement(sql)} or {@code prepareStatement(sql, type, concurrency)}
+ * are kept; a statement made again before the one kept is closed gets a statement of its own.
+ * <p>
+ * A pool that hands out a new connection object for every checkout only gets the statements kept for the life of the
+ * checkout, typically a transaction; statements kept across checkouts are the pool's own to keep, if it can.
+ */
+public class StatementCachingConnectionProvider implements JdbcConnectionProvider {
+
+    private final JdbcConnectionProvider provider;
+    private final int maxStatementsPerConnection;
+    private final Map<Connection, StatementCache> caches = new IdentityHashMap<>();
+
+    public StatementCachingConnectionProvider(JdbcConnectionProvider provider, int maxStatementsPerConnection) {
+        this.provider = provider;
+        this.maxStatementsPerConnection = maxStatementsPerConnection;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        final Connection connection = provider.getConnection();
+        final StatementCache cache = cacheOf(connection);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String key = keyOf(method, args);
+                        return key == null ? invokeOn(connection, method, args) : cache.prepare(key, connection, method, args);
+                    }
+                });
+    }
+
+    /**
+     * Closes the statements kept for all connections.
+     */
+    public synchronized void clear() {
+        for (StatementCache cache : caches.values()) {
+            cache.clear();
+        }
+        caches.clear();
+    }
+
+    //The statements of connections closed since are let go when a connection is first seen, which is when a pool
+    //hands one out again.
+    private synchronized StatementCache cacheOf(Connection connection) throws SQLException {
+        StatementCache cache = caches.get(connection);
+        if (cache == null) {
+            Iterator<Map.Entry<Connection, StatementCache>> entries = caches.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Connection, StatementCache> entry = entries.next();
+                if (entry.getKey().isClosed()) {
+                    entry.getValue().clear();
+                    entries.remove();
+                }
+            }
+            cache = new StatementCache();
+            caches.put(connection, cache);
+        }
+        return cache;
+    }
+
+    private static String keyOf(Method method, Object[] args) {
+        if (!method.getName().equals("prepareStatement") || !(args[0] instanceof String)) {
+            return null;
+        }
+        if (args.length == 1) {
+            return (String) args[0];
+        }
+        if (args.length == 3 && args[1] instanceof Integer && args[2] instanceof Integer) {
+            return args[1] + " " + args[2] + " " + args[0];
+        }
+        return null;
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class StatementCache {
+        private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        private synchronized PreparedStatement prepare(String key, Connection connection, Method method, Object[] args) throws Throwable {
+            CachedStatement cached = statements.get(key);
+            if (cached != null && cached.inUse) {
+                return (PreparedStatement) invokeOn(connection, method, args);
+            }
+            if (cached == null || cached.statement.isClosed()) {
+                cached = new CachedStatement((PreparedStatement) invokeOn(connection, method, args));
+                statements.put(key, cached);
+                closeLeastRecentlyMade();
+            }
+            return cached.checkOut();
+        }
+
+        private void closeLeastRecentlyMade() {
+            Iterator<CachedStatement> iterator = statements.values().iterator();
+            while (statements.size() > maxStatementsPerConnection && iterator.hasNext()) {
+                CachedStatement cached = iterator.next();
+                if (!cached.inUse) {
+                    cached.close();
+                    iterator.remove();
+                }
+            }
+        }
+
+        private synchronized void clear() {
+            for (CachedStatement cached : statements.values()) {
+                cached.close();
+            }
+            statements.clear();
+        }
+    }
+
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private final PreparedStatement handedOut;
+        private final int fetchSize;
+        private final int maxRows;
+        private boolean inUse;
+
+        private CachedStatement(final PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.maxRows = statement.getMaxRows();
+            this.handedOut = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("close") && method.getParameterTypes().length == 0) {
+                                checkIn();
+                                return null;
+                            }
+                            if (method.getName().equals("isClosed") && method.getParameterTypes().length == 0) {
+                                return !inUse || statement.isClosed();
+                            }
+                            return invokeOn(statement, method, args);
+                        }
+                    });
+        }
+
+        private PreparedStatement checkOut() {
+            inUse = true;
+            return handedOut;
+        }
+
+        //Leaves the statement as it was made, for whoever makes it next. One that cannot be reset is closed, to be
+        //made again.
+        private void checkIn() {
+            if (!inUse) {
+                return;
+            }
+            inUse = false;
+            try {
+                ResultSet resultSet = statement.getResultSet();
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                statement.clearParameters();
+                statement.setFetchSize(fetchSize);
+                statement.setMaxRows(maxRows);
+            } catch (SQLException e) {
+                close();
+            }
+        }
+
+        private void close() {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                //The statement is let go of either way.
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.ict4h.atomfeed.jdbc;
+
+import org.ict4h.atomfeed.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The SQL of the statements of a repository, by name. The tables of a statement are qualified with the schema when it
+ * is added, which a repository does when it is built, so a call only looks its SQL up rather than building it again.
+ * <p>
+ * As the same statement then always has the same SQL, it can be kept prepared across calls, see
+ * {@link StatementCachingConnectionProvider}.
+ */
+public class StatementTemplates {
+    private final String schema;
+    private final Map<String, String> statements = new HashMap<>();
+
+    public StatementTemplates() {
+        this(Configuration.getInstance().getSchema());
+    }
+
+    public StatementTemplates(String schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * @param template the SQL of the statement, with a {@code %s} for each of the tables, in order
+     * @param tables   the tables of the statement, unqualified
+     */
+    public StatementTemplates add(String name, String template, String... tables) {
+        Object[] tableNames = new Object[tables.length];
+        for (int index = 0; index < tables.length; index++) {
+            tableNames[index] = table(tables[index]);
+        }
+        statements.put(name, String.format(template, tableNames));
+        return this;
+    }
+
+    public String get(String name) {
+        String sql = statements.get(name);
+        if (sql == null) {
+            throw new IllegalArgumentException(String.format("No statement named %s", name));
+        }
+        return sql;
+    }
+
+    /**
+     * @return the table qualified with the schema
+     */
+    public String table(String table) {
+        return JdbcUtils.getTableName(schema, table);
+    }
+}
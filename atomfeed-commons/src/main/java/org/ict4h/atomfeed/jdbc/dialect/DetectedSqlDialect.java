@@ -0,0 +1,56 @@
+package org.ict4h.atomfeed.jdbc.dialect;
+
+import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The dialect of the database the connections of a provider are to, found from the first connection it is needed
+ * with. As a repository only needs it while it holds a connection, that is the connection it was going to use anyway,
+ * so none is taken from the provider outside of a transaction.
+ */
+public class DetectedSqlDialect implements SqlDialect {
+    private final JdbcConnectionProvider provider;
+    private volatile SqlDialect dialect;
+
+    public DetectedSqlDialect(JdbcConnectionProvider provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public void appendPage(StringBuilder sql, List<Object> params, int limit, Integer offset) {
+        dialect().appendPage(sql, params, limit, offset);
+    }
+
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns, List<String> updatedColumns) {
+        return dialect().upsert(table, keyColumns, columns, updatedColumns);
+    }
+
+    @Override
+    public String insertRows(String table, List<String> columns, int rows) {
+        return dialect().insertRows(table, columns, rows);
+    }
+
+    @Override
+    public int maxRowsPerInsert(int columns) {
+        return dialect().maxRowsPerInsert(columns);
+    }
+
+    @Override
+    public String claim(String columns, String table, String orderBy) {
+        return dialect().claim(columns, table, orderBy);
+    }
+
+    private SqlDialect dialect() {
+        if (dialect == null) {
+            try {
+                dialect = SqlDialects.of(provider.getConnection().getMetaData());
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not find the dialect of the database", e);
+            }
+        }
+        return dialect;
+    }
+}
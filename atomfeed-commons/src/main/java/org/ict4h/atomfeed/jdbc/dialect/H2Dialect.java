@@ -0,0 +1,31 @@
+package org.ict4h.atomfeed.jdbc.dialect;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * H2 upserts with {@code merge into ... key}, which sets every column of an existing row, so an upsert that updates
+ * only some of them is not made in one statement. H2 has no {@code skip locked}.
+ */
+public class H2Dialect extends StandardSqlDialect {
+    private static final int MAX_PARAMETERS = Integer.MAX_VALUE;
+
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns, List<String> updatedColumns) {
+        Set<String> updated = new HashSet<>(updatedColumns);
+        updated.addAll(keyColumns);
+        if (!updated.containsAll(columns)) {
+            return null;
+        }
+        return String.format("merge into %s (%s) key (%s) values %s", table, StringUtils.join(columns, ", "),
+                StringUtils.join(keyColumns, ", "), valuesOf(columns));
+    }
+
+    @Override
+    protected int maxParameters() {
+        return MAX_PARAMETERS;
+    }
+}
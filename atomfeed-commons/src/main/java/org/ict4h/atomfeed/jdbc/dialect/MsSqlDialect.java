@@ -0,0 +1,55 @@
+package org.ict4h.atomfeed.jdbc.dialect;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Microsoft SQL Server 2012 and later: pages with {@code offset ... fetch next}, upserts with a {@code merge} holding
+ * the key range until it is done, and claims rows with the {@code readpast} hint, its {@code skip locked}.
+ */
+public class MsSqlDialect extends StandardSqlDialect {
+    //Well within the 2100 parameters a request to the server can carry.
+    private static final int MAX_PARAMETERS = 2000;
+
+    @Override
+    public void appendPage(StringBuilder sql, List<Object> params, int limit, Integer offset) {
+        sql.append(" offset ? rows fetch next ? rows only");
+        params.add(offset == null ? 0 : offset);
+        params.add(limit);
+    }
+
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns, List<String> updatedColumns) {
+        List<String> matches = new ArrayList<>();
+        for (String column : keyColumns) {
+            matches.add(String.format("target.%s = source.%s", column, column));
+        }
+        List<String> sourceColumns = new ArrayList<>();
+        for (String column : columns) {
+            sourceColumns.add("source." + column);
+        }
+        StringBuilder sql = new StringBuilder(String.format("merge into %s with (holdlock) as target using (values %s) as source (%s) on %s",
+                table, valuesOf(columns), StringUtils.join(columns, ", "), StringUtils.join(matches, " and ")));
+        if (!updatedColumns.isEmpty()) {
+            List<String> assignments = new ArrayList<>();
+            for (String column : updatedColumns) {
+                assignments.add(String.format("%s = source.%s", column, column));
+            }
+            sql.append(" when matched then update set ").append(StringUtils.join(assignments, ", "));
+        }
+        return sql.append(String.format(" when not matched then insert (%s) values (%s);", StringUtils.join(columns, ", "),
+                StringUtils.join(sourceColumns, ", "))).toString();
+    }
+
+    @Override
+    public String claim(String columns, String table, String orderBy) {
+        return String.format("select top (?) %s from %s with (updlock, readpast, rowlock) order by %s", columns, table, orderBy);
+    }
+
+    @Override
+    protected int maxParameters() {
+        return MAX_PARAMETERS;
+    }
+}
@@ -0,0 +1,42 @@
+package org.ict4h.atomfeed.jdbc.dialect;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MySQL and MariaDB: upserts with {@code on duplicate key update}. Rows are claimed with {@code skip locked} where
+ * the server has it, MySQL 8 and MariaDB 10.6 on, and with a plain {@code for update} before.
+ */
+public class MySqlDialect extends StandardSqlDialect {
+    //The most a prepared statement can be bound with.
+    private static final int MAX_PARAMETERS = 65535;
+
+    private final boolean skipsLocked;
+
+    public MySqlDialect(boolean skipsLocked) {
+        this.skipsLocked = skipsLocked;
+    }
+
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns, List<String> updatedColumns) {
+        //Updating a key column to itself leaves the row as it is.
+        List<String> updated = updatedColumns.isEmpty() ? keyColumns.subList(0, 1) : updatedColumns;
+        List<String> assignments = new ArrayList<>();
+        for (String column : updated) {
+            assignments.add(String.format("%s = values(%s)", column, column));
+        }
+        return insertInto(table, columns) + " values " + valuesOf(columns) + " on duplicate key update " + StringUtils.join(assignments, ", ");
+    }
+
+    @Override
+    public String claim(String columns, String table, String orderBy) {
+        return skipsLocked ? super.claim(columns, table, orderBy) + " skip locked" : super.claim(columns, table, orderBy);
+    }
+
+    @Override
+    protected int maxParameters() {
+        return MAX_PARAMETERS;
+    }
+}
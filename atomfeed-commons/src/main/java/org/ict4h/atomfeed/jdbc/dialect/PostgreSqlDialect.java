@@ -0,0 +1,37 @@
+package org.ict4h.atomfeed.jdbc.dialect;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PostgreSQL 9.5 and later: upserts with {@code on conflict} and claims rows with {@code for update skip locked}.
+ */
+public class PostgreSqlDialect extends StandardSqlDialect {
+    private static final int MAX_PARAMETERS = 32767;
+
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns, List<String> updatedColumns) {
+        String insert = insertInto(table, columns) + " values " + valuesOf(columns);
+        String conflict = String.format(" on conflict (%s)", StringUtils.join(keyColumns, ", "));
+        if (updatedColumns.isEmpty()) {
+            return insert + conflict + " do nothing";
+        }
+        List<String> assignments = new ArrayList<>();
+        for (String column : updatedColumns) {
+            assignments.add(String.format("%s = excluded.%s", column, column));
+        }
+        return insert + conflict + " do update set " + StringUtils.join(assignments, ", ");
+    }
+
+    @Override
+    public String claim(String columns, String table, String orderBy) {
+        return super.claim(columns, table, orderBy) + " skip locked";
+    }
+
+    @Override
+    protected int maxParameters() {
+        return MAX_PARAMETERS;
+    }
+}
@@ -0,0 +1,51 @@
+package org.ict4h.atomfeed.jdbc.dialect;
+
+import java.util.List;
+
+/**
+ * The SQL that differs between the databases atomfeed runs on: paging, upserts, inserting several rows at once and
+ * claiming rows that other transactions have not locked.
+ * <p>
+ * The SQL a dialect returns is bound with {@code ?} parameters, in the order each method gives.
+ *
+ * @see SqlDialects#of(java.sql.DatabaseMetaData)
+ */
+public interface SqlDialect {
+
+    /**
+     * Appends the clause reading a page of a query, which must be ordered, with its parameters.
+     *
+     * @param offset the number of rows to skip; null when the query is paged by key, i.e. it starts after the last
+     *               row read rather than after a number of rows
+     */
+    void appendPage(StringBuilder sql, List<Object> params, int limit, Integer offset);
+
+    /**
+     * @param keyColumns     the columns of a unique key of the table, also in {@code columns}
+     * @param columns        the columns of the row, bound in order
+     * @param updatedColumns the columns set when the row exists
+     * @return the statement inserting the row, or updating the existing one with the same key, in one round trip and
+     *         without racing other writers of the same key; null when the database has no such statement, in which
+     *         case the row is to be read and then inserted or updated
+     */
+    String upsert(String table, List<String> keyColumns, List<String> columns, List<String> updatedColumns);
+
+    /**
+     * @param rows at most {@link #maxRowsPerInsert(int)}
+     * @return the statement inserting that many rows, bound row after row
+     */
+    String insertRows(String table, List<String> columns, int rows);
+
+    /**
+     * @return the number of rows one insert can take, within the parameters a statement can be bound with; 1 where the
+     *         database is not known to take several
+     */
+    int maxRowsPerInsert(int columns);
+
+    /**
+     * @return the query taking the first rows of the table, up to the one parameter it is bound with, that no other
+     *         transaction holds, and holding them until the transaction ends, so that concurrent consumers of a
+     *         table are handed different rows
+     */
+    String claim(String columns, String table, String orderBy);
+}
@@ -0,0 +1,40 @@
+package org.ict4h.atomfeed.jdbc.dialect;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Locale;
+
+public class SqlDialects {
+
+    private SqlDialects() {
+    }
+
+    /**
+     * @return the dialect of the database, by its product name and version; the {@link StandardSqlDialect} for
+     *         databases atomfeed has no dialect for
+     */
+    public static SqlDialect of(DatabaseMetaData metaData) throws SQLException {
+        String productName = metaData.getDatabaseProductName().toLowerCase(Locale.ENGLISH);
+        if (productName.contains("postgresql")) {
+            return new PostgreSqlDialect();
+        }
+        if (productName.contains("mariadb")) {
+            return new MySqlDialect(isAtLeast(metaData, 10, 6));
+        }
+        if (productName.contains("mysql")) {
+            return new MySqlDialect(isAtLeast(metaData, 8, 0));
+        }
+        if (productName.equals("h2")) {
+            return new H2Dialect();
+        }
+        if (productName.contains("microsoft sql server")) {
+            return new MsSqlDialect();
+        }
+        return new StandardSqlDialect();
+    }
+
+    private static boolean isAtLeast(DatabaseMetaData metaData, int majorVersion, int minorVersion) throws SQLException {
+        int major = metaData.getDatabaseMajorVersion();
+        return major > majorVersion || (major == majorVersion && metaData.getDatabaseMinorVersion() >= minorVersion);
+    }
+}
@@ -0,0 +1,65 @@
+package org.ict4h.atomfeed.jdbc.dialect;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.List;
+
+/**
+ * Pages with {@code limit} and {@code offset}, has no upsert, inserts a row a statement and claims rows with
+ * {@code for update}, which waits for the rows other transactions hold rather than skipping them. This is the SQL
+ * atomfeed has always issued, so it is what databases without a dialect of their own get.
+ */
+public class StandardSqlDialect implements SqlDialect {
+    private static final int MAX_ROWS_PER_INSERT = 1000;
+
+    @Override
+    public void appendPage(StringBuilder sql, List<Object> params, int limit, Integer offset) {
+        sql.append(" limit ?");
+        params.add(limit);
+        if (offset != null) {
+            sql.append(" offset ?");
+            params.add(offset);
+        }
+    }
+
+    @Override
+    public String upsert(String table, List<String> keyColumns, List<String> columns, List<String> updatedColumns) {
+        return null;
+    }
+
+    @Override
+    public String insertRows(String table, List<String> columns, int rows) {
+        StringBuilder sql = new StringBuilder(insertInto(table, columns)).append(" values ");
+        String row = valuesOf(columns);
+        for (int index = 0; index < rows; index++) {
+            sql.append(index == 0 ? "" : ", ").append(row);
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public int maxRowsPerInsert(int columns) {
+        return Math.max(1, Math.min(MAX_ROWS_PER_INSERT, maxParameters() / columns));
+    }
+
+    @Override
+    public String claim(String columns, String table, String orderBy) {
+        return String.format("select %s from %s order by %s limit ? for update", columns, table, orderBy);
+    }
+
+    /**
+     * @return the parameters a statement can be bound with, for inserts of several rows; 0 for databases not known to
+     *         take several rows in one insert
+     */
+    protected int maxParameters() {
+        return 0;
+    }
+
+    protected static String insertInto(String table, List<String> columns) {
+        return String.format("insert into %s (%s)", table, StringUtils.join(columns, ", "));
+    }
+
+    protected static String valuesOf(List<String> columns) {
+        return "(" + StringUtils.repeat("?", ", ", columns.size()) + ")";
+    }
+}
@@ -0,0 +1,7 @@
+package org.ict4h.atomfeed.transaction;
+
+/**
+ * Work that only reads. A transaction manager may run it in a read-only transaction, e.g. against a read replica.
+ */
+public interface AFReadOnlyTransactionWork<T> extends AFTransactionWork<T> {
+}
@@ -0,0 +1,79 @@
+package org.ict4h.atomfeed.jdbc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JdbcResultSetMapperTest {
+    private ResultSet resultSet;
+
+    @Before
+    public void setUp() throws SQLException {
+        resultSet = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(5);
+        when(metaData.getColumnName(1)).thenReturn("ID");
+        when(metaData.getColumnName(2)).thenReturn("name");
+        when(metaData.getColumnName(3)).thenReturn("created");
+        when(metaData.getColumnName(4)).thenReturn("event_count");
+        when(metaData.getColumnName(5)).thenReturn("unmapped");
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt(1)).thenReturn(1, 2);
+        when(resultSet.getString(2)).thenReturn("first", null);
+        when(resultSet.getTimestamp(3)).thenReturn(new Timestamp(1000L), null);
+        when(resultSet.getLong(4)).thenReturn(10L, 0L);
+        when(resultSet.wasNull()).thenReturn(false, false, false, true);
+    }
+
+    @Test
+    public void shouldMapColumnsToTheFieldsNamedForThemWithTypedGetters() throws SQLException {
+        List<Row> rows = new JdbcResultSetMapper<Row>().mapResultSetToObject(resultSet, Row.class);
+
+        assertEquals(2, rows.size());
+        assertEquals(Integer.valueOf(1), rows.get(0).id);
+        assertEquals("first", rows.get(0).name);
+        assertEquals(new Date(1000L), rows.get(0).created);
+        assertEquals(10L, rows.get(0).eventCount);
+        assertEquals(2, rows.get(1).id.intValue());
+        assertEquals("unnamed", rows.get(1).name);
+        assertNull(rows.get(1).created);
+        assertEquals(-1L, rows.get(1).eventCount);
+        verify(resultSet, times(1)).getMetaData();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldNotMapToAClassThatIsNotAnEntity() {
+        new JdbcResultSetMapper<String>().mapResultSetToObject(resultSet, String.class);
+    }
+
+    @Entity
+    public static class Row {
+        @Column(name = "id")
+        private Integer id;
+
+        @Column(name = "name")
+        private String name = "unnamed";
+
+        @Column(name = "created")
+        private Date created;
+
+        @Column(name = "event_count")
+        private long eventCount = -1;
+    }
+}
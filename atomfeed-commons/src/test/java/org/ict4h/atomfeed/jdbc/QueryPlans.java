@@ -0,0 +1,170 @@
+package org.ict4h.atomfeed.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records the statements run through the connections it provides, with the parameters they were run with, and has H2
+ * explain them, so that a test can tell which index each statement reads its table through.
+ * <p>
+ * H2 names the index a table is read through in the plan, and says {@code tableScan} when it reads the table whole.
+ * Statements that read no table, such as inserts of values, have nothing to explain and are left out.
+ */
+public class QueryPlans implements JdbcConnectionProvider {
+    /**
+     * The index of a primary key, which H2 names itself.
+     */
+    public static final String PRIMARY_KEY = "PRIMARY_KEY_";
+    /**
+     * Reading the table whole, for statements that are meant to.
+     */
+    public static final String TABLE_SCAN = "tableScan";
+
+    private final JdbcConnectionProvider provider;
+    private final List<RecordedStatement> recorded = new ArrayList<>();
+
+    public QueryPlans(JdbcConnectionProvider provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        final Connection connection = provider.getConnection();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        Object result = invokeOn(connection, method, args);
+                        if (method.getName().equals("prepareStatement") && args[0] instanceof String) {
+                            return recording((String) args[0], (PreparedStatement) result);
+                        }
+                        return result;
+                    }
+                });
+    }
+
+    /**
+     * Explains the statements run since the last call, in the order they were run, and forgets them.
+     */
+    public List<String> explain() throws SQLException {
+        List<String> plans = new ArrayList<>();
+        for (RecordedStatement statement : recorded) {
+            String plan = statement.explain(provider.getConnection());
+            if (plan.contains("/*")) {
+                plans.add(plan);
+            }
+        }
+        recorded.clear();
+        return plans;
+    }
+
+    /**
+     * Asserts that the statements run since the last call read their tables through the indexes, one per statement
+     * that reads a table, in order, and that none of them reads a table whole unless it is expected to.
+     *
+     * @param indexes the names of the indexes, {@link #PRIMARY_KEY} or {@link #TABLE_SCAN}
+     */
+    public void assertReadThrough(String... indexes) throws SQLException {
+        List<String> plans = explain();
+        assertEquals(String.format("Statements reading tables, expected %s in %s", Arrays.toString(indexes), plans),
+                indexes.length, plans.size());
+        for (int index = 0; index < indexes.length; index++) {
+            String plan = plans.get(index);
+            assertTrue(String.format("Expected %s in %s", indexes[index], plan), readsThrough(plan, indexes[index]));
+            if (!TABLE_SCAN.equals(indexes[index])) {
+                assertFalse(String.format("Expected no table scan in %s", plan), plan.contains("." + TABLE_SCAN));
+            }
+        }
+    }
+
+    private static boolean readsThrough(String plan, String index) {
+        String name = index.endsWith("_") || TABLE_SCAN.equals(index) ? Pattern.quote(index) : Pattern.quote(index) + "\"?[:\\s]";
+        return Pattern.compile("\\.\"?" + name, Pattern.CASE_INSENSITIVE).matcher(plan).find();
+    }
+
+    private PreparedStatement recording(final String sql, final PreparedStatement statement) {
+        final Map<Integer, Call> parameters = new LinkedHashMap<>();
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class[]{PreparedStatement.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                            parameters.put((Integer) args[0], new Call(method, args));
+                        } else if (name.equals("clearParameters")) {
+                            parameters.clear();
+                        } else if (name.equals("addBatch") || name.startsWith("execute") && !name.equals("executeBatch")) {
+                            recorded.add(new RecordedStatement(sql, new ArrayList<>(parameters.values())));
+                        }
+                        return invokeOn(statement, method, args);
+                    }
+                });
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static class Call {
+        private final Method method;
+        private final Object[] args;
+
+        private Call(Method method, Object[] args) {
+            this.method = method;
+            this.args = args;
+        }
+    }
+
+    private static class RecordedStatement {
+        private final String sql;
+        private final List<Call> parameters;
+
+        private RecordedStatement(String sql, List<Call> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        private String explain(Connection connection) throws SQLException {
+            PreparedStatement statement = connection.prepareStatement("explain " + sql);
+            ResultSet resultSet = null;
+            try {
+                for (Call parameter : parameters) {
+                    invokeOn(statement, parameter.method, parameter.args);
+                }
+                resultSet = statement.executeQuery();
+                StringBuilder plan = new StringBuilder();
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1));
+                }
+                return plan.toString();
+            } catch (SQLException | RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            } finally {
+                if (resultSet != null) resultSet.close();
+                statement.close();
+            }
+        }
+    }
+}
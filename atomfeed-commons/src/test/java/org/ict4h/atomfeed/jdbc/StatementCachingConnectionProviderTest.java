@@ -0,0 +1,117 @@
+package org.ict4h.atomfeed.jdbc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StatementCachingConnectionProviderTest {
+    private Connection connection;
+    private JdbcConnectionProvider provider;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = mock(Connection.class);
+        when(connection.prepareStatement("select 1")).thenReturn(mock(PreparedStatement.class), mock(PreparedStatement.class));
+        when(connection.prepareStatement("select 2")).thenReturn(mock(PreparedStatement.class));
+        provider = mock(JdbcConnectionProvider.class);
+        when(provider.getConnection()).thenReturn(connection);
+    }
+
+    @Test
+    public void shouldPrepareAStatementOncePerConnection() throws SQLException {
+        StatementCachingConnectionProvider cachingProvider = new StatementCachingConnectionProvider(provider, 10);
+
+        PreparedStatement first = cachingProvider.getConnection().prepareStatement("select 1");
+        first.setString(1, "patient");
+        first.close();
+        PreparedStatement second = cachingProvider.getConnection().prepareStatement("select 1");
+
+        assertSame(first, second);
+        assertFalse(second.isClosed());
+        verify(connection, times(1)).prepareStatement("select 1");
+    }
+
+    @Test
+    public void shouldResetAStatementRatherThanCloseIt() throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement("select 3")).thenReturn(statement);
+        when(statement.getFetchSize()).thenReturn(0);
+        when(statement.getMaxRows()).thenReturn(0);
+        when(statement.getResultSet()).thenReturn(resultSet);
+
+        PreparedStatement handedOut = new StatementCachingConnectionProvider(provider, 10).getConnection().prepareStatement("select 3");
+        handedOut.setMaxRows(5);
+        handedOut.close();
+
+        assertTrue(handedOut.isClosed());
+        verify(statement, never()).close();
+        verify(resultSet).close();
+        verify(statement).clearParameters();
+        verify(statement).setMaxRows(0);
+        verify(statement).setFetchSize(0);
+    }
+
+    @Test
+    public void shouldPrepareAnotherStatementWhileTheOneKeptIsInUse() throws SQLException {
+        Connection cachingConnection = new StatementCachingConnectionProvider(provider, 10).getConnection();
+
+        PreparedStatement first = cachingConnection.prepareStatement("select 1");
+        PreparedStatement second = cachingConnection.prepareStatement("select 1");
+
+        assertNotSame(first, second);
+        verify(connection, times(2)).prepareStatement("select 1");
+    }
+
+    @Test
+    public void shouldCloseTheLeastRecentlyMadeStatementsPastTheLimit() throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement("select 3")).thenReturn(statement);
+        Connection cachingConnection = new StatementCachingConnectionProvider(provider, 1).getConnection();
+
+        cachingConnection.prepareStatement("select 3").close();
+        cachingConnection.prepareStatement("select 2").close();
+
+        verify(statement).close();
+    }
+
+    @Test
+    public void shouldLetGoOfTheStatementsOfClosedConnections() throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement("select 3")).thenReturn(statement);
+        Connection otherConnection = mock(Connection.class);
+        when(provider.getConnection()).thenReturn(connection, otherConnection);
+        StatementCachingConnectionProvider cachingProvider = new StatementCachingConnectionProvider(provider, 10);
+
+        cachingProvider.getConnection().prepareStatement("select 3").close();
+        when(connection.isClosed()).thenReturn(true);
+        cachingProvider.getConnection();
+
+        verify(statement).close();
+    }
+
+    @Test
+    public void shouldNotKeepStatementsMadeOtherwise() throws SQLException {
+        when(connection.prepareStatement("select 1", new String[]{"id"})).thenReturn(mock(PreparedStatement.class), mock(PreparedStatement.class));
+        Connection cachingConnection = new StatementCachingConnectionProvider(provider, 10).getConnection();
+
+        cachingConnection.prepareStatement("select 1", new String[]{"id"}).close();
+        cachingConnection.prepareStatement("select 1", new String[]{"id"});
+
+        verify(connection, times(2)).prepareStatement("select 1", new String[]{"id"});
+    }
+}
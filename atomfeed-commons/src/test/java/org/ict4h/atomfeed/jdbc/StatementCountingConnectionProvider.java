@@ -0,0 +1,60 @@
+package org.ict4h.atomfeed.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Counts the statements created through the connections it provides, per thread. As a request is served on a
+ * single thread, resetting the count before serving a request and reading it afterwards gives the number of
+ * statements that request cost.
+ */
+public class StatementCountingConnectionProvider implements JdbcConnectionProvider {
+
+    private final JdbcConnectionProvider provider;
+    private final ThreadLocal<Integer> statementCount = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return 0;
+        }
+    };
+
+    public StatementCountingConnectionProvider(JdbcConnectionProvider provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        final Connection connection = provider.getConnection();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (isStatementCreation(method)) {
+                            statementCount.set(statementCount.get() + 1);
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    }
+                });
+    }
+
+    public int getStatementCount() {
+        return statementCount.get();
+    }
+
+    public void resetStatementCount() {
+        statementCount.set(0);
+    }
+
+    private boolean isStatementCreation(Method method) {
+        String name = method.getName();
+        return name.equals("prepareStatement") || name.equals("createStatement") || name.equals("prepareCall");
+    }
+}
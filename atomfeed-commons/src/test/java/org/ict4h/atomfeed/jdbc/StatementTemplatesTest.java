@@ -0,0 +1,30 @@
+package org.ict4h.atomfeed.jdbc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StatementTemplatesTest {
+
+    @Test
+    public void shouldQualifyTheTablesOfAStatementWithTheSchema() {
+        StatementTemplates statements = new StatementTemplates("atomfeed")
+                .add("insertTag", "insert into %s select id from %s where seq = ?", "event_record_tags", "event_records");
+
+        assertEquals("insert into atomfeed.event_record_tags select id from atomfeed.event_records where seq = ?",
+                statements.get("insertTag"));
+    }
+
+    @Test
+    public void shouldLeaveTheTablesUnqualifiedWithoutASchema() {
+        StatementTemplates statements = new StatementTemplates("").add("count", "select count(*) from %s", "markers");
+
+        assertEquals("select count(*) from markers", statements.get("count"));
+        assertEquals("markers", statements.table("markers"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotGetAStatementThatWasNotAdded() {
+        new StatementTemplates("atomfeed").get("count");
+    }
+}
@@ -0,0 +1,88 @@
+package org.ict4h.atomfeed.jdbc.dialect;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SqlDialectTest {
+    private static final List<String> KEY = Collections.singletonList("category");
+    private static final List<String> COLUMNS = Arrays.asList("event_id", "event_count", "category");
+    private static final List<String> UPDATED = Arrays.asList("event_id", "event_count");
+
+    @Test
+    public void shouldPageWithLimitAndOffset() {
+        StringBuilder sql = new StringBuilder("select id from event_records order by id");
+        List<Object> params = new ArrayList<>();
+
+        new PostgreSqlDialect().appendPage(sql, params, 10, 20);
+
+        assertEquals("select id from event_records order by id limit ? offset ?", sql.toString());
+        assertEquals(Arrays.<Object>asList(10, 20), params);
+    }
+
+    @Test
+    public void shouldPageByKeyWithALimitOnly() {
+        StringBuilder sql = new StringBuilder("select id from event_records where id > ? order by id");
+        List<Object> params = new ArrayList<Object>(Collections.singletonList(5));
+
+        new H2Dialect().appendPage(sql, params, 10, null);
+
+        assertEquals("select id from event_records where id > ? order by id limit ?", sql.toString());
+        assertEquals(Arrays.<Object>asList(5, 10), params);
+    }
+
+    @Test
+    public void shouldPageWithOffsetFetchOnMsSql() {
+        StringBuilder sql = new StringBuilder("select id from event_records where id > ? order by id");
+        List<Object> params = new ArrayList<Object>(Collections.singletonList(5));
+
+        new MsSqlDialect().appendPage(sql, params, 10, null);
+
+        assertEquals("select id from event_records where id > ? order by id offset ? rows fetch next ? rows only", sql.toString());
+        assertEquals(Arrays.<Object>asList(5, 0, 10), params);
+    }
+
+    @Test
+    public void shouldUpsertNatively() {
+        assertEquals("insert into markers (event_id, event_count, category) values (?, ?, ?) on conflict (category) "
+                + "do update set event_id = excluded.event_id, event_count = excluded.event_count",
+                new PostgreSqlDialect().upsert("markers", KEY, COLUMNS, UPDATED));
+        assertEquals("insert into markers (event_id, event_count, category) values (?, ?, ?) on duplicate key update "
+                + "event_id = values(event_id), event_count = values(event_count)",
+                new MySqlDialect(true).upsert("markers", KEY, COLUMNS, UPDATED));
+        assertEquals("merge into markers (event_id, event_count, category) key (category) values (?, ?, ?)",
+                new H2Dialect().upsert("markers", KEY, COLUMNS, UPDATED));
+        assertEquals("merge into markers with (holdlock) as target using (values (?, ?, ?)) as source (event_id, event_count, category) "
+                + "on target.category = source.category when matched then update set event_id = source.event_id, event_count = source.event_count "
+                + "when not matched then insert (event_id, event_count, category) values (source.event_id, source.event_count, source.category);",
+                new MsSqlDialect().upsert("markers", KEY, COLUMNS, UPDATED));
+    }
+
+    @Test
+    public void shouldNotUpsertWhereTheDatabaseCannotUpdateSomeColumnsOnly() {
+        assertNull(new H2Dialect().upsert("markers", KEY, COLUMNS, Collections.singletonList("event_id")));
+        assertNull(new StandardSqlDialect().upsert("markers", KEY, COLUMNS, UPDATED));
+    }
+
+    @Test
+    public void shouldInsertSeveralRowsWithinTheParametersOfAStatement() {
+        assertEquals("insert into markers (event_id, category) values (?, ?), (?, ?)",
+                new PostgreSqlDialect().insertRows("markers", Arrays.asList("event_id", "category"), 2));
+        assertEquals(1000, new PostgreSqlDialect().maxRowsPerInsert(9));
+        assertEquals(222, new MsSqlDialect().maxRowsPerInsert(9));
+        assertEquals(1, new StandardSqlDialect().maxRowsPerInsert(9));
+    }
+
+    @Test
+    public void shouldClaimRowsSkippingThoseLocked() {
+        assertEquals("select id from queue order by id limit ? for update skip locked", new PostgreSqlDialect().claim("id", "queue", "id"));
+        assertEquals("select top (?) id from queue with (updlock, readpast, rowlock) order by id", new MsSqlDialect().claim("id", "queue", "id"));
+        assertEquals("select id from queue order by id limit ? for update", new H2Dialect().claim("id", "queue", "id"));
+    }
+}
@@ -0,0 +1,59 @@
+package org.ict4h.atomfeed.jdbc.dialect;
+
+import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SqlDialectsTest {
+
+    @Test
+    public void shouldFindTheDialectByTheProductName() throws SQLException {
+        assertEquals(PostgreSqlDialect.class, SqlDialects.of(metaData("PostgreSQL", 9, 6)).getClass());
+        assertEquals(H2Dialect.class, SqlDialects.of(metaData("H2", 1, 3)).getClass());
+        assertEquals(MsSqlDialect.class, SqlDialects.of(metaData("Microsoft SQL Server", 13, 0)).getClass());
+        assertEquals(MySqlDialect.class, SqlDialects.of(metaData("MySQL", 5, 7)).getClass());
+        assertEquals(StandardSqlDialect.class, SqlDialects.of(metaData("Apache Derby", 10, 14)).getClass());
+    }
+
+    @Test
+    public void shouldSkipLockedRowsOnlyFromTheVersionsThatCan() throws SQLException {
+        String skipLocked = "select id from queue order by id limit ? for update skip locked";
+        String forUpdate = "select id from queue order by id limit ? for update";
+
+        assertEquals(forUpdate, SqlDialects.of(metaData("MySQL", 5, 7)).claim("id", "queue", "id"));
+        assertEquals(skipLocked, SqlDialects.of(metaData("MySQL", 8, 0)).claim("id", "queue", "id"));
+        assertEquals(forUpdate, SqlDialects.of(metaData("MariaDB", 10, 5)).claim("id", "queue", "id"));
+        assertEquals(skipLocked, SqlDialects.of(metaData("MariaDB", 10, 6)).claim("id", "queue", "id"));
+    }
+
+    @Test
+    public void shouldFindTheDialectOfTheDatabaseOnceItIsUsed() throws SQLException {
+        DatabaseMetaData metaData = metaData("PostgreSQL", 10, 0);
+        Connection connection = mock(Connection.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        JdbcConnectionProvider provider = mock(JdbcConnectionProvider.class);
+        when(provider.getConnection()).thenReturn(connection);
+
+        String upsert = new DetectedSqlDialect(provider).upsert("markers", Arrays.asList("category"), Arrays.asList("category", "event_id"),
+                Arrays.asList("event_id"));
+
+        assertTrue(upsert.endsWith("on conflict (category) do update set event_id = excluded.event_id"));
+    }
+
+    private DatabaseMetaData metaData(String productName, int majorVersion, int minorVersion) throws SQLException {
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(metaData.getDatabaseProductName()).thenReturn(productName);
+        when(metaData.getDatabaseMajorVersion()).thenReturn(majorVersion);
+        when(metaData.getDatabaseMinorVersion()).thenReturn(minorVersion);
+        return metaData;
+    }
+}
@@ -0,0 +1,60 @@
+package org.ict4h.atomfeed.server.domain;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * A feed over several categories is asked for with the categories separated by commas, e.g. {@code patient,encounter}.
+ * Its events are those of any of the categories, merged in the order they were added.
+ * <p>
+ * The set is passed around as the category of the feed, in its {@link #canonical(String) canonical} form, so that
+ * the same categories in any order or case make the same feed, with the same pages, cache entries and offset marker.
+ */
+public class CategorySet {
+    public static final String SEPARATOR = ",";
+
+    private CategorySet() {
+    }
+
+    /**
+     * @return whether the category names more than one category
+     */
+    public static boolean isSet(String category) {
+        return category != null && category.contains(SEPARATOR) && membersOf(category).size() > 1;
+    }
+
+    /**
+     * @return the distinct categories of the set, ordered ignoring case; the category itself when it is not a set
+     */
+    public static List<String> membersOf(String category) {
+        if (category == null || !category.contains(SEPARATOR)) {
+            return Collections.singletonList(category);
+        }
+        TreeMap<String, String> members = new TreeMap<>();
+        for (String member : category.split(SEPARATOR)) {
+            if (!StringUtils.isBlank(member)) {
+                String trimmed = member.trim();
+                String key = trimmed.toLowerCase(Locale.ENGLISH);
+                if (!members.containsKey(key)) {
+                    members.put(key, trimmed);
+                }
+            }
+        }
+        return new ArrayList<>(members.values());
+    }
+
+    /**
+     * @return the members of the set, joined in order; the category itself when it is not a set
+     */
+    public static String canonical(String category) {
+        if (category == null || !category.contains(SEPARATOR)) {
+            return category;
+        }
+        return StringUtils.join(membersOf(category), SEPARATOR);
+    }
+}
@@ -0,0 +1,55 @@
+package org.ict4h.atomfeed.server.domain;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+
+/**
+ * A feed of the events of a category that carry a tag, e.g. {@code /feed/patient/tags/merged/recent}, lets a consumer
+ * interested in the tag read only those events rather than the whole feed of the category.
+ * <p>
+ * The events of a category with a tag are numbered on publish, so the feed is chunked and paged like a category feed.
+ * Only events published since the tags were first indexed are numbered; events without a category have no tag feeds.
+ * <p>
+ * The feed is passed around as the category of the feed, in the form {@code category#tag}, so that it has its own
+ * pages, cache entries and offset marker.
+ */
+public class CategoryTag {
+    public static final String SEPARATOR = "#";
+
+    private CategoryTag() {
+    }
+
+    /**
+     * @return the category of the feed of the events of the category with the tag
+     */
+    public static String of(String category, String tag) {
+        if (StringUtils.isBlank(category) || StringUtils.isBlank(tag)) {
+            throw new AtomFeedRuntimeException("Tag feeds are served for a category and a tag");
+        }
+        if (CategorySet.isSet(category)) {
+            throw new AtomFeedRuntimeException(String.format("Tag feeds are not served over the categories of %s", category));
+        }
+        return category.trim() + SEPARATOR + tag.trim();
+    }
+
+    /**
+     * @return whether the category is that of a feed of the events of a category with a tag
+     */
+    public static boolean isTagged(String category) {
+        return category != null && category.contains(SEPARATOR);
+    }
+
+    /**
+     * @return the category the events of the feed are of; the category itself when it is not tagged
+     */
+    public static String categoryOf(String category) {
+        return isTagged(category) ? category.substring(0, category.indexOf(SEPARATOR)) : category;
+    }
+
+    /**
+     * @return the tag the events of the feed carry; null when the category is not tagged
+     */
+    public static String tagOf(String category) {
+        return isTagged(category) ? category.substring(category.indexOf(SEPARATOR) + 1) : null;
+    }
+}
@@ -1,21 +1,99 @@
 package org.ict4h.atomfeed.server.domain;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 public class EventFeed {
 	private Integer feedId;
 	private List<EventRecord> events;
+	private FeedPlan plan;
+	private EventRecordsSummary summary;
 
 	public EventFeed(Integer feedId, List<EventRecord> events) {
 		this.feedId = feedId;
 		this.events = events;
 	}
 
+	public EventFeed(FeedPlan plan, List<EventRecord> events) {
+		this(plan.getFeedId(), events);
+		this.plan = plan;
+	}
+
+	/**
+	 * A feed whose events are not read up front, but streamed by the feed generator when the feed is written.
+	 */
+	public EventFeed(FeedPlan plan, EventRecordsSummary summary) {
+		this(plan.getFeedId(), (List<EventRecord>) null);
+		this.plan = plan;
+		this.summary = summary;
+	}
+
 	public Integer getId() {
 		return feedId;
 	}
 
+	/**
+	 * @return how the page of the feed is referred to in its uri, see {@link FeedPlan#pageId(int, int)}
+	 */
+	public String getPageId() {
+		return plan != null ? plan.getPageId() : String.valueOf(feedId);
+	}
+
+	/**
+	 * @return the events of the feed, or null when the feed is streamed
+	 */
 	public List<EventRecord> getEvents() {
 		return events;
 	}
+
+	public boolean isStreamed() {
+		return events == null;
+	}
+
+	/**
+	 * @return the plan the feed was generated with, or null when the generator did not provide one
+	 */
+	public FeedPlan getPlan() {
+		return plan;
+	}
+
+	/**
+	 * @return the id of the newest event in the feed, or 0 when the feed has no (persisted) events
+	 */
+	public int getNewestEventId() {
+		if (isStreamed()) {
+			return summary.getNewestEventId();
+		}
+		int newestEventId = 0;
+		for (EventRecord event : events) {
+			if (event.getId() != null && event.getId() > newestEventId) {
+				newestEventId = event.getId();
+			}
+		}
+		return newestEventId;
+	}
+
+	/**
+	 * @return the timestamp of the newest event in the feed, or today's midnight when the feed has no events
+	 */
+	public Date getNewestEventDate() {
+		if (isStreamed()) {
+			return summary.getNewestEventDate() != null ? summary.getNewestEventDate() : toDateMidnight();
+		}
+		if (events.isEmpty()) {
+			return toDateMidnight();
+		}
+		return Collections.max(events, new EventRecordComparator()).getTimeStamp();
+	}
+
+	//TODO: extract to common date utils and write test?
+	private Date toDateMidnight() {
+		LocalDateTime midnight = LocalDateTime.of(LocalDate.now(ZoneId.systemDefault()), LocalTime.MIDNIGHT);
+		return Date.from(midnight.atZone(ZoneId.systemDefault()).toInstant());
+	}
 }
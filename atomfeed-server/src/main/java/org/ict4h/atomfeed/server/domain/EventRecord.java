@@ -8,7 +8,10 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 @Entity
 @Table(name = "event_records")
@@ -64,6 +67,18 @@ public class EventRecord {
     @XmlTransient
     private String tags;
 
+    @Column(name = "seq", insertable = false, updatable = false)
+    @XmlTransient
+    private Integer seq;
+
+    @Column(name = "category_seq", insertable = false, updatable = false)
+    @XmlTransient
+    private Integer categorySeq;
+
+    @Transient
+    @XmlTransient
+    private Set<String> categoryTerms;
+
     public EventRecord() { }
 
     public EventRecord(String uuid, String title, String uri, String serializedContents, Date dateCreated, String category) {
@@ -128,10 +143,57 @@ public class EventRecord {
         return tags;
     }
 
+    /**
+     * @return the terms the event is categorised by in the feed: its tags and its category. The tags are split once
+     * per record, however many times the record is rendered.
+     */
+    public Set<String> getCategoryTerms() {
+        if (categoryTerms == null) {
+            Set<String> terms = new LinkedHashSet<>();
+            String[] tagList = StringUtils.split(tags, ",");
+            if (tagList != null) {
+                for (String tag : tagList) {
+                    if (!StringUtils.isBlank(tag)) {
+                        terms.add(tag.trim());
+                    }
+                }
+            }
+            if (!StringUtils.isBlank(category)) {
+                terms.add(category);
+            }
+            categoryTerms = Collections.unmodifiableSet(terms);
+        }
+        return categoryTerms;
+    }
+
+    /**
+     * @return the terms the event is categorised by other than its category, which are what tag feeds are kept of
+     */
+    public Set<String> getTagTerms() {
+        Set<String> terms = new LinkedHashSet<>(getCategoryTerms());
+        terms.remove(category);
+        return terms;
+    }
+
+    /**
+     * @return the gap-free position of the event among all events, assigned when the event is published
+     */
+    public Integer getSeq() {
+        return seq;
+    }
+
+    /**
+     * @return the gap-free position of the event among the events of its category, assigned when the event is published
+     */
+    public Integer getCategorySeq() {
+        return categorySeq;
+    }
+
     //NOTE: intentionally kept private
     private void setTags(String tags) {
         if (!StringUtils.isBlank(tags)) {
             this.tags = tags;
+            this.categoryTerms = null;
         }
     }
 }
\ No newline at end of file
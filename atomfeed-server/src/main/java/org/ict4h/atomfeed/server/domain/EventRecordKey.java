@@ -0,0 +1,46 @@
+package org.ict4h.atomfeed.server.domain;
+
+import java.sql.Timestamp;
+
+/**
+ * Where an event lies in a time chunked feed: events are ordered by their timestamp, and by id when timestamps are
+ * equal. Pages of a feed start after the key of the last event of the page before, so that reading a page does not
+ * go through the events of the pages before it.
+ */
+public class EventRecordKey {
+    private final Timestamp timestamp;
+    private final int id;
+
+    public EventRecordKey(Timestamp timestamp, int id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    public Timestamp getTimestamp() {
+        return timestamp;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        EventRecordKey that = (EventRecordKey) o;
+
+        return id == that.id && timestamp.equals(that.timestamp);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * timestamp.hashCode() + id;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EventRecordKey{timestamp=%s, id=%d}", timestamp, id);
+    }
+}
@@ -0,0 +1,45 @@
+package org.ict4h.atomfeed.server.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+@Entity
+public class EventRecordsCounter {
+
+    @Id
+    @Column(name = "category")
+    private String category;
+
+    @Column(name = "event_count")
+    private Integer eventCount;
+
+    public EventRecordsCounter() {
+    }
+
+    public EventRecordsCounter(String category, Integer eventCount) {
+        this.category = category;
+        this.eventCount = eventCount;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public Integer getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(Integer eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EventRecordsCounter{category='%s', eventCount=%d}", category, eventCount);
+    }
+}
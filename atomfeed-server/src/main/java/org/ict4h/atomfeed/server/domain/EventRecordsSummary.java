@@ -0,0 +1,30 @@
+package org.ict4h.atomfeed.server.domain;
+
+import java.util.Date;
+
+/**
+ * What the header of a feed needs to know about its events, for when the events themselves are not read up front.
+ */
+public class EventRecordsSummary {
+    private final int newestEventId;
+    private final Date newestEventDate;
+
+    public EventRecordsSummary(int newestEventId, Date newestEventDate) {
+        this.newestEventId = newestEventId;
+        this.newestEventDate = newestEventDate;
+    }
+
+    /**
+     * @return the id of the newest event, or 0 when there are no events
+     */
+    public int getNewestEventId() {
+        return newestEventId;
+    }
+
+    /**
+     * @return the timestamp of the newest event, or null when there are no events
+     */
+    public Date getNewestEventDate() {
+        return newestEventDate;
+    }
+}
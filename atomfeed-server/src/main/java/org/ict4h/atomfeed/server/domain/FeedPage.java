@@ -0,0 +1,74 @@
+package org.ict4h.atomfeed.server.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * A serialized feed together with the validators and caching hints that go with it.
+ * A page that was found to be unmodified for the requester carries no content.
+ */
+public class FeedPage {
+    private final byte[] content;
+    private final String etag;
+    private final Date lastModified;
+    private final boolean archived;
+    private final String contentEncoding;
+
+    public FeedPage(byte[] content, String etag, Date lastModified, boolean archived) {
+        this(content, etag, lastModified, archived, null);
+    }
+
+    /**
+     * @param contentEncoding the encoding the content is compressed with (e.g. gzip), null when it is not
+     */
+    public FeedPage(byte[] content, String etag, Date lastModified, boolean archived, String contentEncoding) {
+        this.content = content;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.archived = archived;
+        this.contentEncoding = contentEncoding;
+    }
+
+    public static FeedPage notModified(String etag, Date lastModified, boolean archived) {
+        return new FeedPage(null, etag, lastModified, archived);
+    }
+
+    public FeedPage notModified() {
+        return new FeedPage(null, etag, lastModified, archived, contentEncoding);
+    }
+
+    public boolean isModified() {
+        return content != null;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public String getContentAsString() {
+        return content == null ? null : new String(content, StandardCharsets.UTF_8);
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return true if the feed has moved past this page, i.e. the page will not change any more
+     */
+    public boolean isArchived() {
+        return archived;
+    }
+
+    public int getSize() {
+        return (content == null ? 0 : content.length) + 2 * etag.length();
+    }
+}
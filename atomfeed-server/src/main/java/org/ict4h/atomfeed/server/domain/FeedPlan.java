@@ -0,0 +1,118 @@
+package org.ict4h.atomfeed.server.domain;
+
+/**
+ * What a feed generator resolved about a feed before fetching its events: which feed it is and which feed is
+ * the latest one. It is resolved once per request and travels with the {@link EventFeed}, so that building the
+ * paging links or deciding whether a page is archived does not go back to the repositories.
+ */
+public class FeedPlan {
+    private final String category;
+    private final int feedId;
+    private final int part;
+    private final int latestFeedId;
+    private final int previousFeedId;
+    private final int previousPart;
+    private final int nextFeedId;
+    private final int nextPart;
+
+    public FeedPlan(String category, int feedId, int latestFeedId) {
+        this(category, feedId, latestFeedId, feedId - 1, feedId + 1);
+    }
+
+    /**
+     * @param previousFeedId the feed the prev-archive link points to, less than 1 when there is no earlier feed to link to
+     * @param nextFeedId     the feed the next-archive link points to, when the feed is archived
+     */
+    public FeedPlan(String category, int feedId, int latestFeedId, int previousFeedId, int nextFeedId) {
+        this(category, feedId, 1, latestFeedId, previousFeedId, 1, nextFeedId, 1);
+    }
+
+    /**
+     * For feeds that are split into parts, each part being a page of its own. Parts are numbered from 1, and the
+     * first part of a feed is the feed itself.
+     */
+    public FeedPlan(String category, int feedId, int part, int latestFeedId, int previousFeedId, int previousPart,
+                    int nextFeedId, int nextPart) {
+        this.category = category;
+        this.feedId = feedId;
+        this.part = part;
+        this.latestFeedId = latestFeedId;
+        this.previousFeedId = previousFeedId;
+        this.previousPart = previousPart;
+        this.nextFeedId = nextFeedId;
+        this.nextPart = nextPart;
+    }
+
+    /**
+     * @return how a page is referred to in its uri: the feed id, followed by the part for parts after the first
+     */
+    public static String pageId(int feedId, int part) {
+        return part > 1 ? feedId + "." + part : String.valueOf(feedId);
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public int getFeedId() {
+        return feedId;
+    }
+
+    public int getPart() {
+        return part;
+    }
+
+    public String getPageId() {
+        return pageId(feedId, part);
+    }
+
+    public int getLatestFeedId() {
+        return latestFeedId;
+    }
+
+    /**
+     * @return the feed of the page before this one to page back to; feeds in between, if any, are known to have no events
+     */
+    public int getPreviousFeedId() {
+        return previousFeedId;
+    }
+
+    /**
+     * @return the feed of the page after this one to page forward to; feeds in between, if any, are known to have no events
+     */
+    public int getNextFeedId() {
+        return nextFeedId;
+    }
+
+    public String getPreviousPageId() {
+        return pageId(previousFeedId, previousPart);
+    }
+
+    public String getNextPageId() {
+        return pageId(nextFeedId, nextPart);
+    }
+
+    public boolean hasPreviousPage() {
+        return previousFeedId >= 1;
+    }
+
+    /**
+     * @return true when there is a page after this one, either a later feed or a later part of this feed
+     */
+    public boolean hasNextPage() {
+        return feedId < latestFeedId || (nextFeedId == feedId && nextPart > part);
+    }
+
+    /**
+     * @return true when the feed has been superseded by a later one, and hence will not change anymore
+     */
+    public boolean isArchived() {
+        return feedId < latestFeedId;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FeedPlan{category=%s, page=%s, latestFeedId=%d, previousPage=%s, nextPage=%s}",
+                category, getPageId(), latestFeedId, getPreviousPageId(), getNextPageId());
+    }
+}
@@ -0,0 +1,20 @@
+package org.ict4h.atomfeed.server.domain.chunking;
+
+import java.util.List;
+
+/**
+ * Identifies a chunking history by its entries. Two histories with the same entries chunk the
+ * events into the same feeds, so anything derived from a feed (e.g. a cached page) can be keyed by it.
+ */
+public class ChunkingHistoryVersion {
+
+    public static String of(List<ChunkingHistoryEntry> entries) {
+        StringBuilder builder = new StringBuilder();
+        for (ChunkingHistoryEntry entry : entries) {
+            builder.append(entry.getSequenceNumber()).append(':')
+                    .append(entry.getInterval()).append(':')
+                    .append(entry.getLeftBound()).append(';');
+        }
+        return entries.size() + "-" + Integer.toHexString(builder.toString().hashCode());
+    }
+}
@@ -55,6 +55,12 @@ public class NumberChunkingHistoryEntry {
         return leftBound;
     }
 
+    /**
+     * @return the last position of the entry, or -1 if the entry is open
+     */
+    public int getEndPosition() {
+        return rightBound;
+    }
 
     public void close(int endPosition) {
         this.rightBound = endPosition;
@@ -0,0 +1,153 @@
+package org.ict4h.atomfeed.server.domain.chunking.number;
+
+import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+
+import java.util.List;
+
+/**
+ * An immutable index over a number chunking history, answering the same questions as {@link NumberChunkingHistory}
+ * in O(log n) of the number of history entries, with integer arithmetic only.
+ * <p>
+ * The number of feeds of every closed entry is summed up front. When the entries follow each other (every entry
+ * closed right before the next one starts, as they are when added in sequence), the entry an upper bound or a feed
+ * id falls in is found by binary search over the start positions and the sums. Other histories are walked entry
+ * by entry, with the same results as {@link NumberChunkingHistory}.
+ */
+public class NumberChunkingIndex {
+    private final NumberChunkingHistoryEntry[] entries;
+    private final int[] startPositions;
+    //feedsBefore[i] is the number of feeds of the entries before entry i, all of them taken as complete
+    private final long[] feedsBefore;
+    private final boolean contiguous;
+
+    public static NumberChunkingIndex of(List<ChunkingHistoryEntry> chunkingHistoryEntries) {
+        NumberChunkingHistory history = new NumberChunkingHistory();
+        for (ChunkingHistoryEntry entry : chunkingHistoryEntries) {
+            history.add(entry.getSequenceNumber(), entry.getInterval().intValue(), entry.getLeftBound().intValue());
+        }
+        return new NumberChunkingIndex(history);
+    }
+
+    NumberChunkingIndex(NumberChunkingHistory history) {
+        int size = history.chunkingHistoryEntries.size();
+        this.entries = history.chunkingHistoryEntries.toArray(new NumberChunkingHistoryEntry[size]);
+        this.startPositions = new int[size];
+        this.feedsBefore = new long[size + 1];
+        boolean contiguous = true;
+        for (int i = 0; i < size; i++) {
+            NumberChunkingHistoryEntry entry = entries[i];
+            if (entry.getChunkSize() <= 0) {
+                throw new AtomFeedRuntimeException(String.format("Chunk length must be positive, was %d", entry.getChunkSize()));
+            }
+            startPositions[i] = entry.getStartPosition();
+            feedsBefore[i + 1] = feedsBefore[i] + (entry.isOpen() ? 0 : feedCount(entry, entry.getEndPosition()));
+            boolean last = i == size - 1;
+            if (last ? !entry.isOpen() : (entry.isOpen() || entry.getEndPosition() != entries[i + 1].getStartPosition() - 1
+                    || entries[i + 1].getStartPosition() < entry.getStartPosition())) {
+                contiguous = false;
+            }
+        }
+        this.contiguous = contiguous;
+    }
+
+    public NumberRange findRange(Integer feedId, int upperBound) {
+        checkSanityOfConfiguration();
+        if (!contiguous) {
+            return findRangeEntryByEntry(feedId, upperBound);
+        }
+        int current = entryAt(upperBound);
+        //Entries before the current one are complete, the ones after it have no feeds yet.
+        int matching = firstCompleteEntryReaching(feedId, current);
+        if (matching >= 0) {
+            return entries[matching].getRange(feedId - (int) feedsBefore[matching]);
+        }
+        if (current < 0) {
+            //No entry has any feeds yet, so the first one reaches a feed id that is not positive, or else the open one.
+            return entries[feedId <= 0 ? 0 : entries.length - 1].getRange(feedId);
+        }
+        int feedsSoFar = (int) feedsBefore[current];
+        NumberChunkingHistoryEntry entry = entries[current];
+        if (entry.isOpen() || feedsSoFar + feedCount(entry, upperBound) >= feedId) {
+            return entry.getRange(feedId - feedsSoFar);
+        }
+        return entries[entries.length - 1].getRange(feedId - feedsSoFar - feedCount(entry, upperBound));
+    }
+
+    public int getNumberOfFeeds(int upperBound) {
+        checkSanityOfConfiguration();
+        if (!contiguous) {
+            int feedCount = 0;
+            for (NumberChunkingHistoryEntry entry : entries) {
+                feedCount += feedCount(entry, upperBound);
+            }
+            return feedCount;
+        }
+        int current = entryAt(upperBound);
+        return current < 0 ? 0 : (int) (feedsBefore[current] + feedCount(entries[current], upperBound));
+    }
+
+    /**
+     * @return the index of the last entry starting at or before the position, -1 if there is none
+     */
+    private int entryAt(int position) {
+        int low = 0;
+        int high = startPositions.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (startPositions[middle] <= position) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the index of the first entry before {@code before} whose feeds reach the feed id, -1 if there is none
+     */
+    private int firstCompleteEntryReaching(int feedId, int before) {
+        int low = 0;
+        int high = before - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (feedsBefore[middle + 1] >= feedId) {
+                found = middle;
+                high = middle - 1;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return found;
+    }
+
+    private NumberRange findRangeEntryByEntry(Integer feedId, int upperBound) {
+        int feedsSoFar = 0;
+        for (NumberChunkingHistoryEntry entry : entries) {
+            int feedCount = feedCount(entry, upperBound);
+            if (entry.isOpen() || (feedsSoFar + feedCount >= feedId)) {
+                return entry.getRange(feedId - feedsSoFar);
+            }
+            feedsSoFar += feedCount;
+        }
+        return null;
+    }
+
+    //Same as NumberChunkingHistoryEntry.getFeedCount, rounding up with integers instead of doubles.
+    private static int feedCount(NumberChunkingHistoryEntry entry, int upperBound) {
+        int endPosition = entry.isOpen() ? upperBound : entry.getEndPosition();
+        long count = (long) Math.min(endPosition, upperBound) - entry.getStartPosition() + 1;
+        if (count <= 0) return 0;
+        return (int) ((count + entry.getChunkSize() - 1) / entry.getChunkSize());
+    }
+
+    private void checkSanityOfConfiguration() {
+        if (entries.length == 0) {
+            throw new AtomFeedRuntimeException("Chunking history configuration not set. ");
+        }
+    }
+}
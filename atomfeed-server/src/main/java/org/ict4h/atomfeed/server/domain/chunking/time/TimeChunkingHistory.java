@@ -12,7 +12,7 @@ import java.util.List;
 import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
 
 public class TimeChunkingHistory {
-    private List<TimeChunkingHistoryEntry> chunkingHistoryEntries = new ArrayList<TimeChunkingHistoryEntry>();
+    List<TimeChunkingHistoryEntry> chunkingHistoryEntries = new ArrayList<TimeChunkingHistoryEntry>();
 
     public TimeChunkingHistory() {
     }
@@ -29,6 +29,15 @@ public class TimeChunkingHistoryEntry {
         return (int) (minutesElapsed / minutesInTheDuration);
     }
 
+    /**
+     * @return the number of the entry's feeds that start at or before the time, 0 if the entry starts after it
+     */
+    public int numberOfFeedsStartedBy(LocalDateTime time) {
+        if (time.isBefore(startTime)) return 0;
+        long started = Duration.between(startTime, time).toMillis() / duration.toMinutes() / 60000 + 1;
+        return (int) (isUnbounded() ? started : Math.min(started, numberOfFeeds()));
+    }
+
     public TimeRange getTimeRangeForChunk(int chunkNumber) {
         return new TimeRange(timeAtStartOf(chunkNumber - 1), timeAtStartOf(chunkNumber));
     }
@@ -46,6 +55,10 @@ public class TimeChunkingHistoryEntry {
                 '}';
     }
 
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
     public boolean isUnbounded() {
         return endTime == null;
     }
@@ -55,9 +68,16 @@ public class TimeChunkingHistoryEntry {
     }
 
     public long numberOfEncapsulatedFeeds() {
+        return numberOfEncapsulatedFeeds(LocalDateTime.now());
+    }
+
+    /**
+     * @param now the time an unbounded entry is taken to end at
+     */
+    public long numberOfEncapsulatedFeeds(LocalDateTime now) {
         if(isUnbounded())
         {
-            return numberOfFeeds(startTime, LocalDateTime.now());
+            return numberOfFeeds(startTime, now);
         }
         return numberOfFeeds(startTime,endTime);
     }
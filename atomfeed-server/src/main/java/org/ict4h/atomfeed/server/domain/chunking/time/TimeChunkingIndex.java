@@ -0,0 +1,139 @@
+package org.ict4h.atomfeed.server.domain.chunking.time;
+
+import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * An immutable index over a time chunking history, answering the same questions as {@link TimeChunkingHistory}.
+ * <p>
+ * The feeds of the bounded entries are counted up front, so the current feed only takes counting the feeds of the
+ * unbounded (last) entry up to now, and the entry a feed or a point in time falls in is found by binary search over
+ * the counts or the start times.
+ */
+public class TimeChunkingIndex {
+    private final TimeChunkingHistoryEntry[] entries;
+    //feedsBefore[i] is the number of feeds of the bounded entries before entry i
+    private final long[] feedsBefore;
+    private final int boundedEntries;
+    private final TimeChunkingHistoryEntry unboundedEntry;
+    private final boolean searchable;
+
+    public static TimeChunkingIndex of(List<ChunkingHistoryEntry> chunkingHistoryEntries) {
+        TimeChunkingHistory history = new TimeChunkingHistory();
+        for (ChunkingHistoryEntry entry : chunkingHistoryEntries) {
+            history.add(entry.getLeftBound(), entry.getInterval());
+        }
+        return new TimeChunkingIndex(history);
+    }
+
+    TimeChunkingIndex(TimeChunkingHistory history) {
+        int size = history.chunkingHistoryEntries.size();
+        this.entries = history.chunkingHistoryEntries.toArray(new TimeChunkingHistoryEntry[size]);
+        this.feedsBefore = new long[size + 1];
+        int bounded = 0;
+        TimeChunkingHistoryEntry unbounded = null;
+        boolean searchable = true;
+        for (int i = 0; i < size; i++) {
+            TimeChunkingHistoryEntry entry = entries[i];
+            searchable &= i == 0 || !entries[i - 1].getStartTime().isAfter(entry.getStartTime());
+            if (entry.isUnbounded()) {
+                unbounded = entry;
+                searchable &= i == size - 1;
+                feedsBefore[i + 1] = feedsBefore[i];
+                continue;
+            }
+            int feeds = entry.numberOfFeeds();
+            searchable &= feeds >= 0;
+            feedsBefore[i + 1] = feedsBefore[i] + feeds;
+            bounded++;
+        }
+        this.boundedEntries = bounded;
+        this.unboundedEntry = unbounded;
+        this.searchable = searchable;
+    }
+
+    public long currentSequenceNumber() {
+        return currentSequenceNumber(LocalDateTime.now());
+    }
+
+    public long currentSequenceNumber(LocalDateTime now) {
+        long feeds = feedsBefore[entries.length];
+        if (unboundedEntry != null) {
+            feeds += unboundedEntry.numberOfEncapsulatedFeeds(now);
+        }
+        return feeds + 1;
+    }
+
+    public Integer getWorkingFeedId() {
+        return (int) currentSequenceNumber();
+    }
+
+    public Integer getWorkingFeedId(LocalDateTime now) {
+        return (int) currentSequenceNumber(now);
+    }
+
+    /**
+     * @return the sequence number of the last feed starting at or before the time, 0 if no feed does
+     */
+    public int sequenceNumberAt(LocalDateTime time) {
+        if (!searchable) {
+            int feeds = 0;
+            for (TimeChunkingHistoryEntry entry : entries) {
+                feeds += entry.numberOfFeedsStartedBy(time);
+            }
+            return feeds;
+        }
+        int low = 0;
+        int high = entries.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (!entries[middle].getStartTime().isAfter(time)) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found < 0 ? 0 : (int) feedsBefore[found] + entries[found].numberOfFeedsStartedBy(time);
+    }
+
+    public TimeRange timeRangeFor(int sequenceNumber) {
+        if (!searchable) {
+            return timeRangeEntryByEntry(sequenceNumber);
+        }
+        int low = 0;
+        int high = boundedEntries - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (sequenceNumber <= feedsBefore[middle + 1]) {
+                found = middle;
+                high = middle - 1;
+            } else {
+                low = middle + 1;
+            }
+        }
+        if (found >= 0) {
+            return entries[found].getTimeRangeForChunk(sequenceNumber - (int) feedsBefore[found]);
+        }
+        if (unboundedEntry != null) {
+            return unboundedEntry.getTimeRangeForChunk(sequenceNumber - (int) feedsBefore[boundedEntries]);
+        }
+        throw new AtomFeedRuntimeException(String.format("The sequence number:%d lies in future", sequenceNumber));
+    }
+
+    private TimeRange timeRangeEntryByEntry(int sequenceNumber) {
+        int feedsSoFar = 0;
+        for (TimeChunkingHistoryEntry entry : entries) {
+            if (entry.isUnbounded() || sequenceNumber <= entry.numberOfFeeds() + feedsSoFar) {
+                return entry.getTimeRangeForChunk(sequenceNumber - feedsSoFar);
+            }
+            feedsSoFar += entry.numberOfFeeds();
+        }
+        throw new AtomFeedRuntimeException(String.format("The sequence number:%d lies in future", sequenceNumber));
+    }
+}
@@ -0,0 +1,10 @@
+package org.ict4h.atomfeed.server.exceptions;
+
+/**
+ * Thrown when the feed, or the part of a feed, asked for does not exist, e.g. a feed beyond the latest one.
+ */
+public class FeedNotFoundException extends AtomFeedRuntimeException {
+    public FeedNotFoundException(String message) {
+        super(message);
+    }
+}
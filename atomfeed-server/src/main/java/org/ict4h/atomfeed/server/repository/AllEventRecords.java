@@ -3,12 +3,19 @@ package org.ict4h.atomfeed.server.repository;
 import java.util.List;
 
 import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.EventRecordKey;
+import org.ict4h.atomfeed.server.domain.EventRecordsSummary;
 import org.ict4h.atomfeed.server.domain.chunking.time.TimeRange;
 import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
 
 /**
  * The interface {@code AllEventRecords} contains methods to perform {@code EventRecord} retrieval and
  * addition.
+ * <p>
+ * Where a category is taken to read events, it may be a {@link org.ict4h.atomfeed.server.domain.CategorySet category set},
+ * matching the events of any of its categories; except for sequence ranges, as events are not numbered across a set.
+ * It may also be a {@link org.ict4h.atomfeed.server.domain.CategoryTag category with a tag}, matching the events of the
+ * category with the tag, numbered among themselves; implementations index the tags of the events they add for it.
  */
 public interface AllEventRecords {
 
@@ -19,6 +26,14 @@ public interface AllEventRecords {
      */
 	void add(EventRecord eventRecord);
 
+    /**
+     * Adds {@code EventRecord}s to the underlying data store, numbered in the order given as if added one at a time.
+     * Implementations are expected to write them together, e.g. in a batch, rather than one at a time.
+     * @param eventRecords the {@code EventRecord}s to be created
+     * @throws AtomFeedRuntimeException when creation of the {@code EventRecord}s is not successful
+     */
+    void add(List<EventRecord> eventRecords);
+
     /**
      * Fetches an {@code EventRecord} that is identified by an unique {@code UUID}
      * @param uuid that uniquely identifies an {@code EventRecord}
@@ -30,6 +45,7 @@ public interface AllEventRecords {
 
     /**
      * Retrieves the total count of {@code EventRecord} entities present in the underlying data store that are associated with {@code String} category.
+     * Implementations are expected to answer it without counting the events, e.g. from a count maintained on {@link #add(EventRecord)}.
      * @param category an {@code String} that refers to the category that a {@code EventRecord} is associated with.
      * @return An {@code Integer} count of the total number of {@code EventRecord} entities present.
      * @throws AtomFeedRuntimeException
@@ -48,6 +64,67 @@ public interface AllEventRecords {
      */
     List<EventRecord> getEventsFromRangeForCategory(String category, Integer offset, Integer limit, Integer startId);
 
+    /**
+     * Finds the id of an {@code EventRecord} by its position after a given id, reading only ids.
+     *
+     * @param category an {@code String} that refers to the category that an {@code EventRecord} is associated with.
+     * @param afterId an {@code Integer} id that the position is counted from, exclusive.
+     * @param position an {@code int} that refers to the position of the event after {@code afterId} in the category, ordered by Identity, starting at 1.
+     * @return the id of the {@code EventRecord} at the position, or null if there are fewer events after {@code afterId}
+     * @throws AtomFeedRuntimeException
+     */
+    Integer findIdOfEventAfter(String category, Integer afterId, int position);
+
+    /**
+     * Fetches a {@code List} of {@code EventRecord} whose sequence number lies between {@code Integer} fromSeq and
+     * {@code Integer} toSeq (both inclusive), ordered by sequence number. Events are numbered without gaps when they are added,
+     * per category and across all categories, so a feed is a range of sequence numbers irrespective of how deep it is.
+     *
+     * @param category an {@code String} that refers to the category that an {@code EventRecord} is associated with, if blank considers all categories.
+     * @param fromSeq the first sequence number of the range
+     * @param toSeq the last sequence number of the range
+     * @return {@code List} of {@code EventRecord}
+     * @throws AtomFeedRuntimeException
+     */
+    List<EventRecord> getEventsFromSequenceRange(String category, Integer fromSeq, Integer toSeq);
+
+    /**
+     * Passes the {@code EventRecord} entities whose sequence number lies between {@code Integer} fromSeq and
+     * {@code Integer} toSeq (both inclusive) to the handler, ordered by sequence number, as they are read off a cursor.
+     *
+     * @param category an {@code String} that refers to the category that an {@code EventRecord} is associated with, if blank considers all categories.
+     * @param fromSeq the first sequence number of the range
+     * @param toSeq the last sequence number of the range
+     * @param handler receives each {@code EventRecord}, while the cursor is open
+     * @throws AtomFeedRuntimeException
+     */
+    void forEachEventInSequenceRange(String category, Integer fromSeq, Integer toSeq, EventRecordHandler handler);
+
+    /**
+     * Passes at most {@code int} limit {@code EventRecord} entities with an id greater than {@code Integer} afterId to the
+     * handler, ordered by Identity, as they are read off a forward only cursor. The events are found through the id,
+     * not by skipping the ones before it, so reading on from the last id passed costs the same however far in it is.
+     *
+     * @param category an {@code String} that refers to the category that an {@code EventRecord} is associated with, if blank considers all categories.
+     * @param afterId the id to start after, exclusive
+     * @param limit the maximum number of {@code EventRecord} to pass
+     * @param handler receives each {@code EventRecord}, while the cursor is open
+     * @throws AtomFeedRuntimeException
+     */
+    void forEachEventAfter(String category, Integer afterId, int limit, EventRecordHandler handler);
+
+    /**
+     * Summarizes the {@code EventRecord} entities whose sequence number lies between {@code Integer} fromSeq and
+     * {@code Integer} toSeq (both inclusive) without reading them.
+     *
+     * @param category an {@code String} that refers to the category that an {@code EventRecord} is associated with, if blank considers all categories.
+     * @param fromSeq the first sequence number of the range
+     * @param toSeq the last sequence number of the range
+     * @return the newest event id and timestamp of the range
+     * @throws AtomFeedRuntimeException
+     */
+    EventRecordsSummary getSummaryOfSequenceRange(String category, Integer fromSeq, Integer toSeq);
+
     /**
      * Fetches a {@code List} of {@code EventRecord} from the underlying data store that lie within a {@code TimeRange}.
      *
@@ -58,6 +135,39 @@ public interface AllEventRecords {
      */
     List<EventRecord> getEventsFromTimeRange(TimeRange timeRange, String category);
 
+    /**
+     * Fetches at most {@code int} limit {@code EventRecord} entities that lie within a {@code TimeRange}, ordered by
+     * timestamp and id, starting after the given key. The events are found through the key, not by skipping the ones before it.
+     *
+     * @param timeRange a {@code TimeRange} that specifies the time range.
+     * @param category an {@code String} that refers to the category that an {@code EventRecord} is associated with, if blank considers all categories.
+     * @param after the key of the event to start after, exclusive, or null to start at the beginning of the time range
+     * @param limit the maximum number of {@code EventRecord} to fetch
+     * @return {@code List} of {@code EventRecord}
+     * @throws AtomFeedRuntimeException
+     */
+    List<EventRecord> getEventsFromTimeRange(TimeRange timeRange, String category, EventRecordKey after, int limit);
+
+    /**
+     * Finds the key of an {@code EventRecord} by its position within a {@code TimeRange}, reading only keys.
+     *
+     * @param timeRange a {@code TimeRange} that specifies the time range.
+     * @param category an {@code String} that refers to the category that an {@code EventRecord} is associated with, if blank considers all categories.
+     * @param position the position of the event in the time range, ordered by timestamp and id, starting at 1
+     * @return the key of the {@code EventRecord} at the position, or null if there are fewer events in the time range
+     * @throws AtomFeedRuntimeException
+     */
+    EventRecordKey findKeyOfEventInTimeRange(TimeRange timeRange, String category, int position);
+
+    /**
+     * Retrieves the count of {@code EventRecord} entities that lie within a {@code TimeRange}.
+     *
+     * @param timeRange a {@code TimeRange} that specifies the time range.
+     * @param category an {@code String} that refers to the category that an {@code EventRecord} is associated with, if blank considers all categories.
+     * @throws AtomFeedRuntimeException
+     */
+    int getCountOfEventsInTimeRange(TimeRange timeRange, String category);
+
     /**
      * Retrieves the total count of {@code EventRecord} entities based on a category
      * @param category an {@code String} that refers to the category that a {@code EventRecord} is associated with, if null considers all categories.
@@ -70,4 +180,11 @@ public interface AllEventRecords {
 
 
     List<String> findCategories();
-}
\ No newline at end of file
+
+    /**
+     * Indexes the tags of all the published events afresh, numbering the events of each category with a tag in the
+     * order they were published, as {@link #add(List)} does. Meant for the events published before their tags were
+     * indexed, after an upgrade; it reads all the events, so it should run in a transaction, with publishing paused.
+     */
+    void rebuildTags();
+}
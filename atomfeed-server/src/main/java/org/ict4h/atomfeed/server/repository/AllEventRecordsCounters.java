@@ -0,0 +1,40 @@
+package org.ict4h.atomfeed.server.repository;
+
+import org.ict4h.atomfeed.server.domain.EventRecordsCounter;
+
+import java.util.List;
+
+/**
+ * The number of published events per category. The count across all categories is kept under the empty
+ * category, which is also what a blank category refers to.
+ * <p>
+ * The counters number the events as they are added, so a count is the last sequence number taken in its category.
+ * It is the number of events of the category unless some have been deleted since.
+ */
+public interface AllEventRecordsCounters {
+
+    int getCount(String category);
+
+    /**
+     * Adds to the count of a category, creating the counter if need be. Must be called in the transaction that
+     * adds the events, as the counter row lock is what orders concurrent publishers.
+     *
+     * @return the count of the category after the increment
+     */
+    int increment(String category, int by);
+
+    List<EventRecordsCounter> getAll();
+
+    /**
+     * Reads the last sequence number of each category, and across all categories, off the published events.
+     *
+     * @return what the counters should be, without the categories that have no events
+     */
+    List<EventRecordsCounter> findLastSequenceNumbers();
+
+    /**
+     * Resets all counters to the last sequence numbers of the published events, so that the events added next are
+     * numbered after them even where events have been deleted.
+     */
+    void rebuild();
+}
@@ -7,4 +7,15 @@ import java.util.List;
 public interface AllEventRecordsOffsetMarkers {
     void addOrUpdate(String category, Integer offsetId, Integer countTillOffSetId);
     List<EventRecordsOffsetMarker> getAll();
+
+    /**
+     * @return the marker of the category (matched ignoring case, blank for all categories), or null if there is none
+     */
+    EventRecordsOffsetMarker get(String category);
+
+    /**
+     * @return a value that changes whenever a marker is added or moved, cheap enough to be checked instead of
+     * reading the markers again
+     */
+    String getVersion();
 }
@@ -32,5 +32,21 @@ public interface AllEventRecordsQueue {
 
     List<EventRecordQueueItem> getAll();
 
+    /**
+     * Takes the oldest {@code EventRecordQueueItem}s that no other transaction has taken, holding them until the
+     * transaction ends, so that several nodes draining the queue are not handed the same items. Items taken are to be
+     * deleted in the same transaction.
+     * <p>
+     * Where the database cannot skip the items other transactions hold, it waits for them instead.
+     * @param limit the number of items to take at most
+     */
+    List<EventRecordQueueItem> claim(int limit);
+
     void delete(String uuid);
+
+    /**
+     * Deletes the {@code EventRecordQueueItem}s, such as those taken with {@link #claim(int)}, by their ids rather than
+     * one at a time.
+     */
+    void delete(List<EventRecordQueueItem> eventRecordQueueItems);
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package org.ict4h.atomfeed.server.repository;
+
+import java.util.Date;
+
+/**
+ * The time windows that events were published in, per category, so that time chunked feeds can link past the
+ * feeds that have no events. A window is a minute of event timestamps, identified by its start; the windows
+ * across all categories are kept under the empty category, which is also what a blank category refers to. The windows
+ * of a {@link org.ict4h.atomfeed.server.domain.CategorySet category set} are those of any of its categories.
+ * <p>
+ * Windows are not aligned with the chunks, so a window holding events tells which feeds may have events, not which do.
+ */
+public interface AllEventRecordsTimeWindows {
+
+    long WINDOW_MILLIS = 60 * 1000;
+
+    /**
+     * Records the window of an event's timestamp for a category. Must be called in the transaction that adds the
+     * event, after the event counters are incremented, as the counter row lock is what orders concurrent publishers.
+     */
+    void mark(String category, Date timestamp);
+
+    /**
+     * @return the start of the first window holding events at or after the time, null if there is none
+     */
+    Date findFirstWindowFrom(String category, Date time);
+
+    /**
+     * @return the start of the last window holding events before the time, null if there is none
+     */
+    Date findLastWindowBefore(String category, Date time);
+}
@@ -0,0 +1,107 @@
+package org.ict4h.atomfeed.server.repository;
+
+import org.ict4h.atomfeed.server.domain.EventRecordsOffsetMarker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps the offset markers in memory, so that looking up the marker of a category on every feed request does not
+ * read the markers from the database.
+ * <p>
+ * Markers updated through this instance are reloaded on the next lookup. Markers updated by other nodes are picked
+ * up by comparing the {@link AllEventRecordsOffsetMarkers#getVersion() version} of the markers, at most once per
+ * check interval. A marker that is a little out of date is still correct (the count of events up to an event id
+ * does not change), it only saves less of the offset.
+ */
+public class CachingAllEventRecordsOffsetMarkers implements AllEventRecordsOffsetMarkers {
+    public static final long DEFAULT_CHECK_INTERVAL_MILLIS = 5000;
+
+    private final AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers;
+    private final long checkIntervalMillis;
+    private volatile Markers markers;
+
+    public CachingAllEventRecordsOffsetMarkers(AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers) {
+        this(allEventRecordsOffsetMarkers, DEFAULT_CHECK_INTERVAL_MILLIS);
+    }
+
+    public CachingAllEventRecordsOffsetMarkers(AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers, long checkIntervalMillis) {
+        if (checkIntervalMillis < 0) {
+            throw new IllegalArgumentException("checkIntervalMillis must not be negative");
+        }
+        this.allEventRecordsOffsetMarkers = allEventRecordsOffsetMarkers;
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    @Override
+    public void addOrUpdate(String category, Integer offsetId, Integer countTillOffSetId) {
+        allEventRecordsOffsetMarkers.addOrUpdate(category, offsetId, countTillOffSetId);
+        invalidate();
+    }
+
+    @Override
+    public List<EventRecordsOffsetMarker> getAll() {
+        return new ArrayList<>(current().byCategory.values());
+    }
+
+    @Override
+    public EventRecordsOffsetMarker get(String category) {
+        return current().byCategory.get(keyFor(category));
+    }
+
+    @Override
+    public String getVersion() {
+        return allEventRecordsOffsetMarkers.getVersion();
+    }
+
+    public void invalidate() {
+        markers = null;
+    }
+
+    private Markers current() {
+        Markers current = markers;
+        long now = System.currentTimeMillis();
+        if (current == null) {
+            return load(now);
+        }
+        if (now - current.checkedAt >= checkIntervalMillis) {
+            if (!current.version.equals(allEventRecordsOffsetMarkers.getVersion())) {
+                return load(now);
+            }
+            current.checkedAt = now;
+        }
+        return current;
+    }
+
+    //The version is read before the markers, so that a marker moved in between is reloaded at the next check.
+    private Markers load(long now) {
+        String version = allEventRecordsOffsetMarkers.getVersion();
+        Map<String, EventRecordsOffsetMarker> byCategory = new HashMap<>();
+        for (EventRecordsOffsetMarker marker : allEventRecordsOffsetMarkers.getAll()) {
+            byCategory.put(keyFor(marker.getCategory()), marker);
+        }
+        Markers loaded = new Markers(version, Collections.unmodifiableMap(byCategory), now);
+        markers = loaded;
+        return loaded;
+    }
+
+    private static String keyFor(String category) {
+        return category == null ? "" : category.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static class Markers {
+        private final String version;
+        private final Map<String, EventRecordsOffsetMarker> byCategory;
+        private volatile long checkedAt;
+
+        private Markers(String version, Map<String, EventRecordsOffsetMarker> byCategory, long checkedAt) {
+            this.version = version;
+            this.byCategory = byCategory;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
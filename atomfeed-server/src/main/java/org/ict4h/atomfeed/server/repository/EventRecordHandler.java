@@ -0,0 +1,10 @@
+package org.ict4h.atomfeed.server.repository;
+
+import org.ict4h.atomfeed.server.domain.EventRecord;
+
+/**
+ * Receives events one at a time as they are read, so that they need not be held in memory all at once.
+ */
+public interface EventRecordHandler {
+    void handle(EventRecord eventRecord);
+}
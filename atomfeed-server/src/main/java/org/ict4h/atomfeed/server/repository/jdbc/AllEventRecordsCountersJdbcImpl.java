@@ -0,0 +1,167 @@
+package org.ict4h.atomfeed.server.repository.jdbc;
+
+import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
+import org.ict4h.atomfeed.jdbc.JdbcResultSetMapper;
+import org.ict4h.atomfeed.jdbc.StatementTemplates;
+import org.ict4h.atomfeed.server.domain.EventRecordsCounter;
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsCounters;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+public class AllEventRecordsCountersJdbcImpl implements AllEventRecordsCounters {
+
+    public static final String EVENT_RECORDS_COUNTER = "event_records_counter";
+    private static final String ALL_CATEGORIES = "";
+
+    //Events without a category are numbered with their all-categories sequence number, so they only move that one.
+    private static final String LAST_SEQUENCE_NUMBERS = "select category, max(category_seq) as event_count from %s " +
+            "where category is not null and ltrim(rtrim(category)) <> '' group by category " +
+            "union all select '', max(seq) from %s having count(*) > 0";
+
+    private JdbcConnectionProvider provider;
+    private final StatementTemplates statements;
+
+    public AllEventRecordsCountersJdbcImpl(JdbcConnectionProvider provider) {
+        this.provider = provider;
+        this.statements = new StatementTemplates()
+                .add("count", "select event_count from %s where category = ?", EVENT_RECORDS_COUNTER)
+                .add("increment", "update %s set event_count = event_count + ? where category = ?", EVENT_RECORDS_COUNTER)
+                .add("insert", "insert into %s (category, event_count) values (?, ?)", EVENT_RECORDS_COUNTER)
+                .add("getAll", "select category, event_count from %s", EVENT_RECORDS_COUNTER)
+                .add("lastSequenceNumbers", LAST_SEQUENCE_NUMBERS, "event_records", "event_records")
+                .add("deleteAll", "delete from %s", EVENT_RECORDS_COUNTER)
+                .add("insertLastSequenceNumbers", "insert into %s (category, event_count) " + LAST_SEQUENCE_NUMBERS,
+                        EVENT_RECORDS_COUNTER, "event_records", "event_records");
+    }
+
+    @Override
+    public int getCount(String category) {
+        try {
+            return getCount(provider.getConnection(), counterCategory(category));
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        }
+    }
+
+    /**
+     * The update takes the lock on the counter row before the count is read back, so concurrent publishers of a
+     * category are serialized on it. The first publisher of a new category inserts the row; a concurrent one
+     * doing the same fails on the primary key and rolls back.
+     */
+    @Override
+    public int increment(String category, int by) {
+        String counterCategory = counterCategory(category);
+        PreparedStatement stmt = null;
+        try {
+            Connection connection = provider.getConnection();
+            stmt = connection.prepareStatement(statements.get("increment"));
+            stmt.setInt(1, by);
+            stmt.setString(2, counterCategory);
+            if (stmt.executeUpdate() == 0) {
+                close(stmt);
+                stmt = connection.prepareStatement(statements.get("insert"));
+                stmt.setString(1, counterCategory);
+                stmt.setInt(2, by);
+                stmt.executeUpdate();
+                return by;
+            }
+            return getCount(connection, counterCategory);
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            close(stmt);
+        }
+    }
+
+    @Override
+    public List<EventRecordsCounter> getAll() {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            Connection connection = provider.getConnection();
+            stmt = connection.prepareStatement(statements.get("getAll"));
+            rs = stmt.executeQuery();
+            return new JdbcResultSetMapper<EventRecordsCounter>().mapResultSetToObject(rs, EventRecordsCounter.class);
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(stmt, rs);
+        }
+    }
+
+    @Override
+    public List<EventRecordsCounter> findLastSequenceNumbers() {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            Connection connection = provider.getConnection();
+            stmt = connection.prepareStatement(statements.get("lastSequenceNumbers"));
+            rs = stmt.executeQuery();
+            return new JdbcResultSetMapper<EventRecordsCounter>().mapResultSetToObject(rs, EventRecordsCounter.class);
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(stmt, rs);
+        }
+    }
+
+    @Override
+    public void rebuild() {
+        try {
+            Connection connection = provider.getConnection();
+            execute(connection, statements.get("deleteAll"));
+            execute(connection, statements.get("insertLastSequenceNumbers"));
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        }
+    }
+
+    private int getCount(Connection connection, String counterCategory) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = connection.prepareStatement(statements.get("count"));
+            stmt.setString(1, counterCategory);
+            rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        } finally {
+            closeAll(stmt, rs);
+        }
+    }
+
+    private void execute(Connection connection, String sql) throws SQLException {
+        PreparedStatement stmt = null;
+        try {
+            stmt = connection.prepareStatement(sql);
+            stmt.executeUpdate();
+        } finally {
+            close(stmt);
+        }
+    }
+
+    private String counterCategory(String category) {
+        return isBlank(category) ? ALL_CATEGORIES : category;
+    }
+
+    private void closeAll(PreparedStatement stmt, ResultSet rs) {
+        close(rs);
+        close(stmt);
+    }
+
+    private void close(AutoCloseable rs) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+        } catch (Exception e) {
+            throw new AtomFeedRuntimeException(e);
+        }
+    }
+}
@@ -3,52 +3,324 @@ package org.ict4h.atomfeed.server.repository.jdbc;
 import org.ict4h.atomfeed.Configuration;
 import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
 import org.ict4h.atomfeed.jdbc.JdbcResultSetMapper;
-import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.jdbc.StatementTemplates;
+import org.ict4h.atomfeed.jdbc.dialect.DetectedSqlDialect;
+import org.ict4h.atomfeed.jdbc.dialect.SqlDialect;
+import org.ict4h.atomfeed.server.domain.CategorySet;
+import org.ict4h.atomfeed.server.domain.CategoryTag;
 import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.EventRecordKey;
+import org.ict4h.atomfeed.server.domain.EventRecordsSummary;
 import org.ict4h.atomfeed.server.domain.chunking.time.TimeRange;
 import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
 import org.ict4h.atomfeed.server.repository.AllEventRecords;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsCounters;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsTimeWindows;
+import org.ict4h.atomfeed.server.repository.EventRecordHandler;
 
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.repeat;
 
 public class AllEventRecordsJdbcImpl implements AllEventRecords {
 
-    private static final String FIELD_LIST = "id, uuid, title, timestamp, uri, object, date_created, category, tags";
+    private static final String FIELD_LIST = "id, uuid, title, timestamp, uri, object, date_created, category, tags, seq, category_seq";
+    private static final List<String> INSERT_COLUMNS = Arrays.asList("uuid", "title", "uri", "object", "category", "date_created",
+            "tags", "seq", "category_seq");
 
     private JdbcConnectionProvider provider;
+    private AllEventRecordsCounters allEventRecordsCounters;
+    private AllEventRecordsTimeWindows allEventRecordsTimeWindows;
+    private final StatementTemplates statements;
+    private final SqlDialect dialect;
+    //The inserts of several rows, by their number of rows, found from the dialect the first time each is needed.
+    private final Map<Integer, String> insertSqls = new ConcurrentHashMap<>();
 
     public AllEventRecordsJdbcImpl(JdbcConnectionProvider provider) {
+        this(provider, new AllEventRecordsCountersJdbcImpl(provider));
+    }
+
+    public AllEventRecordsJdbcImpl(JdbcConnectionProvider provider, AllEventRecordsCounters allEventRecordsCounters) {
+        this(provider, allEventRecordsCounters, new AllEventRecordsTimeWindowsJdbcImpl(provider));
+    }
+
+    /**
+     * @param allEventRecordsTimeWindows where the time windows of added events are recorded. They are recorded whatever
+     *                                   the chunking strategy, so that feeds can be chunked by time later on without
+     *                                   missing the events published until then.
+     */
+    public AllEventRecordsJdbcImpl(JdbcConnectionProvider provider, AllEventRecordsCounters allEventRecordsCounters,
+                                   AllEventRecordsTimeWindows allEventRecordsTimeWindows) {
+        this(provider, allEventRecordsCounters, allEventRecordsTimeWindows, new DetectedSqlDialect(provider));
+    }
+
+    public AllEventRecordsJdbcImpl(JdbcConnectionProvider provider, AllEventRecordsCounters allEventRecordsCounters,
+                                   AllEventRecordsTimeWindows allEventRecordsTimeWindows, SqlDialect dialect) {
         this.provider = provider;
+        this.dialect = dialect;
+        this.allEventRecordsCounters = allEventRecordsCounters;
+        this.allEventRecordsTimeWindows = allEventRecordsTimeWindows;
+        this.statements = new StatementTemplates()
+                .add("insertTag", "insert into %s (category, tag, tag_seq, event_record_id) select ?, ?, ?, id from %s where seq = ?",
+                        "event_record_tags", "event_records")
+                .add("tagCount", "select max(tag_seq) from %s where category = ? and tag = ?", "event_record_tags")
+                .add("deleteTags", "delete from %s", "event_record_tags")
+                .add("taggedEvents", "select id, category, tags from %s where tags is not null order by id asc", "event_records")
+                .add("reindexTag", "insert into %s (category, tag, tag_seq, event_record_id) values (?, ?, ?, ?)", "event_record_tags")
+                .add("timestampsOfSeq", "select category, timestamp from %s where seq between ? and ?", "event_records")
+                .add("get", "select " + FIELD_LIST + " from %s where uuid = ?", "event_records")
+                .add("count", "select count(id) from %s where 1=1", "event_records")
+                .add("categories", "select distinct category from %s", "event_records")
+                .add("from", " from %s where", "event_records")
+                .add("tagCriteria", " category = ? and id in (select event_record_id from %s where category = ? and tag = ?)", "event_record_tags");
+        addSequenceRangeStatements("events", "select " + FIELD_LIST, true);
+        addSequenceRangeStatements("summary", "select max(id), max(timestamp)", false);
+    }
+
+    //The events of a sequence range are read by number, of all categories, of a category or of a category with a tag.
+    private void addSequenceRangeStatements(String name, String select, boolean ordered) {
+        statements.add(name + "OfSeq", select + " from %s where seq between ? and ?" + (ordered ? " order by seq asc" : ""), "event_records")
+                .add(name + "OfCategorySeq", select + " from %s where category = ? and category_seq between ? and ?"
+                        + (ordered ? " order by category_seq asc" : ""), "event_records")
+                .add(name + "OfTagSeq", select + " from %s where id in (select event_record_id from %s where category = ? and tag = ? and tag_seq between ? and ?)"
+                        + (ordered ? " order by id asc" : ""), "event_records", "event_record_tags");
     }
 
     @Override
     public void add(EventRecord eventRecord) {
+        add(Collections.singletonList(eventRecord));
+    }
+
+    /**
+     * Numbers the events with one increment of each counter they move, then inserts them in one batch and indexes
+     * their tags in another. Where the database takes several rows in one insert, the batch is of inserts of as many
+     * rows as it takes, the events left over going in a few smaller inserts.
+     */
+    @Override
+    public void add(List<EventRecord> eventRecords) {
+        if (eventRecords.isEmpty()) {
+            return;
+        }
         Connection connection = null;
         PreparedStatement stmt = null;
         try {
             connection = provider.getConnection();
-            String insertSql = String.format("insert into %s (uuid, title, uri, object,category, date_created, tags) values (?, ?, ?, ?, ?, ?, ?)",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records"));
-            stmt = connection.prepareStatement(insertSql);
-            stmt.setString(1, eventRecord.getUuid());
-            stmt.setString(2, eventRecord.getTitle());
-            stmt.setString(3, eventRecord.getUri());
-            stmt.setString(4, eventRecord.getContents());
-            stmt.setString(5, eventRecord.getCategory());
-            stmt.setTimestamp(6, getSqlTimeStamp(eventRecord));
-            stmt.setString(7, eventRecord.getTags());
-            stmt.executeUpdate();
+            //The counters double as the sequence numbers: the n-th event of a category is numbered n.
+            //Events without a category are numbered with their all-categories sequence number.
+            int lastSeq = allEventRecordsCounters.increment(null, eventRecords.size());
+            int firstSeq = lastSeq - eventRecords.size() + 1;
+            Map<String, Integer> categorySeqs = firstCategorySeqs(eventRecords);
+            //Inserts take a power of two rows, so that only a few statements are ever prepared.
+            int maxRows = Integer.highestOneBit(dialect.maxRowsPerInsert(INSERT_COLUMNS.size()));
+            int from = 0;
+            while (from < eventRecords.size()) {
+                int rows = Integer.highestOneBit(Math.min(maxRows, eventRecords.size() - from));
+                stmt = connection.prepareStatement(insertSql(rows));
+                do {
+                    for (int row = 0; row < rows; row++) {
+                        bindRow(stmt, row * INSERT_COLUMNS.size(), eventRecords.get(from + row), firstSeq + from + row, categorySeqs);
+                    }
+                    stmt.addBatch();
+                    from += rows;
+                } while (eventRecords.size() - from >= rows);
+                stmt.executeBatch();
+                close(stmt);
+                stmt = null;
+            }
+            indexTags(connection, firstSeq, eventRecords);
+            markTimeWindows(connection, firstSeq, lastSeq);
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            close(stmt);
+        }
+    }
+
+    private String insertSql(int rows) {
+        String sql = insertSqls.get(rows);
+        if (sql == null) {
+            sql = dialect.insertRows(statements.table("event_records"), INSERT_COLUMNS, rows);
+            insertSqls.put(rows, sql);
+        }
+        return sql;
+    }
+
+    //Binds the columns of an event after the given number of parameters, taking the next number of its category.
+    private void bindRow(PreparedStatement stmt, int offset, EventRecord eventRecord, int seq, Map<String, Integer> categorySeqs)
+            throws SQLException {
+        String category = eventRecord.getCategory();
+        int categorySeq = seq;
+        if (!isBlank(category)) {
+            categorySeq = categorySeqs.get(category);
+            categorySeqs.put(category, categorySeq + 1);
+        }
+        stmt.setString(offset + 1, eventRecord.getUuid());
+        stmt.setString(offset + 2, eventRecord.getTitle());
+        stmt.setString(offset + 3, eventRecord.getUri());
+        stmt.setString(offset + 4, eventRecord.getContents());
+        stmt.setString(offset + 5, category);
+        stmt.setTimestamp(offset + 6, getSqlTimeStamp(eventRecord));
+        stmt.setString(offset + 7, eventRecord.getTags());
+        stmt.setInt(offset + 8, seq);
+        stmt.setInt(offset + 9, categorySeq);
+    }
+
+    //Takes the numbers of the events of each category with one increment of its counter, in the order the categories
+    //first appear, and answers the first number of each.
+    private Map<String, Integer> firstCategorySeqs(List<EventRecord> eventRecords) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (EventRecord eventRecord : eventRecords) {
+            String category = eventRecord.getCategory();
+            if (!isBlank(category)) {
+                Integer count = counts.get(category);
+                counts.put(category, count == null ? 1 : count + 1);
+            }
+        }
+        Map<String, Integer> firstSeqs = new HashMap<>();
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            firstSeqs.put(count.getKey(), allEventRecordsCounters.increment(count.getKey(), count.getValue()) - count.getValue() + 1);
+        }
+        return firstSeqs;
+    }
+
+    //The events of a category with a tag are numbered like those of a category. Publishers are serialized by the
+    //all-categories counter, so the next number is the highest one so far plus one.
+    private void indexTags(Connection connection, int firstSeq, List<EventRecord> eventRecords) throws SQLException {
+        Map<String, Integer> tagCounts = new HashMap<>();
+        PreparedStatement stmt = null;
+        try {
+            int seq = firstSeq;
+            for (EventRecord eventRecord : eventRecords) {
+                String category = eventRecord.getCategory();
+                for (String tag : isBlank(category) ? Collections.<String>emptySet() : eventRecord.getTagTerms()) {
+                    String categoryTag = CategoryTag.of(category, tag);
+                    Integer tagCount = tagCounts.get(categoryTag);
+                    tagCount = (tagCount == null ? getTagCount(connection, category, tag) : tagCount) + 1;
+                    tagCounts.put(categoryTag, tagCount);
+                    if (stmt == null) {
+                        stmt = connection.prepareStatement(statements.get("insertTag"));
+                    }
+                    stmt.setString(1, category);
+                    stmt.setString(2, tag);
+                    stmt.setInt(3, tagCount);
+                    stmt.setInt(4, seq);
+                    stmt.addBatch();
+                }
+                seq++;
+            }
+            if (stmt != null) {
+                stmt.executeBatch();
+            }
+        } finally {
+            close(stmt);
+        }
+    }
+
+    private int getTagCount(Connection connection, String category, String tag) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = connection.prepareStatement(statements.get("tagCount"));
+            stmt.setString(1, category);
+            stmt.setString(2, tag);
+            rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        } finally {
+            closeAll(stmt, rs);
+        }
+    }
+
+    /**
+     * Reads the events through in the order of their ids, which is the order they were numbered in on publish, and
+     * inserts their tags in batches of the publish chunk size.
+     */
+    @Override
+    public void rebuildTags() {
+        PreparedStatement events = null;
+        PreparedStatement insert = null;
+        ResultSet rs = null;
+        try {
+            Connection connection = provider.getConnection();
+            execute(connection, statements.get("deleteTags"));
+            events = connection.prepareStatement(statements.get("taggedEvents"), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            events.setFetchSize(Configuration.getInstance().getFetchSize());
+            rs = events.executeQuery();
+            insert = connection.prepareStatement(statements.get("reindexTag"));
+            int batchSize = Configuration.getInstance().getPublishChunkSize();
+            int batched = 0;
+            Map<String, Integer> tagCounts = new HashMap<>();
+            JdbcResultSetMapper<EventRecord> mapper = new JdbcResultSetMapper<>();
+            while (rs.next()) {
+                EventRecord eventRecord = mapper.mapCurrentRow(rs, EventRecord.class);
+                String category = eventRecord.getCategory();
+                for (String tag : isBlank(category) ? Collections.<String>emptySet() : eventRecord.getTagTerms()) {
+                    String categoryTag = CategoryTag.of(category, tag);
+                    Integer tagCount = tagCounts.get(categoryTag);
+                    tagCount = tagCount == null ? 1 : tagCount + 1;
+                    tagCounts.put(categoryTag, tagCount);
+                    insert.setString(1, category);
+                    insert.setString(2, tag);
+                    insert.setInt(3, tagCount);
+                    insert.setInt(4, eventRecord.getId());
+                    insert.addBatch();
+                    if (++batched == batchSize) {
+                        insert.executeBatch();
+                        batched = 0;
+                    }
+                }
+            }
+            if (batched > 0) {
+                insert.executeBatch();
+            }
         } catch (SQLException e) {
             throw new AtomFeedRuntimeException(e);
+        } finally {
+            close(insert);
+            closeAll(events, rs);
+        }
+    }
+
+    private void execute(Connection connection, String sql) throws SQLException {
+        PreparedStatement stmt = null;
+        try {
+            stmt = connection.prepareStatement(sql);
+            stmt.executeUpdate();
         } finally {
             close(stmt);
         }
     }
 
+    //The timestamps are set by the database on insert, so they are read back to find the windows of the events. Each
+    //window is marked once per category however many of the events fall in it.
+    private void markTimeWindows(Connection connection, int firstSeq, int lastSeq) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = connection.prepareStatement(statements.get("timestampsOfSeq"));
+            stmt.setInt(1, firstSeq);
+            stmt.setInt(2, lastSeq);
+            rs = stmt.executeQuery();
+            Set<String> marked = new HashSet<>();
+            while (rs.next()) {
+                String category = rs.getString(1);
+                Timestamp timestamp = rs.getTimestamp(2);
+                long window = timestamp.getTime() / AllEventRecordsTimeWindows.WINDOW_MILLIS;
+                if (marked.add(window + " ")) {
+                    allEventRecordsTimeWindows.mark(null, timestamp);
+                }
+                if (!isBlank(category) && marked.add(window + " " + category)) {
+                    allEventRecordsTimeWindows.mark(category, timestamp);
+                }
+            }
+        } finally {
+            closeAll(stmt, rs);
+        }
+    }
+
     private Timestamp getSqlTimeStamp(EventRecord eventRecord) {
         java.util.Date timeStamp = eventRecord.getDateCreated();
         if (timeStamp == null) {
@@ -64,9 +336,7 @@ public class AllEventRecordsJdbcImpl implements AllEventRecords {
         ResultSet rs = null;
         try {
             connection = provider.getConnection();
-            String sql = String.format("select " + FIELD_LIST + " from %s where uuid = ?",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records"));
-            stmt = connection.prepareStatement(sql);
+            stmt = connection.prepareStatement(statements.get("get"));
             stmt.setString(1, uuid);
             rs = stmt.executeQuery();
             List<EventRecord> events = mapEventRecords(rs);
@@ -97,50 +367,150 @@ public class AllEventRecordsJdbcImpl implements AllEventRecords {
     }
 
 
+    /**
+     * Reads the count maintained on {@link #add(EventRecord)} rather than counting the events; the count of a category
+     * set is the sum of the counts of its categories, and that of a category with a tag is the number of its last event.
+     */
     @Override
     public int getTotalCountForCategory(String category) {
-        Connection connection;
-        PreparedStatement stmt = null;
+        if (CategoryTag.isTagged(category)) {
+            try {
+                return getTagCount(provider.getConnection(), CategoryTag.categoryOf(category), CategoryTag.tagOf(category));
+            } catch (SQLException e) {
+                throw new AtomFeedRuntimeException(e);
+            }
+        }
+        if (!CategorySet.isSet(category)) {
+            return allEventRecordsCounters.getCount(category);
+        }
+        int count = 0;
+        for (String member : CategorySet.membersOf(category)) {
+            count += allEventRecordsCounters.getCount(member);
+        }
+        return count;
+    }
+
+    @Override
+    //TODO: Offset - Cannot be negative for initial feed with no entries. Fix this
+    //TODO: Order By is required to ensure that the generated query plan is returns events in the same order all the time.
+    public List<EventRecord> getEventsFromRangeForCategory(String category, Integer offset, Integer limit, Integer startId) {
+        PreparedStatement statement = null;
         ResultSet rs = null;
+        try {
+            statement = buildSelectStatement(category, offset, limit, startId);
+            ResultSet results = statement.executeQuery();
+            return mapEventRecords(results);
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(statement, rs);
+        }
+    }
+
+    @Override
+    public Integer findIdOfEventAfter(String category, Integer afterId, int position) {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            StringBuilder sql = new StringBuilder("select id");
+            List<Object> params = appendIdCriteria(sql, category, afterId);
+            sql.append(" order by id asc");
+            dialect.appendPage(sql, params, 1, position - 1);
+            statement = prepareStatement(sql.toString(), params);
+            resultSet = statement.executeQuery();
+            return resultSet.next() ? resultSet.getInt(1) : null;
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(statement, resultSet);
+        }
+    }
+
+    @Override
+    public List<EventRecord> getEventsFromSequenceRange(String category, Integer fromSeq, Integer toSeq) {
+        Connection connection;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
         try {
             connection = provider.getConnection();
-            stmt = buildCountStatement(category, connection);
-            rs = stmt.executeQuery();
-            return rs.next() ? rs.getInt(1) : 0;
+            statement = buildSequenceRangeStatement(connection, "events", category, fromSeq, toSeq);
+            resultSet = statement.executeQuery();
+            return mapEventRecords(resultSet);
         } catch (SQLException e) {
             throw new AtomFeedRuntimeException(e);
         } finally {
-            closeAll(stmt, rs);
+            closeAll(statement, resultSet);
         }
     }
 
     @Override
-    //TODO: Offset - Cannot be negative for initial feed with no entries. Fix this
-    //TODO: Order By is required to ensure that the generated query plan is returns events in the same order all the time.
-    public List<EventRecord> getEventsFromRangeForCategory(String category, Integer offset, Integer limit, Integer startId) {
+    public void forEachEventInSequenceRange(String category, Integer fromSeq, Integer toSeq, EventRecordHandler handler) {
         Connection connection;
         PreparedStatement statement = null;
-        ResultSet rs = null;
+        ResultSet resultSet = null;
         try {
             connection = provider.getConnection();
-            statement = buildSelectStatement(connection, category, offset, limit, startId);
-            ResultSet results = statement.executeQuery();
-            return mapEventRecords(results);
+            statement = buildSequenceRangeStatement(connection, "events", category, fromSeq, toSeq);
+            statement.setFetchSize(Configuration.getInstance().getFetchSize());
+            resultSet = statement.executeQuery();
+            JdbcResultSetMapper<EventRecord> mapper = new JdbcResultSetMapper<>();
+            while (resultSet.next()) {
+                handler.handle(mapper.mapCurrentRow(resultSet, EventRecord.class));
+            }
         } catch (SQLException e) {
             throw new AtomFeedRuntimeException(e);
         } finally {
-            closeAll(statement, rs);
+            closeAll(statement, resultSet);
         }
     }
 
     @Override
-    public List<EventRecord> getEventsFromTimeRange(TimeRange timeRange, String category) {
+    public void forEachEventAfter(String category, Integer afterId, int limit, EventRecordHandler handler) {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            StringBuilder sql = new StringBuilder("select " + FIELD_LIST);
+            List<Object> params = appendIdCriteria(sql, category, afterId);
+            sql.append(" order by id asc");
+            dialect.appendPage(sql, params, limit, null);
+            statement = prepareStatement(sql.toString(), params);
+            statement.setFetchSize(Configuration.getInstance().getFetchSize());
+            resultSet = statement.executeQuery();
+            JdbcResultSetMapper<EventRecord> mapper = new JdbcResultSetMapper<>();
+            while (resultSet.next()) {
+                handler.handle(mapper.mapCurrentRow(resultSet, EventRecord.class));
+            }
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(statement, resultSet);
+        }
+    }
+
+    @Override
+    public EventRecordsSummary getSummaryOfSequenceRange(String category, Integer fromSeq, Integer toSeq) {
         Connection connection;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
         try {
             connection = provider.getConnection();
-            statement = buildSelectStatement(connection, timeRange, category);
+            statement = buildSequenceRangeStatement(connection, "summary", category, fromSeq, toSeq);
+            resultSet = statement.executeQuery();
+            resultSet.next();
+            return new EventRecordsSummary(resultSet.getInt(1), resultSet.getTimestamp(2));
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(statement, resultSet);
+        }
+    }
+
+    @Override
+    public List<EventRecord> getEventsFromTimeRange(TimeRange timeRange, String category) {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = buildSelectStatement(timeRange, category);
             return mapEventRecords(statement.executeQuery());
         } catch (SQLException ex) {
             throw new AtomFeedRuntimeException(ex);
@@ -149,18 +519,77 @@ public class AllEventRecordsJdbcImpl implements AllEventRecords {
         }
     }
 
+    @Override
+    public List<EventRecord> getEventsFromTimeRange(TimeRange timeRange, String category, EventRecordKey after, int limit) {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            StringBuilder sql = new StringBuilder("select " + FIELD_LIST);
+            List<Object> params = appendTimeRangeCriteria(sql, timeRange, category);
+            if (after != null) {
+                sql.append(" and (timestamp > ? or (timestamp = ? and id > ?))");
+                params.add(after.getTimestamp());
+                params.add(after.getTimestamp());
+                params.add(after.getId());
+            }
+            sql.append(" order by timestamp asc, id asc");
+            dialect.appendPage(sql, params, limit, null);
+            statement = prepareStatement(sql.toString(), params);
+            resultSet = statement.executeQuery();
+            return mapEventRecords(resultSet);
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(statement, resultSet);
+        }
+    }
+
+    @Override
+    public EventRecordKey findKeyOfEventInTimeRange(TimeRange timeRange, String category, int position) {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            StringBuilder sql = new StringBuilder("select timestamp, id");
+            List<Object> params = appendTimeRangeCriteria(sql, timeRange, category);
+            sql.append(" order by timestamp asc, id asc");
+            dialect.appendPage(sql, params, 1, position - 1);
+            statement = prepareStatement(sql.toString(), params);
+            resultSet = statement.executeQuery();
+            return resultSet.next() ? new EventRecordKey(resultSet.getTimestamp(1), resultSet.getInt(2)) : null;
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(statement, resultSet);
+        }
+    }
+
+    @Override
+    public int getCountOfEventsInTimeRange(TimeRange timeRange, String category) {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            StringBuilder sql = new StringBuilder("select count(id)");
+            List<Object> params = appendTimeRangeCriteria(sql, timeRange, category);
+            statement = prepareStatement(sql.toString(), params);
+            resultSet = statement.executeQuery();
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(statement, resultSet);
+        }
+    }
+
     @Override
     public int getTotalCountForCategory(String category, Integer beyondIndex, Integer endIndex) {
         Connection connection;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         ArrayList<Object> params = new ArrayList<>();
-        String tableName = JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records");
-        StringBuffer query = new StringBuffer(String.format("select count(id) from %s where 1=1", tableName));
+        StringBuilder query = new StringBuilder(statements.get("count"));
 
         if (!isBlank(category)) {
-            query.append(" and category = ?");
-            params.add(category);
+            appendCategoryCriteria(query.append(" and"), params, category);
         }
         if (beyondIndex != null) {
             query.append(" and id > ? ");
@@ -193,8 +622,7 @@ public class AllEventRecordsJdbcImpl implements AllEventRecords {
         List<String> categories = new ArrayList<>();
         try {
             connection = provider.getConnection();
-            String tableName = JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records");
-            statement = connection.prepareStatement("select distinct category from " + tableName);
+            statement = connection.prepareStatement(statements.get("categories"));
             results = statement.executeQuery();
             while (results.next()) {
                 categories.add(results.getString(1));
@@ -208,59 +636,103 @@ public class AllEventRecordsJdbcImpl implements AllEventRecords {
 
     }
 
-    private PreparedStatement buildSelectStatement(Connection connection, TimeRange timeRange, String category) throws SQLException {
-        String tableName = JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records");
-        if (isBlank(category)) {
-            String sql = String.format("select " + FIELD_LIST + " from %s where timestamp BETWEEN ? AND ? order by timestamp asc",
-                    tableName);
-            PreparedStatement statement = connection.prepareStatement(sql);
-            statement.setTimestamp(1, timeRange.getStartTimestamp());
-            statement.setTimestamp(2, timeRange.getEndTimestamp());
-            return statement;
-        } else {
-            String sql = String.format("select " + FIELD_LIST + " from %s where category = ? AND timestamp BETWEEN ? AND ? order by timestamp asc",
-                    tableName);
-            PreparedStatement statement = connection.prepareStatement(sql);
-            statement.setString(1, category);
-            statement.setTimestamp(2, timeRange.getStartTimestamp());
-            statement.setTimestamp(3, timeRange.getEndTimestamp());
-            return statement;
+    private List<Object> appendTimeRangeCriteria(StringBuilder sql, TimeRange timeRange, String category) {
+        List<Object> params = new ArrayList<>();
+        sql.append(statements.get("from"));
+        if (!isBlank(category)) {
+            appendCategoryCriteria(sql, params, category).append(" and");
         }
+        sql.append(" timestamp between ? and ?");
+        params.add(timeRange.getStartTimestamp());
+        params.add(timeRange.getEndTimestamp());
+        return params;
     }
 
-    private PreparedStatement buildCountStatement(String category, Connection connection) throws SQLException {
-        String tableName = JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records");
-        if (isBlank(category)) {
-            return connection.prepareStatement(String.format("select count(id) from %s", tableName));
-        } else {
-            PreparedStatement statement = connection.prepareStatement(String.format("select count(id) from %s where category = ?", tableName));
-            statement.setString(1, category);
-            return statement;
+    private List<Object> appendIdCriteria(StringBuilder sql, String category, Integer afterId) {
+        List<Object> params = new ArrayList<>();
+        sql.append(statements.get("from"));
+        if (!isBlank(category)) {
+            appendCategoryCriteria(sql, params, category).append(" and");
+        }
+        sql.append(" id > ?");
+        params.add(afterId);
+        return params;
+    }
+
+    //A category set matches the events of any of its categories, through the same (category, id) index as a single category.
+    //A category with a tag matches the events of the category the tag is indexed against.
+    private StringBuilder appendCategoryCriteria(StringBuilder sql, List<Object> params, String category) {
+        if (CategoryTag.isTagged(category)) {
+            params.add(CategoryTag.categoryOf(category));
+            params.add(CategoryTag.categoryOf(category));
+            params.add(CategoryTag.tagOf(category));
+            return sql.append(statements.get("tagCriteria"));
         }
+        if (!CategorySet.isSet(category)) {
+            params.add(category);
+            return sql.append(" category = ?");
+        }
+        List<String> members = CategorySet.membersOf(category);
+        params.addAll(members);
+        return sql.append(" category in (").append(repeat("?", ", ", members.size())).append(")");
+    }
+
+    private PreparedStatement prepareStatement(String sql, List<Object> params) throws SQLException {
+        PreparedStatement statement = provider.getConnection().prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        for (int pIndex = 1; pIndex <= params.size(); pIndex++) {
+            statement.setObject(pIndex, params.get(pIndex - 1));
+        }
+        return statement;
+    }
+
+    private PreparedStatement buildSelectStatement(TimeRange timeRange, String category) throws SQLException {
+        StringBuilder sql = new StringBuilder("select " + FIELD_LIST);
+        List<Object> params = appendTimeRangeCriteria(sql, timeRange, category);
+        sql.append(" order by timestamp asc");
+        return prepareStatement(sql.toString(), params);
     }
 
-    private PreparedStatement buildSelectStatement(Connection connection, String category, Integer offset, Integer limit, Integer startId) throws SQLException {
-        String schema = Configuration.getInstance().getSchema();
-        String tableName = JdbcUtils.getTableName(schema, "event_records");
+    /**
+     * @param name "events" for the events of the range, in order, "summary" for its newest id and timestamp
+     */
+    private PreparedStatement buildSequenceRangeStatement(Connection connection, String name, String category, Integer fromSeq,
+                                                          Integer toSeq) throws SQLException {
+        if (CategorySet.isSet(category)) {
+            throw new AtomFeedRuntimeException(String.format("Events are not numbered across the categories of %s", category));
+        }
+        if (CategoryTag.isTagged(category)) {
+            PreparedStatement statement = connection.prepareStatement(statements.get(name + "OfTagSeq"),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setString(1, CategoryTag.categoryOf(category));
+            statement.setString(2, CategoryTag.tagOf(category));
+            statement.setInt(3, fromSeq);
+            statement.setInt(4, toSeq);
+            return statement;
+        }
         if (isBlank(category)) {
-            PreparedStatement statement = connection.prepareStatement(
-                    String.format("select " + FIELD_LIST + " from %s where id > ? order by id asc limit ? offset ?", tableName));
-            statement.setInt(1, startId);
-            statement.setInt(2, limit);
-            statement.setInt(3, offset);
+            PreparedStatement statement = connection.prepareStatement(statements.get(name + "OfSeq"),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setInt(1, fromSeq);
+            statement.setInt(2, toSeq);
             return statement;
         } else {
-            PreparedStatement statement = connection.prepareStatement(
-                    String.format("select " + FIELD_LIST + " from %s where id > ? and category = ? order by id asc limit ? offset ?",
-                            tableName));
-            statement.setInt(1, startId);
-            statement.setString(2, category);
-            statement.setInt(3, limit);
-            statement.setInt(4, offset);
+            PreparedStatement statement = connection.prepareStatement(statements.get(name + "OfCategorySeq"),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setString(1, category);
+            statement.setInt(2, fromSeq);
+            statement.setInt(3, toSeq);
             return statement;
         }
     }
 
+    private PreparedStatement buildSelectStatement(String category, Integer offset, Integer limit, Integer startId) throws SQLException {
+        StringBuilder sql = new StringBuilder("select " + FIELD_LIST);
+        List<Object> params = appendIdCriteria(sql, category, startId);
+        sql.append(" order by id asc");
+        dialect.appendPage(sql, params, limit, offset);
+        return prepareStatement(sql.toString(), params);
+    }
+
     private List<EventRecord> mapEventRecords(ResultSet results) {
         return new JdbcResultSetMapper<EventRecord>().mapResultSetToObject(results, EventRecord.class);
     }
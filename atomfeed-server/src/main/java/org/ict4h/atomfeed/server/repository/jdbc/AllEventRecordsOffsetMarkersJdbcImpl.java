@@ -1,9 +1,10 @@
 package org.ict4h.atomfeed.server.repository.jdbc;
 
-import org.ict4h.atomfeed.Configuration;
 import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
 import org.ict4h.atomfeed.jdbc.JdbcResultSetMapper;
-import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.jdbc.StatementTemplates;
+import org.ict4h.atomfeed.jdbc.dialect.DetectedSqlDialect;
+import org.ict4h.atomfeed.jdbc.dialect.SqlDialect;
 import org.ict4h.atomfeed.server.domain.EventRecordsOffsetMarker;
 import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
 import org.ict4h.atomfeed.server.repository.AllEventRecordsOffsetMarkers;
@@ -12,7 +13,10 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
@@ -21,30 +25,49 @@ public class AllEventRecordsOffsetMarkersJdbcImpl implements AllEventRecordsOffs
     public static final String EVENT_RECORDS_OFFSET_MARKER = "event_records_offset_marker";
 
     private JdbcConnectionProvider provider;
+    private final StatementTemplates statements;
+    private final SqlDialect dialect;
+    //Found from the dialect the first time it is needed, as that is when it is known; empty when it has no upsert.
+    private volatile Optional<String> upsertSql;
 
     public AllEventRecordsOffsetMarkersJdbcImpl(JdbcConnectionProvider provider) {
+        this(provider, new DetectedSqlDialect(provider));
+    }
+
+    public AllEventRecordsOffsetMarkersJdbcImpl(JdbcConnectionProvider provider, SqlDialect dialect) {
         this.provider = provider;
+        this.dialect = dialect;
+        this.statements = new StatementTemplates()
+                .add("insert", "insert into %s (event_id, event_count, category) values (?, ?, ?)", EVENT_RECORDS_OFFSET_MARKER)
+                .add("update", "update %s set event_id=?, event_count=? where category=?", EVENT_RECORDS_OFFSET_MARKER)
+                .add("getAll", "select id, event_id, event_count, category from %s", EVENT_RECORDS_OFFSET_MARKER)
+                .add("version", "select count(id), coalesce(sum(event_id), 0), coalesce(sum(event_count), 0) from %s", EVENT_RECORDS_OFFSET_MARKER)
+                .add("countOfAllCategories", "select count(id) from %s where category = ''", EVENT_RECORDS_OFFSET_MARKER)
+                .add("countOfCategory", "select count(id) from %s where category = ?", EVENT_RECORDS_OFFSET_MARKER);
     }
 
+    /**
+     * Upserts the marker where the database can, relying on the unique category of the markers, so that nodes moving
+     * the same marker do not both insert it; a blank category is that of the marker of all categories.
+     */
     @Override
     public void addOrUpdate(String category, Integer offsetId, Integer countTillOffSetId) {
         Connection connection = null;
         PreparedStatement stmt = null;
-        Integer offsetMarkerCountForCategory = getOffsetMarkerCountForCategory(category);
+        String markerCategory = isBlank(category) ? "" : category;
         boolean autoCommit = true;
         try {
             connection = provider.getConnection();
             autoCommit = connection.getAutoCommit();
             connection.setAutoCommit(false);
-            String tableName = JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records_offset_marker");
-            String sqlString = String.format("insert into %s (event_id, event_count, category) values (?, ?, ?)", tableName);
-            if (offsetMarkerCountForCategory > 0) {
-                sqlString = String.format("update %s set event_id=?, event_count=? where category=?", tableName);
+            if (upsertSql().isPresent()) {
+                stmt = connection.prepareStatement(upsertSql().get());
+            } else {
+                stmt = connection.prepareStatement(statements.get(getOffsetMarkerCountForCategory(markerCategory) > 0 ? "update" : "insert"));
             }
-            stmt = connection.prepareStatement(sqlString);
             stmt.setObject(1, offsetId);
             stmt.setObject(2, countTillOffSetId);
-            stmt.setObject(3, category);
+            stmt.setObject(3, markerCategory);
             stmt.executeUpdate();
             //connection.commit();
         } catch (SQLException e) {
@@ -60,6 +83,14 @@ public class AllEventRecordsOffsetMarkersJdbcImpl implements AllEventRecordsOffs
         }
     }
 
+    private Optional<String> upsertSql() {
+        if (upsertSql == null) {
+            upsertSql = Optional.ofNullable(dialect.upsert(statements.table(EVENT_RECORDS_OFFSET_MARKER), Collections.singletonList("category"),
+                    Arrays.asList("event_id", "event_count", "category"), Arrays.asList("event_id", "event_count")));
+        }
+        return upsertSql;
+    }
+
     @Override
     public List<EventRecordsOffsetMarker> getAll() {
         Connection connection;
@@ -67,9 +98,7 @@ public class AllEventRecordsOffsetMarkersJdbcImpl implements AllEventRecordsOffs
         ResultSet rs = null;
         try {
             connection = provider.getConnection();
-            String sql = String.format("select id, event_id, event_count, category from %s",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), EVENT_RECORDS_OFFSET_MARKER));
-            stmt = connection.prepareStatement(sql);
+            stmt = connection.prepareStatement(statements.get("getAll"));
             rs = stmt.executeQuery();
             return new JdbcResultSetMapper<EventRecordsOffsetMarker>().mapResultSetToObject(rs, EventRecordsOffsetMarker.class);
         } catch (SQLException e) {
@@ -79,16 +108,43 @@ public class AllEventRecordsOffsetMarkersJdbcImpl implements AllEventRecordsOffs
         }
     }
 
+    @Override
+    public EventRecordsOffsetMarker get(String category) {
+        String markerCategory = category == null ? "" : category;
+        for (EventRecordsOffsetMarker marker : getAll()) {
+            if (markerCategory.equalsIgnoreCase(marker.getCategory())) {
+                return marker;
+            }
+        }
+        return null;
+    }
+
+    //Markers only ever move forward, so their count and the sums of their event ids and counts change with every update.
+    @Override
+    public String getVersion() {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            Connection connection = provider.getConnection();
+            stmt = connection.prepareStatement(statements.get("version"));
+            rs = stmt.executeQuery();
+            return rs.next() ? rs.getLong(1) + ":" + rs.getLong(2) + ":" + rs.getLong(3) : "";
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(stmt, rs);
+        }
+    }
+
     private Integer getOffsetMarkerCountForCategory(String category) {
         PreparedStatement statement = null;
         ResultSet rs = null;
-        String tableName = JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records_offset_marker");
         try {
             Connection connection = provider.getConnection();
             if (isBlank(category)) {
-                statement = connection.prepareStatement(String.format("select count(id) from %s where category = ''", tableName));
+                statement = connection.prepareStatement(statements.get("countOfAllCategories"));
             } else {
-                statement = connection.prepareStatement(String.format("select count(id) from %s where category = ?", tableName));
+                statement = connection.prepareStatement(statements.get("countOfCategory"));
                 statement.setString(1, category);
             }
             rs = statement.executeQuery();
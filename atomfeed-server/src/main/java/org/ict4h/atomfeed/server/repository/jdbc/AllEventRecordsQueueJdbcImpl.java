@@ -1,9 +1,10 @@
 package org.ict4h.atomfeed.server.repository.jdbc;
 
-import org.ict4h.atomfeed.Configuration;
 import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
 import org.ict4h.atomfeed.jdbc.JdbcResultSetMapper;
-import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.jdbc.StatementTemplates;
+import org.ict4h.atomfeed.jdbc.dialect.DetectedSqlDialect;
+import org.ict4h.atomfeed.jdbc.dialect.SqlDialect;
 import org.ict4h.atomfeed.server.domain.EventRecordQueueItem;
 import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
 import org.ict4h.atomfeed.server.repository.AllEventRecordsQueue;
@@ -15,13 +16,39 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.List;
 
+import static org.apache.commons.lang3.StringUtils.repeat;
+
 public class AllEventRecordsQueueJdbcImpl implements AllEventRecordsQueue {
 
     private static final String FIELD_LIST = "id, uuid, title, timestamp, uri, object, category, tags";
+    //Some databases, Oracle among them, take no more than a thousand values in a list.
+    private static final int MAX_IDS_PER_DELETE = 1000;
     private JdbcConnectionProvider provider;
+    private final StatementTemplates statements;
+    private final SqlDialect dialect;
+    //Found from the dialect the first time it is needed, as that is when it is known.
+    private volatile String claimSql;
 
     public AllEventRecordsQueueJdbcImpl(JdbcConnectionProvider provider) {
+        this(provider, new DetectedSqlDialect(provider));
+    }
+
+    public AllEventRecordsQueueJdbcImpl(JdbcConnectionProvider provider, SqlDialect dialect) {
         this.provider = provider;
+        this.dialect = dialect;
+        this.statements = new StatementTemplates()
+                .add("insert", "insert into %s (uuid, title, uri, object,category, timestamp, tags) values (?, ?, ?, ?, ?, ?, ?)", "event_records_queue")
+                .add("get", "select " + FIELD_LIST + " from %s where uuid = ?", "event_records_queue")
+                .add("getAll", "select " + FIELD_LIST + " from %s", "event_records_queue")
+                .add("delete", "delete from %s where uuid = ?", "event_records_queue");
+        for (int ids = 1; ids < MAX_IDS_PER_DELETE; ids *= 2) {
+            addDeleteByIds(ids);
+        }
+        addDeleteByIds(MAX_IDS_PER_DELETE);
+    }
+
+    private void addDeleteByIds(int ids) {
+        statements.add("deleteByIds" + ids, "delete from %s where id in (" + repeat("?", ", ", ids) + ")", "event_records_queue");
     }
 
     @Override
@@ -30,9 +57,7 @@ public class AllEventRecordsQueueJdbcImpl implements AllEventRecordsQueue {
         PreparedStatement stmt = null;
         try {
             connection = provider.getConnection();
-            String insertSql = String.format("insert into %s (uuid, title, uri, object,category, timestamp, tags) values (?, ?, ?, ?, ?, ?, ?)",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records_queue"));
-            stmt = connection.prepareStatement(insertSql);
+            stmt = connection.prepareStatement(statements.get("insert"));
             stmt.setString(1, eventRecord.getUuid());
             stmt.setString(2, eventRecord.getTitle());
             stmt.setString(3, eventRecord.getUri());
@@ -55,9 +80,7 @@ public class AllEventRecordsQueueJdbcImpl implements AllEventRecordsQueue {
         ResultSet rs = null;
         try {
             connection = provider.getConnection();
-            String sql = String.format("select " + FIELD_LIST + " from %s where uuid = ?",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records_queue"));
-            stmt = connection.prepareStatement(sql);
+            stmt = connection.prepareStatement(statements.get("get"));
             stmt.setString(1, uuid);
             rs = stmt.executeQuery();
             List<EventRecordQueueItem> events = mapEventRecords(rs);
@@ -94,9 +117,25 @@ public class AllEventRecordsQueueJdbcImpl implements AllEventRecordsQueue {
         ResultSet rs = null;
         try {
             connection = provider.getConnection();
-            String sql = String.format("select " + FIELD_LIST + " from %s",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records_queue"));
-            stmt = connection.prepareStatement(sql);
+            stmt = connection.prepareStatement(statements.get("getAll"));
+            rs = stmt.executeQuery();
+            return mapEventRecords(rs);
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(stmt, rs);
+        }
+    }
+
+    @Override
+    public List<EventRecordQueueItem> claim(int limit) {
+        Connection connection;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            connection = provider.getConnection();
+            stmt = connection.prepareStatement(claimSql());
+            stmt.setInt(1, limit);
             rs = stmt.executeQuery();
             return mapEventRecords(rs);
         } catch (SQLException e) {
@@ -112,9 +151,7 @@ public class AllEventRecordsQueueJdbcImpl implements AllEventRecordsQueue {
         PreparedStatement stmt = null;
         try {
             connection = provider.getConnection();
-            String sql = String.format("delete from %s where uuid = ?",
-                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records_queue"));
-            stmt = connection.prepareStatement(sql);
+            stmt = connection.prepareStatement(statements.get("delete"));
             stmt.setString(1, uuid);
             stmt.executeUpdate();
         } catch (SQLException e) {
@@ -124,6 +161,43 @@ public class AllEventRecordsQueueJdbcImpl implements AllEventRecordsQueue {
         }
     }
 
+    @Override
+    public void delete(List<EventRecordQueueItem> eventRecordQueueItems) {
+        for (int from = 0; from < eventRecordQueueItems.size(); from += MAX_IDS_PER_DELETE) {
+            deleteByIds(eventRecordQueueItems.subList(from, Math.min(from + MAX_IDS_PER_DELETE, eventRecordQueueItems.size())));
+        }
+    }
+
+    private String claimSql() {
+        if (claimSql == null) {
+            claimSql = dialect.claim(FIELD_LIST, statements.table("event_records_queue"), "id");
+        }
+        return claimSql;
+    }
+
+    //The ids are deleted with the smallest of the statements taking them, the last id filling the places left, so that
+    //only a few statements are ever prepared.
+    private void deleteByIds(List<EventRecordQueueItem> eventRecordQueueItems) {
+        int ids = 1;
+        while (ids < eventRecordQueueItems.size()) {
+            ids = Math.min(ids * 2, MAX_IDS_PER_DELETE);
+        }
+        Connection connection;
+        PreparedStatement stmt = null;
+        try {
+            connection = provider.getConnection();
+            stmt = connection.prepareStatement(statements.get("deleteByIds" + ids));
+            for (int index = 0; index < ids; index++) {
+                stmt.setInt(index + 1, eventRecordQueueItems.get(Math.min(index, eventRecordQueueItems.size() - 1)).getId());
+            }
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            close(stmt);
+        }
+    }
+
     private List<EventRecordQueueItem> mapEventRecords(ResultSet results) {
         return new JdbcResultSetMapper<EventRecordQueueItem>().mapResultSetToObject(results, EventRecordQueueItem.class);
     }
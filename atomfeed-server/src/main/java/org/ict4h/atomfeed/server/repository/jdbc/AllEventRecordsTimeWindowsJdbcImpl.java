@@ -0,0 +1,154 @@
+package org.ict4h.atomfeed.server.repository.jdbc;
+
+import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
+import org.ict4h.atomfeed.jdbc.StatementTemplates;
+import org.ict4h.atomfeed.server.domain.CategorySet;
+import org.ict4h.atomfeed.server.domain.CategoryTag;
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsTimeWindows;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.repeat;
+
+public class AllEventRecordsTimeWindowsJdbcImpl implements AllEventRecordsTimeWindows {
+
+    public static final String EVENT_RECORDS_TIME_WINDOW = "event_records_time_window";
+    private static final String ALL_CATEGORIES = "";
+    //The window queries, with a %s for the table and one for the criteria on the category.
+    private static final String FIRST_WINDOW_FROM = "select min(window_start) from %s where %s and window_start >= ?";
+    private static final String LAST_WINDOW_BEFORE = "select max(window_start) from %s where %s and window_start < ?";
+
+    private JdbcConnectionProvider provider;
+    private final StatementTemplates statements;
+    //The window queries of category sets, by name and number of categories, built the first time each is needed.
+    private final Map<String, String> categorySetSqls = new ConcurrentHashMap<>();
+
+    public AllEventRecordsTimeWindowsJdbcImpl(JdbcConnectionProvider provider) {
+        this.provider = provider;
+        this.statements = new StatementTemplates()
+                .add("insert", "insert into %s (category, window_start) values (?, ?)", EVENT_RECORDS_TIME_WINDOW)
+                .add("exists", "select count(*) from %s where category = ? and window_start = ?", EVENT_RECORDS_TIME_WINDOW)
+                .add("firstWindowFrom", String.format(FIRST_WINDOW_FROM, "%s", "category = ?"), EVENT_RECORDS_TIME_WINDOW)
+                .add("lastWindowBefore", String.format(LAST_WINDOW_BEFORE, "%s", "category = ?"), EVENT_RECORDS_TIME_WINDOW);
+    }
+
+    /**
+     * Publishers are serialized by the counter row lock, so checking for the window before inserting it does not
+     * race with another publisher of the same category.
+     */
+    @Override
+    public void mark(String category, Date timestamp) {
+        Timestamp windowStart = windowStartOf(timestamp);
+        String windowCategory = windowCategory(category);
+        PreparedStatement stmt = null;
+        try {
+            Connection connection = provider.getConnection();
+            if (exists(connection, windowCategory, windowStart)) {
+                return;
+            }
+            stmt = connection.prepareStatement(statements.get("insert"));
+            stmt.setString(1, windowCategory);
+            stmt.setTimestamp(2, windowStart);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            close(stmt);
+        }
+    }
+
+    @Override
+    public Date findFirstWindowFrom(String category, Date time) {
+        return findWindow("firstWindowFrom", FIRST_WINDOW_FROM, category, windowStartOf(time));
+    }
+
+    @Override
+    public Date findLastWindowBefore(String category, Date time) {
+        return findWindow("lastWindowBefore", LAST_WINDOW_BEFORE, category, new Timestamp(time.getTime()));
+    }
+
+    //The windows of a category set are those of any of its categories. Windows are not kept per tag, so those of a
+    //category with a tag are those of the category, some of which may have no events with the tag.
+    private Date findWindow(String name, String template, String category, Timestamp bound) {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        List<String> windowCategories = CategorySet.membersOf(windowCategory(CategoryTag.categoryOf(category)));
+        try {
+            Connection connection = provider.getConnection();
+            stmt = connection.prepareStatement(windowSql(name, template, windowCategories.size()));
+            int index = 1;
+            for (String windowCategory : windowCategories) {
+                stmt.setString(index++, windowCategory);
+            }
+            stmt.setTimestamp(index, bound);
+            rs = stmt.executeQuery();
+            Timestamp windowStart = rs.next() ? rs.getTimestamp(1) : null;
+            return windowStart == null ? null : new Date(windowStart.getTime());
+        } catch (SQLException e) {
+            throw new AtomFeedRuntimeException(e);
+        } finally {
+            closeAll(stmt, rs);
+        }
+    }
+
+    private String windowSql(String name, String template, int categories) {
+        if (categories == 1) {
+            return statements.get(name);
+        }
+        String key = name + categories;
+        String sql = categorySetSqls.get(key);
+        if (sql == null) {
+            sql = String.format(template, statements.table(EVENT_RECORDS_TIME_WINDOW),
+                    String.format("category in (%s)", repeat("?", ", ", categories)));
+            categorySetSqls.put(key, sql);
+        }
+        return sql;
+    }
+
+    private boolean exists(Connection connection, String windowCategory, Timestamp windowStart) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = connection.prepareStatement(statements.get("exists"));
+            stmt.setString(1, windowCategory);
+            stmt.setTimestamp(2, windowStart);
+            rs = stmt.executeQuery();
+            return rs.next() && rs.getInt(1) > 0;
+        } finally {
+            closeAll(stmt, rs);
+        }
+    }
+
+    private Timestamp windowStartOf(Date time) {
+        return new Timestamp(Math.floorDiv(time.getTime(), WINDOW_MILLIS) * WINDOW_MILLIS);
+    }
+
+    private String windowCategory(String category) {
+        return isBlank(category) ? ALL_CATEGORIES : category;
+    }
+
+    private void closeAll(PreparedStatement stmt, ResultSet rs) {
+        close(rs);
+        close(stmt);
+    }
+
+    private void close(AutoCloseable rs) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+        } catch (Exception e) {
+            throw new AtomFeedRuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.ict4h.atomfeed.server.service;
+
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streams events in bulk to a consumer that is too far behind to page through the feed one page at a time.
+ */
+public interface EventCatchUpService {
+
+    /**
+     * Writes the events after the given one as newline delimited JSON, one event a line, ordered by Identity. A last
+     * line holds the cursor to resume from and whether there were no more events to write:
+     * <pre>
+     * {"id":"tag:...","uuid":"...","title":"...","uri":"...","timestamp":"...","categories":["..."],"contents":"..."}
+     * {"cursor":"...","caughtUp":false}
+     * </pre>
+     *
+     * @param category the category of the events, if blank considers all categories
+     * @param after the uuid or entry id of the last event the consumer has, null to start at the first event
+     * @param cursor the cursor a previous stream ended with; when given, {@code after} is not looked at
+     * @param limit the maximum number of events to write
+     * @throws AtomFeedRuntimeException when there is no event {@code after}, or the cursor is not one
+     */
+    void writeEventsAfter(String category, String after, String cursor, int limit, OutputStream out) throws IOException;
+}
@@ -0,0 +1,69 @@
+package org.ict4h.atomfeed.server.service;
+
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+import org.ict4h.atomfeed.server.repository.AllEventRecords;
+import org.ict4h.atomfeed.server.repository.EventRecordHandler;
+import org.ict4h.atomfeed.server.service.writer.JsonFeedWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Reads the events on from the id of the last event a consumer has, so that every stream, however far into the
+ * events it starts, is a single keyset scan. The cursor is that id; the events are ordered by it, which for a time
+ * chunked feed may differ from the order of its pages when events are published with earlier timestamps.
+ */
+public class EventCatchUpServiceImpl implements EventCatchUpService {
+    private final AllEventRecords allEventRecords;
+    private final JsonFeedWriter writer = new JsonFeedWriter(null);
+
+    public EventCatchUpServiceImpl(AllEventRecords allEventRecords) {
+        this.allEventRecords = allEventRecords;
+    }
+
+    @Override
+    public void writeEventsAfter(String category, String after, String cursor, int limit, final OutputStream out) throws IOException {
+        final int[] written = {0};
+        final int[] lastId = {idToStartAfter(after, cursor)};
+        try {
+            allEventRecords.forEachEventAfter(category, lastId[0], limit, new EventRecordHandler() {
+                @Override
+                public void handle(EventRecord eventRecord) {
+                    try {
+                        writer.writeLine(out, eventRecord);
+                    } catch (IOException e) {
+                        throw new AtomFeedRuntimeException(e);
+                    }
+                    written[0]++;
+                    lastId[0] = eventRecord.getId();
+                }
+            });
+        } catch (AtomFeedRuntimeException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        writer.writeCursorLine(out, String.valueOf(lastId[0]), written[0] < limit);
+    }
+
+    private int idToStartAfter(String after, String cursor) {
+        if (cursor != null) {
+            try {
+                return Integer.parseInt(cursor);
+            } catch (NumberFormatException e) {
+                throw new AtomFeedRuntimeException(String.format("Not a cursor: %s", cursor));
+            }
+        }
+        if (after == null) {
+            return 0;
+        }
+        //An entry id is a tag uri that ends with the uuid of the event.
+        EventRecord eventRecord = allEventRecords.get(after.substring(after.lastIndexOf(':') + 1));
+        if (eventRecord == null) {
+            throw new AtomFeedRuntimeException(String.format("No event %s to catch up after", after));
+        }
+        return eventRecord.getId();
+    }
+}
@@ -1,8 +1,12 @@
 package org.ict4h.atomfeed.server.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 
 import com.sun.syndication.feed.atom.Feed;
+import org.ict4h.atomfeed.server.domain.EventFeed;
+import org.ict4h.atomfeed.server.service.writer.FeedFormat;
 
 /**
  * The interface {@code EventFeedService} contains methods to retrieve a {@code Feed}.
@@ -29,4 +33,35 @@ public interface EventFeedService {
      */
 	public Feed getEventFeed(URI requestUri, String category, Integer feedId);
 
-}
\ No newline at end of file
+    /**
+     * Returns the most recent feed without rendering it, e.g. to validate a conditional request. The header fields
+     * are resolved, but the events may be left in the database to be streamed by
+     * {@link #writeRecentFeed(URI, String, EventFeed, OutputStream, FeedFormat)} within the caller's transaction.
+     *
+     * @param category
+     */
+    public EventFeed getRecentEvents(String category);
+
+    /**
+     * Returns a part of a feed without rendering it, like {@link #getRecentEvents(String)}. Parts are numbered from 1,
+     * the first part being the feed itself.
+     *
+     * @param category
+     * @param feedId an integer that refers the the feed
+     * @param part an integer that refers to the part of the feed, 1 for a feed that is not split into parts
+     */
+    public EventFeed getEvents(String category, Integer feedId, int part);
+
+    /**
+     * Writes the most recent feed returned by {@link #getRecentEvents(String)} in the given format, without building
+     * the {@code Feed} first. Written as Atom, it is the same as {@link #getRecentFeed(URI, String)} serialized by Rome.
+     */
+    public void writeRecentFeed(URI requestUri, String category, EventFeed recentFeed, OutputStream out, FeedFormat format) throws IOException;
+
+    /**
+     * Writes a feed returned by {@link #getEvents(String, Integer, int)} in the given format, like
+     * {@link #writeRecentFeed(URI, String, EventFeed, OutputStream, FeedFormat)}.
+     */
+    public void writeEventFeed(URI requestUri, String category, EventFeed eventFeed, OutputStream out, FeedFormat format) throws IOException;
+
+}
@@ -11,34 +11,38 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.ict4h.atomfeed.server.domain.EventFeed;
 import org.ict4h.atomfeed.server.domain.EventRecord;
-import org.ict4h.atomfeed.server.domain.EventRecordComparator;
 import org.ict4h.atomfeed.server.domain.FeedBuilder;
+import org.ict4h.atomfeed.server.domain.FeedPlan;
+import org.ict4h.atomfeed.server.repository.EventRecordHandler;
 import org.ict4h.atomfeed.server.service.feedgenerator.FeedGenerator;
-
+import org.ict4h.atomfeed.server.service.writer.AtomFeedWriter;
+import org.ict4h.atomfeed.server.service.writer.FeedFormat;
+import org.ict4h.atomfeed.server.service.writer.FeedWriter;
+import org.ict4h.atomfeed.server.service.writer.JsonFeedWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 public class EventFeedServiceImpl implements EventFeedService {
 
     private static final String ATOM_MEDIA_TYPE = "application/atom+xml";
     private static final String LINK_TYPE_SELF = "self";
     private static final String LINK_TYPE_VIA = "via";
-    private static final String ATOMFEED_MEDIA_TYPE = "application/vnd.atomfeed+xml";
     private final Logger logger = Logger.getLogger(this.getClass());
 
 	private FeedGenerator feedGenerator;
     private ResourceBundle bundle;
+    private AtomFeedWriter feedWriter;
+    private JsonFeedWriter jsonFeedWriter;
 
     public EventFeedServiceImpl(FeedGenerator generator) {
         this.feedGenerator = generator;
@@ -47,43 +51,97 @@ public class EventFeedServiceImpl implements EventFeedService {
         }catch (MissingResourceException e){
             bundle = null;
         }
+        this.feedWriter = new AtomFeedWriter(getPropertyWithDefault("feed.title", "Event feed"), getAuthors().get(0).getName(),
+                getGenerator().getUrl(), getGenerator().getValue());
+        this.jsonFeedWriter = new JsonFeedWriter(getPropertyWithDefault("feed.title", "Event feed"));
     }
 
     @Override
 	public Feed getRecentFeed(URI requestUri, String category) {
-    	EventFeed recentFeed = feedGenerator.getRecentFeed(category);
-
-        return new FeedBuilder()
-                .type("atom_1.0")
-                .id(generateIdForEventFeed(recentFeed.getId()))
-                .title(getPropertyWithDefault("feed.title", "Event feed"))
-                .generator(getGenerator())
-                .authors(getAuthors())
-                .entries(getEntries(recentFeed.getEvents()))
-                .updated(newestEventDate(recentFeed.getEvents()))
-                .link(getLink(requestUri.toString(), LINK_TYPE_SELF, ATOM_MEDIA_TYPE))
-                .link(getLink(generateCanonicalUri(requestUri, recentFeed.getId()), LINK_TYPE_VIA, ATOM_MEDIA_TYPE))
-                .links(generatePagingLinks(requestUri, recentFeed,category))
-                .build();
+        EventFeed recentFeed = feedGenerator.getRecentFeed(category);
+        return buildFeed(recentFeed, recentFeedLinks(requestUri, category, recentFeed));
     }
 
     @Override
     public Feed getEventFeed(URI requestUri, String category, Integer feedId) {
         EventFeed feedForId = feedGenerator.getFeedForId(feedId, category);
+        return buildFeed(feedForId, eventFeedLinks(requestUri, category, feedForId));
+    }
+
+    @Override
+    public EventFeed getRecentEvents(String category) {
+        return feedGenerator.getRecentFeedHead(category);
+    }
+
+    @Override
+    public EventFeed getEvents(String category, Integer feedId, int part) {
+        return feedGenerator.getFeedHeadForId(feedId, part, category);
+    }
+
+    @Override
+    public void writeRecentFeed(URI requestUri, String category, EventFeed recentFeed, OutputStream out, FeedFormat format) throws IOException {
+        writeFeed(recentFeed, recentFeedLinks(requestUri, category, recentFeed), out, writerFor(format));
+    }
+
+    @Override
+    public void writeEventFeed(URI requestUri, String category, EventFeed feedForId, OutputStream out, FeedFormat format) throws IOException {
+        writeFeed(feedForId, eventFeedLinks(requestUri, category, feedForId), out, writerFor(format));
+    }
+
+    private FeedWriter writerFor(FeedFormat format) {
+        return format == FeedFormat.JSON ? jsonFeedWriter : feedWriter;
+    }
+
+    private void writeFeed(EventFeed eventFeed, List<Link> links, final OutputStream out, final FeedWriter writer) throws IOException {
+        writer.writeHeader(out, generateIdForEventFeed(eventFeed.getPageId()), eventFeed.getNewestEventDate(), links);
+        try {
+            feedGenerator.forEachEvent(eventFeed, new EventRecordHandler() {
+                private boolean first = true;
+
+                @Override
+                public void handle(EventRecord eventRecord) {
+                    try {
+                        writer.writeEntry(out, eventRecord, first);
+                        first = false;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.writeFooter(out);
+    }
+
+    private Feed buildFeed(EventFeed eventFeed, List<Link> links) {
         return new FeedBuilder()
                 .type("atom_1.0")
-                .id(generateIdForEventFeed(feedId))
+                .id(generateIdForEventFeed(eventFeed.getPageId()))
                 .title(getPropertyWithDefault("feed.title", "Event feed"))
                 .generator(getGenerator())
                 .authors(getAuthors())
-                .entries(getEntries(feedForId.getEvents()))
-                .updated(newestEventDate(feedForId.getEvents()))
-                .link(getLink(requestUri.toString(), LINK_TYPE_SELF, ATOM_MEDIA_TYPE))
-                .link(getLink(requestUri.toString(), LINK_TYPE_VIA, ATOM_MEDIA_TYPE))
-                .links(generatePagingLinks(requestUri, feedForId, category))
+                .entries(getEntries(eventFeed.getEvents()))
+                .updated(eventFeed.getNewestEventDate())
+                .links(links)
                 .build();
     }
 
+    private List<Link> recentFeedLinks(URI requestUri, String category, EventFeed recentFeed) {
+        List<Link> links = new ArrayList<>();
+        links.add(getLink(requestUri.toString(), LINK_TYPE_SELF, ATOM_MEDIA_TYPE));
+        links.add(getLink(generateCanonicalUri(requestUri, recentFeed.getPageId()), LINK_TYPE_VIA, ATOM_MEDIA_TYPE));
+        links.addAll(generatePagingLinks(requestUri, recentFeed, category));
+        return links;
+    }
+
+    private List<Link> eventFeedLinks(URI requestUri, String category, EventFeed feedForId) {
+        List<Link> links = new ArrayList<>();
+        links.add(getLink(requestUri.toString(), LINK_TYPE_SELF, ATOM_MEDIA_TYPE));
+        links.add(getLink(requestUri.toString(), LINK_TYPE_VIA, ATOM_MEDIA_TYPE));
+        links.addAll(generatePagingLinks(requestUri, feedForId, category));
+        return links;
+    }
 
     private List<Person> getAuthors() {
         Person person = new Person();
@@ -91,34 +149,41 @@ public class EventFeedServiceImpl implements EventFeedService {
         return Arrays.asList(person);
     }
 
-    private String generateCanonicalUri(URI requestUri, Integer feedId) {
-        return getServiceUri(requestUri) + "/" + feedId;
+    private String generateCanonicalUri(URI requestUri, String pageId) {
+        return getServiceUri(requestUri) + "/" + pageId;
     }
     
     private List<Link> generatePagingLinks(URI requestUri, EventFeed feed, String category) {
         ArrayList<Link> links = new ArrayList<Link>();
-        int feedCount = feedGenerator.getRecentFeed(category).getId();
+        FeedPlan plan = feed.getPlan();
+        boolean hasNextPage = plan != null ? plan.hasNextPage() : feed.getId() < latestFeedId(feed, category);
 
-        if (feed.getId() < feedCount) {
+        if (hasNextPage) {
             Link next = new Link();
             next.setRel("next-archive");
             next.setType(ATOM_MEDIA_TYPE);
-            next.setHref(generateCanonicalUri(requestUri, feed.getId() + 1));
+            next.setHref(generateCanonicalUri(requestUri, plan != null ? plan.getNextPageId() : String.valueOf(feed.getId() + 1)));
             links.add(next);
         }
 
-        if (feed.getId() > 1) {
+        if (plan != null ? plan.hasPreviousPage() : feed.getId() > 1) {
             Link prev = new Link();
             prev.setRel("prev-archive");
             prev.setType(ATOM_MEDIA_TYPE);
-            prev.setHref(generateCanonicalUri(requestUri, feed.getId()-1));
+            prev.setHref(generateCanonicalUri(requestUri, plan != null ? plan.getPreviousPageId() : String.valueOf(feed.getId() - 1)));
             links.add(prev);
         }
         return links;
     }
 
-    private String generateIdForEventFeed(Integer feedId){
-        return getPropertyWithDefault("feed.id.prefix", "") + "+" + feedId;
+    //Generators that do not plan their feeds leave the latest feed id to be found out from the recent feed.
+    private int latestFeedId(EventFeed feed, String category) {
+        FeedPlan plan = feed.getPlan();
+        return plan != null ? plan.getLatestFeedId() : feedGenerator.getRecentFeed(category).getId();
+    }
+
+    private String generateIdForEventFeed(String pageId){
+        return getPropertyWithDefault("feed.id.prefix", "") + "+" + pageId;
     }
 
     private String getPropertyWithDefault(String property, String defaultValue) {
@@ -132,19 +197,6 @@ public class EventFeedServiceImpl implements EventFeedService {
         return generator;
     }
 
-    private Date newestEventDate(List<EventRecord> eventRecordList) {
-        if(eventRecordList.isEmpty()){
-            return toDateMidnight();
-        }
-        return Collections.max(eventRecordList, new EventRecordComparator()).getTimeStamp();
-    }
-
-    //TODO: extract to common date utils and write test?
-    private Date toDateMidnight() {
-        LocalDateTime midnight = LocalDateTime.of(LocalDate.now(ZoneId.systemDefault()), LocalTime.MIDNIGHT);
-        return Date.from(midnight.atZone(ZoneId.systemDefault()).toInstant());
-    }
-
     private Link getLink(String href, String rel, String type) {
         Link link = new Link();
 
@@ -179,9 +231,7 @@ public class EventFeedServiceImpl implements EventFeedService {
             entry.setUpdated(eventRecord.getTimeStamp());
             entry.setCreated(getDateCreated(eventRecord));
             entry.setContents(generateContents(eventRecord));
-            String category = eventRecord.getCategory();
-            final String[] tagList = StringUtils.split(eventRecord.getTags(), ",");
-            entry.setCategories(getCategories(tagList, category));
+            entry.setCategories(getCategories(eventRecord.getCategoryTerms()));
             entryList.add(entry);
         }
 
@@ -192,16 +242,7 @@ public class EventFeedServiceImpl implements EventFeedService {
         return eventRecord.getDateCreated() != null ? eventRecord.getDateCreated() : eventRecord.getTimeStamp();
     }
 
-    private List<Category> getCategories(String[] tagList, String category) {
-        HashSet<String> categorySet = new HashSet<>();
-        if ((tagList != null) && (tagList.length > 0)) {
-            categorySet.addAll(Arrays.asList(tagList));
-        }
-
-        if (!StringUtils.isBlank(category)) {
-            categorySet.add(category);
-        }
-
+    private List<Category> getCategories(Set<String> categorySet) {
         List<Category> categories = new ArrayList<>();
         for (String aCat : categorySet) {
             Category eventCategory = new Category();
@@ -214,7 +255,7 @@ public class EventFeedServiceImpl implements EventFeedService {
 
     private List<Content> generateContents(EventRecord eventRecord) {
         Content content = new Content();
-        content.setType(ATOMFEED_MEDIA_TYPE);
+        content.setType(AtomFeedWriter.ATOMFEED_MEDIA_TYPE);
         content.setValue(wrapInCDATA(eventRecord.getContents()));
         return Arrays.asList(content);
     }
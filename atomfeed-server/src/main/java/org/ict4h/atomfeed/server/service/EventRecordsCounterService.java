@@ -0,0 +1,17 @@
+package org.ict4h.atomfeed.server.service;
+
+import org.ict4h.atomfeed.server.domain.EventRecordsCounter;
+
+import java.util.List;
+
+public interface EventRecordsCounterService {
+
+    /**
+     * Compares the maintained counters with the last sequence numbers of the published events.
+     *
+     * @return the last sequence number of every category whose counter is off, empty when all counters are consistent
+     */
+    List<EventRecordsCounter> findInconsistentCounters();
+
+    void rebuildCounters();
+}
@@ -0,0 +1,64 @@
+package org.ict4h.atomfeed.server.service;
+
+import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.server.domain.EventRecordsCounter;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsCounters;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks and rebuilds the event counters against the last sequence numbers of the events. Both read all the events,
+ * so they are meant to be run as a maintenance task; a rebuild should run in a transaction, with publishing paused,
+ * for the counters to be exact.
+ */
+public class EventRecordsCounterServiceImpl implements EventRecordsCounterService {
+    private static Logger logger = Logger.getLogger(EventRecordsCounterServiceImpl.class);
+
+    private AllEventRecordsCounters allEventRecordsCounters;
+
+    public EventRecordsCounterServiceImpl(AllEventRecordsCounters allEventRecordsCounters) {
+        this.allEventRecordsCounters = allEventRecordsCounters;
+    }
+
+    @Override
+    public List<EventRecordsCounter> findInconsistentCounters() {
+        Map<String, Integer> countedOnPublish = new HashMap<>();
+        for (EventRecordsCounter counter : allEventRecordsCounters.getAll()) {
+            countedOnPublish.put(counter.getCategory(), counter.getEventCount());
+        }
+        Map<String, Integer> lastSequenceNumbers = new HashMap<>();
+        Set<String> categories = new LinkedHashSet<>();
+        categories.add(""); // counter for all categories
+        for (EventRecordsCounter lastSequenceNumber : allEventRecordsCounters.findLastSequenceNumbers()) {
+            lastSequenceNumbers.put(lastSequenceNumber.getCategory(), lastSequenceNumber.getEventCount());
+            categories.add(lastSequenceNumber.getCategory());
+        }
+        categories.addAll(countedOnPublish.keySet());
+
+        List<EventRecordsCounter> inconsistent = new ArrayList<>();
+        for (String category : categories) {
+            int expected = valueOf(lastSequenceNumbers, category);
+            int count = valueOf(countedOnPublish, category);
+            if (count != expected) {
+                logger.warn(String.format("Event counter for category '%s' is %d, but the last sequence number is %d", category, count, expected));
+                inconsistent.add(new EventRecordsCounter(category, expected));
+            }
+        }
+        return inconsistent;
+    }
+
+    private int valueOf(Map<String, Integer> counts, String category) {
+        Integer count = counts.get(category);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public void rebuildCounters() {
+        allEventRecordsCounters.rebuild();
+    }
+}
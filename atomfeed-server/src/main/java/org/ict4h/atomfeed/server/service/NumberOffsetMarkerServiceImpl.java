@@ -1,28 +1,35 @@
 package org.ict4h.atomfeed.server.service;
 
-import org.ict4h.atomfeed.server.domain.EventFeed;
-import org.ict4h.atomfeed.server.domain.EventRecord;
-import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
-import org.ict4h.atomfeed.server.domain.chunking.number.NumberChunkingHistory;
+import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.server.domain.EventRecordsOffsetMarker;
+import org.ict4h.atomfeed.server.domain.chunking.number.NumberChunkingIndex;
 import org.ict4h.atomfeed.server.domain.chunking.number.NumberRange;
 import org.ict4h.atomfeed.server.repository.AllEventRecords;
 import org.ict4h.atomfeed.server.repository.ChunkingEntries;
 import org.ict4h.atomfeed.server.repository.AllEventRecordsOffsetMarkers;
 
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
+/**
+ * Keeps a marker per category at the last event of the feed that is a given number of events behind the head,
+ * along with the number of events up to it. Markers are moved forward from where they are, counting
+ * only the ids of the events added since.
+ * <p>
+ * Publishers are serialized by the lock on the all-categories counter, which they take before inserting, so events are
+ * committed in the order of their ids and none shows up below a marker once it has moved past.
+ */
 public class NumberOffsetMarkerServiceImpl implements OffsetMarkerService {
+    private static Logger logger = Logger.getLogger(NumberOffsetMarkerServiceImpl.class);
 
     private AllEventRecords allEventRecords;
     private AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers;
-    private NumberChunkingHistory chunkingHistory;
+    private ChunkingEntries chunkingEntries;
+    private volatile NumberChunkingIndex chunkingIndex;
 
     public NumberOffsetMarkerServiceImpl(AllEventRecords allEventRecords, ChunkingEntries chunkingEntries, AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers) {
         this.allEventRecords = allEventRecords;
         this.allEventRecordsOffsetMarkers = allEventRecordsOffsetMarkers;
-        this.chunkingHistory = getChunkingHistory(chunkingEntries);
+        this.chunkingEntries = chunkingEntries;
     }
 
     @Override
@@ -35,51 +42,54 @@ public class NumberOffsetMarkerServiceImpl implements OffsetMarkerService {
     @Override
     public void markEvents(String[] categories, Integer offsetBy) {
         for (String category : categories) {
-            offsetEventsForCategory(category, offsetBy);
+            markEventsForCategory(category, offsetBy);
         }
     }
 
-    private void offsetEventsForCategory(String category, int markerOffset) {
+    @Override
+    public int markEventsForCategory(String category, Integer offsetBy) {
+        NumberChunkingIndex chunkingIndex = getChunkingIndex();
         int countForCategory = allEventRecords.getTotalCountForCategory(category);
-        int latestFeedId = chunkingHistory.getNumberOfFeeds(countForCategory);
-        if(latestFeedId == 0) {
-            return;
+        int latestFeedId = chunkingIndex.getNumberOfFeeds(countForCategory);
+        if (latestFeedId == 0) {
+            return 0;
         }
-        int markedEventsCount = (countForCategory - markerOffset);
+        int markedEventsCount = countForCategory - offsetBy;
         if (markedEventsCount <= 0) {
-            return;
+            return 0;
         }
 
-        int markedFeedId = chunkingHistory.getNumberOfFeeds(markedEventsCount);
-        EventFeed feed = findFeed(markedFeedId, category, markedEventsCount);
-        List<EventRecord> events = feed.getEvents();
-        Collections.sort(events, new Comparator<EventRecord>() {
-            @Override
-            public int compare(EventRecord e1, EventRecord e2) {
-                return (e1.getId() > e2.getId() ? -1 : (e1.getId().equals(e2.getId()) ? 0 : 1));
-            }
-        });
+        int markedFeedId = chunkingIndex.getNumberOfFeeds(markedEventsCount);
+        NumberRange feedRange = chunkingIndex.findRange(markedFeedId, markedEventsCount);
+        int markedCount = Math.min(feedRange.getOffset() + feedRange.getLimit(), countForCategory);
 
-        if (events.isEmpty()) {
-            return;
+        //A marker ahead of the target (e.g. a larger offset than before) is recomputed from the start.
+        EventRecordsOffsetMarker marker = allEventRecordsOffsetMarkers.get(category);
+        int fromId = 0;
+        int fromCount = 0;
+        if (marker != null && marker.getEventId() != null && marker.getEventCount() != null
+                && marker.getEventCount() <= markedCount) {
+            fromId = marker.getEventId();
+            fromCount = marker.getEventCount();
         }
-        EventRecord lastEventInFeed = events.get(0);
-        int totalCountForCategory = allEventRecords.getTotalCountForCategory(category, null, lastEventInFeed.getId());
-        allEventRecordsOffsetMarkers.addOrUpdate(category, lastEventInFeed.getId(), totalCountForCategory);
-    }
-
-    private EventFeed findFeed(int feedId, String category, int totalCountForCategory) {
-        NumberRange feedRange = chunkingHistory.findRange(feedId, totalCountForCategory);
-        List<EventRecord> events = allEventRecords.getEventsFromRangeForCategory(category, feedRange.getOffset(), feedRange.getLimit(), 0);
-        return new EventFeed(feedId, events);
+        int rowsToScan = markedCount - fromCount;
+        if (rowsToScan == 0) {
+            return 0;
+        }
+        Integer markedEventId = allEventRecords.findIdOfEventAfter(category, fromId, rowsToScan);
+        if (markedEventId == null) {
+            logger.warn(String.format("Not moving the offset marker of category '%s', there are fewer than %d events after event %d",
+                    category, rowsToScan, fromId));
+            return rowsToScan;
+        }
+        allEventRecordsOffsetMarkers.addOrUpdate(category, markedEventId, markedCount);
+        return rowsToScan;
     }
 
-    private NumberChunkingHistory getChunkingHistory(ChunkingEntries chunkingEntries) {
-        NumberChunkingHistory numberBasedChunking = new NumberChunkingHistory();
-        List<ChunkingHistoryEntry> allEntries = chunkingEntries.all();
-        for (ChunkingHistoryEntry entry : allEntries) {
-            numberBasedChunking.add(entry.getSequenceNumber(), entry.getInterval().intValue(), entry.getLeftBound().intValue());
+    private NumberChunkingIndex getChunkingIndex() {
+        if (chunkingIndex == null) {
+            chunkingIndex = NumberChunkingIndex.of(chunkingEntries.all());
         }
-        return numberBasedChunking;
+        return chunkingIndex;
     }
 }
@@ -0,0 +1,237 @@
+package org.ict4h.atomfeed.server.service;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.server.domain.CategorySet;
+import org.ict4h.atomfeed.server.repository.AllEventRecords;
+import org.ict4h.atomfeed.transaction.AFTransactionManager;
+import org.ict4h.atomfeed.transaction.AFTransactionWork;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the offset markers close to the head of their categories by running the {@link OffsetMarkerService}
+ * periodically. Categories are marked in parallel, each in a transaction of its own, by a bounded pool of threads.
+ * <p>
+ * The categories marked are those with events and all categories together, along with the
+ * {@link CategorySet category sets} the scheduler is given, as sets are only known from the feeds asked for.
+ * <p>
+ * The scheduler does nothing until {@link #start()} is called, and nothing at all if its period is not positive.
+ */
+public class OffsetMarkerScheduler {
+    public static final int DEFAULT_PARALLELISM = 2;
+
+    private static Logger logger = Logger.getLogger(OffsetMarkerScheduler.class);
+
+    private final AllEventRecords allEventRecords;
+    private final OffsetMarkerService offsetMarkerService;
+    private final AFTransactionManager atomTxManager;
+    private final int offsetBy;
+    private final int parallelism;
+    private final long periodMillis;
+    private final List<String> categorySets;
+    private ScheduledExecutorService scheduler;
+    private ExecutorService workers;
+    private volatile Run lastRun;
+
+    public OffsetMarkerScheduler(AllEventRecords allEventRecords, OffsetMarkerService offsetMarkerService, AFTransactionManager atomTxManager,
+                                 int offsetBy, long periodMillis) {
+        this(allEventRecords, offsetMarkerService, atomTxManager, offsetBy, periodMillis, DEFAULT_PARALLELISM);
+    }
+
+    public OffsetMarkerScheduler(AllEventRecords allEventRecords, OffsetMarkerService offsetMarkerService, AFTransactionManager atomTxManager,
+                                 int offsetBy, long periodMillis, int parallelism) {
+        this(allEventRecords, offsetMarkerService, atomTxManager, offsetBy, periodMillis, parallelism, null);
+    }
+
+    /**
+     * @param categorySets the category sets to mark too, separated by semicolons, e.g. {@code patient,encounter;lab,radiology}
+     */
+    public OffsetMarkerScheduler(AllEventRecords allEventRecords, OffsetMarkerService offsetMarkerService, AFTransactionManager atomTxManager,
+                                 int offsetBy, long periodMillis, int parallelism, String categorySets) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.allEventRecords = allEventRecords;
+        this.offsetMarkerService = offsetMarkerService;
+        this.atomTxManager = atomTxManager;
+        this.offsetBy = offsetBy;
+        this.periodMillis = periodMillis;
+        this.parallelism = parallelism;
+        this.categorySets = new ArrayList<>();
+        for (String categorySet : StringUtils.split(StringUtils.defaultString(categorySets), ';')) {
+            if (CategorySet.isSet(categorySet)) {
+                this.categorySets.add(CategorySet.canonical(categorySet));
+            }
+        }
+    }
+
+    public synchronized void start() {
+        if (periodMillis <= 0 || scheduler != null) {
+            return;
+        }
+        workers = Executors.newFixedThreadPool(parallelism, daemonThreads("atomfeed-offset-marker-"));
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("atomfeed-offset-marker-scheduler-"));
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runOnce();
+                } catch (Exception e) {
+                    logger.error("error occurred while marking offsets", e);
+                }
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+        scheduler = null;
+        workers = null;
+    }
+
+    /**
+     * Marks every category (and all categories together) once, waiting for all of them.
+     * A category that fails is logged and counted, it does not stop the others.
+     */
+    public Run runOnce() {
+        long start = System.currentTimeMillis();
+        List<String> categories = findCategories();
+        ExecutorService executor = workers != null ? workers : Executors.newFixedThreadPool(parallelism, daemonThreads("atomfeed-offset-marker-"));
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (final String category : categories) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return markEventsForCategory(category);
+                    }
+                }));
+            }
+            long rowsScanned = 0;
+            int failedCategories = 0;
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    rowsScanned += results.get(i).get();
+                } catch (ExecutionException e) {
+                    failedCategories++;
+                    logger.error(String.format("error occurred while marking offsets of category '%s'", categories.get(i)), e.getCause());
+                }
+            }
+            Run run = new Run(categories.size(), failedCategories, rowsScanned, System.currentTimeMillis() - start);
+            lastRun = run;
+            logger.info(run);
+            return run;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while marking offsets", e);
+        } finally {
+            if (executor != workers) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    public Run getLastRun() {
+        return lastRun;
+    }
+
+    private List<String> findCategories() {
+        List<String> categories = atomTxManager.executeWithTransaction(new AFTransactionWork<List<String>>() {
+            @Override
+            public List<String> execute() {
+                return allEventRecords.findCategories();
+            }
+
+            @Override
+            public PropagationDefinition getTxPropagationDefinition() {
+                return PropagationDefinition.PROPAGATION_REQUIRED;
+            }
+        });
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String category : categories) {
+            distinct.add(category == null ? "" : category);
+        }
+        distinct.add(""); // marker for all categories
+        distinct.addAll(categorySets);
+        return new ArrayList<>(distinct);
+    }
+
+    private int markEventsForCategory(final String category) {
+        return atomTxManager.executeWithTransaction(new AFTransactionWork<Integer>() {
+            @Override
+            public Integer execute() {
+                return offsetMarkerService.markEventsForCategory(category, offsetBy);
+            }
+
+            @Override
+            public PropagationDefinition getTxPropagationDefinition() {
+                return PropagationDefinition.PROPAGATION_REQUIRES_NEW;
+            }
+        });
+    }
+
+    private static ThreadFactory daemonThreads(final String namePrefix) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public static class Run {
+        private final int categories;
+        private final int failedCategories;
+        private final long rowsScanned;
+        private final long durationMillis;
+
+        public Run(int categories, int failedCategories, long rowsScanned, long durationMillis) {
+            this.categories = categories;
+            this.failedCategories = failedCategories;
+            this.rowsScanned = rowsScanned;
+            this.durationMillis = durationMillis;
+        }
+
+        public int getCategories() {
+            return categories;
+        }
+
+        public int getFailedCategories() {
+            return failedCategories;
+        }
+
+        public long getRowsScanned() {
+            return rowsScanned;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Offset markers run{categories=%d, failed=%d, rowsScanned=%d, durationMillis=%d}",
+                    categories, failedCategories, rowsScanned, durationMillis);
+        }
+    }
+}
@@ -6,4 +6,12 @@ public interface OffsetMarkerService {
 
     void markEvents(String[] categories, Integer offsetBy);
 
+    /**
+     * Moves the marker of a category (blank for all categories) to the last event of the feed that is
+     * {@code offsetBy} events behind the head of the category.
+     *
+     * @return the number of event rows read to move the marker
+     */
+    int markEventsForCategory(String category, Integer offsetBy);
+
 }
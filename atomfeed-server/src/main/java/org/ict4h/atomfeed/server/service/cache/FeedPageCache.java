@@ -0,0 +1,130 @@
+package org.ict4h.atomfeed.server.service.cache;
+
+import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.server.domain.FeedPage;
+import org.ict4h.atomfeed.server.service.feedgenerator.FeedGenerator;
+import org.ict4h.atomfeed.server.service.writer.FeedFormat;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used cache of serialized archive feed pages, bounded by the number of bytes it holds.
+ * <p>
+ * An archive page (any page but the recent one) never changes once the feed has moved past it, so it is
+ * safe to serve it from memory for as long as the chunking history it was generated with is in use.
+ * Pages are keyed by the request uri (the links in a page are derived from it), category, feed id and the
+ * chunking history version of the {@link FeedGenerator}, by format and by content encoding, so that a compressed variant
+ * is stored compressed and never compressed again. Callers must only put pages that are archived.
+ */
+public class FeedPageCache {
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    private static Logger logger = Logger.getLogger(FeedPageCache.class);
+
+    private final FeedGenerator feedGenerator;
+    private final long maxBytes;
+    private final LinkedHashMap<FeedPageKey, FeedPage> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeInBytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public FeedPageCache(FeedGenerator feedGenerator) {
+        this(feedGenerator, DEFAULT_MAX_BYTES);
+    }
+
+    public FeedPageCache(FeedGenerator feedGenerator, long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+        this.feedGenerator = feedGenerator;
+        this.maxBytes = maxBytes;
+    }
+
+    public FeedPageKey keyFor(String requestUri, String category, Integer feedId, String contentEncoding, FeedFormat format) {
+        return new FeedPageKey(requestUri, category, feedId, feedGenerator.getChunkingHistoryVersion(), contentEncoding, format);
+    }
+
+    public FeedPage get(String requestUri, String category, Integer feedId) {
+        return get(keyFor(requestUri, category, feedId, null, FeedFormat.ATOM));
+    }
+
+    public void put(String requestUri, String category, Integer feedId, FeedPage page) {
+        put(keyFor(requestUri, category, feedId, null, FeedFormat.ATOM), page);
+    }
+
+    public synchronized FeedPage get(FeedPageKey key) {
+        FeedPage page = pages.get(key);
+        if (page == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return page;
+    }
+
+    public synchronized void put(FeedPageKey key, FeedPage page) {
+        long size = sizeOf(key, page);
+        if (size > maxBytes) {
+            logger.debug(String.format("Not caching %s, %d bytes exceed the cache size of %d bytes", key, size, maxBytes));
+            return;
+        }
+        FeedPage previous = pages.put(key, page);
+        if (previous != null) {
+            sizeInBytes -= sizeOf(key, previous);
+        }
+        sizeInBytes += size;
+        evictEldestUntilWithinBounds();
+    }
+
+    public synchronized void clear() {
+        pages.clear();
+        sizeInBytes = 0;
+    }
+
+    private void evictEldestUntilWithinBounds() {
+        Iterator<Map.Entry<FeedPageKey, FeedPage>> eldestFirst = pages.entrySet().iterator();
+        while (sizeInBytes > maxBytes && eldestFirst.hasNext()) {
+            Map.Entry<FeedPageKey, FeedPage> eldest = eldestFirst.next();
+            sizeInBytes -= sizeOf(eldest.getKey(), eldest.getValue());
+            eldestFirst.remove();
+            evictionCount++;
+        }
+    }
+
+    private long sizeOf(FeedPageKey key, FeedPage page) {
+        return key.estimatedSize() + page.getSize();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public synchronized int getPageCount() {
+        return pages.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("FeedPageCache{pages=%d, sizeInBytes=%d, maxBytes=%d, hits=%d, misses=%d, evictions=%d}",
+                pages.size(), sizeInBytes, maxBytes, hitCount, missCount, evictionCount);
+    }
+}
@@ -0,0 +1,96 @@
+package org.ict4h.atomfeed.server.service.cache;
+
+import org.ict4h.atomfeed.server.service.writer.FeedFormat;
+
+public class FeedPageKey {
+    private final String requestUri;
+    private final String category;
+    private final Integer feedId;
+    private final String chunkingHistoryVersion;
+    private final String contentEncoding;
+    private final FeedFormat format;
+
+    public FeedPageKey(String requestUri, String category, Integer feedId, String chunkingHistoryVersion) {
+        this(requestUri, category, feedId, chunkingHistoryVersion, null);
+    }
+
+    public FeedPageKey(String requestUri, String category, Integer feedId, String chunkingHistoryVersion, String contentEncoding) {
+        this(requestUri, category, feedId, chunkingHistoryVersion, contentEncoding, FeedFormat.ATOM);
+    }
+
+    public FeedPageKey(String requestUri, String category, Integer feedId, String chunkingHistoryVersion, String contentEncoding,
+                       FeedFormat format) {
+        this.requestUri = requestUri;
+        this.category = category == null ? "" : category;
+        this.feedId = feedId;
+        this.chunkingHistoryVersion = chunkingHistoryVersion;
+        this.contentEncoding = contentEncoding == null ? "" : contentEncoding;
+        this.format = format == null ? FeedFormat.ATOM : format;
+    }
+
+    public String getRequestUri() {
+        return requestUri;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Integer getFeedId() {
+        return feedId;
+    }
+
+    public String getChunkingHistoryVersion() {
+        return chunkingHistoryVersion;
+    }
+
+    /**
+     * @return the encoding of the cached variant of the page, empty for the uncompressed one
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public FeedFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return a rough estimate of the memory held by the key, counted against the cache size.
+     */
+    long estimatedSize() {
+        return 2L * (requestUri.length() + category.length() + String.valueOf(chunkingHistoryVersion).length() + contentEncoding.length());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        FeedPageKey that = (FeedPageKey) o;
+
+        if (!requestUri.equals(that.requestUri)) return false;
+        if (!category.equals(that.category)) return false;
+        if (feedId != null ? !feedId.equals(that.feedId) : that.feedId != null) return false;
+        if (!contentEncoding.equals(that.contentEncoding)) return false;
+        if (format != that.format) return false;
+        return chunkingHistoryVersion != null ? chunkingHistoryVersion.equals(that.chunkingHistoryVersion) : that.chunkingHistoryVersion == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = requestUri.hashCode();
+        result = 31 * result + category.hashCode();
+        result = 31 * result + (feedId != null ? feedId.hashCode() : 0);
+        result = 31 * result + (chunkingHistoryVersion != null ? chunkingHistoryVersion.hashCode() : 0);
+        result = 31 * result + contentEncoding.hashCode();
+        result = 31 * result + format.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FeedPageKey{requestUri=%s, category=%s, feedId=%d, chunkingHistoryVersion=%s, contentEncoding=%s, format=%s}",
+                requestUri, category, feedId, chunkingHistoryVersion, contentEncoding, format);
+    }
+}
@@ -0,0 +1,198 @@
+package org.ict4h.atomfeed.server.service.encoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compresses feed pages at a given level and keeps count of the bytes it saved.
+ * <p>
+ * Archive pages are compressed once with {@link #compress(byte[])} and cached compressed; the recent page is
+ * compressed as it is written with {@link #compressing(OutputStream)}.
+ */
+public class GzipFeedEncoder {
+    public static final String GZIP = "gzip";
+    public static final int DEFAULT_LEVEL = 6;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int level;
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong compressedPages = new AtomicLong();
+
+    public GzipFeedEncoder() {
+        this(DEFAULT_LEVEL);
+    }
+
+    /**
+     * @param level the deflate level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public GzipFeedEncoder(int level) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("gzip level must be between 1 and 9, was " + level);
+        }
+        this.level = level;
+    }
+
+    /**
+     * @return true if the Accept-Encoding header value allows gzip, i.e. it lists gzip without q=0, or it does not
+     * list gzip but accepts any encoding (*).
+     */
+    public static boolean isAccepted(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean anyAccepted = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            if (GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+                return !isRefused(parameters);
+            }
+            if ("*".equals(name)) {
+                anyAccepted = !isRefused(parameters);
+            }
+        }
+        return anyAccepted != null && anyAccepted;
+    }
+
+    private static boolean isRefused(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim()) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public byte[] compress(byte[] content) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, content.length / 8));
+        CompressingOutputStream out = compressing(compressed);
+        out.write(content);
+        out.finish();
+        return compressed.toByteArray();
+    }
+
+    /**
+     * @return a stream compressing what is written to it into {@code out}. {@link CompressingOutputStream#finish()}
+     * must be called once everything is written; it does not close {@code out}.
+     */
+    public CompressingOutputStream compressing(OutputStream out) throws IOException {
+        return new CompressingOutputStream(out);
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes.get();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    public long getBytesSaved() {
+        return uncompressedBytes.get() - compressedBytes.get();
+    }
+
+    public long getCompressedPages() {
+        return compressedPages.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GzipFeedEncoder{level=%d, pages=%d, uncompressedBytes=%d, compressedBytes=%d, bytesSaved=%d}",
+                level, getCompressedPages(), getUncompressedBytes(), getCompressedBytes(), getBytesSaved());
+    }
+
+    public class CompressingOutputStream extends FilterOutputStream {
+        private final CountingOutputStream target;
+        private final GZIPOutputStream gzip;
+        private long written;
+        private boolean finished;
+
+        private CompressingOutputStream(OutputStream out) throws IOException {
+            this(new CountingOutputStream(out));
+        }
+
+        private CompressingOutputStream(CountingOutputStream target) throws IOException {
+            super(target);
+            this.target = target;
+            this.gzip = new GZIPOutputStream(target, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            gzip.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            gzip.write(b, off, len);
+            written += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            gzip.flush();
+        }
+
+        /**
+         * Writes the rest of the compressed data and counts the page in the metrics.
+         */
+        public void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            gzip.finish();
+            target.flush();
+            uncompressedBytes.addAndGet(written);
+            compressedBytes.addAndGet(target.count);
+            compressedPages.incrementAndGet();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            super.close();
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
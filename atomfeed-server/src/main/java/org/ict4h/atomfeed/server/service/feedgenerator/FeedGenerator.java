@@ -1,8 +1,48 @@
 package org.ict4h.atomfeed.server.service.feedgenerator;
 
 import org.ict4h.atomfeed.server.domain.EventFeed;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.exceptions.FeedNotFoundException;
+import org.ict4h.atomfeed.server.repository.EventRecordHandler;
 
 public interface FeedGenerator {
     EventFeed getFeedForId(Integer feedId, String category);
     EventFeed getRecentFeed(String category);
+
+    /**
+     * Same as {@link #getFeedForId(Integer, String)} for a part of the feed, parts being numbered from 1, the first part
+     * being the feed itself. The returned feed may be streamed, i.e. carry only what is needed for its header (id,
+     * newest event id and date); its events are read by {@link #forEachEvent}.
+     * By default feeds are neither split into parts nor streamed.
+     *
+     * @throws FeedNotFoundException when there is no such feed, or the feed has no such part
+     */
+    default EventFeed getFeedHeadForId(Integer feedId, int part, String category) {
+        if (part != 1) {
+            throw new FeedNotFoundException(String.format("Feed:%d is not split into parts", feedId));
+        }
+        return getFeedForId(feedId, category);
+    }
+
+    /**
+     * Same as {@link #getRecentFeed(String)}, but the returned feed may be streamed. See {@link #getFeedHeadForId}.
+     */
+    default EventFeed getRecentFeedHead(String category) {
+        return getRecentFeed(category);
+    }
+
+    /**
+     * Hands the events of a feed to the handler in feed order, reading them from the database when the feed is streamed.
+     */
+    default void forEachEvent(EventFeed feed, EventRecordHandler handler) {
+        for (EventRecord eventRecord : feed.getEvents()) {
+            handler.handle(eventRecord);
+        }
+    }
+
+    /**
+     * @return an identifier of the chunking history the feeds are generated with. It changes whenever
+     * the chunking history changes, i.e. whenever the same feed id could map to a different set of events.
+     */
+    String getChunkingHistoryVersion();
 }
@@ -1,6 +1,7 @@
 package org.ict4h.atomfeed.server.service.feedgenerator;
 
 import org.ict4h.atomfeed.server.repository.AllEventRecords;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsTimeWindows;
 import org.ict4h.atomfeed.server.repository.ChunkingEntries;
 import org.ict4h.atomfeed.server.repository.AllEventRecordsOffsetMarkers;
 import org.ict4h.atomfeed.server.service.helper.ResourceHelper;
@@ -8,21 +9,38 @@ import org.ict4h.atomfeed.server.service.helper.ResourceHelper;
 public class FeedGeneratorFactory {
 
     public static final String NumberBasedChunkingStrategy = "number";
+    public static final String OffsetPagingStrategy = "offset";
+    public static final String DefaultTimeMaxPageSize = "1000";
     private ResourceHelper resourceHelper;
 
     public FeedGenerator getFeedGenerator(AllEventRecords allEventRecords, AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers, ChunkingEntries allChunkingEntries, ResourceHelper resourceHelper) {
+        return getFeedGenerator(allEventRecords, allEventRecordsOffsetMarkers, allChunkingEntries, null, resourceHelper);
+    }
+
+    public FeedGenerator getFeedGenerator(AllEventRecords allEventRecords, AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers, ChunkingEntries allChunkingEntries,
+                                          AllEventRecordsTimeWindows allEventRecordsTimeWindows, ResourceHelper resourceHelper) {
         this.resourceHelper = resourceHelper;
-        return get(getChunkingStrategy(), allEventRecords, allEventRecordsOffsetMarkers, allChunkingEntries);
+        return get(getChunkingStrategy(), allEventRecords, allEventRecordsOffsetMarkers, allChunkingEntries, allEventRecordsTimeWindows);
     }
 
-    private FeedGenerator get(String chunkingStrategy, AllEventRecords allEventRecords, AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers, ChunkingEntries allChunkingEntries) {
+    private FeedGenerator get(String chunkingStrategy, AllEventRecords allEventRecords, AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers, ChunkingEntries allChunkingEntries,
+                              AllEventRecordsTimeWindows allEventRecordsTimeWindows) {
         if (NumberBasedChunkingStrategy.equals(chunkingStrategy)) {
-            return new NumberFeedGenerator(allEventRecords, allEventRecordsOffsetMarkers, allChunkingEntries);
+            return new NumberFeedGenerator(allEventRecords, allEventRecordsOffsetMarkers, allChunkingEntries, getPaging());
         } else {
-            return new TimeFeedGenerator(allEventRecords, allChunkingEntries);
+            return new TimeFeedGenerator(allEventRecords, allChunkingEntries, allEventRecordsTimeWindows, getTimeMaxPageSize());
         }
     }
 
+    private int getTimeMaxPageSize() {
+        return Integer.parseInt(resourceHelper.fetchKeyOrDefault("feed.time.max_page_size", DefaultTimeMaxPageSize));
+    }
+
+    private NumberFeedGenerator.Paging getPaging() {
+        String pagingStrategy = resourceHelper.fetchKeyOrDefault("paging.strategy", "sequence");
+        return OffsetPagingStrategy.equals(pagingStrategy) ? NumberFeedGenerator.Paging.OFFSET : NumberFeedGenerator.Paging.SEQUENCE;
+    }
+
     //TODO:This logic of retrieving keys using a bundle is duplicated. Use a ResourceWrapper.
     private String getChunkingStrategy() {
         return resourceHelper.fetchKeyOrDefault("chunking.strategy", NumberBasedChunkingStrategy);
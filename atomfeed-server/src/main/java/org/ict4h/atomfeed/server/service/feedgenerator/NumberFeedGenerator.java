@@ -1,77 +1,165 @@
 package org.ict4h.atomfeed.server.service.feedgenerator;
 
+import org.ict4h.atomfeed.server.domain.CategorySet;
 import org.ict4h.atomfeed.server.domain.EventFeed;
 import org.ict4h.atomfeed.server.domain.EventRecord;
 import org.ict4h.atomfeed.server.domain.EventRecordsOffsetMarker;
+import org.ict4h.atomfeed.server.domain.FeedPlan;
 import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
-import org.ict4h.atomfeed.server.domain.chunking.number.NumberChunkingHistory;
+import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryVersion;
+import org.ict4h.atomfeed.server.domain.chunking.number.NumberChunkingIndex;
 import org.ict4h.atomfeed.server.domain.chunking.number.NumberRange;
-import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+import org.ict4h.atomfeed.server.exceptions.FeedNotFoundException;
 import org.ict4h.atomfeed.server.repository.AllEventRecords;
 import org.ict4h.atomfeed.server.repository.ChunkingEntries;
 import org.ict4h.atomfeed.server.repository.AllEventRecordsOffsetMarkers;
+import org.ict4h.atomfeed.server.repository.EventRecordHandler;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class NumberFeedGenerator implements FeedGenerator {
+    /**
+     * How the events of a feed are fetched. {@code SEQUENCE} fetches a range of the gap-free sequence numbers
+     * assigned on publish, at constant cost for any feed. {@code OFFSET} pages by id with limit/offset, which gets
+     * slower the deeper the feed unless the offset markers are kept up to date.
+     * <p>
+     * Events are not numbered across a {@link CategorySet category set}, so its feeds are chunked over the count of
+     * its events, in id order, whatever the paging: a page is read on by id from the id before it, found from the
+     * offset marker of the set reading only ids. The events of a {@link org.ict4h.atomfeed.server.domain.CategoryTag
+     * category with a tag} are numbered among themselves, so its feeds are paged like those of a category.
+     */
+    public enum Paging {
+        SEQUENCE, OFFSET
+    }
+
     private AllEventRecords allEventRecords;
     private AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers;
     private ChunkingEntries chunkingEntries;
-    private NumberChunkingHistory numberChunkingHistory;
+    private volatile LoadedChunkingHistory chunkingHistory;
+    private final Paging paging;
     private final Object lockObject = new Object();
 
     public NumberFeedGenerator(AllEventRecords eventsRecord, AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers, ChunkingEntries chunkingEntries) {
+        this(eventsRecord, allEventRecordsOffsetMarkers, chunkingEntries, Paging.SEQUENCE);
+    }
+
+    public NumberFeedGenerator(AllEventRecords eventsRecord, AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers, ChunkingEntries chunkingEntries, Paging paging) {
         this.allEventRecords = eventsRecord;
         this.allEventRecordsOffsetMarkers = allEventRecordsOffsetMarkers;
         this.chunkingEntries = chunkingEntries;
+        this.paging = paging;
     }
 
     @Override
     public EventFeed getFeedForId(Integer feedId, String category) {
-        EventRecordsOffsetMarker marker = findMarker(category);
-        int totalCountForCategory = getTotalCountForCategory(category, marker);
-        validateFeedId(feedId, totalCountForCategory);
-        return findFeed(feedId, category, totalCountForCategory, marker);
+        if ((feedId == null) || (feedId <= 0)) {
+            throw new FeedNotFoundException("feedId must not be null and must be greater than 0");
+        }
+        NumberFeedPlan plan = planFor(feedId, category);
+        if (feedId > plan.getLatestFeedId()) {
+            throw new FeedNotFoundException("feed does not exist");
+        }
+        return findFeed(plan);
     }
 
     @Override
     public EventFeed getRecentFeed(String category) {
-        EventRecordsOffsetMarker marker = findMarker(category);
-        int totalCountForCategory = getTotalCountForCategory(category, marker);
-        int latestFeed = getNumberChunkingHistory().getNumberOfFeeds(totalCountForCategory);
-        if (isFeedZeroWithoutAnyEvents(latestFeed)) {
-            return new EventFeed(0, new ArrayList<EventRecord>());
+        NumberFeedPlan plan = planFor(null, category);
+        if (isFeedZeroWithoutAnyEvents(plan.getLatestFeedId())) {
+            return new EventFeed(plan, new ArrayList<EventRecord>());
         }
-        return findFeed(latestFeed, category, totalCountForCategory, marker);
+        return findFeed(plan);
     }
 
-    private int getTotalCountForCategory(String category, EventRecordsOffsetMarker marker) {
-        Integer eventCountTillOffset = (marker != null) ? marker.getEventCount() : 0;
-        Integer offsetEventId = (marker != null) ? marker.getEventId() : null;
-        int totalCountBeyondOffset = allEventRecords.getTotalCountForCategory(category, offsetEventId, null);
-        return eventCountTillOffset + totalCountBeyondOffset;
+    /**
+     * Number chunked feeds are bounded by their chunk length, so they are never split into parts.
+     * In {@code SEQUENCE} paging, the feed is streamed: only the newest event of the page is read up front.
+     */
+    @Override
+    public EventFeed getFeedHeadForId(Integer feedId, int part, String category) {
+        if (part != 1) {
+            throw new FeedNotFoundException(String.format("Feed:%d is not split into parts", feedId));
+        }
+        if ((feedId == null) || (feedId <= 0)) {
+            throw new FeedNotFoundException("feedId must not be null and must be greater than 0");
+        }
+        NumberFeedPlan plan = planFor(feedId, category);
+        if (feedId > plan.getLatestFeedId()) {
+            throw new FeedNotFoundException("feed does not exist");
+        }
+        return findFeedHead(plan);
     }
 
-    private EventRecordsOffsetMarker findMarker(String category) {
-        List<EventRecordsOffsetMarker> markers = allEventRecordsOffsetMarkers.getAll();
-        String markerCategory = category == null ? "" : category;
-        for (EventRecordsOffsetMarker marker : markers) {
-            if (markerCategory.equalsIgnoreCase(marker.getCategory())) {
-                return marker;
+    @Override
+    public EventFeed getRecentFeedHead(String category) {
+        NumberFeedPlan plan = planFor(null, category);
+        if (isFeedZeroWithoutAnyEvents(plan.getLatestFeedId())) {
+            return new EventFeed(plan, new ArrayList<EventRecord>());
+        }
+        return findFeedHead(plan);
+    }
+
+    @Override
+    public void forEachEvent(EventFeed feed, EventRecordHandler handler) {
+        if (!feed.isStreamed()) {
+            for (EventRecord eventRecord : feed.getEvents()) {
+                handler.handle(eventRecord);
             }
+            return;
         }
-        return null;
+        NumberRange feedRange = ((NumberFeedPlan) feed.getPlan()).range;
+        int firstSeq = feedRange.getOffset() + 1;
+        allEventRecords.forEachEventInSequenceRange(feed.getPlan().getCategory(), firstSeq, firstSeq + feedRange.getLimit() - 1, handler);
+    }
+
+    @Override
+    public String getChunkingHistoryVersion() {
+        return getChunkingHistory().version;
+    }
+
+    private EventRecordsOffsetMarker findMarker(String category) {
+        if (isSequenced(category)) {
+            return null;
+        }
+        return allEventRecordsOffsetMarkers.get(category);
+    }
+
+    /**
+     * Resolves the marker, the total and the latest feed id once; the range only when the feed exists.
+     * A null feed id plans the latest feed.
+     */
+    private NumberFeedPlan planFor(Integer feedId, String category) {
+        EventRecordsOffsetMarker marker = findMarker(category);
+        int totalCount = allEventRecords.getTotalCountForCategory(category);
+        int latestFeedId = getNumberChunkingIndex().getNumberOfFeeds(totalCount);
+        int plannedFeedId = feedId == null ? latestFeedId : feedId;
+        NumberRange range = (plannedFeedId > 0 && plannedFeedId <= latestFeedId)
+                ? getNumberChunkingIndex().findRange(plannedFeedId, totalCount) : null;
+        return new NumberFeedPlan(category, plannedFeedId, latestFeedId, marker, range);
     }
 
     private boolean isFeedZeroWithoutAnyEvents(int latestFeed) {
         return latestFeed == 0;
     }
 
-    private EventFeed findFeed(int feedId, String category, int totalCountForCategory, EventRecordsOffsetMarker marker) {
-        NumberRange feedRange = getNumberChunkingHistory().findRange(feedId, totalCountForCategory);
+    private boolean isSequenced(String category) {
+        return paging == Paging.SEQUENCE && !CategorySet.isSet(category);
+    }
+
+    private EventFeed findFeed(NumberFeedPlan plan) {
+        NumberRange feedRange = plan.range;
+        if (CategorySet.isSet(plan.getCategory())) {
+            return new EventFeed(plan, findEventsOfSet(plan));
+        }
+        if (paging == Paging.SEQUENCE) {
+            int firstSeq = feedRange.getOffset() + 1;
+            List<EventRecord> events = allEventRecords.getEventsFromSequenceRange(plan.getCategory(), firstSeq, firstSeq + feedRange.getLimit() - 1);
+            return new EventFeed(plan, events);
+        }
         Integer startEventId = 0;
         int offset = feedRange.getOffset();
+        EventRecordsOffsetMarker marker = plan.marker;
         if (marker != null) {
             int relativeOffset = feedRange.getOffset() - marker.getEventCount();
             if (relativeOffset > 0) {
@@ -79,32 +167,83 @@ public class NumberFeedGenerator implements FeedGenerator {
                 startEventId = marker.getEventId();
             }
         }
-        List<EventRecord> events = allEventRecords.getEventsFromRangeForCategory(category, offset, feedRange.getLimit(), startEventId);
-        return new EventFeed(feedId, events);
+        List<EventRecord> events = allEventRecords.getEventsFromRangeForCategory(plan.getCategory(), offset, feedRange.getLimit(), startEventId);
+        return new EventFeed(plan, events);
     }
 
-    private void validateFeedId(Integer feedId, int totalCountForCategory) {
-        if ((feedId == null) || (feedId <= 0)) {
-            throw new AtomFeedRuntimeException("feedId must not be null and must be greater than 0");
+    private List<EventRecord> findEventsOfSet(NumberFeedPlan plan) {
+        NumberRange feedRange = plan.range;
+        String category = plan.getCategory();
+        int afterId = 0;
+        int afterCount = 0;
+        EventRecordsOffsetMarker marker = plan.marker;
+        if (marker != null && marker.getEventId() != null && marker.getEventCount() != null && marker.getEventCount() <= feedRange.getOffset()) {
+            afterId = marker.getEventId();
+            afterCount = marker.getEventCount();
+        }
+        final List<EventRecord> events = new ArrayList<>();
+        if (feedRange.getOffset() > afterCount) {
+            Integer lastIdBefore = allEventRecords.findIdOfEventAfter(category, afterId, feedRange.getOffset() - afterCount);
+            if (lastIdBefore == null) {
+                return events;
+            }
+            afterId = lastIdBefore;
         }
-        int numberOfFeeds = getNumberChunkingHistory().getNumberOfFeeds(totalCountForCategory);
-        if (feedId > numberOfFeeds) {
-            throw new AtomFeedRuntimeException("feed does not exist");
+        allEventRecords.forEachEventAfter(category, afterId, feedRange.getLimit(), new EventRecordHandler() {
+            @Override
+            public void handle(EventRecord eventRecord) {
+                events.add(eventRecord);
+            }
+        });
+        return events;
+    }
+
+    private EventFeed findFeedHead(NumberFeedPlan plan) {
+        if (!isSequenced(plan.getCategory())) {
+            return findFeed(plan);
         }
+        NumberRange feedRange = plan.range;
+        int firstSeq = feedRange.getOffset() + 1;
+        return new EventFeed(plan, allEventRecords.getSummaryOfSequenceRange(plan.getCategory(), firstSeq, firstSeq + feedRange.getLimit() - 1));
     }
 
-    private NumberChunkingHistory getNumberChunkingHistory() {
-        if (this.numberChunkingHistory == null) {
+    private NumberChunkingIndex getNumberChunkingIndex() {
+        return getChunkingHistory().index;
+    }
+
+    private LoadedChunkingHistory getChunkingHistory() {
+        LoadedChunkingHistory loaded = this.chunkingHistory;
+        if (loaded == null) {
             synchronized (lockObject) {
-                NumberChunkingHistory numberBasedChunking = new NumberChunkingHistory();
-                List<ChunkingHistoryEntry> allEntries = chunkingEntries.all();
-                for (ChunkingHistoryEntry entry : allEntries) {
-                    numberBasedChunking.add(entry.getSequenceNumber(), entry.getInterval().intValue(), entry.getLeftBound().intValue());
+                loaded = this.chunkingHistory;
+                if (loaded == null) {
+                    loaded = new LoadedChunkingHistory(chunkingEntries.all());
+                    this.chunkingHistory = loaded;
                 }
-                this.numberChunkingHistory = numberBasedChunking;
             }
         }
-        return this.numberChunkingHistory;
+        return loaded;
+    }
+
+    //The index and its version are loaded and published together, so a reader never sees one without the other.
+    private static class LoadedChunkingHistory {
+        private final NumberChunkingIndex index;
+        private final String version;
+
+        private LoadedChunkingHistory(List<ChunkingHistoryEntry> entries) {
+            this.index = NumberChunkingIndex.of(entries);
+            this.version = ChunkingHistoryVersion.of(entries);
+        }
     }
 
+    private static class NumberFeedPlan extends FeedPlan {
+        private final EventRecordsOffsetMarker marker;
+        private final NumberRange range;
+
+        private NumberFeedPlan(String category, int feedId, int latestFeedId, EventRecordsOffsetMarker marker, NumberRange range) {
+            super(category, feedId, latestFeedId);
+            this.marker = marker;
+            this.range = range;
+        }
+    }
 }
@@ -1,63 +1,202 @@
 package org.ict4h.atomfeed.server.service.feedgenerator;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
 
 import org.ict4h.atomfeed.server.domain.EventFeed;
 import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.EventRecordKey;
+import org.ict4h.atomfeed.server.domain.FeedPlan;
 import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
-import org.ict4h.atomfeed.server.domain.chunking.time.TimeChunkingHistory;
+import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryVersion;
+import org.ict4h.atomfeed.server.domain.chunking.time.TimeChunkingIndex;
 import org.ict4h.atomfeed.server.domain.chunking.time.TimeRange;
-import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+import org.ict4h.atomfeed.server.exceptions.FeedNotFoundException;
 import org.ict4h.atomfeed.server.repository.AllEventRecords;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsTimeWindows;
 import org.ict4h.atomfeed.server.repository.ChunkingEntries;
 
 public class TimeFeedGenerator implements FeedGenerator {
-    private TimeChunkingHistory timeChunkingHistory;
+    private volatile LoadedChunkingHistory chunkingHistory;
     private final AllEventRecords allEventRecords;
     private ChunkingEntries chunkingEntries;
+    private final AllEventRecordsTimeWindows allEventRecordsTimeWindows;
+    private final int maxPageSize;
     private final Object lockObject = new Object();
 
     public TimeFeedGenerator(AllEventRecords allEventRecords, ChunkingEntries chunkingEntries) {
+        this(allEventRecords, chunkingEntries, null);
+    }
+
+    /**
+     * @param allEventRecordsTimeWindows the windows events were published in, to link past feeds without events;
+     *                                   null to link every feed to its neighbours
+     */
+    public TimeFeedGenerator(AllEventRecords allEventRecords, ChunkingEntries chunkingEntries,
+                             AllEventRecordsTimeWindows allEventRecordsTimeWindows) {
+        this(allEventRecords, chunkingEntries, allEventRecordsTimeWindows, 0);
+    }
+
+    /**
+     * @param maxPageSize the most events a page holds; a feed with more events in its time range is split into parts
+     *                    of that many events each. 0 to never split a feed.
+     */
+    public TimeFeedGenerator(AllEventRecords allEventRecords, ChunkingEntries chunkingEntries,
+                             AllEventRecordsTimeWindows allEventRecordsTimeWindows, int maxPageSize) {
+        if (maxPageSize < 0) {
+            throw new IllegalArgumentException("maxPageSize must not be negative");
+        }
         this.chunkingEntries = chunkingEntries;
         this.allEventRecords = allEventRecords;
+        this.allEventRecordsTimeWindows = allEventRecordsTimeWindows;
+        this.maxPageSize = maxPageSize;
     }
 
     @Override
     public EventFeed getFeedForId(Integer feedId, String category) {
+        return getFeedForId(feedId, 1, category);
+    }
+
+    /**
+     * A part of a feed whose events do not fit one page, parts being numbered from 1, the first part being the feed itself.
+     *
+     * @throws FeedNotFoundException when there is no such feed, or the feed has no such part
+     */
+    public EventFeed getFeedForId(Integer feedId, int part, String category) {
         validateFeedId(feedId);
-        return feedFor(feedId, category);
+        return feedFor(feedId, part, category);
     }
 
     @Override
     public EventFeed getRecentFeed(String category) {
-        return feedFor(getTimeChunkingHistory().getWorkingFeedId(), category);
+        int workingFeedId = getTimeChunkingIndex().getWorkingFeedId();
+        return feedFor(workingFeedId, lastPartOf(workingFeedId, category), category);
+    }
+
+    //Time ranges are not indexed by sequence number, so time chunked feeds are not streamed.
+    @Override
+    public EventFeed getFeedHeadForId(Integer feedId, int part, String category) {
+        return getFeedForId(feedId, part, category);
+    }
+
+    @Override
+    public String getChunkingHistoryVersion() {
+        return getChunkingHistory().version;
     }
 
     private void validateFeedId(Integer feedId) {
-        Integer upperLimit = getTimeChunkingHistory().getWorkingFeedId();
+        Integer upperLimit = getTimeChunkingIndex().getWorkingFeedId();
         if (feedId > upperLimit) {
-            throw new AtomFeedRuntimeException(String.format("The sequence number:%d lies in future", feedId));
+            throw new FeedNotFoundException(String.format("The sequence number:%d lies in future", feedId));
         }
     }
 
-    private EventFeed feedFor(Integer feedId, String category) {
-        TimeRange timeRange = getTimeChunkingHistory().timeRangeFor(feedId);
-        List<EventRecord> eventRecords = allEventRecords.getEventsFromTimeRange(timeRange, category);
-        return new EventFeed(feedId, eventRecords);
+    private EventFeed feedFor(Integer feedId, int part, String category) {
+        TimeChunkingIndex chunkingIndex = getTimeChunkingIndex();
+        TimeRange timeRange = chunkingIndex.timeRangeFor(feedId);
+        FeedPlan feedPlan = planFor(chunkingIndex, category, feedId, timeRange);
+        if (maxPageSize == 0) {
+            if (part != 1) {
+                throw new FeedNotFoundException(String.format("Feed:%d is not split into parts", feedId));
+            }
+            return new EventFeed(feedPlan, allEventRecords.getEventsFromTimeRange(timeRange, category));
+        }
+        return partFor(feedPlan, part, timeRange);
     }
 
-    private TimeChunkingHistory getTimeChunkingHistory() {
-        if (this.timeChunkingHistory == null) {
+    /**
+     * A part starts after the last event of the part before it, whose key is looked up by its position in the
+     * time range. One event more than fits the page is read, to tell whether another part follows.
+     */
+    private EventFeed partFor(FeedPlan feedPlan, int part, TimeRange timeRange) {
+        int feedId = feedPlan.getFeedId();
+        String category = feedPlan.getCategory();
+        EventRecordKey after = null;
+        if (part < 1 || (part > 1 && (after = allEventRecords.findKeyOfEventInTimeRange(timeRange, category, (part - 1) * maxPageSize)) == null)) {
+            throw new FeedNotFoundException(String.format("Feed:%d has no part:%d", feedId, part));
+        }
+        List<EventRecord> eventRecords = allEventRecords.getEventsFromTimeRange(timeRange, category, after, maxPageSize + 1);
+        if (part > 1 && eventRecords.isEmpty()) {
+            throw new FeedNotFoundException(String.format("Feed:%d has no part:%d", feedId, part));
+        }
+        boolean hasNextPart = eventRecords.size() > maxPageSize;
+        if (hasNextPart) {
+            eventRecords = eventRecords.subList(0, maxPageSize);
+        }
+
+        int previousFeedId = part > 1 ? feedId : feedPlan.getPreviousFeedId();
+        int previousPart = part > 1 ? part - 1 : (previousFeedId >= 1 ? lastPartOf(previousFeedId, category) : 1);
+        int nextFeedId = hasNextPart ? feedId : feedPlan.getNextFeedId();
+        int nextPart = hasNextPart ? part + 1 : 1;
+        return new EventFeed(new FeedPlan(category, feedId, part, feedPlan.getLatestFeedId(), previousFeedId, previousPart,
+                nextFeedId, nextPart), eventRecords);
+    }
+
+    private int lastPartOf(int feedId, String category) {
+        if (maxPageSize == 0) {
+            return 1;
+        }
+        int count = allEventRecords.getCountOfEventsInTimeRange(getTimeChunkingIndex().timeRangeFor(feedId), category);
+        return Math.max(1, (count + maxPageSize - 1) / maxPageSize);
+    }
+
+    /**
+     * Links past the feeds whose time range has no window with events. A window only tells that a feed may have
+     * events, so the links can land on a feed without events, but never pass one with events.
+     */
+    private FeedPlan planFor(TimeChunkingIndex chunkingIndex, String category, int feedId, TimeRange timeRange) {
+        int latestFeedId = chunkingIndex.getWorkingFeedId();
+        if (allEventRecordsTimeWindows == null) {
+            return new FeedPlan(category, feedId, latestFeedId);
+        }
+        int previousFeedId = 0;
+        Date lastWindow = feedId > 1 ? allEventRecordsTimeWindows.findLastWindowBefore(category, timeRange.getStartTimestamp()) : null;
+        if (lastWindow != null) {
+            Date lastWindowEnd = new Date(lastWindow.getTime() + AllEventRecordsTimeWindows.WINDOW_MILLIS - 1);
+            previousFeedId = Math.min(feedId - 1, chunkingIndex.sequenceNumberAt(toLocalDateTime(lastWindowEnd)));
+        }
+        int nextFeedId = latestFeedId;
+        Date firstWindow = feedId < latestFeedId ? allEventRecordsTimeWindows.findFirstWindowFrom(category, timeRange.getEndTimestamp()) : null;
+        if (firstWindow != null) {
+            nextFeedId = Math.min(latestFeedId, Math.max(feedId + 1, chunkingIndex.sequenceNumberAt(toLocalDateTime(firstWindow))));
+        }
+        return new FeedPlan(category, feedId, latestFeedId, previousFeedId, nextFeedId);
+    }
+
+    private LocalDateTime toLocalDateTime(Date date) {
+        return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    private TimeChunkingIndex getTimeChunkingIndex() {
+        return getChunkingHistory().index;
+    }
+
+    private LoadedChunkingHistory getChunkingHistory() {
+        LoadedChunkingHistory loaded = this.chunkingHistory;
+        if (loaded == null) {
             synchronized (lockObject) {
-                List<ChunkingHistoryEntry> allEntries = chunkingEntries.all();
-                TimeChunkingHistory timebasedChunking = new TimeChunkingHistory();
-                for (ChunkingHistoryEntry entry : allEntries) {
-                    timebasedChunking.add(entry.getLeftBound(), entry.getInterval());
+                loaded = this.chunkingHistory;
+                if (loaded == null) {
+                    loaded = new LoadedChunkingHistory(chunkingEntries.all());
+                    this.chunkingHistory = loaded;
                 }
-                this.timeChunkingHistory = timebasedChunking;
             }
         }
-        return this.timeChunkingHistory;
+        return loaded;
+    }
+
+    //The index and its version are loaded and published together, so a reader never sees one without the other.
+    private static class LoadedChunkingHistory {
+        private final TimeChunkingIndex index;
+        private final String version;
+
+        private LoadedChunkingHistory(List<ChunkingHistoryEntry> entries) {
+            this.index = TimeChunkingIndex.of(entries);
+            this.version = ChunkingHistoryVersion.of(entries);
+        }
     }
 
 }
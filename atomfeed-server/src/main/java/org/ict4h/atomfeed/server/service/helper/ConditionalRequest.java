@@ -0,0 +1,49 @@
+package org.ict4h.atomfeed.server.service.helper;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Date;
+
+/**
+ * The validators a client sent along with a feed request ({@code If-None-Match} and {@code If-Modified-Since}).
+ */
+public class ConditionalRequest {
+    public static final ConditionalRequest NONE = new ConditionalRequest(null, -1);
+
+    private final String ifNoneMatch;
+    private final long ifModifiedSince;
+
+    /**
+     * @param ifNoneMatch     the raw {@code If-None-Match} header, null when absent
+     * @param ifModifiedSince the {@code If-Modified-Since} header in milliseconds since the epoch, -1 when absent
+     */
+    public ConditionalRequest(String ifNoneMatch, long ifModifiedSince) {
+        this.ifNoneMatch = ifNoneMatch;
+        this.ifModifiedSince = ifModifiedSince;
+    }
+
+    /**
+     * As per RFC 7232 {@code If-Modified-Since} is only evaluated when there is no {@code If-None-Match}.
+     *
+     * @return true if the requester already has the representation identified by the validators
+     */
+    public boolean isNotModified(String etag, Date lastModified) {
+        if (ifNoneMatch != null) {
+            return matchesAny(etag);
+        }
+        if (ifModifiedSince >= 0 && lastModified != null) {
+            return lastModified.getTime() / 1000 <= ifModifiedSince / 1000;
+        }
+        return false;
+    }
+
+    private boolean matchesAny(String etag) {
+        for (String candidate : StringUtils.split(ifNoneMatch, ',')) {
+            String trimmed = candidate.trim();
+            if ("*".equals(trimmed) || StringUtils.removeStart(trimmed, "W/").equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
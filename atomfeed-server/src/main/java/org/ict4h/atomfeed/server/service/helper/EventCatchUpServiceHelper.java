@@ -0,0 +1,46 @@
+package org.ict4h.atomfeed.server.service.helper;
+
+import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+import org.ict4h.atomfeed.server.service.EventCatchUpService;
+import org.ict4h.atomfeed.transaction.AFTransactionManager;
+import org.ict4h.atomfeed.transaction.AFReadOnlyTransactionWork;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A Helper class that streams events in bulk, for resources serving consumers that are catching up.
+ */
+public class EventCatchUpServiceHelper {
+
+    /**
+     * Streams the events after the given one to {@code out} within a transaction, as they are read; see
+     * {@link EventCatchUpService#writeEventsAfter(String, String, String, int, OutputStream)}.
+     */
+    public static void streamEventsAfter(final EventCatchUpService eventCatchUpService, final String category, final String after,
+                                         final String cursor, final int limit, Logger logger, AFTransactionManager atomTxManager,
+                                         final OutputStream out) {
+        try {
+            atomTxManager.executeWithTransaction(new AFReadOnlyTransactionWork<Void>() {
+                @Override
+                public Void execute() {
+                    try {
+                        eventCatchUpService.writeEventsAfter(category, after, cursor, limit, out);
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new AtomFeedRuntimeException(e);
+                    }
+                    return null;
+                }
+                @Override
+                public PropagationDefinition getTxPropagationDefinition() {
+                    return PropagationDefinition.PROPAGATION_REQUIRED;
+                }
+            });
+        } catch (Exception e) {
+            logger.error("error occurred while streaming events to catch up", e);
+            throw new RuntimeException("Unexpected error", e);
+        }
+    }
+}
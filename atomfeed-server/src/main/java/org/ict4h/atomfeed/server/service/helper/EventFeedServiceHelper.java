@@ -1,34 +1,112 @@
 package org.ict4h.atomfeed.server.service.helper;
 
-import com.sun.syndication.feed.atom.Feed;
-import com.sun.syndication.io.FeedException;
-import com.sun.syndication.io.WireFeedOutput;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.server.domain.EventFeed;
+import org.ict4h.atomfeed.server.domain.FeedPage;
+import org.ict4h.atomfeed.server.domain.FeedPlan;
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+import org.ict4h.atomfeed.server.exceptions.FeedNotFoundException;
 import org.ict4h.atomfeed.server.service.EventFeedService;
+import org.ict4h.atomfeed.server.service.cache.FeedPageCache;
+import org.ict4h.atomfeed.server.service.cache.FeedPageKey;
+import org.ict4h.atomfeed.server.service.encoding.GzipFeedEncoder;
+import org.ict4h.atomfeed.server.service.publisher.EventPublicationHub;
+import org.ict4h.atomfeed.server.service.writer.FeedFormat;
 import org.ict4h.atomfeed.transaction.AFTransactionManager;
-import org.ict4h.atomfeed.transaction.AFTransactionWork;
+import org.ict4h.atomfeed.transaction.AFReadOnlyTransactionWork;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Date;
 
 /**
- * A Helper class that can be used to generate a {@code String} representation of a {@code Feed}.
+ * A Helper class that serves the feed page asked for by a {@link FeedRequest}, within a read only transaction: either
+ * streamed to a {@link FeedPageStream} or buffered as a {@link FeedPage}.
  */
 public class EventFeedServiceHelper {
+    /**
+     * How often a long polling request looks at the recent feed, once a publication it waits for has not shown yet.
+     */
+    public static final long RECHECK_MILLIS = 200;
+    /**
+     * How often a long polling request looks at the recent feed while the hub tells of no publication.
+     */
+    public static final long POLL_MILLIS = 1000;
+
     public static String getRecentFeed(final EventFeedService eventFeedService, final String requestURL, final String category, Logger logger, AFTransactionManager atomTxManager){
+        return getFeedPage(eventFeedService, FeedRequest.recent(requestURL, category), logger, atomTxManager, null).getContentAsString();
+    }
+
+    public static String getEventFeed(final EventFeedService eventFeedService,
+                                      String requestURL, final String category, final int feedNumber, Logger logger, AFTransactionManager atomTxManager){
+        return getFeedPage(eventFeedService, FeedRequest.feed(requestURL, category, feedNumber), logger, atomTxManager, null).getContentAsString();
+    }
+
+    /**
+     * Returns a feed page along with its validators, served as by {@link #streamFeedPage} but held in memory.
+     */
+    public static FeedPage getFeedPage(EventFeedService eventFeedService, FeedRequest request, Logger logger,
+                                       AFTransactionManager atomTxManager, FeedPageCache feedPageCache) {
+        BufferingPageStream pageStream = new BufferingPageStream();
+        streamFeedPage(eventFeedService, request, logger, atomTxManager, feedPageCache, pageStream);
+        return pageStream.toPage();
+    }
+
+    /**
+     * Streams a feed page to the stream handed out by {@code pageStream}, in the requested format and compressed when
+     * the request has a gzip encoder. Nothing is written when the conditional request shows that the requester already
+     * has the page. Archive pages are served from the given cache (if any) when possible; an archive page that is not
+     * yet cached is buffered once so that it can be cached, every other page is written as its events are read from
+     * the database, so it is never held in memory.
+     *
+     * @throws FeedNotFoundException when the feed, or the part of it, that is asked for does not exist
+     */
+    public static void streamFeedPage(EventFeedService eventFeedService, FeedRequest request, Logger logger,
+                                      AFTransactionManager atomTxManager, FeedPageCache feedPageCache, FeedPageStream pageStream) {
+        if (request.isRecent()) {
+            streamRecentFeedPage(eventFeedService, request, logger, atomTxManager, pageStream);
+        } else {
+            streamEventFeedPage(eventFeedService, request, logger, atomTxManager, feedPageCache, pageStream);
+        }
+    }
+
+    private static void streamRecentFeedPage(final EventFeedService eventFeedService, final FeedRequest request, Logger logger,
+                                             AFTransactionManager atomTxManager, final FeedPageStream pageStream) {
         try {
-            final URI requestUri = new URI(requestURL);
-            Feed feed = atomTxManager.executeWithTransaction(new AFTransactionWork<Feed>() {
+            final URI requestUri = new URI(request.getRequestUrl());
+            atomTxManager.executeWithTransaction(new AFReadOnlyTransactionWork<Void>() {
                 @Override
-                public Feed execute() {
-                    return eventFeedService.getRecentFeed(requestUri,category);
+                public Void execute() {
+                    EventFeed recentFeed = eventFeedService.getRecentEvents(request.getCategory());
+                    ResolvedFeed resolvedFeed = new ResolvedFeed(request, recentFeed);
+                    if (request.getConditionalRequest().isNotModified(resolvedFeed.etag, resolvedFeed.lastModified)) {
+                        resolvedFeed.notModified(pageStream);
+                        return null;
+                    }
+                    try {
+                        OutputStream out = resolvedFeed.modified(pageStream);
+                        if (request.getGzipEncoder() == null) {
+                            eventFeedService.writeRecentFeed(requestUri, request.getCategory(), recentFeed, out, request.getFormat());
+                            out.flush();
+                            return null;
+                        }
+                        GzipFeedEncoder.CompressingOutputStream compressed = request.getGzipEncoder().compressing(out);
+                        eventFeedService.writeRecentFeed(requestUri, request.getCategory(), recentFeed, compressed, request.getFormat());
+                        compressed.finish();
+                    } catch (IOException e) {
+                        throw new AtomFeedRuntimeException(e);
+                    }
+                    return null;
                 }
                 @Override
                 public PropagationDefinition getTxPropagationDefinition() {
                     return PropagationDefinition.PROPAGATION_REQUIRED;
                 }
             });
-            return new WireFeedOutput().outputString(feed);
         } catch (URISyntaxException e) {
             throw new RuntimeException("Bad URI", e);
         } catch (Exception e) {
@@ -39,26 +117,202 @@ public class EventFeedServiceHelper {
         }
     }
 
-    public static String getEventFeed(final EventFeedService eventFeedService,
-                                      String requestURL, final String category, final int feedNumber, Logger logger, AFTransactionManager atomTxManager){
+    //Parts are cached like any other page, under their own request uri, and each format and encoding on its own.
+    private static void streamEventFeedPage(final EventFeedService eventFeedService, final FeedRequest request, Logger logger,
+                                            AFTransactionManager atomTxManager, final FeedPageCache feedPageCache,
+                                            final FeedPageStream pageStream) {
+        FeedPageKey cacheKey = null;
+        if (feedPageCache != null) {
+            cacheKey = feedPageCache.keyFor(request.getRequestUrl(), request.getCategory(), request.getFeedId(),
+                    request.getContentEncoding(), request.getFormat());
+            FeedPage cachedPage = feedPageCache.get(cacheKey);
+            if (cachedPage != null) {
+                writePage(request.getConditionalRequest().isNotModified(cachedPage.getEtag(), cachedPage.getLastModified())
+                        ? cachedPage.notModified() : cachedPage, pageStream);
+                return;
+            }
+        }
         try {
-            final URI requestUri = new URI(requestURL);
-            Feed feed = atomTxManager.executeWithTransaction(new AFTransactionWork<Feed>() {
+            final URI requestUri = new URI(request.getRequestUrl());
+            final FeedPageKey pageKey = cacheKey;
+            atomTxManager.executeWithTransaction(new AFReadOnlyTransactionWork<Void>() {
                 @Override
-                public Feed execute() {
-                    return eventFeedService.getEventFeed(requestUri, category, feedNumber);
+                public Void execute() {
+                    EventFeed eventFeed = eventFeedService.getEvents(request.getCategory(), request.getFeedId(), request.getPart());
+                    ResolvedFeed resolvedFeed = new ResolvedFeed(request, eventFeed);
+                    if (request.getConditionalRequest().isNotModified(resolvedFeed.etag, resolvedFeed.lastModified)) {
+                        resolvedFeed.notModified(pageStream);
+                        return null;
+                    }
+                    GzipFeedEncoder gzipEncoder = request.getGzipEncoder();
+                    try {
+                        if (pageKey != null && resolvedFeed.archived) {
+                            ByteArrayOutputStream content = new ByteArrayOutputStream();
+                            eventFeedService.writeEventFeed(requestUri, request.getCategory(), eventFeed, content, request.getFormat());
+                            resolvedFeed.content = gzipEncoder == null ? content.toByteArray() : gzipEncoder.compress(content.toByteArray());
+                            FeedPage page = resolvedFeed.toPage();
+                            feedPageCache.put(pageKey, page);
+                            writePage(page, pageStream);
+                            return null;
+                        }
+                        OutputStream out = resolvedFeed.modified(pageStream);
+                        if (gzipEncoder == null) {
+                            eventFeedService.writeEventFeed(requestUri, request.getCategory(), eventFeed, out, request.getFormat());
+                            out.flush();
+                            return null;
+                        }
+                        GzipFeedEncoder.CompressingOutputStream compressed = gzipEncoder.compressing(out);
+                        eventFeedService.writeEventFeed(requestUri, request.getCategory(), eventFeed, compressed, request.getFormat());
+                        compressed.finish();
+                    } catch (IOException e) {
+                        throw new AtomFeedRuntimeException(e);
+                    }
+                    return null;
                 }
                 @Override
                 public PropagationDefinition getTxPropagationDefinition() {
                     return PropagationDefinition.PROPAGATION_REQUIRED;
                 }
             });
-            return new WireFeedOutput().outputString(feed);
         } catch (URISyntaxException e) {
             throw new RuntimeException("Bad URI", e);
-        } catch (FeedException e) {
-            logger.error("error occurred while getting recent feedgenerator", e);
-            throw new RuntimeException("Error serializing feed.", e);
+        } catch (FeedNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("error occurred while getting feed", e);
+            throw new RuntimeException("Unexpected error", e);
+        }
+    }
+
+    /**
+     * Holds a long polling request to the recent feed until the recent feed is no longer the one the requester has,
+     * as told by the conditional request, or the timeout expires. The feed is looked at every {@link #POLL_MILLIS},
+     * so that publications the hub is not told of, such as those of other nodes, end the wait too; when the hub tells
+     * of a publication in the category, the feed is looked at right away and then every {@link #RECHECK_MILLIS} until
+     * the publication shows, as the publisher may not have committed yet. No transaction is held while waiting.
+     * The caller then serves the recent feed as usual, e.g. with {@link #streamFeedPage}.
+     */
+    public static void awaitRecentFeedChange(EventFeedService eventFeedService, FeedRequest request, AFTransactionManager atomTxManager,
+                                             EventPublicationHub eventPublicationHub, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long version = eventPublicationHub.getVersion(request.getCategory());
+        boolean published = false;
+        try {
+            while (isRecentFeedNotModified(eventFeedService, request, atomTxManager)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return;
+                }
+                long current = eventPublicationHub.awaitPublicationAfter(request.getCategory(), version,
+                        Math.min(remaining, published ? RECHECK_MILLIS : POLL_MILLIS));
+                published = published || current != version;
+                version = current;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean isRecentFeedNotModified(final EventFeedService eventFeedService, final FeedRequest request,
+                                                   AFTransactionManager atomTxManager) {
+        return atomTxManager.executeWithTransaction(new AFReadOnlyTransactionWork<Boolean>() {
+            @Override
+            public Boolean execute() {
+                ResolvedFeed resolvedFeed = new ResolvedFeed(request, eventFeedService.getRecentEvents(request.getCategory()));
+                return request.getConditionalRequest().isNotModified(resolvedFeed.etag, resolvedFeed.lastModified);
+            }
+            @Override
+            public PropagationDefinition getTxPropagationDefinition() {
+                return PropagationDefinition.PROPAGATION_REQUIRED;
+            }
+        });
+    }
+
+    private static void writePage(FeedPage page, FeedPageStream pageStream) {
+        if (!page.isModified()) {
+            pageStream.notModified(page.getEtag(), page.getLastModified(), page.isArchived());
+            return;
+        }
+        try {
+            OutputStream out = pageStream.modified(page.getEtag(), page.getLastModified(), page.isArchived(), page.getContentEncoding());
+            out.write(page.getContent());
+            out.flush();
+        } catch (IOException e) {
+            throw new AtomFeedRuntimeException(e);
+        }
+    }
+
+    /**
+     * The entity tag of a feed page. It changes whenever the page could have changed: a new feed id
+     * (e.g. the recent page moving on) or a newer event in the page. Each format and encoding (e.g. gzip) of a page
+     * has an entity tag of its own, as its bytes differ from the other variants.
+     */
+    public static String etagFor(String category, EventFeed eventFeed, String contentEncoding, FeedFormat format) {
+        String variant = (format == FeedFormat.ATOM ? "" : "-" + format.name().toLowerCase())
+                + (contentEncoding == null ? "" : "-" + contentEncoding);
+        return String.format("\"%s-%s-%d%s\"", Integer.toHexString(StringUtils.defaultString(category).hashCode()),
+                eventFeed.getPageId(), eventFeed.getNewestEventId(), variant);
+    }
+
+    private static class ResolvedFeed {
+        private final String etag;
+        private final Date lastModified;
+        private final boolean archived;
+        private final String contentEncoding;
+        private byte[] content;
+
+        private ResolvedFeed(FeedRequest request, EventFeed eventFeed) {
+            this.contentEncoding = request.getContentEncoding();
+            this.etag = etagFor(request.getCategory(), eventFeed, contentEncoding, request.getFormat());
+            this.lastModified = eventFeed.getNewestEventDate();
+            FeedPlan plan = eventFeed.getPlan();
+            //Without a plan, a feed is not known to be archived, so it is conservatively treated as a working page.
+            this.archived = plan != null && plan.isArchived();
+        }
+
+        private FeedPage toPage() {
+            if (content == null) {
+                return FeedPage.notModified(etag, lastModified, archived);
+            }
+            return new FeedPage(content, etag, lastModified, archived, contentEncoding);
+        }
+
+        private void notModified(FeedPageStream pageStream) {
+            pageStream.notModified(etag, lastModified, archived);
+        }
+
+        private OutputStream modified(FeedPageStream pageStream) throws IOException {
+            return pageStream.modified(etag, lastModified, archived, contentEncoding);
+        }
+    }
+
+    private static class BufferingPageStream implements FeedPageStream {
+        private ByteArrayOutputStream content;
+        private String etag;
+        private Date lastModified;
+        private boolean archived;
+        private String contentEncoding;
+
+        @Override
+        public void notModified(String etag, Date lastModified, boolean archived) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.archived = archived;
+        }
+
+        @Override
+        public OutputStream modified(String etag, Date lastModified, boolean archived, String contentEncoding) {
+            notModified(etag, lastModified, archived);
+            this.contentEncoding = contentEncoding;
+            this.content = new ByteArrayOutputStream();
+            return content;
+        }
+
+        private FeedPage toPage() {
+            if (content == null) {
+                return FeedPage.notModified(etag, lastModified, archived);
+            }
+            return new FeedPage(content.toByteArray(), etag, lastModified, archived, contentEncoding);
         }
     }
 }
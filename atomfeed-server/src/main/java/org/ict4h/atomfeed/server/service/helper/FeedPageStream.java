@@ -0,0 +1,19 @@
+package org.ict4h.atomfeed.server.service.helper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+
+/**
+ * Where {@link EventFeedServiceHelper} streams a feed page to, typically an http response.
+ * Exactly one of the methods is called per page, before any content is written.
+ */
+public interface FeedPageStream {
+    void notModified(String etag, Date lastModified, boolean archived);
+
+    /**
+     * @param contentEncoding the encoding the page is written in (e.g. gzip), null when it is not compressed
+     * @return the stream the page is to be written to. It is flushed, but not closed, once the page is written.
+     */
+    OutputStream modified(String etag, Date lastModified, boolean archived, String contentEncoding) throws IOException;
+}
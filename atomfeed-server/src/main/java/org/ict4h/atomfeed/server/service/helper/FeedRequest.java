@@ -0,0 +1,113 @@
+package org.ict4h.atomfeed.server.service.helper;
+
+import org.ict4h.atomfeed.server.service.encoding.GzipFeedEncoder;
+import org.ict4h.atomfeed.server.service.writer.FeedFormat;
+
+/**
+ * A request for a feed page: the recent feed or a part of a numbered feed of a category, along with how the requester
+ * wants it served. Requests are immutable; each {@code with} method returns a copy with one thing changed.
+ */
+public class FeedRequest {
+    private final String requestUrl;
+    private final String category;
+    private final Integer feedId;
+    private final int part;
+    private final ConditionalRequest conditionalRequest;
+    private final GzipFeedEncoder gzipEncoder;
+    private final FeedFormat format;
+
+    private FeedRequest(String requestUrl, String category, Integer feedId, int part, ConditionalRequest conditionalRequest,
+                        GzipFeedEncoder gzipEncoder, FeedFormat format) {
+        this.requestUrl = requestUrl;
+        this.category = category;
+        this.feedId = feedId;
+        this.part = part;
+        this.conditionalRequest = conditionalRequest;
+        this.gzipEncoder = gzipEncoder;
+        this.format = format;
+    }
+
+    /**
+     * An unconditional request for the recent feed, served as uncompressed Atom.
+     */
+    public static FeedRequest recent(String requestUrl, String category) {
+        return new FeedRequest(requestUrl, category, null, 1, ConditionalRequest.NONE, null, FeedFormat.ATOM);
+    }
+
+    /**
+     * An unconditional request for the feed with the given id, served as uncompressed Atom.
+     */
+    public static FeedRequest feed(String requestUrl, String category, int feedId) {
+        return new FeedRequest(requestUrl, category, feedId, 1, ConditionalRequest.NONE, null, FeedFormat.ATOM);
+    }
+
+    /**
+     * @param part the part of a feed that is split into parts, starting at 1
+     */
+    public FeedRequest withPart(int part) {
+        if (part < 1) {
+            throw new IllegalArgumentException("part must be greater than 0");
+        }
+        return new FeedRequest(requestUrl, category, feedId, part, conditionalRequest, gzipEncoder, format);
+    }
+
+    public FeedRequest withConditionalRequest(ConditionalRequest conditionalRequest) {
+        return new FeedRequest(requestUrl, category, feedId, part, conditionalRequest, gzipEncoder, format);
+    }
+
+    /**
+     * @param gzipEncoder the encoder to compress the page with, null to serve it uncompressed
+     */
+    public FeedRequest withGzipEncoder(GzipFeedEncoder gzipEncoder) {
+        return new FeedRequest(requestUrl, category, feedId, part, conditionalRequest, gzipEncoder, format);
+    }
+
+    public FeedRequest withFormat(FeedFormat format) {
+        return new FeedRequest(requestUrl, category, feedId, part, conditionalRequest, gzipEncoder, format);
+    }
+
+    public boolean isRecent() {
+        return feedId == null;
+    }
+
+    public String getRequestUrl() {
+        return requestUrl;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * @return the id of the requested feed, null for the recent feed
+     */
+    public Integer getFeedId() {
+        return feedId;
+    }
+
+    public int getPart() {
+        return part;
+    }
+
+    public ConditionalRequest getConditionalRequest() {
+        return conditionalRequest;
+    }
+
+    /**
+     * @return the encoder to compress the page with, null when it is served uncompressed
+     */
+    public GzipFeedEncoder getGzipEncoder() {
+        return gzipEncoder;
+    }
+
+    /**
+     * @return the content encoding the page is served with, null when it is served uncompressed
+     */
+    public String getContentEncoding() {
+        return gzipEncoder == null ? null : GzipFeedEncoder.GZIP;
+    }
+
+    public FeedFormat getFormat() {
+        return format;
+    }
+}
@@ -0,0 +1,81 @@
+package org.ict4h.atomfeed.server.service.publisher;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ict4h.atomfeed.server.domain.CategorySet;
+import org.ict4h.atomfeed.server.domain.CategoryTag;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tells requests waiting within this process that events were published, so that a requester long polling the
+ * recent feed is answered as soon as there is something new, instead of the feed being read on every poll.
+ * <p>
+ * Each category, and all categories together (under a blank category), has a version that moves on with every
+ * publication; the version of a category set is the sum of those of its categories, so that it moves on with a
+ * publication in any of them. A category with a tag has the version of the category. A waiter reads the version,
+ * checks the feed, and waits for the version to move on. Only publications made in this process are seen; waiters
+ * on other nodes see the others when they look at the feed again.
+ * <p>
+ * {@link #getInstance()} is the hub of the process, which publications are told of unless another hub is given.
+ */
+public class EventPublicationHub {
+    private static final String ALL_CATEGORIES = "";
+    private static final EventPublicationHub instance = new EventPublicationHub();
+
+    private final Map<String, Long> versions = new HashMap<>();
+
+    public static EventPublicationHub getInstance() {
+        return instance;
+    }
+
+    public synchronized long getVersion(String category) {
+        if (CategoryTag.isTagged(category)) {
+            return getVersion(CategoryTag.categoryOf(category));
+        }
+        if (CategorySet.isSet(category)) {
+            long version = 0;
+            for (String member : CategorySet.membersOf(category)) {
+                version += getVersion(member);
+            }
+            return version;
+        }
+        Long version = versions.get(keyOf(category));
+        return version == null ? 0 : version;
+    }
+
+    public synchronized void published(String category) {
+        increment(ALL_CATEGORIES);
+        if (!StringUtils.isBlank(category)) {
+            increment(category);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Waits until there is a publication in the category after the given version, or the timeout expires.
+     *
+     * @return the version of the category when the wait ended; the given version if it timed out
+     */
+    public synchronized long awaitPublicationAfter(String category, long version, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long current = getVersion(category);
+        while (current == version) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            wait(remaining);
+            current = getVersion(category);
+        }
+        return current;
+    }
+
+    private void increment(String category) {
+        versions.put(category, getVersion(category) + 1);
+    }
+
+    private String keyOf(String category) {
+        return StringUtils.isBlank(category) ? ALL_CATEGORIES : category;
+    }
+}
@@ -1,25 +1,78 @@
 package org.ict4h.atomfeed.server.service.publisher;
 
+import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.Configuration;
 import org.ict4h.atomfeed.server.domain.EventRecord;
 import org.ict4h.atomfeed.server.domain.EventRecordQueueItem;
 import org.ict4h.atomfeed.server.repository.AllEventRecords;
 import org.ict4h.atomfeed.server.repository.AllEventRecordsQueue;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Moves the queued events to the published ones. The queue is drained in chunks of the oldest events, each added in
+ * one batch and deleted from the queue in one statement, so that publishing a backlog holds one chunk in memory at a
+ * time. The chunks are published in the caller's transaction.
+ */
 public class EventRecordsPublishingService {
+    private static Logger logger = Logger.getLogger(EventRecordsPublishingService.class);
 
+    /**
+     * Publishes the queue and wakes the requests waiting on the hub of this process, see
+     * {@link #publish(AllEventRecords, AllEventRecordsQueue, EventPublicationHub)}.
+     */
     public static void publish(AllEventRecords allEventRecords, AllEventRecordsQueue allEventRecordsQueue) {
-        List<EventRecordQueueItem> queueItemList = allEventRecordsQueue.getAll();
-        List<EventRecord> eventRecords = mapToEventRecords(queueItemList);
-        publishEventRecords(eventRecords, allEventRecords, allEventRecordsQueue);
+        publish(allEventRecords, allEventRecordsQueue, EventPublicationHub.getInstance());
     }
 
-    private static void publishEventRecords(List<EventRecord> eventRecords, AllEventRecords allEventRecords, AllEventRecordsQueue allEventRecordsQueue) {
-        for (EventRecord eventRecord : eventRecords) {
-            allEventRecords.add(eventRecord);
-            allEventRecordsQueue.delete(eventRecord.getUuid());
+    /**
+     * Publishes the queue, and then wakes the requests waiting on the hub for the categories published to. Waiters may
+     * be woken before the caller's transaction commits, and look again until they see the events.
+     */
+    public static void publish(AllEventRecords allEventRecords, AllEventRecordsQueue allEventRecordsQueue, EventPublicationHub eventPublicationHub) {
+        publish(allEventRecords, allEventRecordsQueue, eventPublicationHub, Configuration.getInstance().getPublishChunkSize());
+    }
+
+    /**
+     * @param eventPublicationHub null not to wake anyone
+     * @param chunkSize           the number of queued events to publish at a time
+     */
+    public static void publish(AllEventRecords allEventRecords, AllEventRecordsQueue allEventRecordsQueue, EventPublicationHub eventPublicationHub,
+                               int chunkSize) {
+        Set<String> categories = new LinkedHashSet<>();
+        List<EventRecordQueueItem> queueItemList;
+        do {
+            long start = System.nanoTime();
+            queueItemList = allEventRecordsQueue.claim(chunkSize);
+            if (queueItemList.isEmpty()) {
+                break;
+            }
+            List<EventRecord> eventRecords = mapToEventRecords(queueItemList);
+            allEventRecords.add(eventRecords);
+            allEventRecordsQueue.delete(queueItemList);
+            logPublished(eventRecords.size(), System.nanoTime() - start);
+            for (EventRecord eventRecord : eventRecords) {
+                categories.add(eventRecord.getCategory());
+            }
+        } while (queueItemList.size() == chunkSize);
+        if (eventPublicationHub != null) {
+            notifyPublished(categories, eventPublicationHub);
+        }
+    }
+
+    private static void logPublished(int events, long nanos) {
+        if (logger.isDebugEnabled()) {
+            long millis = Math.max(nanos / 1000000, 1);
+            logger.debug(String.format("Published %d events in %d ms, %d events per second", events, millis, events * 1000L / millis));
+        }
+    }
+
+    private static void notifyPublished(Set<String> categories, EventPublicationHub eventPublicationHub) {
+        for (String category : categories) {
+            eventPublicationHub.published(category);
         }
     }
 
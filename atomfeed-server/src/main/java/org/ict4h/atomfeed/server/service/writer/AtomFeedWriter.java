@@ -0,0 +1,206 @@
+package org.ict4h.atomfeed.server.service.writer;
+
+import com.sun.syndication.feed.atom.Link;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Writes an event feed as Atom straight to a stream, without building a Rome feed and a JDOM document first.
+ * <p>
+ * The output is byte for byte what Rome's {@code WireFeedOutput} produces for the feeds built by
+ * {@link org.ict4h.atomfeed.server.service.EventFeedServiceImpl}: JDOM's pretty format (two space indent, CRLF line
+ * separators, trimmed text, {@code " />"} for empty elements) and its escaping. The parts of the feed that are the same
+ * for every page (the title, the author and the generator) are encoded once, when the writer is created.
+ * <p>
+ * A feed is written as {@link #writeHeader}, any number of {@link #writeEntry} and {@link #writeFooter}.
+ */
+public class AtomFeedWriter implements FeedWriter {
+    public static final String ATOMFEED_MEDIA_TYPE = "application/vnd.atomfeed+xml";
+
+    private static final String NEW_LINE = "\r\n";
+    private static final String CDATA_START = "<![CDATA[";
+    private static final String CDATA_END = "]]>";
+
+    private final byte[] prologAndTitle;
+    private final byte[] author;
+    private final byte[] generator;
+    private final byte[] footer;
+
+    public AtomFeedWriter(String title, String authorName, String generatorUri, String generatorTitle) {
+        XmlBuilder xml = new XmlBuilder()
+                .raw("<?xml version=\"1.0\" encoding=\"UTF-8\"?>").raw(NEW_LINE)
+                .raw("<feed xmlns=\"http://www.w3.org/2005/Atom\">").raw(NEW_LINE);
+        textElement(xml, 1, "title", title);
+        this.prologAndTitle = xml.toBytes();
+
+        xml = new XmlBuilder().indent(1).raw("<author>").raw(NEW_LINE);
+        textElement(xml, 2, "name", authorName);
+        this.author = xml.indent(1).raw("</author>").raw(NEW_LINE).toBytes();
+
+        xml = new XmlBuilder().indent(1).raw("<generator");
+        attribute(xml, "uri", generatorUri);
+        this.generator = closeTextElement(xml, "generator", generatorTitle).toBytes();
+
+        this.footer = new XmlBuilder().raw("</feed>").raw(NEW_LINE).raw(NEW_LINE).toBytes();
+    }
+
+    @Override
+    public FeedFormat getFormat() {
+        return FeedFormat.ATOM;
+    }
+
+    @Override
+    public void writeHeader(OutputStream out, String id, Date updated, List<Link> links) throws IOException {
+        out.write(prologAndTitle);
+        XmlBuilder xml = new XmlBuilder();
+        for (Link link : links) {
+            xml.indent(1).raw("<link");
+            attribute(xml, "rel", link.getRel());
+            attribute(xml, "type", link.getType());
+            attribute(xml, "href", link.getHref());
+            xml.raw(" />").raw(NEW_LINE);
+        }
+        out.write(xml.toBytes());
+        out.write(author);
+        xml = new XmlBuilder();
+        textElement(xml, 1, "id", id);
+        out.write(xml.toBytes());
+        out.write(generator);
+        xml = new XmlBuilder();
+        textElement(xml, 1, "updated", formatDate(updated));
+        out.write(xml.toBytes());
+    }
+
+    @Override
+    public void writeEntry(OutputStream out, EventRecord eventRecord, boolean first) throws IOException {
+        writeEntry(out, eventRecord);
+    }
+
+    public void writeEntry(OutputStream out, EventRecord eventRecord) throws IOException {
+        XmlBuilder xml = new XmlBuilder().indent(1).raw("<entry>").raw(NEW_LINE);
+        textElement(xml, 2, "title", eventRecord.getTitle());
+        for (String term : eventRecord.getCategoryTerms()) {
+            xml.indent(2).raw("<category");
+            attribute(xml, "term", term);
+            xml.raw(" />").raw(NEW_LINE);
+        }
+        textElement(xml, 2, "id", eventRecord.getTagUri());
+        if (eventRecord.getTimeStamp() != null) {
+            textElement(xml, 2, "updated", formatDate(eventRecord.getTimeStamp()));
+            textElement(xml, 2, "published", formatDate(eventRecord.getTimeStamp()));
+        }
+        xml.indent(2).raw("<content");
+        attribute(xml, "type", ATOMFEED_MEDIA_TYPE);
+        String contents = eventRecord.getContents() == null ? null : normalizeLineBreaks(eventRecord.getContents()).trim();
+        if (contents == null || contents.isEmpty()) {
+            xml.raw(" />").raw(NEW_LINE);
+        } else {
+            //The contents are wrapped in CDATA, which cannot hold its own end marker, so that is split across sections.
+            xml.raw(">").raw(CDATA_START).raw(contents.replace(CDATA_END, "]]" + CDATA_END + CDATA_START + ">"))
+                    .raw(CDATA_END).raw("</content>").raw(NEW_LINE);
+        }
+        out.write(xml.indent(1).raw("</entry>").raw(NEW_LINE).toBytes());
+    }
+
+    @Override
+    public void writeFooter(OutputStream out) throws IOException {
+        out.write(footer);
+    }
+
+    public void write(OutputStream out, String id, Date updated, List<Link> links, List<EventRecord> eventRecords) throws IOException {
+        writeHeader(out, id, updated, links);
+        for (EventRecord eventRecord : eventRecords) {
+            writeEntry(out, eventRecord);
+        }
+        writeFooter(out);
+    }
+
+    private static void textElement(XmlBuilder xml, int depth, String name, String text) {
+        closeTextElement(xml.indent(depth).raw("<").raw(name), name, text);
+    }
+
+    private static XmlBuilder closeTextElement(XmlBuilder xml, String name, String text) {
+        String trimmed = text == null ? "" : text.trim();
+        if (trimmed.isEmpty()) {
+            return xml.raw(" />").raw(NEW_LINE);
+        }
+        return xml.raw(">").text(trimmed).raw("</").raw(name).raw(">").raw(NEW_LINE);
+    }
+
+    private static void attribute(XmlBuilder xml, String name, String value) {
+        if (value != null) {
+            xml.raw(" ").raw(name).raw("=\"").attributeValue(value).raw("\"");
+        }
+    }
+
+    //As an XML parser would on reading the contents.
+    private static String normalizeLineBreaks(String text) {
+        return text.replace("\r\n", "\n").replace('\r', '\n');
+    }
+
+    static String formatDate(Date date) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(date);
+    }
+
+    private static class XmlBuilder {
+        private final StringBuilder builder = new StringBuilder(256);
+
+        private XmlBuilder raw(String text) {
+            builder.append(text);
+            return this;
+        }
+
+        private XmlBuilder indent(int depth) {
+            for (int i = 0; i < depth; i++) {
+                builder.append("  ");
+            }
+            return this;
+        }
+
+        private XmlBuilder text(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '<': builder.append("&lt;"); break;
+                    case '>': builder.append("&gt;"); break;
+                    case '&': builder.append("&amp;"); break;
+                    case '\r': builder.append("&#xD;"); break;
+                    case '\n': builder.append(NEW_LINE); break;
+                    default: builder.append(c);
+                }
+            }
+            return this;
+        }
+
+        private XmlBuilder attributeValue(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '<': builder.append("&lt;"); break;
+                    case '>': builder.append("&gt;"); break;
+                    case '"': builder.append("&quot;"); break;
+                    case '&': builder.append("&amp;"); break;
+                    case '\r': builder.append("&#xD;"); break;
+                    case '\t': builder.append("&#x9;"); break;
+                    case '\n': builder.append("&#xA;"); break;
+                    default: builder.append(c);
+                }
+            }
+            return this;
+        }
+
+        private byte[] toBytes() {
+            return builder.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.ict4h.atomfeed.server.service.writer;
+
+/**
+ * The representations a feed page is served in. Every format carries the same page: its id, its links and its entries.
+ */
+public enum FeedFormat {
+    ATOM("application/atom+xml"),
+    JSON("application/json");
+
+    private final String mediaType;
+
+    FeedFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,26 @@
+package org.ict4h.atomfeed.server.service.writer;
+
+import com.sun.syndication.feed.atom.Link;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes an event feed straight to a stream, as {@link #writeHeader}, any number of {@link #writeEntry} and
+ * {@link #writeFooter}. Writers hold no state of their own, so one writer serves any number of feeds at a time.
+ */
+public interface FeedWriter {
+    FeedFormat getFormat();
+
+    void writeHeader(OutputStream out, String id, Date updated, List<Link> links) throws IOException;
+
+    /**
+     * @param first true for the first entry of the feed
+     */
+    void writeEntry(OutputStream out, EventRecord eventRecord, boolean first) throws IOException;
+
+    void writeFooter(OutputStream out) throws IOException;
+}
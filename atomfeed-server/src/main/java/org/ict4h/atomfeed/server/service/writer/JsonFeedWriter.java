@@ -0,0 +1,131 @@
+package org.ict4h.atomfeed.server.service.writer;
+
+import com.sun.syndication.feed.atom.Link;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes an event feed as JSON straight to a stream, for requesters that would rather not parse Atom.
+ * <p>
+ * The page is the one {@link AtomFeedWriter} writes: its id, title, updated date and links, and per entry the id
+ * (the same tag uri as in Atom, so that markers hold across formats), uuid, title, uri, timestamp, categories and
+ * contents (without a CDATA wrapper). An entry is written on a line of its own:
+ * <pre>
+ * {"id":"...","title":"...","updated":"...","links":[{"rel":"...","type":"...","href":"..."}],"entries":[
+ * {"id":"...","uuid":"...","title":"...","uri":"...","timestamp":"...","categories":["..."],"contents":"..."}
+ * ]}
+ * </pre>
+ */
+public class JsonFeedWriter implements FeedWriter {
+    private final byte[] footer = "]}\n".getBytes(StandardCharsets.UTF_8);
+    private final String title;
+
+    public JsonFeedWriter(String title) {
+        this.title = title;
+    }
+
+    @Override
+    public FeedFormat getFormat() {
+        return FeedFormat.JSON;
+    }
+
+    @Override
+    public void writeHeader(OutputStream out, String id, Date updated, List<Link> links) throws IOException {
+        JsonBuilder json = new JsonBuilder().raw("{");
+        json.field("id", id).raw(",").field("title", title).raw(",").field("updated", updated == null ? null : AtomFeedWriter.formatDate(updated));
+        json.raw(",\"links\":[");
+        for (int i = 0; i < links.size(); i++) {
+            Link link = links.get(i);
+            json.raw(i == 0 ? "{" : ",{").field("rel", link.getRel()).raw(",").field("type", link.getType()).raw(",")
+                    .field("href", link.getHref()).raw("}");
+        }
+        out.write(json.raw("],\"entries\":[\n").toBytes());
+    }
+
+    @Override
+    public void writeEntry(OutputStream out, EventRecord eventRecord, boolean first) throws IOException {
+        out.write(entry(new JsonBuilder().raw(first ? "" : ",\n"), eventRecord).toBytes());
+    }
+
+    @Override
+    public void writeFooter(OutputStream out) throws IOException {
+        out.write(footer);
+    }
+
+    /**
+     * Writes an entry as a line of a newline delimited stream of events, outside of any feed.
+     */
+    public void writeLine(OutputStream out, EventRecord eventRecord) throws IOException {
+        out.write(entry(new JsonBuilder(), eventRecord).raw("\n").toBytes());
+    }
+
+    /**
+     * Writes the line that ends a newline delimited stream of events: where to resume from, and whether the stream
+     * ended because there were no more events rather than because it reached its limit.
+     */
+    public void writeCursorLine(OutputStream out, String cursor, boolean caughtUp) throws IOException {
+        out.write(new JsonBuilder().raw("{").field("cursor", cursor).raw(",\"caughtUp\":").raw(String.valueOf(caughtUp))
+                .raw("}\n").toBytes());
+    }
+
+    private JsonBuilder entry(JsonBuilder json, EventRecord eventRecord) {
+        json.raw("{").field("id", eventRecord.getTagUri()).raw(",").field("uuid", eventRecord.getUuid()).raw(",")
+                .field("title", eventRecord.getTitle()).raw(",").field("uri", eventRecord.getUri()).raw(",")
+                .field("timestamp", eventRecord.getTimeStamp() == null ? null : AtomFeedWriter.formatDate(eventRecord.getTimeStamp()));
+        json.raw(",\"categories\":[");
+        boolean firstTerm = true;
+        for (String term : eventRecord.getCategoryTerms()) {
+            json.raw(firstTerm ? "" : ",").string(term);
+            firstTerm = false;
+        }
+        return json.raw("],").field("contents", eventRecord.getContents()).raw("}");
+    }
+
+    private static class JsonBuilder {
+        private final StringBuilder builder = new StringBuilder(256);
+
+        private JsonBuilder raw(String text) {
+            builder.append(text);
+            return this;
+        }
+
+        private JsonBuilder field(String name, String value) {
+            return string(name).raw(":").string(value);
+        }
+
+        private JsonBuilder string(String value) {
+            if (value == null) {
+                return raw("null");
+            }
+            builder.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': builder.append("\\\""); break;
+                    case '\\': builder.append("\\\\"); break;
+                    case '\n': builder.append("\\n"); break;
+                    case '\r': builder.append("\\r"); break;
+                    case '\t': builder.append("\\t"); break;
+                    default:
+                        //Control characters must be escaped; the line and paragraph separators are, for javascript's sake.
+                        if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                            builder.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            builder.append(c);
+                        }
+                }
+            }
+            builder.append('"');
+            return this;
+        }
+
+        private byte[] toBytes() {
+            return builder.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
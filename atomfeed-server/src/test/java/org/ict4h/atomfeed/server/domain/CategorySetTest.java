@@ -0,0 +1,36 @@
+package org.ict4h.atomfeed.server.domain;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class CategorySetTest {
+
+    @Test
+    public void shouldTakeCategoriesSeparatedByCommasForASet() {
+        assertTrue(CategorySet.isSet("patient,encounter"));
+        assertFalse(CategorySet.isSet("patient"));
+        assertFalse(CategorySet.isSet("patient,"));
+        assertFalse(CategorySet.isSet("patient, Patient"));
+        assertFalse(CategorySet.isSet(null));
+    }
+
+    @Test
+    public void shouldMakeTheSameSetOfTheCategoriesInAnyOrder() {
+        assertEquals(Arrays.asList("encounter", "Lab", "patient"), CategorySet.membersOf(" patient,Lab,,encounter,lab"));
+        assertEquals("encounter,patient", CategorySet.canonical("patient,encounter"));
+        assertEquals("encounter,patient", CategorySet.canonical("encounter, patient"));
+    }
+
+    @Test
+    public void shouldLeaveASingleCategoryAsItIs() {
+        assertEquals(Collections.singletonList("patient"), CategorySet.membersOf("patient"));
+        assertEquals("patient", CategorySet.canonical("patient"));
+        assertEquals(null, CategorySet.canonical(null));
+    }
+}
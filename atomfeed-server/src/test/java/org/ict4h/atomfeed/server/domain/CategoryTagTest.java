@@ -0,0 +1,41 @@
+package org.ict4h.atomfeed.server.domain;
+
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class CategoryTagTest {
+
+    @Test
+    public void shouldTakeTheCategoryAndTheTagBackFromTheFeedOfATag() {
+        String merged = CategoryTag.of("patient", " merged");
+
+        assertTrue(CategoryTag.isTagged(merged));
+        assertEquals("patient", CategoryTag.categoryOf(merged));
+        assertEquals("merged", CategoryTag.tagOf(merged));
+        assertFalse(CategoryTag.isTagged("patient"));
+        assertEquals("patient", CategoryTag.categoryOf("patient"));
+        assertNull(CategoryTag.tagOf("patient"));
+    }
+
+    @Test(expected = AtomFeedRuntimeException.class)
+    public void shouldNotServeTheFeedOfATagOverACategorySet() {
+        CategoryTag.of("patient,encounter", "merged");
+    }
+
+    @Test
+    public void shouldKeepTheFeedsOfTheTrimmedTagsOfAnEventOtherThanItsCategory() {
+        EventRecord eventRecord = new EventRecord("uuid", "title", "http://uri", null, new Date(), "patient", "patient,merged, voided,");
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("merged", "voided")), eventRecord.getTagTerms());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("patient", "merged", "voided")), eventRecord.getCategoryTerms());
+    }
+}
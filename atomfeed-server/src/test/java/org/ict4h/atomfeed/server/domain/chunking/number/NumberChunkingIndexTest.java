@@ -0,0 +1,98 @@
+package org.ict4h.atomfeed.server.domain.chunking.number;
+
+import junit.framework.Assert;
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class NumberChunkingIndexTest {
+    private static final int HISTORIES = 500;
+
+    @Test
+    public void shouldCountFeedsAndFindRangesAsTheChunkingHistoryDoesForHistoriesAddedInSequence() {
+        Random random = new Random(20121112L);
+        for (int i = 0; i < HISTORIES; i++) {
+            assertEquivalent(randomHistory(random, false), random);
+        }
+    }
+
+    @Test
+    public void shouldCountFeedsAndFindRangesAsTheChunkingHistoryDoesForHistoriesAddedOutOfSequence() {
+        Random random = new Random(20130101L);
+        for (int i = 0; i < HISTORIES; i++) {
+            assertEquivalent(randomHistory(random, true), random);
+        }
+    }
+
+    @Test
+    public void shouldFindRangesOfTheMultiEntryHistory() {
+        NumberChunkingHistory history = new NumberChunkingHistory();
+        history.add(1, 5, 1);
+        history.add(2, 3, 11);
+        NumberChunkingIndex index = new NumberChunkingIndex(history);
+
+        Assert.assertEquals(4, index.getNumberOfFeeds(16));
+        Assert.assertEquals(7, index.getNumberOfFeeds(24));
+        assertRange(5, 5, index.findRange(2, 16));
+        assertRange(10, 3, index.findRange(3, 16));
+        assertRange(13, 3, index.findRange(4, 16));
+    }
+
+    @Test(expected = AtomFeedRuntimeException.class)
+    public void shouldNotBeUsableWithoutAChunkingHistory() {
+        new NumberChunkingIndex(new NumberChunkingHistory()).getNumberOfFeeds(10);
+    }
+
+    @Test(expected = AtomFeedRuntimeException.class)
+    public void shouldRejectChunksWithoutEvents() {
+        NumberChunkingHistory history = new NumberChunkingHistory();
+        history.add(1, 0, 1);
+        new NumberChunkingIndex(history);
+    }
+
+    private void assertEquivalent(NumberChunkingHistory history, Random random) {
+        NumberChunkingIndex index = new NumberChunkingIndex(history);
+        int lastStart = history.chunkingHistoryEntries.get(history.chunkingHistoryEntries.size() - 1).getStartPosition();
+        for (int upperBound = -1; upperBound <= lastStart + 40; upperBound += 1 + random.nextInt(3)) {
+            int numberOfFeeds = history.getNumberOfFeeds(upperBound);
+            Assert.assertEquals(numberOfFeeds, index.getNumberOfFeeds(upperBound));
+            for (int feedId = -1; feedId <= numberOfFeeds + 2; feedId++) {
+                NumberRange expected = history.findRange(feedId, upperBound);
+                NumberRange actual = index.findRange(feedId, upperBound);
+                if (expected == null) {
+                    Assert.assertNull(actual);
+                } else {
+                    assertRange(expected.getOffset(), expected.getLimit(), actual);
+                }
+            }
+        }
+    }
+
+    private NumberChunkingHistory randomHistory(Random random, boolean outOfSequence) {
+        int size = 1 + random.nextInt(8);
+        List<Integer> sequenceNumbers = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            sequenceNumbers.add(i);
+        }
+        if (outOfSequence) {
+            Collections.shuffle(sequenceNumbers, random);
+        }
+        NumberChunkingHistory history = new NumberChunkingHistory();
+        int start = 1 + random.nextInt(3);
+        for (Integer sequenceNumber : sequenceNumbers) {
+            history.add(sequenceNumber, 1 + random.nextInt(6), start);
+            //Equal starts leave the previous entry without any position
+            start += random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(20);
+        }
+        return history;
+    }
+
+    private void assertRange(Integer offset, Integer limit, NumberRange range) {
+        Assert.assertEquals(offset, range.getOffset());
+        Assert.assertEquals(limit, range.getLimit());
+    }
+}
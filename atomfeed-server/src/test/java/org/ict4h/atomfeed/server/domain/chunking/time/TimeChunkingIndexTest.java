@@ -0,0 +1,102 @@
+package org.ict4h.atomfeed.server.domain.chunking.time;
+
+import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Random;
+
+public class TimeChunkingIndexTest {
+    private static final int HISTORIES = 300;
+
+    @Test
+    public void shouldFindTimeRangesAsTheChunkingHistoryDoes() {
+        Random random = new Random(20121112L);
+        for (int i = 0; i < HISTORIES; i++) {
+            TimeChunkingHistory history = randomHistory(random);
+            TimeChunkingIndex index = new TimeChunkingIndex(history);
+            long currentSequenceNumber = history.currentSequenceNumber();
+            for (int sequenceNumber = -1; sequenceNumber <= currentSequenceNumber + 3; sequenceNumber++) {
+                Assert.assertEquals(timeRangeOrNull(history, sequenceNumber), timeRangeOrNull(index, sequenceNumber));
+            }
+        }
+    }
+
+    @Test
+    public void shouldWorkOnTheSameFeedAsTheChunkingHistory() {
+        Random random = new Random(20130101L);
+        for (int i = 0; i < HISTORIES; i++) {
+            TimeChunkingHistory history = randomHistory(random);
+            TimeChunkingIndex index = new TimeChunkingIndex(history);
+            LocalDateTime before = LocalDateTime.now();
+            int workingFeedId = history.getWorkingFeedId();
+            LocalDateTime after = LocalDateTime.now();
+            Assert.assertTrue(index.getWorkingFeedId(before) <= workingFeedId);
+            Assert.assertTrue(workingFeedId <= index.getWorkingFeedId(after));
+        }
+    }
+
+    @Test
+    public void shouldFindTheFeedAPointInTimeFallsIn() {
+        Random random = new Random(20130315L);
+        for (int i = 0; i < HISTORIES; i++) {
+            TimeChunkingHistory history = randomHistory(random);
+            TimeChunkingIndex index = new TimeChunkingIndex(history);
+            LocalDateTime startOfGame = history.chunkingHistoryEntries.get(0).getStartTime();
+            Assert.assertEquals(0, index.sequenceNumberAt(startOfGame.minusNanos(1000000)));
+            long currentSequenceNumber = history.currentSequenceNumber();
+            for (int sequenceNumber = 1; sequenceNumber < currentSequenceNumber; sequenceNumber++) {
+                TimeRange timeRange = history.timeRangeFor(sequenceNumber);
+                Assert.assertEquals(sequenceNumber, index.sequenceNumberAt(timeRange.getStartTimestamp().toLocalDateTime()));
+                Assert.assertEquals(sequenceNumber, index.sequenceNumberAt(timeRange.getEndTimestamp().toLocalDateTime().minusNanos(1000000)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldCountTheFeedsOfTheUnboundedEntryUpToTheGivenTime() {
+        LocalDateTime startOfGame = LocalDateTime.of(2012, 1, 1, 0, 0, 0);
+        TimeChunkingHistory history = new TimeChunkingHistory();
+        history.add(epochMillis(startOfGame), Duration.ofHours(2).toMillis());
+        history.add(epochMillis(startOfGame.plusHours(4)), Duration.ofHours(3).toMillis());
+        TimeChunkingIndex index = new TimeChunkingIndex(history);
+
+        Assert.assertEquals(3, index.currentSequenceNumber(startOfGame.plusHours(5)));
+        Assert.assertEquals(4, index.currentSequenceNumber(startOfGame.plusHours(8)));
+        Assert.assertEquals(new TimeRange(startOfGame.plusHours(4), startOfGame.plusHours(7)), index.timeRangeFor(3));
+    }
+
+    private TimeChunkingHistory randomHistory(Random random) {
+        int size = 1 + random.nextInt(6);
+        LocalDateTime start = LocalDateTime.now().withNano(0).minusMinutes(size * 600 + random.nextInt(600));
+        TimeChunkingHistory history = new TimeChunkingHistory();
+        for (int i = 0; i < size; i++) {
+            history.add(epochMillis(start), Duration.ofMinutes(1 + random.nextInt(120)).toMillis());
+            start = start.plusMinutes(random.nextInt(600));
+        }
+        return history;
+    }
+
+    private TimeRange timeRangeOrNull(TimeChunkingHistory history, int sequenceNumber) {
+        try {
+            return history.timeRangeFor(sequenceNumber);
+        } catch (AtomFeedRuntimeException e) {
+            return null;
+        }
+    }
+
+    private TimeRange timeRangeOrNull(TimeChunkingIndex index, int sequenceNumber) {
+        try {
+            return index.timeRangeFor(sequenceNumber);
+        } catch (AtomFeedRuntimeException e) {
+            return null;
+        }
+    }
+
+    private long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
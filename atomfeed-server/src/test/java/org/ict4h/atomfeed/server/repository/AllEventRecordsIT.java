@@ -4,7 +4,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.ict4h.atomfeed.IntegrationTest;
 import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
 import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.server.domain.CategoryTag;
 import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.EventRecordKey;
+import org.ict4h.atomfeed.server.domain.EventRecordsSummary;
 import org.ict4h.atomfeed.server.domain.chunking.time.TimeRange;
 import org.ict4h.atomfeed.server.repository.jdbc.AllEventRecordsJdbcImpl;
 import org.ict4h.atomfeed.transaction.AFTransactionManager;
@@ -61,6 +64,10 @@ public class AllEventRecordsIT extends IntegrationTest {
                     statement.execute(String.format("delete from %s", event_records_marker_table));
                     String chunking_history_table = JdbcUtils.getTableName(getProperty("atomdb.default_schema"), "chunking_history");
                     statement.execute(String.format("delete from %s", chunking_history_table));
+                    String event_records_counter_table = JdbcUtils.getTableName(getProperty("atomdb.default_schema"), "event_records_counter");
+                    statement.execute(String.format("delete from %s", event_records_counter_table));
+                    String event_record_tags_table = JdbcUtils.getTableName(getProperty("atomdb.default_schema"), "event_record_tags");
+                    statement.execute(String.format("delete from %s", event_record_tags_table));
                     statement.close();
                 } catch (SQLException e) {
                     e.printStackTrace();
@@ -170,6 +177,32 @@ public class AllEventRecordsIT extends IntegrationTest {
         Assert.assertTrue(filter(having(on(EventRecord.class).getUuid(), startsWith("uuid2")), events).isEmpty());
     }
 
+    @Test
+    public void shouldPageThroughEventsInTimeRangeByKey() throws URISyntaxException {
+        Timestamp startTime = new Timestamp(new Date().getTime());
+        String category = "oneCategory";
+        addEvents(7, "uuid1", category);
+        addEvents(2, "uuid2", "anotherCategory");
+        // Adding an extra millisecond below to account for the discrepancy that system time is stored
+        // in the DB in nanoseconds while new Date().getTime() only returns time till millisecond accuracy.
+        Timestamp endTime = new Timestamp(new Date().getTime() + 1);
+        TimeRange timeRange = new TimeRange(startTime, endTime);
+
+        assertEquals(7, allEventRecords.getCountOfEventsInTimeRange(timeRange, category));
+        assertEquals(9, allEventRecords.getCountOfEventsInTimeRange(timeRange, null));
+        assertEquals(null, allEventRecords.findKeyOfEventInTimeRange(timeRange, category, 8));
+
+        List<EventRecord> firstPage = allEventRecords.getEventsFromTimeRange(timeRange, category, null, 3);
+        assertEquals(Arrays.asList("uuid11", "uuid12", "uuid13"), extract(firstPage, on(EventRecord.class).getUuid()));
+        EventRecordKey afterFirstPage = allEventRecords.findKeyOfEventInTimeRange(timeRange, category, 3);
+        assertEquals(firstPage.get(2).getId().intValue(), afterFirstPage.getId());
+        List<EventRecord> secondPage = allEventRecords.getEventsFromTimeRange(timeRange, category, afterFirstPage, 3);
+        assertEquals(Arrays.asList("uuid14", "uuid15", "uuid16"), extract(secondPage, on(EventRecord.class).getUuid()));
+        List<EventRecord> lastPage = allEventRecords.getEventsFromTimeRange(timeRange, category,
+                allEventRecords.findKeyOfEventInTimeRange(timeRange, category, 6), 3);
+        assertEquals(Arrays.asList("uuid17"), extract(lastPage, on(EventRecord.class).getUuid()));
+    }
+
     @Test
     public void shouldFetchEventsFilteredByCategory() throws URISyntaxException {
         String firstCategory = "oneCategory";
@@ -204,6 +237,201 @@ public class AllEventRecordsIT extends IntegrationTest {
         assertEquals(100, totalCountForCategory);
     }
 
+    @Test
+    public void shouldNumberEventsWithoutGapsPerCategoryAndAcrossCategories() throws Exception {
+        addEvents(2, "uuid1", "oneCategory");
+        addEvents(1, "uuid2", "another");
+        addEvents(1, "uuid3", null);
+        addEvents(1, "uuid4", "oneCategory");
+
+        assertSequence(1, 1, allEventRecords.get("uuid11"));
+        assertSequence(2, 2, allEventRecords.get("uuid12"));
+        assertSequence(3, 1, allEventRecords.get("uuid21"));
+        assertSequence(4, 4, allEventRecords.get("uuid31"));
+        assertSequence(5, 3, allEventRecords.get("uuid41"));
+    }
+
+    @Test
+    public void shouldFetchEventsFromSequenceRange() throws Exception {
+        String firstCategory = "oneCategory";
+        addEvents(2, "uuid1", firstCategory);
+        addEvents(3, "uuid2", "another");
+        addEvents(5, "uuid3", firstCategory);
+
+        List<EventRecord> events = allEventRecords.getEventsFromSequenceRange(firstCategory, 3, 5);
+        assertEquals(3, events.size());
+        assertEquals("uuid31", events.get(0).getUuid());
+        assertEquals("uuid33", events.get(2).getUuid());
+
+        events = allEventRecords.getEventsFromSequenceRange(null, 2, 4);
+        assertEquals(3, events.size());
+        assertEquals("uuid12", events.get(0).getUuid());
+        assertEquals("uuid22", events.get(2).getUuid());
+    }
+
+    @Test
+    public void shouldStreamEventsFromSequenceRangeAndSummarizeIt() throws Exception {
+        String firstCategory = "oneCategory";
+        addEvents(2, "uuid1", firstCategory);
+        addEvents(3, "uuid2", "another");
+        addEvents(5, "uuid3", firstCategory);
+
+        final List<String> uuids = new ArrayList<>();
+        allEventRecords.forEachEventInSequenceRange(firstCategory, 3, 5, new EventRecordHandler() {
+            @Override
+            public void handle(EventRecord eventRecord) {
+                uuids.add(eventRecord.getUuid());
+            }
+        });
+        EventRecordsSummary summary = allEventRecords.getSummaryOfSequenceRange(firstCategory, 3, 5);
+
+        assertEquals(Arrays.asList("uuid31", "uuid32", "uuid33"), uuids);
+        assertEquals(allEventRecords.get("uuid33").getId().intValue(), summary.getNewestEventId());
+        assertEquals(allEventRecords.get("uuid33").getTimeStamp(), summary.getNewestEventDate());
+
+        EventRecordsSummary emptySummary = allEventRecords.getSummaryOfSequenceRange(firstCategory, 8, 10);
+        assertEquals(0, emptySummary.getNewestEventId());
+        assertEquals(null, emptySummary.getNewestEventDate());
+    }
+
+    @Test
+    public void shouldStreamEventsAfterAnEventUpToTheLimit() throws Exception {
+        String firstCategory = "oneCategory";
+        addEvents(2, "uuid1", firstCategory);
+        addEvents(3, "uuid2", "another");
+        addEvents(5, "uuid3", firstCategory);
+
+        final List<String> uuids = new ArrayList<>();
+        EventRecordHandler collector = new EventRecordHandler() {
+            @Override
+            public void handle(EventRecord eventRecord) {
+                uuids.add(eventRecord.getUuid());
+            }
+        };
+        allEventRecords.forEachEventAfter(firstCategory, allEventRecords.get("uuid12").getId(), 3, collector);
+        assertEquals(Arrays.asList("uuid31", "uuid32", "uuid33"), uuids);
+
+        uuids.clear();
+        allEventRecords.forEachEventAfter(null, allEventRecords.get("uuid34").getId(), 10, collector);
+        assertEquals(Arrays.asList("uuid35"), uuids);
+    }
+
+    @Test
+    public void shouldReadTheEventsOfACategorySetMergedById() throws Exception {
+        addEvents(2, "uuid1", "patient");
+        addEvents(2, "uuid2", "drug");
+        addEvents(2, "uuid3", "encounter");
+        addEvents(1, "uuid4", "patient");
+        String categorySet = "encounter,patient";
+
+        assertEquals(5, allEventRecords.getTotalCountForCategory(categorySet));
+        assertEquals(allEventRecords.get("uuid31").getId(), allEventRecords.findIdOfEventAfter(categorySet, allEventRecords.get("uuid11").getId(), 2));
+
+        final List<String> uuids = new ArrayList<>();
+        allEventRecords.forEachEventAfter(categorySet, allEventRecords.get("uuid12").getId(), 10, new EventRecordHandler() {
+            @Override
+            public void handle(EventRecord eventRecord) {
+                uuids.add(eventRecord.getUuid());
+            }
+        });
+        assertEquals(Arrays.asList("uuid31", "uuid32", "uuid41"), uuids);
+
+        List<EventRecord> page = allEventRecords.getEventsFromRangeForCategory(categorySet, 1, 2, 0);
+        assertEquals(Arrays.asList("uuid12", "uuid31"), extract(page, on(EventRecord.class).getUuid()));
+        assertEquals(5, allEventRecords.getTotalCountForCategory(categorySet, 0, null));
+    }
+
+    @Test
+    public void shouldNumberAndReadTheEventsOfACategoryWithATag() throws Exception {
+        addTaggedEvent("uuid1", "patient", "patient,merged");
+        addTaggedEvent("uuid2", "patient", "patient, created");
+        addTaggedEvent("uuid3", "encounter", "encounter,merged");
+        addTaggedEvent("uuid4", "patient", "patient,merged, voided");
+        addTaggedEvent("uuid5", "patient", "patient,merged");
+        String merged = CategoryTag.of("patient", "merged");
+
+        assertEquals(3, allEventRecords.getTotalCountForCategory(merged));
+        assertEquals(1, allEventRecords.getTotalCountForCategory(CategoryTag.of("patient", "voided")));
+        assertEquals(0, allEventRecords.getTotalCountForCategory(CategoryTag.of("patient", "patient")));
+
+        List<EventRecord> events = allEventRecords.getEventsFromSequenceRange(merged, 2, 3);
+        assertEquals(Arrays.asList("uuid4", "uuid5"), extract(events, on(EventRecord.class).getUuid()));
+        assertEquals(allEventRecords.get("uuid5").getId().intValue(), allEventRecords.getSummaryOfSequenceRange(merged, 1, 3).getNewestEventId());
+
+        final List<String> uuids = new ArrayList<>();
+        allEventRecords.forEachEventAfter(merged, allEventRecords.get("uuid1").getId(), 10, new EventRecordHandler() {
+            @Override
+            public void handle(EventRecord eventRecord) {
+                uuids.add(eventRecord.getUuid());
+            }
+        });
+        assertEquals(Arrays.asList("uuid4", "uuid5"), uuids);
+        assertEquals(Arrays.asList("uuid1"), extract(allEventRecords.getEventsFromRangeForCategory(merged, 0, 1, 0), on(EventRecord.class).getUuid()));
+    }
+
+    @Test
+    public void shouldNumberEventsAddedTogetherAsIfAddedOneAtATime() throws Exception {
+        addTaggedEvent("uuid1", "patient", "patient,merged");
+        allEventRecords.add(Arrays.asList(
+                new EventRecord("uuid2", "title", "http://uri/uuid2", null, new Date(), "encounter", "encounter,merged"),
+                new EventRecord("uuid3", "title", "http://uri/uuid3", null, new Date(), "patient", "patient,merged"),
+                new EventRecord("uuid4", "title", "http://uri/uuid4", null, new Date(), null),
+                new EventRecord("uuid5", "title", "http://uri/uuid5", null, new Date(), "patient", "patient, created")));
+        addTaggedEvent("uuid6", "patient", "patient,merged");
+
+        assertSequence(1, 1, allEventRecords.get("uuid1"));
+        assertSequence(2, 1, allEventRecords.get("uuid2"));
+        assertSequence(3, 2, allEventRecords.get("uuid3"));
+        assertSequence(4, 4, allEventRecords.get("uuid4"));
+        assertSequence(5, 3, allEventRecords.get("uuid5"));
+        assertSequence(6, 4, allEventRecords.get("uuid6"));
+        assertEquals(3, allEventRecords.getTotalCountForCategory(CategoryTag.of("patient", "merged")));
+        List<EventRecord> events = allEventRecords.getEventsFromSequenceRange(CategoryTag.of("patient", "merged"), 1, 3);
+        assertEquals(Arrays.asList("uuid1", "uuid3", "uuid6"), extract(events, on(EventRecord.class).getUuid()));
+    }
+
+    @Test
+    public void shouldIndexTheTagsOfEventsPublishedBeforeTagsWereIndexed() throws Exception {
+        addTaggedEvent("uuid1", "patient", "patient,merged");
+        addTaggedEvent("uuid2", "encounter", "encounter,merged");
+        addTaggedEvent("uuid3", "patient", "patient, created");
+        addTaggedEvent("uuid4", "patient", "patient,merged");
+        //As published before the upgrade
+        atomfeedTransactionManager.executeWithTransaction(new AFTransactionWorkWithoutResult() {
+            @Override
+            protected void doInTransaction() {
+                try {
+                    Statement statement = connectionProvider.getConnection().createStatement();
+                    statement.execute(String.format("delete from %s", JdbcUtils.getTableName(getProperty("atomdb.default_schema"), "event_record_tags")));
+                    statement.close();
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public PropagationDefinition getTxPropagationDefinition() {
+                return PropagationDefinition.PROPAGATION_REQUIRED;
+            }
+        });
+        String merged = CategoryTag.of("patient", "merged");
+        assertEquals(0, allEventRecords.getTotalCountForCategory(merged));
+
+        allEventRecords.rebuildTags();
+        addTaggedEvent("uuid5", "patient", "patient,merged");
+
+        assertEquals(3, allEventRecords.getTotalCountForCategory(merged));
+        assertEquals(1, allEventRecords.getTotalCountForCategory(CategoryTag.of("patient", "created")));
+        assertEquals(1, allEventRecords.getTotalCountForCategory(CategoryTag.of("encounter", "merged")));
+        List<EventRecord> events = allEventRecords.getEventsFromSequenceRange(merged, 1, 3);
+        assertEquals(Arrays.asList("uuid1", "uuid4", "uuid5"), extract(events, on(EventRecord.class).getUuid()));
+    }
+
+    private void assertSequence(int seq, int categorySeq, EventRecord eventRecord) {
+        assertEquals(Integer.valueOf(seq), eventRecord.getSeq());
+        assertEquals(Integer.valueOf(categorySeq), eventRecord.getCategorySeq());
+    }
+
     @Test
     public void shouldGetAllDistinctCategories() throws Exception {
         generateData(10, "Cat1");
@@ -224,6 +452,10 @@ public class AllEventRecordsIT extends IntegrationTest {
         }
     }
 
+    private void addTaggedEvent(String uuid, String category, String tags) {
+        allEventRecords.add(new EventRecord(uuid, "title", "http://uri/" + uuid, null, new Date(), category, tags));
+    }
+
     private void generateData(int total, String eventCategory) throws URISyntaxException {
         for (int i = 0; i < total; i++) {
             String uuid = UUID.randomUUID().toString();
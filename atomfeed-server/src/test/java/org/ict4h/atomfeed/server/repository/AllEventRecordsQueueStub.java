@@ -29,11 +29,24 @@ public class AllEventRecordsQueueStub implements AllEventRecordsQueue {
         return eventRecordQueueItems;
     }
 
+    @Override
+    public List<EventRecordQueueItem> claim(int limit) {
+        List<EventRecordQueueItem> eventRecordQueueItems = getAll();
+        return eventRecordQueueItems.subList(0, Math.min(limit, eventRecordQueueItems.size()));
+    }
+
     @Override
     public void delete(String uuid) {
         eventRecordsQueue.remove(uuid);
     }
 
+    @Override
+    public void delete(List<EventRecordQueueItem> eventRecordQueueItems) {
+        for (EventRecordQueueItem eventRecordQueueItem : eventRecordQueueItems) {
+            eventRecordsQueue.remove(eventRecordQueueItem.getUuid());
+        }
+    }
+
     public void clear() {
         eventRecordsQueue.clear();
     }
@@ -1,6 +1,11 @@
 package org.ict4h.atomfeed.server.repository;
 
+import org.ict4h.atomfeed.server.domain.CategorySet;
+import org.ict4h.atomfeed.server.domain.CategoryTag;
+import org.ict4h.atomfeed.server.domain.EventFeed;
 import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.EventRecordKey;
+import org.ict4h.atomfeed.server.domain.EventRecordsSummary;
 import org.ict4h.atomfeed.server.domain.chunking.time.TimeRange;
 
 import static ch.lambdaj.Lambda.*;
@@ -9,12 +14,19 @@ import static org.hamcrest.Matchers.*;
 import java.util.*;
 
 public class AllEventRecordsStub implements AllEventRecords {
-    private Map<String, EventRecord> eventRecords = new HashMap<String, EventRecord>();
+    private Map<String, EventRecord> eventRecords = new LinkedHashMap<String, EventRecord>();
 
     public void add(EventRecord eventRecord) {
         eventRecords.put(eventRecord.getUuid(), eventRecord);
     }
 
+    @Override
+    public void add(List<EventRecord> eventRecords) {
+        for (EventRecord eventRecord : eventRecords) {
+            add(eventRecord);
+        }
+    }
+
     public EventRecord get(String uuid) {
         return eventRecords.get(uuid);
     }
@@ -34,11 +46,69 @@ public class AllEventRecordsStub implements AllEventRecords {
                 .subList(offset, Math.min(offset + limit, values.size()));
     }
 
+    @Override
+    public Integer findIdOfEventAfter(String category, Integer afterId, int position) {
+        int seen = 0;
+        for (EventRecord eventRecord : filterEventsBasedOnCategory(category, eventRecords.values())) {
+            if (eventRecord.getId() != null && eventRecord.getId() > afterId && ++seen == position) {
+                return eventRecord.getId();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<EventRecord> getEventsFromSequenceRange(String category, Integer fromSeq, Integer toSeq) {
+        List<EventRecord> events = filterEventsBasedOnCategory(category, eventRecords.values());
+        return events.subList(Math.min(fromSeq - 1, events.size()), Math.min(toSeq, events.size()));
+    }
+
+    @Override
+    public void forEachEventInSequenceRange(String category, Integer fromSeq, Integer toSeq, EventRecordHandler handler) {
+        for (EventRecord eventRecord : getEventsFromSequenceRange(category, fromSeq, toSeq)) {
+            handler.handle(eventRecord);
+        }
+    }
+
+    @Override
+    public void forEachEventAfter(String category, Integer afterId, int limit, EventRecordHandler handler) {
+        List<EventRecord> records = new ArrayList<>();
+        for (EventRecord eventRecord : filterEventsBasedOnCategory(category, eventRecords.values())) {
+            if (eventRecord.getId() != null && eventRecord.getId() > afterId) {
+                records.add(eventRecord);
+            }
+        }
+        Collections.sort(records, new Comparator<EventRecord>() {
+            @Override
+            public int compare(EventRecord one, EventRecord other) {
+                return one.getId().compareTo(other.getId());
+            }
+        });
+        for (EventRecord eventRecord : records.subList(0, Math.min(limit, records.size()))) {
+            handler.handle(eventRecord);
+        }
+    }
+
+    @Override
+    public EventRecordsSummary getSummaryOfSequenceRange(String category, Integer fromSeq, Integer toSeq) {
+        EventFeed feed = new EventFeed(0, getEventsFromSequenceRange(category, fromSeq, toSeq));
+        return new EventRecordsSummary(feed.getNewestEventId(), feed.getEvents().isEmpty() ? null : feed.getNewestEventDate());
+    }
+
     private List<EventRecord> filterEventsBasedOnCategory(String category, Collection<EventRecord> values) {
         if (category == null) {
             return new ArrayList<>(values);
         }
-        return filter(having(on(EventRecord.class).getCategory(), equalTo(category)), values);
+        if (CategoryTag.isTagged(category)) {
+            List<EventRecord> tagged = new ArrayList<>();
+            for (EventRecord eventRecord : filterEventsBasedOnCategory(CategoryTag.categoryOf(category), values)) {
+                if (eventRecord.getTagTerms().contains(CategoryTag.tagOf(category))) {
+                    tagged.add(eventRecord);
+                }
+            }
+            return tagged;
+        }
+        return filter(having(on(EventRecord.class).getCategory(), isIn(CategorySet.membersOf(category))), values);
     }
 
     @Override
@@ -46,6 +116,47 @@ public class AllEventRecordsStub implements AllEventRecords {
         return filterEventsThatFallInsideTimeRange(timeRange, filterEventsBasedOnCategory(category, eventRecords.values()));
     }
 
+    @Override
+    public List<EventRecord> getEventsFromTimeRange(TimeRange timeRange, String category, EventRecordKey after, int limit) {
+        List<EventRecord> records = new ArrayList<EventRecord>();
+        for (EventRecord record : sortByKey(getEventsFromTimeRange(timeRange, category))) {
+            if (records.size() < limit && (after == null || compare(keyOf(record), after) > 0)) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public EventRecordKey findKeyOfEventInTimeRange(TimeRange timeRange, String category, int position) {
+        List<EventRecord> records = sortByKey(getEventsFromTimeRange(timeRange, category));
+        return position <= records.size() ? keyOf(records.get(position - 1)) : null;
+    }
+
+    @Override
+    public int getCountOfEventsInTimeRange(TimeRange timeRange, String category) {
+        return getEventsFromTimeRange(timeRange, category).size();
+    }
+
+    private List<EventRecord> sortByKey(List<EventRecord> records) {
+        Collections.sort(records, new Comparator<EventRecord>() {
+            @Override
+            public int compare(EventRecord one, EventRecord other) {
+                return AllEventRecordsStub.compare(keyOf(one), keyOf(other));
+            }
+        });
+        return records;
+    }
+
+    private static EventRecordKey keyOf(EventRecord record) {
+        return new EventRecordKey(new java.sql.Timestamp(record.getTimeStamp().getTime()), record.getId() == null ? 0 : record.getId());
+    }
+
+    private static int compare(EventRecordKey one, EventRecordKey other) {
+        int byTimestamp = one.getTimestamp().compareTo(other.getTimestamp());
+        return byTimestamp != 0 ? byTimestamp : Integer.compare(one.getId(), other.getId());
+    }
+
     @Override
     public int getTotalCountForCategory(String category, Integer beginIndex, Integer endIndex) {
         return filterEventsBasedOnCategory(category, eventRecords.values()).size();
@@ -67,6 +178,11 @@ public class AllEventRecordsStub implements AllEventRecords {
         return filteredRecords;
     }
 
+    //Tags are matched off the events themselves, so there is no index to rebuild.
+    @Override
+    public void rebuildTags() {
+    }
+
     public void clear() {
         eventRecords.clear();
     }
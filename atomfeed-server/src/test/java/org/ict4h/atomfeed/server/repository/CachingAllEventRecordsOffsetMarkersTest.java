@@ -0,0 +1,121 @@
+package org.ict4h.atomfeed.server.repository;
+
+import org.ict4h.atomfeed.server.domain.EventRecordsOffsetMarker;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+public class CachingAllEventRecordsOffsetMarkersTest {
+    private MarkersStub markersInDatabase;
+
+    @Before
+    public void setUp() {
+        markersInDatabase = new MarkersStub();
+        markersInDatabase.addOrUpdate("Category", 10, 5);
+    }
+
+    @Test
+    public void shouldLookUpMarkersWithoutReadingThemAgain() {
+        CachingAllEventRecordsOffsetMarkers markers = new CachingAllEventRecordsOffsetMarkers(markersInDatabase, 60000);
+
+        assertEquals(Integer.valueOf(10), markers.get("category").getEventId());
+        assertEquals(Integer.valueOf(10), markers.get("CATEGORY").getEventId());
+        assertNull(markers.get(null));
+        assertEquals(1, markers.getAll().size());
+
+        assertEquals(1, markersInDatabase.getAllCount);
+        assertEquals(1, markersInDatabase.versionCount);
+    }
+
+    @Test
+    public void shouldReloadMarkersUpdatedThroughIt() {
+        CachingAllEventRecordsOffsetMarkers markers = new CachingAllEventRecordsOffsetMarkers(markersInDatabase, 60000);
+        markers.get("category");
+
+        markers.addOrUpdate("category", 20, 9);
+        markers.addOrUpdate("", 30, 12);
+
+        assertEquals(Integer.valueOf(20), markers.get("category").getEventId());
+        assertEquals(Integer.valueOf(30), markers.get("").getEventId());
+        assertEquals(2, markersInDatabase.getAllCount);
+    }
+
+    @Test
+    public void shouldReloadMarkersMovedElsewhereOnlyWhenTheirVersionChanges() {
+        CachingAllEventRecordsOffsetMarkers markers = new CachingAllEventRecordsOffsetMarkers(markersInDatabase, 0);
+        markers.get("category");
+
+        markers.get("category");
+        assertEquals(1, markersInDatabase.getAllCount);
+
+        markersInDatabase.addOrUpdate("category", 20, 9);
+        assertEquals(Integer.valueOf(20), markers.get("category").getEventId());
+        assertEquals(2, markersInDatabase.getAllCount);
+    }
+
+    @Test
+    public void shouldNotCheckTheVersionWithinTheCheckInterval() {
+        CachingAllEventRecordsOffsetMarkers markers = new CachingAllEventRecordsOffsetMarkers(markersInDatabase, 60000);
+        markers.get("category");
+
+        markersInDatabase.addOrUpdate("category", 20, 9);
+
+        assertEquals(Integer.valueOf(10), markers.get("category").getEventId());
+        assertEquals(1, markersInDatabase.versionCount);
+    }
+
+    private static class MarkersStub implements AllEventRecordsOffsetMarkers {
+        private final List<EventRecordsOffsetMarker> markers = new ArrayList<>();
+        private int version;
+        private int getAllCount;
+        private int versionCount;
+
+        @Override
+        public void addOrUpdate(String category, Integer offsetId, Integer countTillOffSetId) {
+            EventRecordsOffsetMarker marker = get(category);
+            if (marker == null) {
+                marker = new EventRecordsOffsetMarker();
+                marker.setCategory(category);
+                markers.add(marker);
+            }
+            marker.setEventId(offsetId);
+            marker.setEventCount(countTillOffSetId);
+            version++;
+        }
+
+        @Override
+        public List<EventRecordsOffsetMarker> getAll() {
+            getAllCount++;
+            List<EventRecordsOffsetMarker> copies = new ArrayList<>();
+            for (EventRecordsOffsetMarker marker : markers) {
+                EventRecordsOffsetMarker copy = new EventRecordsOffsetMarker();
+                copy.setCategory(marker.getCategory());
+                copy.setEventId(marker.getEventId());
+                copy.setEventCount(marker.getEventCount());
+                copies.add(copy);
+            }
+            return copies;
+        }
+
+        @Override
+        public EventRecordsOffsetMarker get(String category) {
+            for (EventRecordsOffsetMarker marker : markers) {
+                if (marker.getCategory().equalsIgnoreCase(category)) {
+                    return marker;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String getVersion() {
+            versionCount++;
+            return String.valueOf(version);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.ict4h.atomfeed.server.repository.jdbc;
+
+import org.ict4h.atomfeed.IntegrationTest;
+import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
+import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.EventRecordsCounter;
+import org.ict4h.atomfeed.server.repository.AllEventRecords;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsCounters;
+import org.ict4h.atomfeed.server.service.EventRecordsCounterService;
+import org.ict4h.atomfeed.server.service.EventRecordsCounterServiceImpl;
+import org.ict4h.atomfeed.transaction.AFTransactionManager;
+import org.ict4h.atomfeed.transaction.AFTransactionWorkWithoutResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URISyntaxException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class AllEventRecordsCountersJdbcIT extends IntegrationTest {
+
+    private AllEventRecordsCounters allEventRecordsCounters;
+    private AllEventRecords allEventRecords;
+    private EventRecordsCounterService counterService;
+    private JdbcConnectionProvider connectionProvider;
+    private AFTransactionManager atomfeedTransactionManager;
+
+    @Before
+    public void before() throws SQLException {
+        connectionProvider = getConnectionProvider();
+        atomfeedTransactionManager = getAtomfeedTransactionManager(connectionProvider);
+        allEventRecordsCounters = new AllEventRecordsCountersJdbcImpl(connectionProvider);
+        allEventRecords = new AllEventRecordsJdbcImpl(connectionProvider, allEventRecordsCounters);
+        counterService = new EventRecordsCounterServiceImpl(allEventRecordsCounters);
+        clearRecords();
+    }
+
+    @After
+    public void after() throws SQLException {
+        clearRecords();
+    }
+
+    @Test
+    public void shouldCountEventsPerCategoryAndAcrossCategoriesOnAdd() throws URISyntaxException {
+        addEvents(3, "Cat-0");
+        addEvents(2, "Cat-1");
+        addEvents(1, null);
+
+        assertEquals(3, allEventRecordsCounters.getCount("Cat-0"));
+        assertEquals(2, allEventRecordsCounters.getCount("Cat-1"));
+        assertEquals(6, allEventRecordsCounters.getCount(null));
+        assertEquals(6, allEventRecordsCounters.getCount(""));
+        assertEquals(0, allEventRecordsCounters.getCount("Cat-2"));
+        assertEquals(3, allEventRecords.getTotalCountForCategory("Cat-0"));
+        assertTrue(counterService.findInconsistentCounters().isEmpty());
+    }
+
+    @Test
+    public void shouldFindAndRebuildInconsistentCounters() throws URISyntaxException {
+        addEvents(3, "Cat-0");
+        addEvents(2, "Cat-1");
+        execute("update %s set event_count = 7 where category = 'Cat-1'", "event_records_counter");
+        execute("delete from %s where category = ''", "event_records_counter");
+
+        List<EventRecordsCounter> inconsistent = counterService.findInconsistentCounters();
+        assertEquals(2, inconsistent.size());
+        assertEquals("", inconsistent.get(0).getCategory());
+        assertEquals(5, inconsistent.get(0).getEventCount().intValue());
+        assertEquals("Cat-1", inconsistent.get(1).getCategory());
+        assertEquals(2, inconsistent.get(1).getEventCount().intValue());
+
+        counterService.rebuildCounters();
+
+        assertTrue(counterService.findInconsistentCounters().isEmpty());
+        assertEquals(2, allEventRecordsCounters.getCount("Cat-1"));
+        assertEquals(5, allEventRecordsCounters.getCount(null));
+    }
+
+    @Test
+    public void shouldRebuildCountersToTheLastSequenceNumbersSoThatEventsAddedNextDoNotReuseThem() throws URISyntaxException {
+        addEvents(3, "Cat-0");
+        addEvents(2, "Cat-1");
+        execute("delete from %s where category = 'Cat-0' and category_seq = 2", "event_records");
+        execute("update %s set event_count = 4 where category = ''", "event_records_counter");
+
+        List<EventRecordsCounter> inconsistent = counterService.findInconsistentCounters();
+        assertEquals(1, inconsistent.size());
+        assertEquals("", inconsistent.get(0).getCategory());
+        assertEquals(5, inconsistent.get(0).getEventCount().intValue());
+
+        counterService.rebuildCounters();
+
+        assertTrue(counterService.findInconsistentCounters().isEmpty());
+        assertEquals(3, allEventRecordsCounters.getCount("Cat-0"));
+        assertEquals(5, allEventRecordsCounters.getCount(null));
+
+        allEventRecords.add(new EventRecord("uuid-after-rebuild", "title", "http://uri/after-rebuild", null, new Date(), "Cat-0"));
+        EventRecord added = allEventRecords.get("uuid-after-rebuild");
+        assertEquals(6, added.getSeq().intValue());
+        assertEquals(4, added.getCategorySeq().intValue());
+        assertEquals(1, allEventRecords.getEventsFromSequenceRange("Cat-0", 4, 4).size());
+    }
+
+    private void addEvents(int count, String category) throws URISyntaxException {
+        for (int i = 0; i < count; i++) {
+            String uuid = UUID.randomUUID().toString();
+            allEventRecords.add(new EventRecord(uuid, "title", "http://uri/" + uuid, null, new Date(), category));
+        }
+    }
+
+    private void clearRecords() {
+        execute("delete from %s", "event_records");
+        execute("delete from %s", "event_records_counter");
+    }
+
+    private void execute(final String sql, final String table) {
+        atomfeedTransactionManager.executeWithTransaction(new AFTransactionWorkWithoutResult() {
+            @Override
+            protected void doInTransaction() {
+                try {
+                    Statement statement = connectionProvider.getConnection().createStatement();
+                    statement.execute(String.format(sql, JdbcUtils.getTableName(getProperty("atomdb.default_schema"), table)));
+                    statement.close();
+                } catch (SQLException e) {
+                    throw new RuntimeException("Error occurred while trying to execute " + sql, e);
+                }
+            }
+
+            @Override
+            public PropagationDefinition getTxPropagationDefinition() {
+                return PropagationDefinition.PROPAGATION_REQUIRED;
+            }
+        });
+    }
+}
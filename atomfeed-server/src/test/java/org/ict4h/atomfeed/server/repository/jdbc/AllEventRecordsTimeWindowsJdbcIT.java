@@ -0,0 +1,120 @@
+package org.ict4h.atomfeed.server.repository.jdbc;
+
+import org.ict4h.atomfeed.IntegrationTest;
+import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
+import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.repository.AllEventRecords;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsTimeWindows;
+import org.ict4h.atomfeed.transaction.AFTransactionManager;
+import org.ict4h.atomfeed.transaction.AFTransactionWorkWithoutResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.UUID;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class AllEventRecordsTimeWindowsJdbcIT extends IntegrationTest {
+
+    private static final long MINUTE = AllEventRecordsTimeWindows.WINDOW_MILLIS;
+
+    private AllEventRecordsTimeWindows allEventRecordsTimeWindows;
+    private AllEventRecords allEventRecords;
+    private JdbcConnectionProvider connectionProvider;
+    private AFTransactionManager atomfeedTransactionManager;
+
+    @Before
+    public void before() throws SQLException {
+        connectionProvider = getConnectionProvider();
+        atomfeedTransactionManager = getAtomfeedTransactionManager(connectionProvider);
+        allEventRecordsTimeWindows = new AllEventRecordsTimeWindowsJdbcImpl(connectionProvider);
+        allEventRecords = new AllEventRecordsJdbcImpl(connectionProvider, new AllEventRecordsCountersJdbcImpl(connectionProvider),
+                allEventRecordsTimeWindows);
+        clearRecords();
+    }
+
+    @After
+    public void after() throws SQLException {
+        clearRecords();
+    }
+
+    @Test
+    public void shouldRecordTheWindowOfAnAddedEventForItsCategoryAndAcrossCategories() {
+        long before = System.currentTimeMillis();
+        addEvent("Cat-0");
+        addEvent("Cat-0");
+        addEvent(null);
+        long after = System.currentTimeMillis();
+
+        Date window = allEventRecordsTimeWindows.findFirstWindowFrom("Cat-0", new Date(before));
+        assertTrue(window.getTime() % MINUTE == 0);
+        assertTrue(window.getTime() > before - MINUTE && window.getTime() <= after);
+        assertEquals(window, allEventRecordsTimeWindows.findFirstWindowFrom(null, new Date(before)));
+        assertNull(allEventRecordsTimeWindows.findFirstWindowFrom("Cat-1", new Date(before)));
+        assertNull(allEventRecordsTimeWindows.findFirstWindowFrom("Cat-0", new Date(after + MINUTE)));
+    }
+
+    @Test
+    public void shouldFindTheClosestWindowsAroundATime() {
+        long midnight = (System.currentTimeMillis() / (24 * 60 * MINUTE) - 2) * 24 * 60 * MINUTE;
+        allEventRecordsTimeWindows.mark("Cat-0", new Date(midnight + 10 * MINUTE + 5000));
+        allEventRecordsTimeWindows.mark("Cat-0", new Date(midnight + 10 * MINUTE + 45000));
+        allEventRecordsTimeWindows.mark("Cat-0", new Date(midnight + 70 * MINUTE));
+
+        assertEquals(new Date(midnight + 10 * MINUTE), allEventRecordsTimeWindows.findFirstWindowFrom("Cat-0", new Date(midnight)));
+        assertEquals(new Date(midnight + 10 * MINUTE), allEventRecordsTimeWindows.findFirstWindowFrom("Cat-0", new Date(midnight + 10 * MINUTE + 30000)));
+        assertEquals(new Date(midnight + 70 * MINUTE), allEventRecordsTimeWindows.findFirstWindowFrom("Cat-0", new Date(midnight + 11 * MINUTE)));
+        assertEquals(new Date(midnight + 10 * MINUTE), allEventRecordsTimeWindows.findLastWindowBefore("Cat-0", new Date(midnight + 70 * MINUTE)));
+        assertNull(allEventRecordsTimeWindows.findLastWindowBefore("Cat-0", new Date(midnight + 10 * MINUTE)));
+    }
+
+    @Test
+    public void shouldFindTheWindowsOfACategorySetAmongThoseOfItsCategories() {
+        long midnight = (System.currentTimeMillis() / (24 * 60 * MINUTE) - 2) * 24 * 60 * MINUTE;
+        allEventRecordsTimeWindows.mark("Cat-0", new Date(midnight + 10 * MINUTE));
+        allEventRecordsTimeWindows.mark("Cat-1", new Date(midnight + 20 * MINUTE));
+        allEventRecordsTimeWindows.mark("Cat-2", new Date(midnight + 30 * MINUTE));
+
+        assertEquals(new Date(midnight + 20 * MINUTE), allEventRecordsTimeWindows.findFirstWindowFrom("Cat-1,Cat-2", new Date(midnight)));
+        assertEquals(new Date(midnight + 20 * MINUTE), allEventRecordsTimeWindows.findLastWindowBefore("Cat-0,Cat-1", new Date(midnight + 30 * MINUTE)));
+        assertNull(allEventRecordsTimeWindows.findFirstWindowFrom("Cat-0,Cat-1", new Date(midnight + 21 * MINUTE)));
+    }
+
+    private void addEvent(String category) {
+        String uuid = UUID.randomUUID().toString();
+        allEventRecords.add(new EventRecord(uuid, "title", "http://uri/" + uuid, null, new Date(), category));
+    }
+
+    private void clearRecords() {
+        execute("delete from %s", "event_records");
+        execute("delete from %s", "event_records_counter");
+        execute("delete from %s", "event_records_time_window");
+    }
+
+    private void execute(final String sql, final String table) {
+        atomfeedTransactionManager.executeWithTransaction(new AFTransactionWorkWithoutResult() {
+            @Override
+            protected void doInTransaction() {
+                try {
+                    Statement statement = connectionProvider.getConnection().createStatement();
+                    statement.execute(String.format(sql, JdbcUtils.getTableName(getProperty("atomdb.default_schema"), table)));
+                    statement.close();
+                } catch (SQLException e) {
+                    throw new RuntimeException("Error occurred while trying to execute " + sql, e);
+                }
+            }
+
+            @Override
+            public PropagationDefinition getTxPropagationDefinition() {
+                return PropagationDefinition.PROPAGATION_REQUIRED;
+            }
+        });
+    }
+}
@@ -18,6 +18,7 @@ import java.sql.Statement;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 
 public class EventRecordsOffsetMarkersJdbcIT extends IntegrationTest {
 
@@ -71,4 +72,26 @@ public class EventRecordsOffsetMarkersJdbcIT extends IntegrationTest {
         assertEquals("CAT-02", markers.get(1).getCategory());
     }
 
+    @Test
+    public void shouldChangeTheVersionWhenAMarkerIsAddedOrMoved() {
+        String initialVersion = allEventRecordsOffsetMarkers.getVersion();
+        allEventRecordsOffsetMarkers.addOrUpdate("CAT-01", 10, 5);
+        String versionAfterAdding = allEventRecordsOffsetMarkers.getVersion();
+        allEventRecordsOffsetMarkers.addOrUpdate("CAT-01", 20, 9);
+
+        assertFalse(initialVersion.equals(versionAfterAdding));
+        assertFalse(versionAfterAdding.equals(allEventRecordsOffsetMarkers.getVersion()));
+        assertEquals(Integer.valueOf(20), allEventRecordsOffsetMarkers.get("cat-01").getEventId());
+    }
+
+    @Test
+    public void shouldKeepOneMarkerOfAllCategoriesWhenMovedTwice() {
+        allEventRecordsOffsetMarkers.addOrUpdate(null, 10, 5);
+        allEventRecordsOffsetMarkers.addOrUpdate("", 20, 9);
+
+        List<EventRecordsOffsetMarker> markers = allEventRecordsOffsetMarkers.getAll();
+        assertEquals(1, markers.size());
+        assertEquals(Integer.valueOf(20), allEventRecordsOffsetMarkers.get(null).getEventId());
+    }
+
 }
@@ -0,0 +1,121 @@
+package org.ict4h.atomfeed.server.repository.jdbc;
+
+import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.jdbc.JdbcResultSetMapper;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import javax.persistence.Column;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Compares mapping a page of events with {@link JdbcResultSetMapper} against mapping it by reflection on every row,
+ * as the mapper used to. Run by hand; the event rows are read from an in-memory database, warmed up first.
+ */
+@Ignore
+public class JdbcResultSetMapperBenchmarkTest {
+    private static Logger logger = Logger.getLogger(JdbcResultSetMapperBenchmarkTest.class);
+    private static final int ROWS = 500;
+    private static final int WARM_UP = 200;
+    private static final int RUNS = 2000;
+    private static final String SELECT = "select id, uuid, title, timestamp, uri, object, date_created, category, tags, seq, category_seq from event_records";
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:mapper_benchmark");
+        Statement statement = connection.createStatement();
+        statement.execute("create table event_records (id int primary key, uuid varchar(40), title varchar(255), timestamp timestamp, " +
+                "uri varchar(255), object varchar(4000), date_created timestamp, category varchar(255), tags varchar(255), seq int, category_seq int)");
+        PreparedStatement insert = connection.prepareStatement("insert into event_records values (?, ?, ?, current_timestamp(), ?, ?, current_timestamp(), ?, ?, ?, ?)");
+        for (int id = 1; id <= ROWS; id++) {
+            insert.setInt(1, id);
+            insert.setString(2, "uuid" + id);
+            insert.setString(3, "title" + id);
+            insert.setString(4, "http://uri/" + id);
+            insert.setString(5, "{\"id\":" + id + "}");
+            insert.setString(6, "patient");
+            insert.setString(7, "patient,tag" + id % 5);
+            insert.setInt(8, id);
+            insert.setInt(9, id);
+            insert.executeUpdate();
+        }
+        statement.close();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.createStatement().execute("drop table event_records");
+        connection.close();
+    }
+
+    @Test
+    public void shouldTimeMappingRowsWithTheMapperAndByReflection() throws Exception {
+        for (int run = 0; run < WARM_UP; run++) {
+            assertEquals(ROWS, mapByReflection().size());
+            assertEquals(ROWS, mapWithMapper().size());
+        }
+        long reflection = 0, mapper = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            mapByReflection();
+            reflection += System.nanoTime() - start;
+            start = System.nanoTime();
+            mapWithMapper();
+            mapper += System.nanoTime() - start;
+        }
+        logger.info(String.format("Mapping %d rows: by reflection %d us, with the mapper %d us",
+                ROWS, reflection / RUNS / 1000, mapper / RUNS / 1000));
+    }
+
+    private List<EventRecord> mapWithMapper() throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery(SELECT);
+        List<EventRecord> eventRecords = new JdbcResultSetMapper<EventRecord>().mapResultSetToObject(resultSet, EventRecord.class);
+        statement.close();
+        return eventRecords;
+    }
+
+    private List<EventRecord> mapByReflection() throws Exception {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery(SELECT);
+        List<EventRecord> eventRecords = new ArrayList<>();
+        while (resultSet.next()) {
+            ResultSetMetaData rsmd = resultSet.getMetaData();
+            Field[] fields = EventRecord.class.getDeclaredFields();
+            EventRecord instance = EventRecord.class.newInstance();
+            for (int itr = 0; itr < rsmd.getColumnCount(); itr++) {
+                String columnName = rsmd.getColumnName(itr + 1);
+                Object columnValue = resultSet.getObject(itr + 1);
+                for (Field field : fields) {
+                    if (field.isAnnotationPresent(Column.class)) {
+                        Column column = field.getAnnotation(Column.class);
+                        if (column.name().equalsIgnoreCase(columnName) && columnValue != null) {
+                            field.setAccessible(true);
+                            field.set(instance, columnValue);
+                            break;
+                        }
+                    }
+                }
+            }
+            eventRecords.add(instance);
+        }
+        statement.close();
+        return eventRecords;
+    }
+}
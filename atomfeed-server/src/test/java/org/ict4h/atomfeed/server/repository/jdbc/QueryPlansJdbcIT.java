@@ -0,0 +1,269 @@
+package org.ict4h.atomfeed.server.repository.jdbc;
+
+import org.ict4h.atomfeed.IntegrationTest;
+import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
+import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.jdbc.QueryPlans;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.EventRecordKey;
+import org.ict4h.atomfeed.server.domain.EventRecordQueueItem;
+import org.ict4h.atomfeed.server.domain.chunking.time.TimeRange;
+import org.ict4h.atomfeed.server.repository.AllEventRecords;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsQueue;
+import org.ict4h.atomfeed.server.repository.EventRecordHandler;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+import static org.ict4h.atomfeed.jdbc.QueryPlans.PRIMARY_KEY;
+import static org.ict4h.atomfeed.jdbc.QueryPlans.TABLE_SCAN;
+
+/**
+ * Has H2 explain the statements of {@link AllEventRecordsJdbcImpl} and {@link AllEventRecordsQueueJdbcImpl} over a
+ * table of events large enough for the plans to be those of a real feed, and fails when a statement no longer reads
+ * through the index it is meant to.
+ * <p>
+ * The number of events defaults to one the build can load in seconds; set {@code atomfeed.query_plans.events} to
+ * explain over millions.
+ */
+public class QueryPlansJdbcIT extends IntegrationTest {
+    private static final int EVENTS = Integer.getInteger("atomfeed.query_plans.events", 50000);
+    private static final int CATEGORIES = 20;
+    private static final int TAGS = 7;
+    private static final Timestamp START = Timestamp.valueOf("2020-01-01 00:00:00");
+    private static final String[] TABLES = {"event_record_tags", "event_records", "event_records_counter", "event_records_queue",
+            "event_records_time_window"};
+
+    private static Connection connection;
+    private static String schema;
+
+    private QueryPlans queryPlans;
+    private AllEventRecords allEventRecords;
+    private AllEventRecordsQueue allEventRecordsQueue;
+
+    @Before
+    public void before() throws SQLException {
+        if (connection == null) {
+            connection = getConnectionFromDriverManager();
+            connection.setAutoCommit(false);
+            schema = getProperty("atomdb.default_schema");
+            load();
+        }
+        queryPlans = new QueryPlans(new JdbcConnectionProvider() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return connection;
+            }
+        });
+        allEventRecords = new AllEventRecordsJdbcImpl(queryPlans, new AllEventRecordsCountersJdbcImpl(queryPlans));
+        allEventRecordsQueue = new AllEventRecordsQueueJdbcImpl(queryPlans);
+    }
+
+    @After
+    public void after() throws SQLException {
+        connection.rollback();
+    }
+
+    @AfterClass
+    public static void clear() throws SQLException {
+        if (connection != null) {
+            clearTables();
+            connection.commit();
+            connection.close();
+            connection = null;
+        }
+    }
+
+    @Test
+    public void shouldAddAnEventThroughTheCountersAndTheSequenceNumber() throws SQLException {
+        allEventRecords.add(new EventRecord("uuid-added", "title", "uri", "contents", new Date(), "category-3", "tag-1"));
+
+        queryPlans.assertReadThrough(PRIMARY_KEY, PRIMARY_KEY, PRIMARY_KEY, PRIMARY_KEY, PRIMARY_KEY, "event_records_seq_idx",
+                "event_records_seq_idx", PRIMARY_KEY, PRIMARY_KEY);
+    }
+
+    @Test
+    public void shouldGetAnEventThroughItsUuid() throws SQLException {
+        allEventRecords.get("uuid-" + EVENTS / 2);
+
+        queryPlans.assertReadThrough("event_records_uuid_idx");
+    }
+
+    @Test
+    public void shouldReadEventsAfterAnIdThroughTheCategoryAndId() throws SQLException {
+        allEventRecords.getEventsFromRangeForCategory("category-3", 5, 5, EVENTS / 2);
+        allEventRecords.getEventsFromRangeForCategory("category-3,category-4", 5, 5, EVENTS / 2);
+        allEventRecords.findIdOfEventAfter("category-3", EVENTS / 2, 5);
+        allEventRecords.forEachEventAfter("category-3", EVENTS / 2, 5, ignoringEvents());
+
+        queryPlans.assertReadThrough("event_records_category_id_idx", "event_records_category_id_idx",
+                "event_records_category_id_idx", "event_records_category_id_idx");
+    }
+
+    @Test
+    public void shouldReadEventsAfterAnIdOfAllCategoriesThroughTheId() throws SQLException {
+        allEventRecords.getEventsFromRangeForCategory(null, 5, 5, EVENTS / 2);
+        allEventRecords.findIdOfEventAfter(null, EVENTS / 2, 5);
+        allEventRecords.forEachEventAfter(null, EVENTS / 2, 5, ignoringEvents());
+
+        queryPlans.assertReadThrough(PRIMARY_KEY, PRIMARY_KEY, PRIMARY_KEY);
+    }
+
+    @Test
+    public void shouldReadEventsOfACategoryWithATagThroughTheTags() throws SQLException {
+        allEventRecords.getEventsFromRangeForCategory("category-3#tag-1", 5, 5, EVENTS / 2);
+
+        queryPlans.assertReadThrough(PRIMARY_KEY);
+    }
+
+    @Test
+    public void shouldReadASequenceRangeThroughTheSequenceNumbers() throws SQLException {
+        allEventRecords.getEventsFromSequenceRange(null, 100, 104);
+        allEventRecords.getEventsFromSequenceRange("category-3", 100, 104);
+        allEventRecords.getEventsFromSequenceRange("category-3#tag-1", 100, 104);
+        allEventRecords.forEachEventInSequenceRange("category-3", 100, 104, ignoringEvents());
+
+        queryPlans.assertReadThrough("event_records_seq_idx", "event_records_category_seq_idx", PRIMARY_KEY,
+                "event_records_category_seq_idx");
+    }
+
+    @Test
+    public void shouldSummarizeASequenceRangeThroughTheSequenceNumbers() throws SQLException {
+        allEventRecords.getSummaryOfSequenceRange(null, 100, 104);
+        allEventRecords.getSummaryOfSequenceRange("category-3", 100, 104);
+        allEventRecords.getSummaryOfSequenceRange("category-3#tag-1", 100, 104);
+
+        queryPlans.assertReadThrough("event_records_seq_idx", "event_records_category_seq_idx", PRIMARY_KEY);
+    }
+
+    @Test
+    public void shouldReadATimeRangeOfACategoryThroughTheCategoryAndTimestamp() throws SQLException {
+        TimeRange timeRange = hourFrom(EVENTS / 2);
+        allEventRecords.getEventsFromTimeRange(timeRange, "category-3");
+        allEventRecords.getEventsFromTimeRange(timeRange, "category-3", new EventRecordKey(timeRange.getStartTimestamp(), EVENTS / 2), 5);
+        allEventRecords.findKeyOfEventInTimeRange(timeRange, "category-3", 5);
+        allEventRecords.getCountOfEventsInTimeRange(timeRange, "category-3");
+
+        queryPlans.assertReadThrough("event_records_category_timestamp_id_idx", "event_records_category_timestamp_id_idx",
+                "event_records_category_timestamp_id_idx", "event_records_category_timestamp_id_idx");
+    }
+
+    @Test
+    public void shouldReadATimeRangeOfAllCategoriesThroughTheTimestamp() throws SQLException {
+        TimeRange timeRange = hourFrom(EVENTS / 2);
+        allEventRecords.getEventsFromTimeRange(timeRange, null);
+        allEventRecords.getEventsFromTimeRange(timeRange, null, new EventRecordKey(timeRange.getStartTimestamp(), EVENTS / 2), 5);
+        allEventRecords.findKeyOfEventInTimeRange(timeRange, null, 5);
+        allEventRecords.getCountOfEventsInTimeRange(timeRange, null);
+
+        queryPlans.assertReadThrough("event_records_timestamp_id_idx", "event_records_timestamp_id_idx",
+                "event_records_timestamp_id_idx", "event_records_timestamp_id_idx");
+    }
+
+    @Test
+    public void shouldCountEventsThroughTheCountersAndTheTags() throws SQLException {
+        allEventRecords.getTotalCountForCategory("category-3");
+        allEventRecords.getTotalCountForCategory("category-3,category-4");
+        allEventRecords.getTotalCountForCategory("category-3#tag-1");
+
+        queryPlans.assertReadThrough(PRIMARY_KEY, PRIMARY_KEY, PRIMARY_KEY, PRIMARY_KEY);
+    }
+
+    //Counting all the events reads the whole table, which is why the counts feeds are served from are kept in counters.
+    @Test
+    public void shouldCountEventsBetweenIdsThroughTheCategoryAndId() throws SQLException {
+        allEventRecords.getTotalCountForCategory("category-3", EVENTS / 2, EVENTS / 2 + 100);
+        allEventRecords.getTotalCountForCategory(null, EVENTS / 2, EVENTS / 2 + 100);
+        allEventRecords.getTotalCountForCategory(null, null, null);
+
+        queryPlans.assertReadThrough("event_records_category_id_idx", PRIMARY_KEY, TABLE_SCAN);
+    }
+
+    @Test
+    public void shouldFindCategoriesThroughAnIndexOfTheCategory() throws SQLException {
+        allEventRecords.findCategories();
+
+        queryPlans.assertReadThrough("event_records_category_seq_idx");
+    }
+
+    //The queue is read whole by design; it only holds the events that are yet to be published, which are claimed and
+    //deleted by id. Nothing reads it by uuid on publish, so those lookups scan it.
+    @Test
+    public void shouldClaimAndDeleteTheQueueThroughTheId() throws SQLException {
+        allEventRecordsQueue.add(new EventRecordQueueItem("uuid-queued", "title", URI.create("uri"), "contents", new Date(), "category-3"));
+        allEventRecordsQueue.get("uuid-queued");
+        List<EventRecordQueueItem> claimed = allEventRecordsQueue.claim(5);
+        allEventRecordsQueue.getAll();
+        allEventRecordsQueue.delete("uuid-queued");
+        allEventRecordsQueue.delete(claimed);
+
+        queryPlans.assertReadThrough(TABLE_SCAN, PRIMARY_KEY, TABLE_SCAN, TABLE_SCAN, PRIMARY_KEY);
+    }
+
+    private static TimeRange hourFrom(int seconds) {
+        Timestamp start = new Timestamp(START.getTime() + seconds * 1000L);
+        return new TimeRange(start, new Timestamp(start.getTime() + 3600 * 1000L));
+    }
+
+    private static EventRecordHandler ignoringEvents() {
+        return new EventRecordHandler() {
+            @Override
+            public void handle(EventRecord eventRecord) {
+            }
+        };
+    }
+
+    //The n-th event is of category n mod 20, tagged n mod 7, a second apart, numbered among the events of its
+    //category and tag like published events are.
+    private void load() throws SQLException {
+        clearTables();
+        execute("insert into %s (uuid, title, uri, object, category, timestamp, date_created, tags, seq, category_seq) " +
+                "select 'uuid-' || x, 'title', 'uri', 'contents', 'category-' || mod(x, " + CATEGORIES + "), " +
+                "dateadd('SECOND', x, ?), ?, 'tag-' || mod(x, " + TAGS + "), x, x / " + CATEGORIES + " + 1 " +
+                "from system_range(1, " + EVENTS + ")", "event_records");
+        execute("insert into %s (category, tag, tag_seq, event_record_id) select category, tags, category_seq, id from %s",
+                "event_record_tags", "event_records");
+        execute("insert into %s (category, event_count) select category, count(*) from %s group by category",
+                "event_records_counter", "event_records");
+        execute("insert into %s (category, event_count) select '', count(*) from %s", "event_records_counter", "event_records");
+        execute("insert into %s (uuid, title, uri, object, category, timestamp) " +
+                "select 'queued-' || x, 'title', 'uri', 'contents', 'category-' || mod(x, " + CATEGORIES + "), ? " +
+                "from system_range(1, " + EVENTS / 10 + ")", "event_records_queue");
+        connection.commit();
+        Statement statement = connection.createStatement();
+        statement.execute("analyze");
+        statement.close();
+    }
+
+    private static void clearTables() throws SQLException {
+        Statement statement = connection.createStatement();
+        for (String table : TABLES) {
+            statement.execute(String.format("delete from %s", JdbcUtils.getTableName(schema, table)));
+        }
+        statement.close();
+    }
+
+    private void execute(String sql, String... tables) throws SQLException {
+        Object[] tableNames = new Object[tables.length];
+        for (int index = 0; index < tables.length; index++) {
+            tableNames[index] = JdbcUtils.getTableName(schema, tables[index]);
+        }
+        PreparedStatement statement = connection.prepareStatement(String.format(sql, tableNames));
+        int parameters = statement.getParameterMetaData().getParameterCount();
+        for (int index = 1; index <= parameters; index++) {
+            statement.setTimestamp(index, START);
+        }
+        statement.executeUpdate();
+        statement.close();
+    }
+}
@@ -48,6 +48,16 @@ public class EventFeedServiceTest {
             public List<EventRecordsOffsetMarker> getAll() {
                 return new ArrayList<>();
             }
+
+            @Override
+            public EventRecordsOffsetMarker get(String category) {
+                return null;
+            }
+
+            @Override
+            public String getVersion() {
+                return "";
+            }
         };
         recordCreator = new InMemoryEventRecordCreator(allEventRecords);
         category = "category";
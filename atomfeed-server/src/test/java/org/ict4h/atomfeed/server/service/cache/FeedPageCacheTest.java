@@ -0,0 +1,110 @@
+package org.ict4h.atomfeed.server.service.cache;
+
+import org.ict4h.atomfeed.server.domain.EventFeed;
+import org.ict4h.atomfeed.server.domain.FeedPage;
+import org.ict4h.atomfeed.server.service.feedgenerator.FeedGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+public class FeedPageCacheTest {
+    private static final String URI = "http://host/feed/category/";
+
+    private String chunkingHistoryVersion;
+    private FeedGenerator feedGenerator = new FeedGenerator() {
+        @Override
+        public EventFeed getFeedForId(Integer feedId, String category) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public EventFeed getRecentFeed(String category) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getChunkingHistoryVersion() {
+            return chunkingHistoryVersion;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        chunkingHistoryVersion = "1-a";
+    }
+
+    @Test
+    public void shouldReturnCachedPageAndCountHitsAndMisses() {
+        FeedPageCache cache = new FeedPageCache(feedGenerator, 10000);
+
+        assertNull(cache.get(URI + 1, "category", 1));
+        cache.put(URI + 1, "category", 1, page(3));
+
+        assertEquals(3, cache.get(URI + 1, "category", 1).getContent().length);
+        assertNull(cache.get(URI + 1, "another", 1));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void shouldNotServePagesOfAnotherChunkingHistory() {
+        FeedPageCache cache = new FeedPageCache(feedGenerator, 10000);
+        cache.put(URI + 1, "category", 1, page(1));
+
+        chunkingHistoryVersion = "2-b";
+
+        assertNull(cache.get(URI + 1, "category", 1));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedPagesWhenSizeIsExceeded() {
+        FeedPageKey first = new FeedPageKey(URI + 1, "category", 1, "v");
+        FeedPageKey second = new FeedPageKey(URI + 2, "category", 2, "v");
+        FeedPageKey third = new FeedPageKey(URI + 3, "category", 3, "v");
+        long pageSize = first.estimatedSize() + page(100).getSize();
+        FeedPageCache cache = new FeedPageCache(feedGenerator, 2 * pageSize);
+
+        cache.put(first, page(100));
+        cache.put(second, page(100));
+        cache.get(first);
+        cache.put(third, page(100));
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.getPageCount());
+        assertEquals(2 * pageSize, cache.getSizeInBytes());
+    }
+
+    @Test
+    public void shouldNotCachePagesLargerThanTheCache() {
+        FeedPageCache cache = new FeedPageCache(feedGenerator, 100);
+
+        cache.put(URI + 1, "category", 1, page(200));
+
+        assertNull(cache.get(URI + 1, "category", 1));
+        assertEquals(0, cache.getSizeInBytes());
+    }
+
+    @Test
+    public void shouldAccountForReplacedPages() {
+        FeedPageKey key = new FeedPageKey(URI + 1, "category", 1, "v");
+        FeedPageCache cache = new FeedPageCache(feedGenerator, 10000);
+
+        cache.put(key, page(100));
+        cache.put(key, page(50));
+
+        assertEquals(key.estimatedSize() + page(50).getSize(), cache.getSizeInBytes());
+        assertEquals(1, cache.getPageCount());
+    }
+
+    private FeedPage page(int size) {
+        return new FeedPage(new byte[size], "\"etag\"", new Date(), true);
+    }
+}
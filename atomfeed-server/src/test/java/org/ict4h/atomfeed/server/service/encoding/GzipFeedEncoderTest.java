@@ -0,0 +1,26 @@
+package org.ict4h.atomfeed.server.service.encoding;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class GzipFeedEncoderTest {
+
+    @Test
+    public void shouldNegotiateGzipFromTheAcceptEncodingHeader() {
+        assertTrue(GzipFeedEncoder.isAccepted("gzip"));
+        assertTrue(GzipFeedEncoder.isAccepted("deflate, GZIP;q=0.5"));
+        assertTrue(GzipFeedEncoder.isAccepted("*"));
+        assertFalse(GzipFeedEncoder.isAccepted(null));
+        assertFalse(GzipFeedEncoder.isAccepted("identity"));
+        assertFalse(GzipFeedEncoder.isAccepted("gzip;q=0"));
+        assertFalse(GzipFeedEncoder.isAccepted("gzip; q=0.0, deflate"));
+        assertFalse(GzipFeedEncoder.isAccepted("gzip;q=0, *"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectLevelsOutsideTheDeflateRange() {
+        new GzipFeedEncoder(10);
+    }
+}
@@ -3,11 +3,14 @@ package org.ict4h.atomfeed.server.service.feedgenerator;
 import com.sun.syndication.feed.atom.Category;
 import com.sun.syndication.feed.atom.Entry;
 import com.sun.syndication.feed.atom.Feed;
+import com.sun.syndication.feed.atom.Link;
 import org.apache.commons.lang3.StringUtils;
 import org.ict4h.atomfeed.IntegrationTest;
 import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
 import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.jdbc.StatementCountingConnectionProvider;
 import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.EventRecordsOffsetMarker;
 import org.ict4h.atomfeed.server.repository.AllEventRecordsOffsetMarkers;
 import org.ict4h.atomfeed.server.repository.ChunkingEntries;
 import org.ict4h.atomfeed.server.repository.jdbc.AllEventRecordsJdbcImpl;
@@ -16,6 +19,7 @@ import org.ict4h.atomfeed.server.repository.jdbc.ChunkingEntriesJdbcImpl;
 import org.ict4h.atomfeed.server.service.EventFeedService;
 import org.ict4h.atomfeed.server.service.EventFeedServiceImpl;
 import org.ict4h.atomfeed.server.service.NumberOffsetMarkerServiceImpl;
+import org.ict4h.atomfeed.server.service.OffsetMarkerScheduler;
 import org.ict4h.atomfeed.transaction.AFTransactionManager;
 import org.ict4h.atomfeed.transaction.AFTransactionWorkWithoutResult;
 import org.junit.After;
@@ -130,6 +134,19 @@ public class NumberFeedGeneratorIT extends IntegrationTest {
         assertEquals(3, feedGenerator.getFeedForId(7, "Cat-1").getEvents().size());
     }
 
+    @Test
+    public void shouldGetFeedWithOffsetPagingWhenOffsetMarkerIsSet() throws Exception {
+        generateData(66, null);
+        markerService.markEvents(new String[]{"Cat-0", "Cat-1", ""}, 20);
+        FeedGenerator offsetFeedGenerator = new NumberFeedGenerator(allEventRecords, allEventRecordsOffsetMarkers, chunkingEntries,
+                NumberFeedGenerator.Paging.OFFSET);
+        assertEquals(feedGenerator.getFeedForId(2, "Cat-0").getEvents().get(0).getUuid(),
+                offsetFeedGenerator.getFeedForId(2, "Cat-0").getEvents().get(0).getUuid());
+        assertEquals(3, offsetFeedGenerator.getFeedForId(7, "Cat-0").getEvents().size());
+        assertEquals(5, offsetFeedGenerator.getFeedForId(13, "").getEvents().size());
+        assertEquals(1, offsetFeedGenerator.getFeedForId(14, "").getEvents().size());
+    }
+
     @Test
     public void shouldGetFeedWithMultipleChunkingHistoriesWithoutMarkers() throws Exception {
         generateData(48, "Cat-1");
@@ -168,6 +185,62 @@ public class NumberFeedGeneratorIT extends IntegrationTest {
         assertEquals(4, newFeedGenerator.getFeedForId(16, "Cat-1").getEvents().size());
     }
 
+    @Test
+    public void shouldMoveMarkersForwardReadingOnlyTheEventsAddedSince() throws Exception {
+        generateData(48, "Cat-1");
+        assertEquals(30, markerService.markEventsForCategory("Cat-1", 20));
+
+        generateData(10, "Cat-1");
+        assertEquals(10, markerService.markEventsForCategory("Cat-1", 20));
+        assertEquals(0, markerService.markEventsForCategory("Cat-1", 20));
+
+        EventRecordsOffsetMarker marker = allEventRecordsOffsetMarkers.get("Cat-1");
+        assertEquals(Integer.valueOf(40), marker.getEventCount());
+        assertEquals(40, allEventRecords.getTotalCountForCategory("Cat-1", null, marker.getEventId()));
+    }
+
+    @Test
+    public void shouldMarkEveryCategoryOnEachScheduledRun() throws Exception {
+        generateData(30, null);
+        OffsetMarkerScheduler scheduler = new OffsetMarkerScheduler(allEventRecords, markerService, atomfeedTransactionManager, 10, 0, 1);
+
+        OffsetMarkerScheduler.Run run = scheduler.runOnce();
+        assertEquals(3, run.getCategories());
+        assertEquals(0, run.getFailedCategories());
+        assertEquals(30, run.getRowsScanned());
+        assertEquals(Integer.valueOf(20), allEventRecordsOffsetMarkers.get("").getEventCount());
+
+        assertEquals(0, scheduler.runOnce().getRowsScanned());
+        assertEquals(0, scheduler.getLastRun().getRowsScanned());
+    }
+
+    @Test
+    public void shouldServeAFeedPageWithAtMostTwoStatements() throws Exception {
+        generateData(11, "Cat-0");
+        StatementCountingConnectionProvider countingProvider = new StatementCountingConnectionProvider(connectionProvider);
+        NumberFeedGenerator generator = new NumberFeedGenerator(new AllEventRecordsJdbcImpl(countingProvider),
+                new AllEventRecordsOffsetMarkersJdbcImpl(countingProvider), new ChunkingEntriesJdbcImpl(countingProvider));
+        EventFeedService eventFeedService = new EventFeedServiceImpl(generator);
+        generator.getChunkingHistoryVersion();
+
+        countingProvider.resetStatementCount();
+        Feed archivePage = eventFeedService.getEventFeed(new URI("http://host/feed/Cat-0/2"), "Cat-0", 2);
+        assertEquals(2, countingProvider.getStatementCount());
+        assertTrue(linkRels(archivePage).containsAll(Arrays.asList("next-archive", "prev-archive")));
+
+        countingProvider.resetStatementCount();
+        eventFeedService.getRecentFeed(new URI("http://host/feed/Cat-0/recent"), "Cat-0");
+        assertEquals(2, countingProvider.getStatementCount());
+    }
+
+    private List<String> linkRels(Feed feed) {
+        List<String> rels = new ArrayList<>();
+        for (Object link : feed.getAlternateLinks()) {
+            rels.add(((Link) link).getRel());
+        }
+        return rels;
+    }
+
     private void addChunkingHistory(final Integer chunkSize, final Integer startId) throws SQLException {
         atomfeedTransactionManager.executeWithTransaction(new AFTransactionWorkWithoutResult() {
             @Override
@@ -203,6 +276,8 @@ public class NumberFeedGeneratorIT extends IntegrationTest {
                     statement.execute(String.format("delete from %s", event_records_marker_table));
                     String chunking_history_table = JdbcUtils.getTableName(getProperty("atomdb.default_schema"), "chunking_history");
                     statement.execute(String.format("delete from %s", chunking_history_table));
+                    String event_records_counter_table = JdbcUtils.getTableName(getProperty("atomdb.default_schema"), "event_records_counter");
+                    statement.execute(String.format("delete from %s", event_records_counter_table));
                     statement.close();
                 } catch (SQLException e) {
                     e.printStackTrace();
@@ -6,10 +6,12 @@ import org.ict4h.atomfeed.server.domain.EventRecord;
 import org.ict4h.atomfeed.server.domain.EventRecordsOffsetMarker;
 import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
 import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
+import org.ict4h.atomfeed.server.exceptions.FeedNotFoundException;
 import org.ict4h.atomfeed.server.repository.AllEventRecords;
 import org.ict4h.atomfeed.server.repository.AllEventRecordsStub;
 import org.ict4h.atomfeed.server.repository.ChunkingEntries;
 import org.ict4h.atomfeed.server.repository.AllEventRecordsOffsetMarkers;
+import org.ict4h.atomfeed.server.repository.EventRecordHandler;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -19,6 +21,12 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Mockito.*;
 
@@ -35,6 +43,16 @@ public class NumberFeedGeneratorTest {
         public List<EventRecordsOffsetMarker> getAll() {
             return new ArrayList<>();
         }
+
+        @Override
+        public EventRecordsOffsetMarker get(String category) {
+            return null;
+        }
+
+        @Override
+        public String getVersion() {
+            return "";
+        }
     };
     private NumberFeedGenerator feedGenerator;
 
@@ -62,11 +80,17 @@ public class NumberFeedGeneratorTest {
         feedGenerator.getFeedForId(0, null);
     }
 
-    @Test(expected = Exception.class)
+    @Test(expected = FeedNotFoundException.class)
     public void shouldErrorOutForFutureFeed() {
         feedGenerator.getFeedForId(999, null);
     }
 
+    @Test(expected = FeedNotFoundException.class)
+    public void shouldNotFindAPartOfAFeedNotSplitIntoParts() throws Exception {
+        addEvents(11);
+        feedGenerator.getFeedHeadForId(1, 2, "category");
+    }
+
     @Test
     public void shouldRetrieveGivenFeed() throws Exception {
         addEvents(11);
@@ -95,6 +119,109 @@ public class NumberFeedGeneratorTest {
         verify(eventRecords, never()).getEventsFromRangeForCategory(anyString(), anyInt(), anyInt(), anyInt());
     }
 
+    @Test
+    public void shouldFetchFeedAsSequenceRange() throws Exception {
+        AllEventRecords eventRecords = mock(AllEventRecords.class);
+        feedGenerator = new NumberFeedGenerator(eventRecords, allEventRecordsOffsetMarkers, allChunkingEntries);
+        stub(eventRecords.getTotalCountForCategory("category")).toReturn(12);
+
+        feedGenerator.getFeedForId(2, "category");
+
+        verify(eventRecords).getEventsFromSequenceRange("category", 6, 10);
+        verify(eventRecords, never()).getEventsFromRangeForCategory(anyString(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldFetchFeedWithLimitAndOffsetWhenPagingByOffset() throws Exception {
+        AllEventRecords eventRecords = mock(AllEventRecords.class);
+        feedGenerator = new NumberFeedGenerator(eventRecords, allEventRecordsOffsetMarkers, allChunkingEntries, NumberFeedGenerator.Paging.OFFSET);
+        stub(eventRecords.getTotalCountForCategory("category")).toReturn(12);
+
+        feedGenerator.getFeedForId(2, "category");
+
+        verify(eventRecords).getEventsFromRangeForCategory("category", 5, 5, 0);
+    }
+
+    @Test
+    public void shouldPlanTheFeedWithTheLatestFeedId() throws Exception {
+        AllEventRecords eventRecords = mock(AllEventRecords.class);
+        feedGenerator = new NumberFeedGenerator(eventRecords, allEventRecordsOffsetMarkers, allChunkingEntries);
+        stub(eventRecords.getTotalCountForCategory("category")).toReturn(12);
+
+        EventFeed feed = feedGenerator.getFeedForId(2, "category");
+
+        Assert.assertEquals(2, feed.getPlan().getFeedId());
+        Assert.assertEquals(3, feed.getPlan().getLatestFeedId());
+        Assert.assertTrue(feed.getPlan().isArchived());
+        Assert.assertFalse(feedGenerator.getRecentFeed("category").getPlan().isArchived());
+        verify(eventRecords, times(2)).getTotalCountForCategory("category");
+    }
+
+    @Test
+    public void shouldReadAFeedOfACategorySetOnFromTheIdBeforeIt() throws Exception {
+        AllEventRecords eventRecords = mock(AllEventRecords.class);
+        AllEventRecordsOffsetMarkers offsetMarkers = mock(AllEventRecordsOffsetMarkers.class);
+        EventRecordsOffsetMarker marker = new EventRecordsOffsetMarker();
+        marker.setEventCount(5);
+        marker.setEventId(40);
+        when(offsetMarkers.get("encounter,patient")).thenReturn(marker);
+        when(eventRecords.getTotalCountForCategory("encounter,patient")).thenReturn(17);
+        when(eventRecords.findIdOfEventAfter("encounter,patient", 40, 5)).thenReturn(57);
+        feedGenerator = new NumberFeedGenerator(eventRecords, offsetMarkers, allChunkingEntries);
+
+        EventFeed feed = feedGenerator.getFeedHeadForId(3, 1, "encounter,patient");
+
+        Assert.assertEquals(4, feed.getPlan().getLatestFeedId());
+        Assert.assertFalse(feed.isStreamed());
+        verify(eventRecords).forEachEventAfter(eq("encounter,patient"), eq(57), eq(5), any(EventRecordHandler.class));
+        verify(eventRecords, never()).getEventsFromSequenceRange(anyString(), anyInt(), anyInt());
+        verify(eventRecords, never()).getSummaryOfSequenceRange(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldReadTheFirstFeedOfACategorySetFromTheStart() throws Exception {
+        AllEventRecords eventRecords = mock(AllEventRecords.class);
+        when(eventRecords.getTotalCountForCategory("encounter,patient")).thenReturn(7);
+        feedGenerator = new NumberFeedGenerator(eventRecords, allEventRecordsOffsetMarkers, allChunkingEntries);
+
+        feedGenerator.getFeedForId(1, "encounter,patient");
+
+        verify(eventRecords, never()).findIdOfEventAfter(anyString(), anyInt(), anyInt());
+        verify(eventRecords).forEachEventAfter(eq("encounter,patient"), eq(0), eq(5), any(EventRecordHandler.class));
+    }
+
+    @Test
+    public void shouldLoadTheChunkingHistoryOnceForConcurrentFirstRequests() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        feedGenerator = new NumberFeedGenerator(eventsRecord, allEventRecordsOffsetMarkers, new ChunkingEntries() {
+            @Override
+            public List<ChunkingHistoryEntry> all() {
+                loads.incrementAndGet();
+                return allChunkingEntries.all();
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> versions = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            versions.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    start.await();
+                    feedGenerator.getRecentFeed("category");
+                    return feedGenerator.getChunkingHistoryVersion();
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<String> version : versions) {
+            Assert.assertNotNull(version.get());
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(1, loads.get());
+    }
+
     private void addEvents(int eventNumber) throws URISyntaxException {
         for (int i = 1; i <= eventNumber; i++) {
             String title = "Event" + i;
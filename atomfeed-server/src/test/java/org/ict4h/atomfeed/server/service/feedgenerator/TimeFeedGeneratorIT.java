@@ -0,0 +1,163 @@
+package org.ict4h.atomfeed.server.service.feedgenerator;
+
+import org.ict4h.atomfeed.IntegrationTest;
+import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
+import org.ict4h.atomfeed.jdbc.JdbcUtils;
+import org.ict4h.atomfeed.server.domain.EventFeed;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
+import org.ict4h.atomfeed.server.repository.AllEventRecords;
+import org.ict4h.atomfeed.server.repository.ChunkingEntries;
+import org.ict4h.atomfeed.server.repository.jdbc.AllEventRecordsCountersJdbcImpl;
+import org.ict4h.atomfeed.server.repository.jdbc.AllEventRecordsJdbcImpl;
+import org.ict4h.atomfeed.server.repository.jdbc.AllEventRecordsTimeWindowsJdbcImpl;
+import org.ict4h.atomfeed.transaction.AFTransactionManager;
+import org.ict4h.atomfeed.transaction.AFTransactionWorkWithoutResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimeFeedGeneratorIT extends IntegrationTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    private JdbcConnectionProvider connectionProvider;
+    private AFTransactionManager atomfeedTransactionManager;
+
+    @Before
+    public void before() throws SQLException {
+        connectionProvider = getConnectionProvider();
+        atomfeedTransactionManager = getAtomfeedTransactionManager(connectionProvider);
+        clearRecords();
+    }
+
+    @After
+    public void after() throws SQLException {
+        clearRecords();
+    }
+
+    @Test
+    public void shouldWalkToTheEventsPublishedBeforeSwitchingToTimeChunking() throws SQLException {
+        //Published the way feeds chunked by number are set up, some hours apart
+        AllEventRecords numberChunkedEventRecords = new AllEventRecordsJdbcImpl(connectionProvider,
+                new AllEventRecordsCountersJdbcImpl(connectionProvider));
+        String earlier = addEvent(numberChunkedEventRecords, "Cat-0");
+        moveBack(3 * HOUR);
+        String later = addEvent(numberChunkedEventRecords, "Cat-0");
+        moveBack(2 * HOUR);
+
+        final LocalDateTime startOfGame = LocalDateTime.now().withSecond(0).withNano(0).minusHours(10);
+        ChunkingEntries hourlyChunks = new ChunkingEntries() {
+            @Override
+            public List<ChunkingHistoryEntry> all() {
+                return Collections.singletonList(new ChunkingHistoryEntry(1, HOUR,
+                        startOfGame.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+            }
+        };
+        TimeFeedGenerator generator = new TimeFeedGenerator(new AllEventRecordsJdbcImpl(connectionProvider), hourlyChunks,
+                new AllEventRecordsTimeWindowsJdbcImpl(connectionProvider));
+
+        Map<Integer, List<String>> walked = new LinkedHashMap<>();
+        EventFeed feed = generator.getRecentFeed("Cat-0");
+        while (true) {
+            List<String> uuids = new ArrayList<>();
+            for (EventRecord eventRecord : feed.getEvents()) {
+                uuids.add(eventRecord.getUuid());
+            }
+            walked.put(feed.getId(), uuids);
+            if (!feed.getPlan().hasPreviousPage()) {
+                break;
+            }
+            feed = generator.getFeedForId(feed.getPlan().getPreviousFeedId(), "Cat-0");
+        }
+
+        //The feeds without events are still linked past
+        assertEquals(Arrays.asList(11, 9, 6), new ArrayList<>(walked.keySet()));
+        assertEquals(Collections.singletonList(later), walked.get(9));
+        assertEquals(Collections.singletonList(earlier), walked.get(6));
+    }
+
+    private String addEvent(AllEventRecords allEventRecords, String category) {
+        String uuid = UUID.randomUUID().toString();
+        allEventRecords.add(new EventRecord(uuid, "title", "http://uri/" + uuid, null, new Date(), category));
+        return uuid;
+    }
+
+    //As if all the events so far, and the windows recorded for them, were published that much earlier.
+    private void moveBack(long millis) throws SQLException {
+        Connection connection = connectionProvider.getConnection();
+        Statement statement = connection.createStatement();
+        ResultSet events = statement.executeQuery(String.format("select id, timestamp from %s", table("event_records")));
+        PreparedStatement moveEvent = connection.prepareStatement(String.format("update %s set timestamp = ? where id = ?",
+                table("event_records")));
+        while (events.next()) {
+            moveEvent.setTimestamp(1, new Timestamp(events.getTimestamp(2).getTime() - millis));
+            moveEvent.setInt(2, events.getInt(1));
+            moveEvent.executeUpdate();
+        }
+        ResultSet windows = statement.executeQuery(String.format("select category, window_start from %s order by window_start",
+                table("event_records_time_window")));
+        PreparedStatement moveWindow = connection.prepareStatement(String.format(
+                "update %s set window_start = ? where category = ? and window_start = ?", table("event_records_time_window")));
+        while (windows.next()) {
+            Timestamp windowStart = windows.getTimestamp(2);
+            moveWindow.setTimestamp(1, new Timestamp(windowStart.getTime() - millis));
+            moveWindow.setString(2, windows.getString(1));
+            moveWindow.setTimestamp(3, windowStart);
+            moveWindow.executeUpdate();
+        }
+        moveEvent.close();
+        moveWindow.close();
+        statement.close();
+    }
+
+    private String table(String table) {
+        return JdbcUtils.getTableName(getProperty("atomdb.default_schema"), table);
+    }
+
+    private void clearRecords() {
+        execute("delete from %s", "event_records");
+        execute("delete from %s", "event_records_counter");
+        execute("delete from %s", "event_records_time_window");
+    }
+
+    private void execute(final String sql, final String table) {
+        atomfeedTransactionManager.executeWithTransaction(new AFTransactionWorkWithoutResult() {
+            @Override
+            protected void doInTransaction() {
+                try {
+                    Statement statement = connectionProvider.getConnection().createStatement();
+                    statement.execute(String.format(sql, table(table)));
+                    statement.close();
+                } catch (SQLException e) {
+                    throw new RuntimeException("Error occurred while trying to execute " + sql, e);
+                }
+            }
+
+            @Override
+            public PropagationDefinition getTxPropagationDefinition() {
+                return PropagationDefinition.PROPAGATION_REQUIRED;
+            }
+        });
+    }
+}
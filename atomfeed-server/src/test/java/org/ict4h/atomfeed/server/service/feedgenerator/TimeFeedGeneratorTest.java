@@ -1,21 +1,35 @@
 package org.ict4h.atomfeed.server.service.feedgenerator;
 
 import junit.framework.Assert;
+import com.sun.syndication.feed.atom.Feed;
+import com.sun.syndication.feed.atom.Link;
+import com.sun.syndication.io.WireFeedInput;
 import org.ict4h.atomfeed.server.domain.EventFeed;
 import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.FeedPlan;
 import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
 import org.ict4h.atomfeed.server.exceptions.AtomFeedRuntimeException;
 import org.ict4h.atomfeed.server.repository.AllEventRecords;
 import org.ict4h.atomfeed.server.repository.AllEventRecordsStub;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsTimeWindows;
 import org.ict4h.atomfeed.server.repository.ChunkingEntries;
+import org.ict4h.atomfeed.server.service.EventFeedServiceImpl;
+import org.ict4h.atomfeed.server.service.writer.FeedFormat;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
 public class TimeFeedGeneratorTest {
 
@@ -64,4 +78,187 @@ public class TimeFeedGeneratorTest {
         FeedGenerator generator = new TimeFeedGenerator(null, allChunkingEntries);
         generator.getFeedForId(43, null);
     }
+
+    @Test
+    public void shouldLinkPastFeedsWithoutEvents() throws Exception {
+        final LocalDateTime startOfGame = LocalDateTime.now().withSecond(0).withNano(0).minusHours(10);
+        ChunkingEntries allChunkingEntries = new ChunkingEntries() {
+            @Override
+            public List<ChunkingHistoryEntry> all() {
+                List<ChunkingHistoryEntry> entries = new ArrayList<>();
+                entries.add(new ChunkingHistoryEntry(1, Duration.ofHours(1).toMillis(), epochMillis(startOfGame)));
+                return entries;
+            }
+        };
+        InMemoryTimeWindows timeWindows = new InMemoryTimeWindows();
+        timeWindows.mark("category", java.util.Date.from(startOfGame.plusMinutes(150).atZone(ZoneId.systemDefault()).toInstant()));
+        timeWindows.mark("category", java.util.Date.from(startOfGame.plusMinutes(370).atZone(ZoneId.systemDefault()).toInstant()));
+
+        FeedGenerator generator = new TimeFeedGenerator(new AllEventRecordsStub(), allChunkingEntries, timeWindows);
+
+        assertLinks(generator.getFeedForId(3, "category").getPlan(), 0, 7);
+        assertLinks(generator.getFeedForId(5, "category").getPlan(), 3, 7);
+        assertLinks(generator.getFeedForId(7, "category").getPlan(), 3, 11);
+        assertLinks(generator.getRecentFeed("category").getPlan(), 7, 12);
+        assertLinks(generator.getFeedForId(7, "other").getPlan(), 0, 11);
+
+        Feed feed = new EventFeedServiceImpl(generator).getEventFeed(new URI("http://hostname/feed/category/7"), "category", 7);
+        Map<String, String> links = new HashMap<>();
+        for (Link link : (List<Link>) feed.getAlternateLinks()) {
+            links.put(link.getRel(), link.getHref());
+        }
+        for (Link link : (List<Link>) feed.getOtherLinks()) {
+            links.put(link.getRel(), link.getHref());
+        }
+        Assert.assertEquals("http://hostname/feed/category/11", links.get("next-archive"));
+        Assert.assertEquals("http://hostname/feed/category/3", links.get("prev-archive"));
+    }
+
+    @Test
+    public void shouldNotLinkPastAFeedWhoseEventsAreInAWindowStartingInThePreviousFeed() {
+        final LocalDateTime startOfGame = LocalDateTime.now().withSecond(0).withNano(0).minusMinutes(630).plusSeconds(30);
+        ChunkingEntries allChunkingEntries = new ChunkingEntries() {
+            @Override
+            public List<ChunkingHistoryEntry> all() {
+                List<ChunkingHistoryEntry> entries = new ArrayList<>();
+                entries.add(new ChunkingHistoryEntry(1, Duration.ofHours(1).toMillis(), epochMillis(startOfGame)));
+                return entries;
+            }
+        };
+        InMemoryTimeWindows timeWindows = new InMemoryTimeWindows();
+        //The window starts 30 seconds before feed 3 does, and may hold events of either
+        timeWindows.mark(null, java.util.Date.from(startOfGame.plusHours(2).plusSeconds(10).atZone(ZoneId.systemDefault()).toInstant()));
+
+        FeedGenerator generator = new TimeFeedGenerator(new AllEventRecordsStub(), allChunkingEntries, timeWindows);
+
+        assertLinks(generator.getFeedForId(1, null).getPlan(), 0, 2);
+        assertLinks(generator.getFeedForId(5, null).getPlan(), 3, 11);
+    }
+
+    @Test
+    public void shouldSplitFeedsWithMoreEventsThanFitAPageIntoLinkedParts() throws Exception {
+        final LocalDateTime startOfGame = LocalDateTime.now().withSecond(0).withNano(0).minusHours(10);
+        ChunkingEntries allChunkingEntries = new ChunkingEntries() {
+            @Override
+            public List<ChunkingHistoryEntry> all() {
+                List<ChunkingHistoryEntry> entries = new ArrayList<>();
+                entries.add(new ChunkingHistoryEntry(1, Duration.ofHours(1).toMillis(), epochMillis(startOfGame)));
+                return entries;
+            }
+        };
+        AllEventRecordsStub allEventRecords = new AllEventRecordsStub();
+        addEvents(allEventRecords, startOfGame.plusHours(2), 5);
+        addEvents(allEventRecords, startOfGame.plusHours(10), 3);
+
+        TimeFeedGenerator generator = new TimeFeedGenerator(allEventRecords, allChunkingEntries, null, 2);
+
+        assertPage(generator.getFeedForId(3, "category"), 2, "2", "3.2");
+        assertPage(generator.getFeedForId(3, 2, "category"), 2, "3", "3.3");
+        assertPage(generator.getFeedForId(3, 3, "category"), 1, "3.2", "4");
+        assertPage(generator.getFeedForId(4, "category"), 0, "3.3", "5");
+        assertPage(generator.getFeedForId(2, "category"), 0, "1", "3");
+        EventFeed recentFeed = generator.getRecentFeed("category");
+        Assert.assertEquals("11.2", recentFeed.getPageId());
+        Assert.assertEquals(1, recentFeed.getEvents().size());
+        Assert.assertFalse(recentFeed.getPlan().hasNextPage());
+        Assert.assertTrue(generator.getFeedForId(11, "category").getPlan().hasNextPage());
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        new EventFeedServiceImpl(generator).writeEventFeed(new URI("http://hostname/feed/category/3.2"), "category",
+                generator.getFeedHeadForId(3, 2, "category"), written, FeedFormat.ATOM);
+        Feed feed = (Feed) new WireFeedInput().build(new StringReader(new String(written.toByteArray(), StandardCharsets.UTF_8)));
+        Map<String, String> links = new HashMap<>();
+        for (Link link : (List<Link>) feed.getAlternateLinks()) {
+            links.put(link.getRel(), link.getHref());
+        }
+        for (Link link : (List<Link>) feed.getOtherLinks()) {
+            links.put(link.getRel(), link.getHref());
+        }
+        Assert.assertEquals("http://hostname/feed/category/3.3", links.get("next-archive"));
+        Assert.assertEquals("http://hostname/feed/category/3", links.get("prev-archive"));
+        Assert.assertTrue(feed.getId().endsWith("+3.2"));
+    }
+
+    @Test(expected = AtomFeedRuntimeException.class)
+    public void shouldThrowExceptionWhenRequestedForAPartBeyondTheEventsOfTheFeed() {
+        final LocalDateTime startOfGame = LocalDateTime.now().withSecond(0).withNano(0).minusHours(10);
+        ChunkingEntries allChunkingEntries = new ChunkingEntries() {
+            @Override
+            public List<ChunkingHistoryEntry> all() {
+                List<ChunkingHistoryEntry> entries = new ArrayList<>();
+                entries.add(new ChunkingHistoryEntry(1, Duration.ofHours(1).toMillis(), epochMillis(startOfGame)));
+                return entries;
+            }
+        };
+        AllEventRecordsStub allEventRecords = new AllEventRecordsStub();
+        addEvents(allEventRecords, startOfGame.plusHours(2), 4);
+
+        new TimeFeedGenerator(allEventRecords, allChunkingEntries, null, 2).getFeedForId(3, 3, "category");
+    }
+
+    private void addEvents(AllEventRecordsStub allEventRecords, LocalDateTime from, int numberOfEvents) {
+        for (int i = 1; i <= numberOfEvents; i++) {
+            final java.util.Date timestamp = java.util.Date.from(from.plusMinutes(i).atZone(ZoneId.systemDefault()).toInstant());
+            allEventRecords.add(new EventRecord(from + "-" + i, "title", "", null, timestamp, "category") {
+                @Override
+                public java.util.Date getTimeStamp() {
+                    return timestamp;
+                }
+            });
+        }
+    }
+
+    private void assertPage(EventFeed feed, int numberOfEvents, String previousPageId, String nextPageId) {
+        Assert.assertEquals(numberOfEvents, feed.getEvents().size());
+        Assert.assertEquals(previousPageId, feed.getPlan().getPreviousPageId());
+        Assert.assertEquals(nextPageId, feed.getPlan().getNextPageId());
+        Assert.assertTrue(feed.getPlan().hasNextPage());
+    }
+
+    private void assertLinks(FeedPlan plan, int previousFeedId, int nextFeedId) {
+        if (previousFeedId > 0) {
+            Assert.assertEquals(previousFeedId, plan.getPreviousFeedId());
+        } else {
+            Assert.assertTrue(plan.getPreviousFeedId() < 1);
+        }
+        if (plan.isArchived()) {
+            Assert.assertEquals(nextFeedId, plan.getNextFeedId());
+        }
+    }
+
+    private long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static class InMemoryTimeWindows implements AllEventRecordsTimeWindows {
+        private final Map<String, TreeSet<Long>> windows = new HashMap<>();
+
+        @Override
+        public void mark(String category, java.util.Date timestamp) {
+            windowsOf("").add(Math.floorDiv(timestamp.getTime(), WINDOW_MILLIS) * WINDOW_MILLIS);
+            if (category != null) {
+                windowsOf(category).add(Math.floorDiv(timestamp.getTime(), WINDOW_MILLIS) * WINDOW_MILLIS);
+            }
+        }
+
+        @Override
+        public java.util.Date findFirstWindowFrom(String category, java.util.Date time) {
+            Long window = windowsOf(category).ceiling(Math.floorDiv(time.getTime(), WINDOW_MILLIS) * WINDOW_MILLIS);
+            return window == null ? null : new java.util.Date(window);
+        }
+
+        @Override
+        public java.util.Date findLastWindowBefore(String category, java.util.Date time) {
+            Long window = windowsOf(category).lower(time.getTime());
+            return window == null ? null : new java.util.Date(window);
+        }
+
+        private TreeSet<Long> windowsOf(String category) {
+            String key = category == null ? "" : category;
+            if (!windows.containsKey(key)) {
+                windows.put(key, new TreeSet<Long>());
+            }
+            return windows.get(key);
+        }
+    }
 }
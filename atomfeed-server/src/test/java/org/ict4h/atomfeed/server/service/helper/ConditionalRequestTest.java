@@ -0,0 +1,38 @@
+package org.ict4h.atomfeed.server.service.helper;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class ConditionalRequestTest {
+    private static final String ETAG = "\"a-1-2\"";
+
+    @Test
+    public void shouldBeModifiedWhenThereAreNoValidators() {
+        assertFalse(ConditionalRequest.NONE.isNotModified(ETAG, new Date()));
+    }
+
+    @Test
+    public void shouldMatchAnyOfTheEntityTags() {
+        assertTrue(new ConditionalRequest("\"x\", " + ETAG, -1).isNotModified(ETAG, new Date()));
+        assertTrue(new ConditionalRequest("W/" + ETAG, -1).isNotModified(ETAG, new Date()));
+        assertTrue(new ConditionalRequest("*", -1).isNotModified(ETAG, new Date()));
+        assertFalse(new ConditionalRequest("\"x\"", -1).isNotModified(ETAG, new Date()));
+    }
+
+    @Test
+    public void shouldCompareModificationDatesInSeconds() {
+        Date lastModified = new Date(10999);
+
+        assertTrue(new ConditionalRequest(null, 10000).isNotModified(ETAG, lastModified));
+        assertFalse(new ConditionalRequest(null, 9999).isNotModified(ETAG, lastModified));
+    }
+
+    @Test
+    public void shouldIgnoreModificationDateWhenEntityTagsAreSent() {
+        assertFalse(new ConditionalRequest("\"x\"", 20000).isNotModified(ETAG, new Date(10000)));
+    }
+}
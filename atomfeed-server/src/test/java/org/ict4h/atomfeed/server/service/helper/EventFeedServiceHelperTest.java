@@ -0,0 +1,471 @@
+package org.ict4h.atomfeed.server.service.helper;
+
+import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.EventRecordQueueItem;
+import org.ict4h.atomfeed.server.domain.EventRecordsOffsetMarker;
+import org.ict4h.atomfeed.server.domain.FeedPage;
+import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsOffsetMarkers;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsQueueStub;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsStub;
+import org.ict4h.atomfeed.server.repository.ChunkingEntries;
+import org.ict4h.atomfeed.server.service.EventFeedService;
+import org.ict4h.atomfeed.server.service.EventFeedServiceImpl;
+import org.ict4h.atomfeed.server.service.cache.FeedPageCache;
+import org.ict4h.atomfeed.server.service.encoding.GzipFeedEncoder;
+import org.ict4h.atomfeed.server.service.feedgenerator.FeedGenerator;
+import org.ict4h.atomfeed.server.service.feedgenerator.NumberFeedGenerator;
+import org.ict4h.atomfeed.server.service.publisher.EventPublicationHub;
+import org.ict4h.atomfeed.server.service.publisher.EventRecordsPublishingService;
+import org.ict4h.atomfeed.server.service.writer.FeedFormat;
+import org.ict4h.atomfeed.transaction.AFTransactionManager;
+import org.ict4h.atomfeed.transaction.AFTransactionWork;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class EventFeedServiceHelperTest {
+    private static final String FEED_URI = "http://hostname/feed/category/";
+    private static Logger logger = Logger.getLogger(EventFeedServiceHelperTest.class);
+
+    private AllEventRecordsStub allEventRecords;
+    private EventFeedService eventFeedService;
+    private FeedPageCache feedPageCache;
+
+    //Transactions are serialized, as the long polling tests publish from another thread.
+    private AFTransactionManager txManager = new AFTransactionManager() {
+        @Override
+        public synchronized <T> T executeWithTransaction(AFTransactionWork<T> action) throws RuntimeException {
+            return action.execute();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        allEventRecords = new AllEventRecordsStub();
+        ChunkingEntries chunkingEntries = new ChunkingEntries() {
+            @Override
+            public List<ChunkingHistoryEntry> all() {
+                List<ChunkingHistoryEntry> entries = new ArrayList<>();
+                entries.add(new ChunkingHistoryEntry(1, 5L, 1L));
+                return entries;
+            }
+        };
+        AllEventRecordsOffsetMarkers markers = new AllEventRecordsOffsetMarkers() {
+            @Override
+            public void addOrUpdate(String category, Integer offsetId, Integer countTillOffSetId) {
+            }
+
+            @Override
+            public List<EventRecordsOffsetMarker> getAll() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public EventRecordsOffsetMarker get(String category) {
+                return null;
+            }
+
+            @Override
+            public String getVersion() {
+                return "";
+            }
+        };
+        addEvents(7, "category");
+        FeedGenerator feedGenerator = new NumberFeedGenerator(allEventRecords, markers, chunkingEntries);
+        eventFeedService = new EventFeedServiceImpl(feedGenerator);
+        feedPageCache = new FeedPageCache(feedGenerator);
+    }
+
+    @Test
+    public void shouldServeArchivePagesFromCache() {
+        String page = feedPage(FeedRequest.feed(FEED_URI + 1, "category", 1), feedPageCache).getContentAsString();
+        allEventRecords.clear();
+
+        String cachedPage = feedPage(FeedRequest.feed(FEED_URI + 1, "category", 1), feedPageCache).getContentAsString();
+
+        assertEquals(page, cachedPage);
+        assertEquals(1, feedPageCache.getHitCount());
+        assertEquals(1, feedPageCache.getPageCount());
+    }
+
+    @Test
+    public void shouldNotCacheTheWorkingPage() {
+        feedPage(FeedRequest.feed(FEED_URI + 2, "category", 2), feedPageCache);
+
+        assertNull(feedPageCache.get(FEED_URI + 2, "category", 2));
+        assertEquals(0, feedPageCache.getPageCount());
+    }
+
+    @Test
+    public void shouldCachePagesOnceTheFeedMovesPastThem() {
+        feedPage(FeedRequest.feed(FEED_URI + 2, "category", 2), feedPageCache);
+        addEvents(8, 11);
+
+        feedPage(FeedRequest.feed(FEED_URI + 2, "category", 2), feedPageCache);
+
+        assertNotNull(feedPageCache.get(FEED_URI + 2, "category", 2));
+    }
+
+    @Test
+    public void shouldNotRenderTheRecentFeedWhenTheRequesterHasIt() {
+        FeedPage page = feedPage(recent(), null);
+
+        FeedPage conditionalPage = feedPage(recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)), null);
+
+        assertTrue(page.isModified());
+        assertFalse(conditionalPage.isModified());
+        assertEquals(page.getEtag(), conditionalPage.getEtag());
+        assertFalse(conditionalPage.isArchived());
+    }
+
+    @Test
+    public void shouldChangeTheEtagOfTheRecentFeedWhenItMovesOn() {
+        FeedPage page = feedPage(recent(), null);
+        addEvents(8, 11);
+
+        FeedPage conditionalPage = feedPage(recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)), null);
+
+        assertTrue(conditionalPage.isModified());
+        assertFalse(page.getEtag().equals(conditionalPage.getEtag()));
+    }
+
+    @Test
+    public void shouldAnswerConditionalRequestsForCachedArchivePages() {
+        FeedPage page = feedPage(FeedRequest.feed(FEED_URI + 1, "category", 1), feedPageCache);
+        allEventRecords.clear();
+
+        FeedPage conditionalPage = feedPage(FeedRequest.feed(FEED_URI + 1, "category", 1)
+                .withConditionalRequest(new ConditionalRequest(null, page.getLastModified().getTime())), feedPageCache);
+
+        assertTrue(page.isArchived());
+        assertFalse(conditionalPage.isModified());
+        assertTrue(conditionalPage.isArchived());
+    }
+
+    @Test
+    public void shouldStreamTheSamePagesAsItRenders() {
+        FeedPage recentPage = feedPage(recent(), null);
+        FeedPage archivePage = feedPage(FeedRequest.feed(FEED_URI + 1, "category", 1), null);
+
+        RecordingPageStream streamedRecentPage = new RecordingPageStream();
+        EventFeedServiceHelper.streamFeedPage(eventFeedService, recent(), logger, txManager, null, streamedRecentPage);
+        RecordingPageStream streamedArchivePage = new RecordingPageStream();
+        EventFeedServiceHelper.streamFeedPage(eventFeedService, FeedRequest.feed(FEED_URI + 1, "category", 1), logger, txManager,
+                feedPageCache, streamedArchivePage);
+
+        assertTrue(Arrays.equals(recentPage.getContent(), streamedRecentPage.content.toByteArray()));
+        assertEquals(recentPage.getEtag(), streamedRecentPage.etag);
+        assertTrue(Arrays.equals(archivePage.getContent(), streamedArchivePage.content.toByteArray()));
+        assertTrue(streamedArchivePage.archived);
+        assertNotNull(feedPageCache.get(FEED_URI + 1, "category", 1));
+    }
+
+    @Test
+    public void shouldNotStreamTheRecentFeedWhenTheRequesterHasIt() {
+        FeedPage page = feedPage(recent(), null);
+
+        RecordingPageStream pageStream = new RecordingPageStream();
+        EventFeedServiceHelper.streamFeedPage(eventFeedService, recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)),
+                logger, txManager, null, pageStream);
+
+        assertFalse(pageStream.modified);
+        assertEquals(page.getEtag(), pageStream.etag);
+        assertEquals(0, pageStream.content.size());
+    }
+
+    @Test
+    public void shouldCacheArchivePagesCompressedAndServeThemWithoutCompressingAgain() throws IOException {
+        GzipFeedEncoder gzipEncoder = new GzipFeedEncoder();
+        FeedPage page = feedPage(FeedRequest.feed(FEED_URI + 1, "category", 1), null);
+
+        RecordingPageStream compressedPage = new RecordingPageStream();
+        EventFeedServiceHelper.streamFeedPage(eventFeedService, FeedRequest.feed(FEED_URI + 1, "category", 1).withGzipEncoder(gzipEncoder),
+                logger, txManager, feedPageCache, compressedPage);
+        RecordingPageStream cachedPage = new RecordingPageStream();
+        EventFeedServiceHelper.streamFeedPage(eventFeedService, FeedRequest.feed(FEED_URI + 1, "category", 1).withGzipEncoder(gzipEncoder),
+                logger, txManager, feedPageCache, cachedPage);
+
+        assertEquals(GzipFeedEncoder.GZIP, compressedPage.contentEncoding);
+        assertTrue(Arrays.equals(page.getContent(), gunzip(compressedPage.content.toByteArray())));
+        assertTrue(Arrays.equals(compressedPage.content.toByteArray(), cachedPage.content.toByteArray()));
+        assertEquals(GzipFeedEncoder.GZIP, cachedPage.contentEncoding);
+        assertFalse(page.getEtag().equals(cachedPage.etag));
+        assertEquals(1, feedPageCache.getHitCount());
+        assertEquals(1, gzipEncoder.getCompressedPages());
+        assertEquals(page.getContent().length - compressedPage.content.size(), gzipEncoder.getBytesSaved());
+    }
+
+    @Test
+    public void shouldCompressTheRecentFeedAsItIsWritten() throws IOException {
+        GzipFeedEncoder gzipEncoder = new GzipFeedEncoder(1);
+        FeedPage page = feedPage(recent(), null);
+
+        RecordingPageStream compressedPage = new RecordingPageStream();
+        EventFeedServiceHelper.streamFeedPage(eventFeedService, recent().withGzipEncoder(gzipEncoder), logger, txManager, null, compressedPage);
+
+        assertEquals(GzipFeedEncoder.GZIP, compressedPage.contentEncoding);
+        assertTrue(Arrays.equals(page.getContent(), gunzip(compressedPage.content.toByteArray())));
+        assertEquals(page.getContent().length, gzipEncoder.getUncompressedBytes());
+        assertEquals(compressedPage.content.size(), gzipEncoder.getCompressedBytes());
+    }
+
+    @Test
+    public void shouldStreamAndCacheTheJsonVariantOfAPageApartFromTheAtomOne() {
+        RecordingPageStream atomPage = new RecordingPageStream();
+        EventFeedServiceHelper.streamFeedPage(eventFeedService, FeedRequest.feed(FEED_URI + 1, "category", 1).withFormat(FeedFormat.ATOM),
+                logger, txManager, feedPageCache, atomPage);
+        RecordingPageStream jsonPage = new RecordingPageStream();
+        EventFeedServiceHelper.streamFeedPage(eventFeedService, FeedRequest.feed(FEED_URI + 1, "category", 1).withFormat(FeedFormat.JSON),
+                logger, txManager, feedPageCache, jsonPage);
+        RecordingPageStream cachedJsonPage = new RecordingPageStream();
+        EventFeedServiceHelper.streamFeedPage(eventFeedService, FeedRequest.feed(FEED_URI + 1, "category", 1).withFormat(FeedFormat.JSON),
+                logger, txManager, feedPageCache, cachedJsonPage);
+
+        String json = new String(jsonPage.content.toByteArray());
+        assertTrue(json.startsWith("{\"id\":"));
+        assertTrue(json.contains("\"uuid\":\"uuid1\""));
+        assertFalse(atomPage.etag.equals(jsonPage.etag));
+        assertTrue(Arrays.equals(jsonPage.content.toByteArray(), cachedJsonPage.content.toByteArray()));
+        assertEquals(jsonPage.etag, cachedJsonPage.etag);
+        assertEquals(2, feedPageCache.getPageCount());
+        assertEquals(1, feedPageCache.getHitCount());
+    }
+
+    @Test
+    public void shouldNotStreamTheJsonRecentFeedForTheEtagOfTheAtomOne() {
+        FeedPage atomPage = feedPage(recent(), null);
+
+        RecordingPageStream jsonPage = new RecordingPageStream();
+        EventFeedServiceHelper.streamFeedPage(eventFeedService, recent().withFormat(FeedFormat.JSON)
+                .withConditionalRequest(new ConditionalRequest(atomPage.getEtag(), -1)), logger, txManager, null, jsonPage);
+        RecordingPageStream unchangedJsonPage = new RecordingPageStream();
+        EventFeedServiceHelper.streamFeedPage(eventFeedService, recent().withFormat(FeedFormat.JSON)
+                .withConditionalRequest(new ConditionalRequest(jsonPage.etag, -1)), logger, txManager, null, unchangedJsonPage);
+
+        assertTrue(jsonPage.modified);
+        assertFalse(unchangedJsonPage.modified);
+    }
+
+    @Test
+    public void shouldHoldALongPollOnTheRecentFeedUntilAnEventIsPublished() {
+        FeedPage page = feedPage(recent(), null);
+        EventPublicationHub hub = new EventPublicationHub();
+        publishLater(hub, 100, 100);
+
+        long start = System.currentTimeMillis();
+        EventFeedServiceHelper.awaitRecentFeedChange(eventFeedService, recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)),
+                txManager, hub, 10000);
+
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(feedPage(recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)), null).isModified());
+    }
+
+    @Test
+    public void shouldLookAgainAtTheRecentFeedUntilAPublicationNotYetCommittedShows() {
+        FeedPage page = feedPage(recent(), null);
+        EventPublicationHub hub = new EventPublicationHub();
+        publishLater(hub, 100, -EventFeedServiceHelper.RECHECK_MILLIS * 2);
+
+        long start = System.currentTimeMillis();
+        EventFeedServiceHelper.awaitRecentFeedChange(eventFeedService, recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)),
+                txManager, hub, 10000);
+
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(feedPage(recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)), null).isModified());
+    }
+
+    @Test
+    public void shouldEndALongPollOnAPublicationTheHubIsNotToldOf() {
+        FeedPage page = feedPage(recent(), null);
+        publishLater(null, 100, 0);
+
+        long start = System.currentTimeMillis();
+        EventFeedServiceHelper.awaitRecentFeedChange(eventFeedService, recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)),
+                txManager, new EventPublicationHub(), 10000);
+
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(feedPage(recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)), null).isModified());
+    }
+
+    @Test
+    public void shouldWakeALongPollWhenTheQueueIsPublished() {
+        FeedPage page = feedPage(recent(), null);
+        final AllEventRecordsQueueStub allEventRecordsQueue = new AllEventRecordsQueueStub();
+        for (int index = 8; index <= 11; index++) {
+            allEventRecordsQueue.add(new EventRecordQueueItem("uuid" + index, "title" + index, URI.create("http://foo.bar/" + index),
+                    "contents", new Date(), "category", null));
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                    txManager.executeWithTransaction(new AFTransactionWork<Void>() {
+                        @Override
+                        public Void execute() {
+                            EventRecordsPublishingService.publish(allEventRecords, allEventRecordsQueue);
+                            return null;
+                        }
+
+                        @Override
+                        public PropagationDefinition getTxPropagationDefinition() {
+                            return PropagationDefinition.PROPAGATION_REQUIRED;
+                        }
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).start();
+
+        long start = System.currentTimeMillis();
+        EventFeedServiceHelper.awaitRecentFeedChange(eventFeedService, recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)),
+                txManager, EventPublicationHub.getInstance(), 10000);
+
+        //Woken by the hub, before the feed would have been looked at again
+        assertTrue(System.currentTimeMillis() - start < EventFeedServiceHelper.POLL_MILLIS);
+        assertTrue(feedPage(recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)), null).isModified());
+    }
+
+    @Test
+    public void shouldEndALongPollWhenItTimesOutWithoutPublications() {
+        FeedPage page = feedPage(recent(), null);
+
+        long start = System.currentTimeMillis();
+        EventFeedServiceHelper.awaitRecentFeedChange(eventFeedService, recent().withConditionalRequest(new ConditionalRequest(page.getEtag(), -1)),
+                txManager, new EventPublicationHub(), 100);
+
+        assertTrue(System.currentTimeMillis() - start >= 100);
+    }
+
+    @Test
+    public void shouldNotHoldALongPollWhenTheRequesterDoesNotHaveTheRecentFeed() {
+        long start = System.currentTimeMillis();
+        EventFeedServiceHelper.awaitRecentFeedChange(eventFeedService, recent(), txManager, new EventPublicationHub(), 10000);
+
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    /**
+     * Adds events and tells the hub, if any, after {@code delayMillis}; a negative {@code commitAfterMillis} tells the
+     * hub that long before the events are added, as a publisher that has not committed yet would.
+     */
+    private void publishLater(final EventPublicationHub hub, final long delayMillis, final long commitAfterMillis) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(delayMillis);
+                    if (commitAfterMillis < 0) {
+                        hub.published("category");
+                        Thread.sleep(-commitAfterMillis);
+                        commitEvents(8, 11);
+                    } else {
+                        commitEvents(8, 11);
+                        if (hub != null) {
+                            hub.published("category");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).start();
+    }
+
+    private void commitEvents(final int from, final int to) {
+        txManager.executeWithTransaction(new AFTransactionWork<Void>() {
+            @Override
+            public Void execute() {
+                addEvents(from, to);
+                return null;
+            }
+
+            @Override
+            public PropagationDefinition getTxPropagationDefinition() {
+                return PropagationDefinition.PROPAGATION_REQUIRED;
+            }
+        });
+    }
+
+    //Pages are rendered more than once, so the timestamps of the events must not default to the time of rendering.
+    private void addEvents(int numOfEvents, String category) {
+        final Date timeStamp = new Date();
+        for (int index = 1; index <= numOfEvents; index++) {
+            allEventRecords.add(new EventRecord("uuid" + index, "title" + index, "http://foo.bar/" + index,
+                    "Event " + index + "'s contents.", timeStamp, category) {
+                @Override
+                public Date getTimeStamp() {
+                    return timeStamp;
+                }
+            });
+        }
+    }
+
+    private FeedRequest recent() {
+        return FeedRequest.recent(FEED_URI + "recent", "category");
+    }
+
+    private FeedPage feedPage(FeedRequest request, FeedPageCache feedPageCache) {
+        return EventFeedServiceHelper.getFeedPage(eventFeedService, request, logger, txManager, feedPageCache);
+    }
+
+    private byte[] gunzip(byte[] compressed) throws IOException {
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static class RecordingPageStream implements FeedPageStream {
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private String etag;
+        private boolean archived;
+        private boolean modified;
+        private String contentEncoding;
+
+        @Override
+        public void notModified(String etag, Date lastModified, boolean archived) {
+            this.etag = etag;
+            this.archived = archived;
+        }
+
+        @Override
+        public OutputStream modified(String etag, Date lastModified, boolean archived, String contentEncoding) {
+            this.etag = etag;
+            this.contentEncoding = contentEncoding;
+            this.archived = archived;
+            this.modified = true;
+            return content;
+        }
+    }
+
+    private void addEvents(int from, int to) {
+        for (int index = from; index <= to; index++) {
+            allEventRecords.add(new EventRecord("uuid" + index, "title" + index, "http://foo.bar/" + index,
+                    "contents", new Date(), "category"));
+        }
+    }
+}
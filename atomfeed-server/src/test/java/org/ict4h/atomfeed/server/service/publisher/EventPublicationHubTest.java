@@ -0,0 +1,105 @@
+package org.ict4h.atomfeed.server.service.publisher;
+
+import org.ict4h.atomfeed.server.domain.EventRecordQueueItem;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsQueueStub;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsStub;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Date;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class EventPublicationHubTest {
+    private EventPublicationHub hub = new EventPublicationHub();
+
+    @Test
+    public void shouldMoveTheVersionOfTheCategoryAndOfAllCategoriesOnPublication() {
+        hub.published("patient");
+        hub.published("patient");
+        hub.published("encounter");
+
+        assertEquals(2, hub.getVersion("patient"));
+        assertEquals(1, hub.getVersion("encounter"));
+        assertEquals(3, hub.getVersion(null));
+        assertEquals(3, hub.getVersion(""));
+        assertEquals(0, hub.getVersion("drug"));
+    }
+
+    @Test
+    public void shouldMoveTheVersionOfACategorySetOnPublicationInAnyOfItsCategories() {
+        long version = hub.getVersion("encounter,patient");
+        hub.published("drug");
+        assertEquals(version, hub.getVersion("encounter,patient"));
+
+        hub.published("patient");
+        hub.published("encounter");
+        assertEquals(version + 2, hub.getVersion("encounter,patient"));
+    }
+
+    @Test
+    public void shouldReturnTheSameVersionWhenNothingIsPublishedWithinTheTimeout() throws InterruptedException {
+        hub.published("patient");
+
+        long start = System.currentTimeMillis();
+        long version = hub.awaitPublicationAfter("patient", 1, 50);
+
+        assertEquals(1, version);
+        assertTrue(System.currentTimeMillis() - start >= 50);
+    }
+
+    @Test
+    public void shouldReturnRightAwayWhenThereWasAPublicationAfterTheVersion() throws InterruptedException {
+        hub.published("patient");
+
+        assertEquals(1, hub.awaitPublicationAfter("patient", 0, 10000));
+    }
+
+    @Test
+    public void shouldWakeWaitersOfTheCategoryOnPublication() throws InterruptedException {
+        publishLater("patient", 100);
+
+        long start = System.currentTimeMillis();
+        long version = hub.awaitPublicationAfter("patient", 0, 10000);
+
+        assertEquals(1, version);
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void shouldNotWakeWaitersOfOtherCategories() throws InterruptedException {
+        publishLater("encounter", 10);
+
+        assertEquals(0, hub.awaitPublicationAfter("patient", 0, 200));
+        assertEquals(1, hub.getVersion(null));
+    }
+
+    @Test
+    public void shouldTellTheHubOfTheCategoriesPublishedTo() {
+        AllEventRecordsQueueStub allEventRecordsQueue = new AllEventRecordsQueueStub();
+        allEventRecordsQueue.add(new EventRecordQueueItem("uuid1", "title", URI.create("http://uri"), "contents", new Date(), "patient", null));
+        allEventRecordsQueue.add(new EventRecordQueueItem("uuid2", "title", URI.create("http://uri"), "contents", new Date(), "patient", null));
+        allEventRecordsQueue.add(new EventRecordQueueItem("uuid3", "title", URI.create("http://uri"), "contents", new Date(), "encounter", null));
+
+        EventRecordsPublishingService.publish(new AllEventRecordsStub(), allEventRecordsQueue, hub);
+
+        assertEquals(1, hub.getVersion("patient"));
+        assertEquals(1, hub.getVersion("encounter"));
+        assertEquals(2, hub.getVersion(null));
+    }
+
+    private void publishLater(final String category, final long delayMillis) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                hub.published(category);
+            }
+        }).start();
+    }
+}
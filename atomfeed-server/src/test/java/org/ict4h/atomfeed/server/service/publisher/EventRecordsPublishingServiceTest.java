@@ -0,0 +1,61 @@
+package org.ict4h.atomfeed.server.service.publisher;
+
+import org.ict4h.atomfeed.server.domain.EventRecordQueueItem;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsQueueStub;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsStub;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Date;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class EventRecordsPublishingServiceTest {
+    private AllEventRecordsStub allEventRecords = new AllEventRecordsStub();
+    private AllEventRecordsQueueStub allEventRecordsQueue = spy(new AllEventRecordsQueueStub());
+
+    @Test
+    public void shouldPublishTheQueueInChunks() {
+        queue(5);
+
+        EventRecordsPublishingService.publish(allEventRecords, allEventRecordsQueue, null, 2);
+
+        verify(allEventRecordsQueue, times(3)).claim(2);
+        assertTrue(allEventRecordsQueue.getAll().isEmpty());
+        for (int i = 1; i <= 5; i++) {
+            assertNotNull(allEventRecords.get("uuid" + i));
+        }
+    }
+
+    @Test
+    public void shouldLookForAnotherChunkWhenTheLastOneWasFull() {
+        queue(4);
+
+        EventRecordsPublishingService.publish(allEventRecords, allEventRecordsQueue, null, 2);
+
+        verify(allEventRecordsQueue, times(3)).claim(2);
+        assertTrue(allEventRecordsQueue.getAll().isEmpty());
+    }
+
+    @Test
+    public void shouldTellTheHubOnceOfEachCategoryPublishedTo() {
+        queue(5);
+        EventPublicationHub hub = new EventPublicationHub();
+
+        EventRecordsPublishingService.publish(allEventRecords, allEventRecordsQueue, hub, 2);
+
+        assertEquals(1, hub.getVersion("patient"));
+        assertEquals(1, hub.getVersion(null));
+    }
+
+    private void queue(int numberOfEvents) {
+        for (int i = 1; i <= numberOfEvents; i++) {
+            allEventRecordsQueue.add(new EventRecordQueueItem("uuid" + i, "title", URI.create("http://uri/" + i), "contents", new Date(), "patient", null));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.ict4h.atomfeed.server.service.writer;
+
+import com.sun.syndication.io.WireFeedOutput;
+import org.ict4h.atomfeed.server.domain.EventFeed;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.ict4h.atomfeed.server.domain.EventRecordsOffsetMarker;
+import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsOffsetMarkers;
+import org.ict4h.atomfeed.server.repository.AllEventRecordsStub;
+import org.ict4h.atomfeed.server.repository.ChunkingEntries;
+import org.ict4h.atomfeed.server.service.EventFeedService;
+import org.ict4h.atomfeed.server.service.EventFeedServiceImpl;
+import org.ict4h.atomfeed.server.service.feedgenerator.NumberFeedGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AtomFeedWriterTest {
+    private AllEventRecordsStub allEventRecords;
+    private EventFeedService eventFeedService;
+
+    private ChunkingEntries allChunkingEntries = new ChunkingEntries() {
+        @Override
+        public List<ChunkingHistoryEntry> all() {
+            List<ChunkingHistoryEntry> entries = new ArrayList<>();
+            entries.add(new ChunkingHistoryEntry(1, 5L, 1L));
+            return entries;
+        }
+    };
+
+    private AllEventRecordsOffsetMarkers allEventRecordsOffsetMarkers = new AllEventRecordsOffsetMarkers() {
+        @Override
+        public void addOrUpdate(String category, Integer offsetId, Integer countTillOffSetId) {
+        }
+
+        @Override
+        public List<EventRecordsOffsetMarker> getAll() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public EventRecordsOffsetMarker get(String category) {
+            return null;
+        }
+
+        @Override
+        public String getVersion() {
+            return "";
+        }
+    };
+
+    @Before
+    public void setUp() {
+        allEventRecords = new AllEventRecordsStub();
+        eventFeedService = new EventFeedServiceImpl(new NumberFeedGenerator(allEventRecords, allEventRecordsOffsetMarkers, allChunkingEntries));
+    }
+
+    @Test
+    public void shouldWriteTheSameBytesAsRomeForAnArchiveFeed() throws Exception {
+        add("uuid1", "title", "{\"name\":\"value\"}", "category", null);
+        add("uuid2", "  padded title \t", "  {\"padded\":true}  ", "category", "tag1,tag2");
+        add("uuid3", "markup & <escaping> \"quotes\"", "<xml attr=\"a & b\">text</xml>", "category", "tag & \"quoted\" <tag>");
+        add("uuid4", "line\nbreaks\r\nand\rreturns", "line\nbreaks\r\nand\rreturns", "category", null);
+        add("uuid5", "unicode é中😀", "unicode é中😀", "category", null);
+        add("uuid6", null, null, "category", null);
+        add("uuid7", "   ", "", "category", "");
+
+        assertSameBytes(new URI("http://host:8080/feed/category/1"), "category", 1);
+        assertSameBytes(new URI("http://host:8080/feed/category/2"), "category", 2);
+    }
+
+    @Test
+    public void shouldWriteTheSameBytesAsRomeForTheRecentFeed() throws Exception {
+        for (int i = 1; i <= 7; i++) {
+            add("uuid" + i, "title " + i, "contents " + i, i % 2 == 0 ? "category" : null, null);
+        }
+        URI requestUri = new URI("http://host/feed/recent");
+        EventFeed recentFeed = eventFeedService.getRecentEvents(null);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        eventFeedService.writeRecentFeed(requestUri, null, recentFeed, written, FeedFormat.ATOM);
+
+        assertEquals(new WireFeedOutput().outputString(eventFeedService.getRecentFeed(requestUri, null)),
+                new String(written.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldWriteTheSameBytesAsRomeForAFeedWithoutEvents() throws Exception {
+        URI requestUri = new URI("http://host/feed/recent");
+        EventFeed recentFeed = eventFeedService.getRecentEvents(null);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        eventFeedService.writeRecentFeed(requestUri, null, recentFeed, written, FeedFormat.ATOM);
+
+        assertEquals(new WireFeedOutput().outputString(eventFeedService.getRecentFeed(requestUri, null)),
+                new String(written.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private void assertSameBytes(URI requestUri, String category, int feedId) throws Exception {
+        String expected = new WireFeedOutput().outputString(eventFeedService.getEventFeed(requestUri, category, feedId));
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        eventFeedService.writeEventFeed(requestUri, category, eventFeedService.getEvents(category, feedId, 1), written, FeedFormat.ATOM);
+
+        assertEquals(expected, new String(written.toByteArray(), StandardCharsets.UTF_8));
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), written.toByteArray());
+    }
+
+    private void add(String uuid, String title, String contents, String category, String tags) {
+        final Date timeStamp = new Date(1500000000000L + allEventRecords.getTotalCountForCategory(null) * 1000L);
+        allEventRecords.add(new EventRecord(uuid, title, "http://uri/" + uuid, contents, timeStamp, category, tags) {
+            @Override
+            public Date getTimeStamp() {
+                return timeStamp;
+            }
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package org.ict4h.atomfeed.server.service.writer;
+
+import com.sun.syndication.feed.atom.Link;
+import org.ict4h.atomfeed.server.domain.EventRecord;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonFeedWriterTest {
+    private static final Date UPDATED = new Date(1500000000000L);
+
+    private final JsonFeedWriter writer = new JsonFeedWriter("Event feed");
+
+    @Test
+    public void shouldWriteTheFeedWithItsLinksAndOneEntryALine() throws Exception {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        writer.writeHeader(written, "urn:uuid:feed", UPDATED, Arrays.asList(link("self", "http://host/feed/recent"),
+                link("prev-archive", "http://host/feed/1")));
+        writer.writeEntry(written, eventRecord("uuid1", "title", "{\"name\":\"value\"}", "category", null), true);
+        writer.writeEntry(written, eventRecord("uuid2", null, null, null, null), false);
+        writer.writeFooter(written);
+
+        assertEquals("{\"id\":\"urn:uuid:feed\",\"title\":\"Event feed\",\"updated\":\"2017-07-14T02:40:00Z\",\"links\":["
+                        + "{\"rel\":\"self\",\"type\":\"application/atom+xml\",\"href\":\"http://host/feed/recent\"},"
+                        + "{\"rel\":\"prev-archive\",\"type\":\"application/atom+xml\",\"href\":\"http://host/feed/1\"}],\"entries\":[\n"
+                        + "{\"id\":\"tag:atomfeed.ict4h.org:uuid1\",\"uuid\":\"uuid1\",\"title\":\"title\",\"uri\":\"http://uri/uuid1\","
+                        + "\"timestamp\":\"2017-07-14T02:40:00Z\",\"categories\":[\"category\"],"
+                        + "\"contents\":\"{\\\"name\\\":\\\"value\\\"}\"},\n"
+                        + "{\"id\":\"tag:atomfeed.ict4h.org:uuid2\",\"uuid\":\"uuid2\",\"title\":null,\"uri\":\"http://uri/uuid2\","
+                        + "\"timestamp\":\"2017-07-14T02:40:00Z\",\"categories\":[],\"contents\":null}]}\n",
+                new String(written.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldEscapeQuotesBackslashesAndControlCharacters() throws Exception {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        writer.writeEntry(written, eventRecord("uuid1", "\"quoted\" back\\slash", "line\nbreak\ttab\u0001\u2028 é中😀", null, null), true);
+
+        String json = new String(written.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(true, json.contains("\"title\":\"\\\"quoted\\\" back\\\\slash\""));
+        assertEquals(true, json.contains("\"contents\":\"line\\nbreak\\ttab\\u0001\\u2028 é中😀\""));
+    }
+
+    @Test
+    public void shouldWriteAFeedWithoutEntries() throws Exception {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        writer.writeHeader(written, "urn:uuid:feed", UPDATED, Collections.<Link>emptyList());
+        writer.writeFooter(written);
+
+        assertEquals("{\"id\":\"urn:uuid:feed\",\"title\":\"Event feed\",\"updated\":\"2017-07-14T02:40:00Z\",\"links\":[],\"entries\":[\n]}\n",
+                new String(written.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldWriteEventsAndTheCursorOneALine() throws Exception {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        writer.writeLine(written, eventRecord("uuid1", "title", null, "category", null));
+        writer.writeCursorLine(written, "42", true);
+
+        assertEquals("{\"id\":\"tag:atomfeed.ict4h.org:uuid1\",\"uuid\":\"uuid1\",\"title\":\"title\",\"uri\":\"http://uri/uuid1\","
+                        + "\"timestamp\":\"2017-07-14T02:40:00Z\",\"categories\":[\"category\"],\"contents\":null}\n"
+                        + "{\"cursor\":\"42\",\"caughtUp\":true}\n",
+                new String(written.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private Link link(String rel, String href) {
+        Link link = new Link();
+        link.setRel(rel);
+        link.setType("application/atom+xml");
+        link.setHref(href);
+        return link;
+    }
+
+    private EventRecord eventRecord(String uuid, String title, String contents, String category, String tags) {
+        return new EventRecord(uuid, title, "http://uri/" + uuid, contents, UPDATED, category, tags) {
+            @Override
+            public Date getTimeStamp() {
+                return UPDATED;
+            }
+        };
+    }
+}
@@ -2,6 +2,7 @@ package org.ict4h.atomfeed.server.transaction;
 
 import org.apache.log4j.Logger;
 import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
+import org.ict4h.atomfeed.transaction.AFReadOnlyTransactionWork;
 import org.ict4h.atomfeed.transaction.AFTransactionManager;
 import org.ict4h.atomfeed.transaction.AFTransactionWork;
 import org.springframework.jdbc.datasource.DataSourceUtils;
@@ -20,21 +21,40 @@ import java.util.Map;
 public class AtomFeedSpringTransactionSupport implements AFTransactionManager, JdbcConnectionProvider {
     private static Logger logger = Logger.getLogger(AtomFeedSpringTransactionSupport.class);
     private final DataSource dataSource;
+    private final JdbcConnectionProvider connectionProvider;
     private PlatformTransactionManager transactionManager;
     private Map<AFTransactionWork.PropagationDefinition, Integer> propagationMap = new HashMap<AFTransactionWork.PropagationDefinition, Integer>();
 
     public AtomFeedSpringTransactionSupport(PlatformTransactionManager transactionManager, DataSource dataSource) {
+        this(transactionManager, dataSource, null);
+    }
+
+    /**
+     * @param connectionProvider where connections are taken from within the transactions, e.g. a
+     *                           {@link org.ict4h.atomfeed.spring.jdbc.ReadReplicaRoutingConnectionProvider};
+     *                           null to take them from the data source of the transaction manager
+     */
+    public AtomFeedSpringTransactionSupport(PlatformTransactionManager transactionManager, DataSource dataSource,
+                                            JdbcConnectionProvider connectionProvider) {
         this.transactionManager = transactionManager;
         this.dataSource = dataSource;
+        this.connectionProvider = connectionProvider;
         propagationMap.put(AFTransactionWork.PropagationDefinition.PROPAGATION_REQUIRED, TransactionDefinition.PROPAGATION_REQUIRED);
         propagationMap.put(AFTransactionWork.PropagationDefinition.PROPAGATION_REQUIRES_NEW, TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
+    /**
+     * Work that only reads is run in a read-only transaction.
+     * A read-only transaction joining one that writes still writes, so reads made while writing see what was written.
+     */
     @Override
     public <T> T executeWithTransaction(final AFTransactionWork<T> action) throws RuntimeException {
         TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
         Integer txPropagationDef = getTxPropagation(action.getTxPropagationDefinition());
         transactionTemplate.setPropagationBehavior(txPropagationDef);
+        if (action instanceof AFReadOnlyTransactionWork) {
+            transactionTemplate.setReadOnly(true);
+        }
         return transactionTemplate.execute( new TransactionCallback<T>() {
             @Override
             public T doInTransaction(TransactionStatus status) {
@@ -54,6 +74,9 @@ public class AtomFeedSpringTransactionSupport implements AFTransactionManager, J
      */
     @Override
     public Connection getConnection() throws SQLException {
+        if (connectionProvider != null) {
+            return connectionProvider.getConnection();
+        }
         return DataSourceUtils.getConnection(dataSource);
     }
 
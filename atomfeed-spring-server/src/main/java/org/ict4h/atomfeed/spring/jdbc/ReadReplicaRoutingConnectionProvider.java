@@ -0,0 +1,65 @@
+package org.ict4h.atomfeed.spring.jdbc;
+
+import org.ict4h.atomfeed.jdbc.JdbcConnectionProvider;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Sends the reads made in read-only transactions, which is how feeds are served, to a read replica, and everything
+ * else, publishing included, to the primary. The replica connection is held for the rest of the transaction.
+ * <p>
+ * The transactions are begun by the transaction manager of the primary, so the primary should be a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} for a read-only transaction not to take
+ * a connection from it that is never used.
+ * <p>
+ * All reads stay on the primary while the {@link ReplicaLagGuard} finds the replica behind it. Not only the recent feed
+ * would miss events on a lagging replica: an archive page the primary has moved past may not exist on the replica yet,
+ * or still be its working page. A transaction is routed once, when it first asks for a connection.
+ */
+public class ReadReplicaRoutingConnectionProvider implements JdbcConnectionProvider {
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReplicaLagGuard replicaLagGuard;
+
+    /**
+     * @param primary         the data source of the transaction manager
+     * @param replicaLagGuard null to read from the replica however far behind it is
+     */
+    public ReadReplicaRoutingConnectionProvider(DataSource primary, DataSource replica, ReplicaLagGuard replicaLagGuard) {
+        this.primary = primary;
+        this.replica = replica;
+        this.replicaLagGuard = replicaLagGuard;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return DataSourceUtils.getConnection(readsFromReplica() ? replica : primary);
+    }
+
+    private boolean readsFromReplica() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return false;
+        }
+        Boolean routed = (Boolean) TransactionSynchronizationManager.getResource(this);
+        if (routed == null) {
+            routed = replicaLagGuard == null || !replicaLagGuard.isReplicaBehind();
+            bindForTransaction(routed);
+        }
+        return routed;
+    }
+
+    private void bindForTransaction(Boolean routed) {
+        TransactionSynchronizationManager.bindResource(this, routed);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ReadReplicaRoutingConnectionProvider.this);
+            }
+        });
+    }
+}
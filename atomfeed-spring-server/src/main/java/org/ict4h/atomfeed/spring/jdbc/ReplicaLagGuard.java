@@ -0,0 +1,83 @@
+package org.ict4h.atomfeed.spring.jdbc;
+
+import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.Configuration;
+import org.ict4h.atomfeed.jdbc.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tells whether a read replica is behind the primary by more events than allowed, comparing the newest event id on
+ * both. The comparison is made at most once per check interval, so that guarding the feed reads costs the primary
+ * one indexed lookup per interval rather than one per request.
+ */
+public class ReplicaLagGuard {
+    private static Logger logger = Logger.getLogger(ReplicaLagGuard.class);
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final int maxLagEvents;
+    private final long checkIntervalMillis;
+    private volatile boolean behind;
+    private volatile long checkedAt;
+
+    /**
+     * @param maxLagEvents        how many of the newest events the replica may not have yet
+     * @param checkIntervalMillis how long a comparison holds for; 0 compares on every call
+     */
+    public ReplicaLagGuard(DataSource primary, DataSource replica, int maxLagEvents, long checkIntervalMillis) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagEvents = maxLagEvents;
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    public boolean isReplicaBehind() {
+        long now = System.currentTimeMillis();
+        if (checkedAt == 0 || now - checkedAt >= checkIntervalMillis) {
+            synchronized (this) {
+                if (checkedAt == 0 || now - checkedAt >= checkIntervalMillis) {
+                    behind = check();
+                    checkedAt = System.currentTimeMillis();
+                }
+            }
+        }
+        return behind;
+    }
+
+    //A replica that cannot be compared is taken to be behind, so that feeds are read from the primary.
+    private boolean check() {
+        try {
+            int lag = newestEventId(primary) - newestEventId(replica);
+            if (lag > maxLagEvents) {
+                logger.info(String.format("The replica is %d events behind the primary", lag));
+                return true;
+            }
+            return false;
+        } catch (SQLException e) {
+            logger.warn("Could not compare the replica with the primary", e);
+            return true;
+        }
+    }
+
+    private int newestEventId(DataSource dataSource) throws SQLException {
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = dataSource.getConnection();
+            statement = connection.createStatement();
+            resultSet = statement.executeQuery(String.format("select max(id) from %s",
+                    JdbcUtils.getTableName(Configuration.getInstance().getSchema(), "event_records")));
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        } finally {
+            if (resultSet != null) resultSet.close();
+            if (statement != null) statement.close();
+            if (connection != null) connection.close();
+        }
+    }
+}
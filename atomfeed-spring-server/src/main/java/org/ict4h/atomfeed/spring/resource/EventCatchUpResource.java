@@ -0,0 +1,71 @@
+package org.ict4h.atomfeed.spring.resource;
+
+import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.server.domain.CategorySet;
+import org.ict4h.atomfeed.server.domain.CategoryTag;
+import org.ict4h.atomfeed.server.service.EventCatchUpService;
+import org.ict4h.atomfeed.server.service.helper.EventCatchUpServiceHelper;
+import org.ict4h.atomfeed.server.service.helper.ResourceHelper;
+import org.ict4h.atomfeed.server.transaction.AtomFeedSpringTransactionSupport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Streams the events after a given one as newline delimited JSON, for consumers too far behind to page through the feed.
+ * A stream holds at most feed.catchup.max_events events and ends with the cursor to ask for the next one with.
+ */
+@Controller
+public class EventCatchUpResource {
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson;charset=UTF-8";
+    private static final String DEFAULT_MAX_EVENTS = "10000";
+
+    private EventCatchUpService eventCatchUpService;
+    private AtomFeedSpringTransactionSupport atomTxManager;
+    private int maxEvents;
+    private static Logger logger = Logger.getLogger(EventCatchUpResource.class);
+
+    @Autowired
+    public EventCatchUpResource(EventCatchUpService eventCatchUpService, AtomFeedSpringTransactionSupport atomTxManager) {
+        this.eventCatchUpService = eventCatchUpService;
+        this.atomTxManager = atomTxManager;
+        this.maxEvents = Integer.parseInt(new ResourceHelper().fetchKeyOrDefault("feed.catchup.max_events", DEFAULT_MAX_EVENTS));
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/events")
+    public void getEvents(HttpServletResponse httpServletResponse,
+                          @RequestParam(value = "after", required = false) String after,
+                          @RequestParam(value = "cursor", required = false) String cursor,
+                          @RequestParam(value = "limit", required = false) Integer limit) throws IOException {
+        streamEvents(httpServletResponse, null, after, cursor, limit);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/{category}/events")
+    public void getEventsForCategory(HttpServletResponse httpServletResponse, @PathVariable String category,
+                                     @RequestParam(value = "after", required = false) String after,
+                                     @RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "limit", required = false) Integer limit) throws IOException {
+        streamEvents(httpServletResponse, CategorySet.canonical(category), after, cursor, limit);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/{category}/tags/{tag}/events")
+    public void getEventsForTag(HttpServletResponse httpServletResponse, @PathVariable String category, @PathVariable String tag,
+                                @RequestParam(value = "after", required = false) String after,
+                                @RequestParam(value = "cursor", required = false) String cursor,
+                                @RequestParam(value = "limit", required = false) Integer limit) throws IOException {
+        streamEvents(httpServletResponse, CategoryTag.of(category, tag), after, cursor, limit);
+    }
+
+    private void streamEvents(HttpServletResponse response, String category, String after, String cursor, Integer limit) throws IOException {
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache");
+        EventCatchUpServiceHelper.streamEventsAfter(eventCatchUpService, category, after, cursor,
+                limit == null ? maxEvents : Math.max(1, Math.min(limit, maxEvents)), logger, atomTxManager, response.getOutputStream());
+    }
+}
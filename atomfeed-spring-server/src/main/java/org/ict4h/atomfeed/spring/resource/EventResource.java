@@ -1,55 +1,274 @@
 package org.ict4h.atomfeed.spring.resource;
 
 import org.apache.log4j.Logger;
+import org.ict4h.atomfeed.server.domain.CategorySet;
+import org.ict4h.atomfeed.server.domain.CategoryTag;
+import org.ict4h.atomfeed.server.exceptions.FeedNotFoundException;
 import org.ict4h.atomfeed.server.service.EventFeedService;
+import org.ict4h.atomfeed.server.service.cache.FeedPageCache;
+import org.ict4h.atomfeed.server.service.encoding.GzipFeedEncoder;
+import org.ict4h.atomfeed.server.service.helper.ConditionalRequest;
 import org.ict4h.atomfeed.server.service.helper.EventFeedServiceHelper;
+import org.ict4h.atomfeed.server.service.helper.FeedPageStream;
+import org.ict4h.atomfeed.server.service.helper.FeedRequest;
+import org.ict4h.atomfeed.server.service.helper.ResourceHelper;
+import org.ict4h.atomfeed.server.service.publisher.EventPublicationHub;
+import org.ict4h.atomfeed.server.service.writer.FeedFormat;
 import org.ict4h.atomfeed.server.transaction.AtomFeedSpringTransactionSupport;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Semaphore;
 
 @Controller
 public class EventResource {
+    //Archive pages never change, so they can be kept by any cache for as long as it likes (one year as per RFC 2616).
+    private static final String ARCHIVE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String DEFAULT_RECENT_MAX_AGE = "10";
+    //Long polling is off unless feed.recent.max_wait is set, as every waiting request holds a thread of the container.
+    private static final String DEFAULT_RECENT_MAX_WAIT = "0";
+    private static final String DEFAULT_RECENT_MAX_WAITERS = "10";
+    private static final MediaType ATOM_MEDIA_TYPE = MediaType.parseMediaType(FeedFormat.ATOM.getMediaType());
+    private static final MediaType JSON_MEDIA_TYPE = MediaType.parseMediaType(FeedFormat.JSON.getMediaType());
+    private static final String PAGE_PATTERN = "\\d+(?:\\.\\d+)?";
+
     private EventFeedService eventFeedService;
     private AtomFeedSpringTransactionSupport atomTxManager;
+    private FeedPageCache feedPageCache;
+    private GzipFeedEncoder gzipEncoder;
+    private EventPublicationHub eventPublicationHub;
+    private String recentCacheControl;
+    private long recentMaxWaitMillis;
+    private Semaphore recentWaiters;
     private static Logger logger = Logger.getLogger(EventResource.class);
 
-    @Autowired
     public EventResource(EventFeedService eventFeedService, AtomFeedSpringTransactionSupport atomTxManager) {
+        this(eventFeedService, atomTxManager, null);
+    }
+
+    public EventResource(EventFeedService eventFeedService, AtomFeedSpringTransactionSupport atomTxManager, FeedPageCache feedPageCache) {
+        this(eventFeedService, atomTxManager, feedPageCache, new GzipFeedEncoder());
+    }
+
+    public EventResource(EventFeedService eventFeedService, AtomFeedSpringTransactionSupport atomTxManager, FeedPageCache feedPageCache,
+                         GzipFeedEncoder gzipEncoder) {
+        this(eventFeedService, atomTxManager, feedPageCache, gzipEncoder, EventPublicationHub.getInstance());
+    }
+
+    @Autowired
+    public EventResource(EventFeedService eventFeedService, AtomFeedSpringTransactionSupport atomTxManager, FeedPageCache feedPageCache,
+                         GzipFeedEncoder gzipEncoder, EventPublicationHub eventPublicationHub) {
         this.eventFeedService = eventFeedService;
         this.atomTxManager = atomTxManager;
+        this.feedPageCache = feedPageCache;
+        this.gzipEncoder = gzipEncoder;
+        this.eventPublicationHub = eventPublicationHub;
+        ResourceHelper resourceHelper = new ResourceHelper();
+        this.recentCacheControl = "public, max-age=" + resourceHelper.fetchKeyOrDefault("feed.recent.max_age", DEFAULT_RECENT_MAX_AGE);
+        this.recentMaxWaitMillis = 1000L * Long.parseLong(resourceHelper.fetchKeyOrDefault("feed.recent.max_wait", DEFAULT_RECENT_MAX_WAIT));
+        this.recentWaiters = new Semaphore(Integer.parseInt(resourceHelper.fetchKeyOrDefault("feed.recent.max_waiters", DEFAULT_RECENT_MAX_WAITERS)));
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/recent")
+    public void getRecentEventFeed(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) {
+        streamFeedPage(httpServletRequest, httpServletResponse, FeedRequest.recent(requestUrlOf(httpServletRequest), null));
+    }
+
+    //The category may be a set of categories separated by commas, e.g. /feed/patient,encounter/recent, for a single feed
+    //of the events of all of them. The set is taken in its canonical form, so that its order does not make another feed.
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/{category}/recent")
+    public void getRecentEventFeedForCategory(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                                              @PathVariable String category) {
+        streamFeedPage(httpServletRequest, httpServletResponse,
+                FeedRequest.recent(requestUrlOf(httpServletRequest), CategorySet.canonical(category)));
+    }
+
+    //Long polling: with ?wait=<seconds> and the validators of the recent feed the requester has, the request is held until
+    //an event is published or the wait (at most feed.recent.max_wait seconds) is over, and then answered as usual.
+    //Servlet 2.5 has no asynchronous requests, so a waiting request holds its thread, though not a connection to the database.
+    //At most feed.recent.max_waiters requests wait at a time; any more are answered at once, as if they had not asked to wait.
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/recent", params = "wait")
+    public void awaitRecentEventFeed(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                                     @RequestParam("wait") long waitSeconds) {
+        awaitRecentFeedChange(httpServletRequest, null, waitSeconds);
+        getRecentEventFeed(httpServletRequest, httpServletResponse);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/{category}/recent", params = "wait")
+    public void awaitRecentEventFeedForCategory(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                                                @PathVariable String category, @RequestParam("wait") long waitSeconds) {
+        awaitRecentFeedChange(httpServletRequest, CategorySet.canonical(category), waitSeconds);
+        getRecentEventFeedForCategory(httpServletRequest, httpServletResponse, category);
+    }
+
+    private void awaitRecentFeedChange(HttpServletRequest httpServletRequest, String category, long waitSeconds) {
+        long timeoutMillis = Math.max(0, Math.min(1000L * waitSeconds, recentMaxWaitMillis));
+        if (timeoutMillis == 0 || !recentWaiters.tryAcquire()) {
+            return;
+        }
+        try {
+            EventFeedServiceHelper.awaitRecentFeedChange(eventFeedService,
+                    negotiated(httpServletRequest, FeedRequest.recent(requestUrlOf(httpServletRequest), category)),
+                    atomTxManager, eventPublicationHub, timeoutMillis);
+        } finally {
+            recentWaiters.release();
+        }
+    }
+
+    //The page is a feed number optionally followed by a part, e.g. 7 or 7.2. It is a single path variable because the
+    //default suffix pattern of "/feed/{feedNumber}" would otherwise take "7.2" for feed 7 with a ".2" extension.
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/{page:" + PAGE_PATTERN + "}")
+    public void getEventFeed(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, @PathVariable String page) {
+        streamFeedPage(httpServletRequest, httpServletResponse, null, page);
     }
 
-    @RequestMapping(method = RequestMethod.GET, value = "/feed/recent", produces = "application/atom+xml")
-    @ResponseBody
-    public String getRecentEventFeed(HttpServletRequest httpServletRequest) {
-        return EventFeedServiceHelper.getRecentFeed(eventFeedService,httpServletRequest.getRequestURL().toString(), null, logger, atomTxManager);
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/{category}/{page:" + PAGE_PATTERN + "}")
+    public void getEventFeedWithCategory(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                                         @PathVariable String category, @PathVariable String page) {
+        streamFeedPage(httpServletRequest, httpServletResponse, CategorySet.canonical(category), page);
     }
 
-    @RequestMapping(method = RequestMethod.GET, value = "/feed/{category}/recent", produces = "application/atom+xml")
-    @ResponseBody
-    public String getRecentEventFeedForCategory(HttpServletRequest httpServletRequest,@PathVariable String category) {
-        return EventFeedServiceHelper.getRecentFeed(eventFeedService,httpServletRequest.getRequestURL().toString(),
-                                                    category, logger, atomTxManager);
+    //A feed of the events of a category that carry a tag, e.g. /feed/patient/tags/merged/recent, paged like a category feed.
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/{category}/tags/{tag}/recent")
+    public void getRecentEventFeedForTag(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                                         @PathVariable String category, @PathVariable String tag) {
+        streamFeedPage(httpServletRequest, httpServletResponse,
+                FeedRequest.recent(requestUrlOf(httpServletRequest), CategoryTag.of(category, tag)));
     }
 
-    @RequestMapping(method = RequestMethod.GET, value = "/feed/{feedNumber}")
-    @ResponseBody
-    public String getEventFeed(HttpServletRequest httpServletRequest, @PathVariable int feedNumber) {
-        return EventFeedServiceHelper.getEventFeed(
-                eventFeedService,httpServletRequest.getRequestURL().toString(),null, feedNumber,logger, atomTxManager);
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/{category}/tags/{tag}/recent", params = "wait")
+    public void awaitRecentEventFeedForTag(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                                           @PathVariable String category, @PathVariable String tag, @RequestParam("wait") long waitSeconds) {
+        awaitRecentFeedChange(httpServletRequest, CategoryTag.of(category, tag), waitSeconds);
+        getRecentEventFeedForTag(httpServletRequest, httpServletResponse, category, tag);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/feed/{category}/tags/{tag}/{page:" + PAGE_PATTERN + "}")
+    public void getEventFeedWithTag(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                                    @PathVariable String category, @PathVariable String tag, @PathVariable String page) {
+        streamFeedPage(httpServletRequest, httpServletResponse, CategoryTag.of(category, tag), page);
+    }
+
+    //A feed beyond the latest one, or a part a feed is not split into, is not found rather than an error.
+    private void streamFeedPage(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, FeedRequest request) {
+        FeedRequest negotiated = negotiated(httpServletRequest, request);
+        try {
+            EventFeedServiceHelper.streamFeedPage(eventFeedService, negotiated, logger, atomTxManager, feedPageCache,
+                    pageStream(httpServletResponse, negotiated.getFormat()));
+        } catch (FeedNotFoundException e) {
+            httpServletResponse.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    //A page that cannot exist, e.g. feed 0, part 0 or a number too large for an int, is not found without looking for it.
+    private void streamFeedPage(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, String category, String page) {
+        int separator = page.indexOf('.');
+        int feedNumber = pageNumberOf(separator < 0 ? page : page.substring(0, separator));
+        int part = separator < 0 ? 1 : pageNumberOf(page.substring(separator + 1));
+        if (feedNumber < 1 || part < 1) {
+            httpServletResponse.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        streamFeedPage(httpServletRequest, httpServletResponse,
+                FeedRequest.feed(requestUrlOf(httpServletRequest), category, feedNumber).withPart(part));
+    }
+
+    //The validators, encoding and format the requester asked for with its headers.
+    private FeedRequest negotiated(HttpServletRequest httpServletRequest, FeedRequest request) {
+        return request.withConditionalRequest(conditionalRequest(httpServletRequest))
+                .withGzipEncoder(gzipEncoderFor(httpServletRequest))
+                .withFormat(formatFor(httpServletRequest));
+    }
+
+    private String requestUrlOf(HttpServletRequest httpServletRequest) {
+        return httpServletRequest.getRequestURL().toString();
+    }
+
+    //The digits of a page number, 0 when they do not fit an int.
+    private int pageNumberOf(String digits) {
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private ConditionalRequest conditionalRequest(HttpServletRequest httpServletRequest) {
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = httpServletRequest.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            ifModifiedSince = -1;
+        }
+        return new ConditionalRequest(httpServletRequest.getHeader("If-None-Match"), ifModifiedSince);
+    }
+
+    private GzipFeedEncoder gzipEncoderFor(HttpServletRequest httpServletRequest) {
+        return gzipEncoder != null && GzipFeedEncoder.isAccepted(httpServletRequest.getHeader("Accept-Encoding")) ? gzipEncoder : null;
+    }
+
+    //A requester asking for JSON ahead of Atom gets the same page as JSON; anyone else, including a requester without
+    //an Accept header, gets Atom.
+    private FeedFormat formatFor(HttpServletRequest httpServletRequest) {
+        String accept = httpServletRequest.getHeader("Accept");
+        if (accept == null) {
+            return FeedFormat.ATOM;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (IllegalArgumentException e) {
+            return FeedFormat.ATOM;
+        }
+        MediaType.sortByQualityValue(mediaTypes);
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.includes(ATOM_MEDIA_TYPE) || mediaType.getQualityValue() == 0) {
+                return FeedFormat.ATOM;
+            }
+            if (mediaType.includes(JSON_MEDIA_TYPE)) {
+                return FeedFormat.JSON;
+            }
+        }
+        return FeedFormat.ATOM;
+    }
+
+    //Spring 3.1 has no streaming response body, so the page is written to the servlet response as its events are read.
+    private FeedPageStream pageStream(final HttpServletResponse response, final FeedFormat format) {
+        return new FeedPageStream() {
+            @Override
+            public void notModified(String etag, Date lastModified, boolean archived) {
+                writeHeaders(response, format, etag, lastModified, archived);
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            }
+
+            @Override
+            public OutputStream modified(String etag, Date lastModified, boolean archived, String contentEncoding) throws IOException {
+                writeHeaders(response, format, etag, lastModified, archived);
+                if (contentEncoding != null) {
+                    response.setHeader("Content-Encoding", contentEncoding);
+                }
+                response.setStatus(HttpServletResponse.SC_OK);
+                return response.getOutputStream();
+            }
+        };
     }
 
-    @RequestMapping(method = RequestMethod.GET, value = "/feed/{category}/{feedNumber}")
-    @ResponseBody
-    public String getEventFeedWithCategory(HttpServletRequest httpServletRequest,
-                                           @PathVariable String category,  @PathVariable int feedNumber) {
-        return EventFeedServiceHelper.getEventFeed(eventFeedService,httpServletRequest.getRequestURL().toString(),
-                                                   category, feedNumber,logger, atomTxManager);
+    private void writeHeaders(HttpServletResponse response, FeedFormat format, String etag, Date lastModified, boolean archived) {
+        response.setContentType(format.getMediaType() + ";charset=UTF-8");
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified.getTime());
+        response.setHeader("Cache-Control", archived ? ARCHIVE_CACHE_CONTROL : recentCacheControl);
+        response.setHeader("Vary", "Accept, Accept-Encoding");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,82 @@
+package org.ict4h.atomfeed.spring.jdbc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertSame;
+
+public class ReadReplicaRoutingConnectionProviderTest {
+    private StubDataSource primary = new StubDataSource();
+    private StubDataSource replica = new StubDataSource();
+
+    @Before
+    public void beginReadOnlyTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    }
+
+    @After
+    public void endTransaction() {
+        for (Object resource : new ArrayList<>(TransactionSynchronizationManager.getResourceMap().keySet())) {
+            TransactionSynchronizationManager.unbindResource(resource);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void shouldReadFromTheReplicaWhileItKeepsUpWithThePrimary() throws Exception {
+        assertSame(replica.connection, new ReadReplicaRoutingConnectionProvider(primary, replica, lagGuard(false)).getConnection());
+    }
+
+    //An archive page the primary has moved past may not exist on a lagging replica yet, so it is not read from there either.
+    @Test
+    public void shouldReadAnyFeedFromThePrimaryWhileTheReplicaLagsBehind() throws Exception {
+        assertSame(primary.connection, new ReadReplicaRoutingConnectionProvider(primary, replica, lagGuard(true)).getConnection());
+    }
+
+    @Test
+    public void shouldWriteToThePrimary() throws Exception {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+
+        assertSame(primary.connection, new ReadReplicaRoutingConnectionProvider(primary, replica, lagGuard(false)).getConnection());
+    }
+
+    private ReplicaLagGuard lagGuard(final boolean replicaBehind) {
+        return new ReplicaLagGuard(primary, replica, 0, 0) {
+            @Override
+            public boolean isReplicaBehind() {
+                return replicaBehind;
+            }
+        };
+    }
+
+    private static class StubDataSource extends AbstractDataSource {
+        private final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{Connection.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                });
+
+        @Override
+        public Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return connection;
+        }
+    }
+}
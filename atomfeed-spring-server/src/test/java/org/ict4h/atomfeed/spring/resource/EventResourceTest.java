@@ -0,0 +1,84 @@
+package org.ict4h.atomfeed.spring.resource;
+
+import org.ict4h.atomfeed.server.domain.chunking.ChunkingHistoryEntry;
+import org.ict4h.atomfeed.server.repository.ChunkingEntries;
+import org.ict4h.atomfeed.server.service.EventFeedServiceImpl;
+import org.ict4h.atomfeed.server.service.feedgenerator.TimeFeedGenerator;
+import org.ict4h.atomfeed.server.transaction.AtomFeedSpringTransactionSupport;
+import org.ict4h.atomfeed.transaction.AFTransactionWork;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventResourceTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    //Pages that cannot exist are answered before the feed is looked at, so no service is needed.
+    private EventResource eventResource = new EventResource(null, null, null);
+
+    @Test
+    public void shouldNotFindAFeedNumberTooLargeForAnInt() {
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, statusOf("99999999999"));
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, statusOf("7.99999999999"));
+    }
+
+    @Test
+    public void shouldNotFindTheFeedOrThePartNumberedZero() {
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, statusOf("0"));
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, statusOf("7.0"));
+    }
+
+    @Test
+    public void shouldNotFindAFeedBeyondTheLatestOrAPartAFeedIsNotSplitInto() {
+        final long threeHoursAgo = System.currentTimeMillis() - 3 * HOUR;
+        ChunkingEntries hourlyChunks = new ChunkingEntries() {
+            @Override
+            public List<ChunkingHistoryEntry> all() {
+                return Collections.singletonList(new ChunkingHistoryEntry(1, HOUR, threeHoursAgo));
+            }
+        };
+        AtomFeedSpringTransactionSupport txManager = new AtomFeedSpringTransactionSupport(null, null) {
+            @Override
+            public <T> T executeWithTransaction(AFTransactionWork<T> action) {
+                return action.execute();
+            }
+        };
+        eventResource = new EventResource(new EventFeedServiceImpl(new TimeFeedGenerator(null, hourlyChunks)), txManager, null);
+
+        //The working feed is the fourth one
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, statusOf("5"));
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, statusOf("2.2"));
+    }
+
+    @Test
+    public void shouldNotHoldALongPollUnlessAMaximumWaitIsConfigured() {
+        final List<AFTransactionWork> transactions = new ArrayList<>();
+        AtomFeedSpringTransactionSupport txManager = new AtomFeedSpringTransactionSupport(null, null) {
+            @Override
+            public <T> T executeWithTransaction(AFTransactionWork<T> action) {
+                transactions.add(action);
+                return null;
+            }
+        };
+
+        new EventResource(null, txManager, null).awaitRecentEventFeed(new MockHttpServletRequest("GET", "/feed/recent"),
+                new MockHttpServletResponse(), 30);
+
+        //The recent feed is served at once, without looking whether it changed first.
+        assertEquals(1, transactions.size());
+    }
+
+    private int statusOf(String page) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/feed/patient/" + page);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        eventResource.getEventFeedWithCategory(request, response, "patient", page);
+        return response.getStatus();
+    }
+}